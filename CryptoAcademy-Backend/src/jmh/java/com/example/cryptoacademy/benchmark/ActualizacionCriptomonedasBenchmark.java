@@ -0,0 +1,74 @@
+package com.example.cryptoacademy.benchmark;
+
+import com.example.cryptoacademy.dto.MarketCoinDTO;
+import com.example.cryptoacademy.persistance.repository.RefrescoCriptomonedasJdbcRepository.FilaCriptomoneda;
+import com.example.cryptoacademy.service.TablaPreciosCriptomonedas;
+import com.example.cryptoacademy.service.TablaPreciosCriptomonedas.CambiosRefresco;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cálculo de cambios de {@link TablaPreciosCriptomonedas} sobre un refresco de 250 monedas, tanto cuando nada ha
+ * cambiado (no se escribe ninguna fila) como cuando cambian todos los precios (se escriben las 250 y se confirman).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActualizacionCriptomonedasBenchmark {
+
+    private static final int MONEDAS = 250;
+
+    private TablaPreciosCriptomonedas tabla;
+    private List<MarketCoinDTO> refrescoA;
+    private List<MarketCoinDTO> refrescoB;
+    private boolean alternar;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        refrescoA = refresco(0);
+        refrescoB = refresco(1);
+        List<FilaCriptomoneda> filas = new ArrayList<>(MONEDAS);
+        for (MarketCoinDTO dto : refrescoA) {
+            filas.add(new FilaCriptomoneda(dto.getId(), null, null, null, null, null, null, null, null));
+        }
+        tabla = new TablaPreciosCriptomonedas();
+        tabla.cargar(filas);
+        tabla.confirmar(tabla.calcularCambios(refrescoA));
+    }
+
+    @Benchmark
+    public CambiosRefresco refrescoSinCambios() {
+        return tabla.calcularCambios(refrescoA);
+    }
+
+    @Benchmark
+    public CambiosRefresco refrescoConCambios() {
+        alternar = !alternar;
+        CambiosRefresco cambios = tabla.calcularCambios(alternar ? refrescoB : refrescoA);
+        tabla.confirmar(cambios);
+        return cambios;
+    }
+
+    private static List<MarketCoinDTO> refresco(int variante) {
+        String lastUpdated = Instant.parse("2025-01-01T00:00:00Z").plusSeconds(variante * 60L).toString();
+        List<MarketCoinDTO> dtos = new ArrayList<>(MONEDAS);
+        for (int i = 0; i < MONEDAS; i++) {
+            dtos.add(new MarketCoinDTO(
+                    "coin-" + i, "c" + i, "Coin " + i, "https://img.test/" + i + ".png",
+                    BigDecimal.valueOf(10_000 + i + variante, 2),
+                    BigDecimal.valueOf(1_000_000L * (i + 1) + variante),
+                    BigDecimal.valueOf(50_000L * (i + 1) + variante),
+                    1.25 + variante,
+                    lastUpdated));
+        }
+        return dtos;
+    }
+}
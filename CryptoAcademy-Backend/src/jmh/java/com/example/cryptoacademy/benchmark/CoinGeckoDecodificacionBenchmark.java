@@ -0,0 +1,125 @@
+package com.example.cryptoacademy.benchmark;
+
+import com.example.cryptoacademy.dto.CoinGeckoChartDataDTO;
+import com.example.cryptoacademy.dto.MarketCoinDTO;
+import com.example.cryptoacademy.service.SeriePrecios;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodificación de las respuestas de CoinGecko tal como llegan (bytes UTF-8): el camino anterior de
+ * {@code CoinGeckoService} (cuerpo a String y {@code TypeReference} nuevo en cada llamada) frente a la lectura del
+ * flujo con un {@code ObjectReader} reutilizado y, para los gráficos, frente a {@link SeriePrecios}.
+ * La asignación por operación se ve con {@code -Djmh.args="CoinGeckoDecodificacion -prof gc"} (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoinGeckoDecodificacionBenchmark {
+
+    // 365 puntos: gráfico diario de un año; 8760: el mismo año con granularidad horaria.
+    @Param({"365", "8760"})
+    public int puntos;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectReader lectorMercados = objectMapper.readerFor(new TypeReference<List<MarketCoinDTO>>() {
+    });
+    private final ObjectReader lectorGrafico = objectMapper.readerFor(CoinGeckoChartDataDTO.class);
+    private byte[] mercados;
+    private byte[] grafico;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        List<Map<String, Object>> monedas = new ArrayList<>(250);
+        for (int i = 0; i < 250; i++) {
+            Map<String, Object> moneda = new LinkedHashMap<>();
+            moneda.put("id", "coin-" + i);
+            moneda.put("symbol", "c" + i);
+            moneda.put("name", "Coin " + i);
+            moneda.put("image", "https://coin-images.coingecko.com/coins/images/" + i + "/large/coin.png");
+            moneda.put("current_price", 10_000.25 + i);
+            moneda.put("market_cap", 1_000_000_000L + i);
+            moneda.put("market_cap_rank", i + 1);
+            moneda.put("total_volume", 50_000_000L + i);
+            moneda.put("high_24h", 10_100.5 + i);
+            moneda.put("low_24h", 9_900.75 + i);
+            moneda.put("price_change_percentage_24h", 1.25);
+            moneda.put("circulating_supply", 19_000_000.0);
+            moneda.put("ath", 73_000.0);
+            moneda.put("ath_date", "2024-03-14T07:10:36.635Z");
+            moneda.put("roi", null);
+            moneda.put("last_updated", "2025-01-01T00:00:00.000Z");
+            monedas.add(moneda);
+        }
+        mercados = objectMapper.writeValueAsBytes(monedas);
+
+        long inicio = 1_700_000_000_000L;
+        long paso = puntos > 365 ? TimeUnit.HOURS.toMillis(1) : TimeUnit.DAYS.toMillis(1);
+        Map<String, List<List<Number>>> datos = new LinkedHashMap<>();
+        for (String serie : List.of("prices", "market_caps", "total_volumes")) {
+            List<List<Number>> valores = new ArrayList<>(puntos);
+            for (int i = 0; i < puntos; i++) {
+                valores.add(List.of(inicio + i * paso, 35_000.123456789 + i * 0.5));
+            }
+            datos.put(serie, valores);
+        }
+        grafico = objectMapper.writeValueAsBytes(datos);
+    }
+
+    @Benchmark
+    public List<MarketCoinDTO> mercadosDesdeString() throws Exception {
+        String cuerpo = new String(mercados, StandardCharsets.UTF_8);
+        return objectMapper.readValue(cuerpo, new TypeReference<List<MarketCoinDTO>>() {
+        });
+    }
+
+    @Benchmark
+    public List<MarketCoinDTO> mercadosDesdeFlujo() throws Exception {
+        try (JsonParser parser = flujo(mercados)) {
+            return lectorMercados.readValue(parser);
+        }
+    }
+
+    @Benchmark
+    public CoinGeckoChartDataDTO graficoDesdeString() throws Exception {
+        String cuerpo = new String(grafico, StandardCharsets.UTF_8);
+        return objectMapper.readValue(cuerpo, new TypeReference<CoinGeckoChartDataDTO>() {
+        });
+    }
+
+    @Benchmark
+    public CoinGeckoChartDataDTO graficoDesdeFlujo() throws Exception {
+        try (JsonParser parser = flujo(grafico)) {
+            return lectorGrafico.readValue(parser);
+        }
+    }
+
+    @Benchmark
+    public SeriePrecios graficoPrimitivo() throws Exception {
+        try (JsonParser parser = flujo(grafico)) {
+            return SeriePrecios.leer(parser);
+        }
+    }
+
+    // Igual que CoinGeckoService: parser sobre el flujo y números decimales sin String intermedio.
+    private JsonParser flujo(byte[] cuerpo) throws Exception {
+        JsonParser parser = objectMapper.getFactory().createParser(new ByteArrayInputStream(cuerpo));
+        parser.enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER.mappedFeature());
+        return parser;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.cryptoacademy.benchmark;
+
+import com.example.cryptoacademy.CryptoacademyApplication;
+import com.example.cryptoacademy.persistance.model.Cartera;
+import com.example.cryptoacademy.persistance.model.Criptomoneda;
+import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.persistance.repository.CarteraRepository;
+import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import com.example.cryptoacademy.persistance.repository.UsuarioRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Arranca la aplicación con el perfil {@code test} (H2 en memoria) y crea los datos de partida de los benchmarks.
+ */
+final class ContextoBenchmark {
+
+    private ContextoBenchmark() {
+    }
+
+    static ConfigurableApplicationContext arrancar(String... propiedades) {
+        return new SpringApplicationBuilder(CryptoacademyApplication.class)
+                .profiles("test")
+                .logStartupInfo(false)
+                .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=WARN")
+                .properties(propiedades)
+                .run();
+    }
+
+    static Usuario crearUsuario(ConfigurableApplicationContext contexto) {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Benchmark");
+        usuario.setEmail("benchmark-" + System.nanoTime() + "@cryptoacademy.test");
+        usuario.setHashContrasena("x");
+        return contexto.getBean(UsuarioRepository.class).save(usuario);
+    }
+
+    static Cartera crearCartera(ConfigurableApplicationContext contexto, Usuario usuario, BigDecimal saldo) {
+        Cartera cartera = new Cartera();
+        cartera.setUsuario(usuario);
+        cartera.setNombre("Cartera benchmark");
+        cartera.setSaldoVirtualEUR(saldo);
+        return contexto.getBean(CarteraRepository.class).save(cartera);
+    }
+
+    static List<Criptomoneda> crearCriptomonedas(ConfigurableApplicationContext contexto, int cantidad) {
+        List<Criptomoneda> criptomonedas = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            Criptomoneda cripto = new Criptomoneda();
+            cripto.setId_Criptomoneda("benchcoin-" + i + "-" + System.nanoTime());
+            cripto.setNombre("BenchCoin " + i);
+            cripto.setSimbolo("bc" + i);
+            cripto.setPrecio_actual(BigDecimal.valueOf(100 + i, 2));
+            cripto.setCambioPorcentaje24h(1.5);
+            cripto.setFecha_actualizacion(LocalDateTime.now());
+            criptomonedas.add(cripto);
+        }
+        return contexto.getBean(CriptomonedaRepository.class).saveAll(criptomonedas);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.cryptoacademy.benchmark;
+
+import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.security.auth.service.JWTServiceImpl;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generación y verificación de tokens con {@link JWTServiceImpl}; {@code validarToken} es lo que hace el filtro
+ * de autenticación en cada petición.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    private static final String CLAVE = "dGVzdC1zZWNyZXQta2V5LXBhcmEtY3J5cHRvYWNhZGVteS10ZXN0cy0yNTYtYml0cw==";
+
+    private JWTServiceImpl jwtService;
+    private Usuario usuario;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jwtService = new JWTServiceImpl();
+        ReflectionTestUtils.setField(jwtService, "SECRET_KEY", CLAVE);
+        usuario = new Usuario();
+        usuario.setId(42);
+        usuario.setNombre("Benchmark");
+        usuario.setEmail("benchmark@cryptoacademy.test");
+        token = jwtService.getToken(usuario);
+    }
+
+    @Benchmark
+    public String generarToken() {
+        return jwtService.getToken(usuario);
+    }
+
+    @Benchmark
+    public String leerEmail() {
+        return jwtService.getEmailFromToken(token);
+    }
+
+    @Benchmark
+    public boolean validarToken() {
+        return jwtService.isTokenValid(token, usuario);
+    }
+}
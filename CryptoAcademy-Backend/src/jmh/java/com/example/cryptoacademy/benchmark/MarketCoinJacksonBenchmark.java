@@ -0,0 +1,73 @@
+package com.example.cryptoacademy.benchmark;
+
+import com.example.cryptoacademy.dto.MarketCoinDTO;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deserialización de la respuesta de {@code /coins/markets}, incluidos los campos que el DTO ignora,
+ * desde un String y con un {@code TypeReference} por llamada (ver {@link CoinGeckoDecodificacionBenchmark}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarketCoinJacksonBenchmark {
+
+    @Param({"10", "250"})
+    public int monedas;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        List<Map<String, Object>> respuesta = new ArrayList<>(monedas);
+        for (int i = 0; i < monedas; i++) {
+            Map<String, Object> moneda = new LinkedHashMap<>();
+            moneda.put("id", "coin-" + i);
+            moneda.put("symbol", "c" + i);
+            moneda.put("name", "Coin " + i);
+            moneda.put("image", "https://coin-images.coingecko.com/coins/images/" + i + "/large/coin.png");
+            moneda.put("current_price", 10_000.25 + i);
+            moneda.put("market_cap", 1_000_000_000L + i);
+            moneda.put("market_cap_rank", i + 1);
+            moneda.put("fully_diluted_valuation", 1_200_000_000L + i);
+            moneda.put("total_volume", 50_000_000L + i);
+            moneda.put("high_24h", 10_100.5 + i);
+            moneda.put("low_24h", 9_900.75 + i);
+            moneda.put("price_change_24h", 12.5);
+            moneda.put("price_change_percentage_24h", 1.25);
+            moneda.put("market_cap_change_24h", 1_250_000.0);
+            moneda.put("market_cap_change_percentage_24h", 0.12);
+            moneda.put("circulating_supply", 19_000_000.0);
+            moneda.put("total_supply", 21_000_000.0);
+            moneda.put("max_supply", 21_000_000.0);
+            moneda.put("ath", 73_000.0);
+            moneda.put("ath_change_percentage", -10.5);
+            moneda.put("ath_date", "2024-03-14T07:10:36.635Z");
+            moneda.put("atl", 67.81);
+            moneda.put("atl_change_percentage", 90_000.0);
+            moneda.put("atl_date", "2013-07-06T00:00:00.000Z");
+            moneda.put("roi", null);
+            moneda.put("last_updated", "2025-01-01T00:00:00.000Z");
+            respuesta.add(moneda);
+        }
+        json = objectMapper.writeValueAsString(respuesta);
+    }
+
+    @Benchmark
+    public List<MarketCoinDTO> deserializar() throws Exception {
+        return objectMapper.readValue(json, new TypeReference<List<MarketCoinDTO>>() {
+        });
+    }
+}
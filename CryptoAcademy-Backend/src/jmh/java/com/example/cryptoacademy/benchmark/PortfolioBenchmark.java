@@ -0,0 +1,63 @@
+package com.example.cryptoacademy.benchmark;
+
+import com.example.cryptoacademy.dto.PortfolioResponseDTO;
+import com.example.cryptoacademy.persistance.model.Cartera;
+import com.example.cryptoacademy.persistance.model.Criptomoneda;
+import com.example.cryptoacademy.persistance.model.CriptosAlmacenadas;
+import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.persistance.repository.CriptosAlmacenadasRepository;
+import com.example.cryptoacademy.service.TradingServiceI;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Valoración de una cartera con 10, 100 y 1000 tenencias mediante {@code obtenerPortfolio}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PortfolioBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int tenencias;
+
+    private ConfigurableApplicationContext contexto;
+    private TradingServiceI tradingService;
+    private Integer idUsuario;
+    private Long idCartera;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        contexto = ContextoBenchmark.arrancar();
+        tradingService = contexto.getBean(TradingServiceI.class);
+        Usuario usuario = ContextoBenchmark.crearUsuario(contexto);
+        Cartera cartera = ContextoBenchmark.crearCartera(contexto, usuario, new BigDecimal("10000.0000"));
+
+        List<CriptosAlmacenadas> posiciones = new ArrayList<>(tenencias);
+        for (Criptomoneda cripto : ContextoBenchmark.crearCriptomonedas(contexto, tenencias)) {
+            posiciones.add(new CriptosAlmacenadas(cartera, cripto, new BigDecimal("1.50000000")));
+        }
+        contexto.getBean(CriptosAlmacenadasRepository.class).saveAll(posiciones);
+
+        idUsuario = usuario.getId();
+        idCartera = cartera.getIdCartera();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public PortfolioResponseDTO obtenerPortfolio() {
+        return tradingService.obtenerPortfolio(idUsuario, idCartera);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.cryptoacademy.benchmark;
+
+import com.example.cryptoacademy.exception.ConflictoConcurrenciaException;
+import com.example.cryptoacademy.persistance.model.Transaccion;
+import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.service.TradingServiceI;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ejecución de órdenes de mercado completas (servicio + H2 en memoria) por la ruta JPA y por la atómica.
+ * Cada invocación compra y vende la misma cantidad para que la cartera no crezca durante la medición.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TradingBenchmark {
+
+    private static final BigDecimal CANTIDAD = new BigDecimal("0.01000000");
+
+    @Param({"false", "true"})
+    public boolean escrituraAtomica;
+
+    private ConfigurableApplicationContext contexto;
+    private TradingServiceI tradingService;
+    private Integer idUsuario;
+    private Long idCartera;
+    private String idCriptomoneda;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        contexto = ContextoBenchmark.arrancar("trading.escritura-atomica.enabled=" + escrituraAtomica);
+        tradingService = contexto.getBean(TradingServiceI.class);
+        Usuario usuario = ContextoBenchmark.crearUsuario(contexto);
+        idUsuario = usuario.getId();
+        idCartera = ContextoBenchmark.crearCartera(contexto, usuario, new BigDecimal("1000000000.0000")).getIdCartera();
+        idCriptomoneda = ContextoBenchmark.crearCriptomonedas(contexto, 1).get(0).getId_Criptomoneda();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public Transaccion compraYVenta() {
+        tradingService.comprarCripto(idUsuario, idCartera, idCriptomoneda, CANTIDAD);
+        return tradingService.venderCripto(idUsuario, idCartera, idCriptomoneda, CANTIDAD);
+    }
+
+    // Varios hilos sobre la misma cartera: mide el coste de los conflictos y reintentos. Las órdenes que agotan
+    // los reintentos no abortan la medición; se cuentan aparte.
+    @Benchmark
+    @Threads(4)
+    public Transaccion compraYVentaConcurrente(Conflictos conflictos) {
+        try {
+            return compraYVenta();
+        } catch (ConflictoConcurrenciaException e) {
+            conflictos.rechazadas++;
+            return null;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Conflictos {
+        public long rechazadas;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.cryptoacademy.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Modo opcional de hilos virtuales ({@code spring.threads.virtual.enabled=true}, requiere JDK 21+).
+ * Spring Boot ya ejecuta en hilos virtuales las peticiones de Tomcat y las tareas {@code @Scheduled}; las llamadas
+ * de {@code CoinGeckoService} son síncronas y corren en el hilo que las invoca, de modo que una respuesta lenta de
+ * CoinGecko deja de retener un hilo del pool. Lo único que hay que añadir es un límite de concurrencia hacia la BD.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class HilosVirtualesConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(HilosVirtualesConfig.class);
+
+    @Bean
+    public static BeanPostProcessor limitadorConexionesPostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof LimitadorConexionesDataSource) {
+                    return bean;
+                }
+                int concurrenciaMaxima = environment.getProperty("app.db.concurrencia-maxima", Integer.class, 0);
+                if (concurrenciaMaxima <= 0) {
+                    // Por defecto, tantos hilos como conexiones tiene el pool.
+                    concurrenciaMaxima = bean instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : 10;
+                }
+                long esperaMaximaMs = environment.getProperty("app.db.concurrencia.espera-ms", Long.class, 10000L);
+                log.info("Hilos virtuales activos: acceso a '{}' limitado a {} conexiones concurrentes.", beanName, concurrenciaMaxima);
+                return new LimitadorConexionesDataSource(dataSource, concurrenciaMaxima, esperaMaximaMs);
+            }
+        };
+    }
+}
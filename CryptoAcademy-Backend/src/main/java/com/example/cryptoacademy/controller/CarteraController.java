@@ -7,10 +7,12 @@ import com.example.cryptoacademy.persistance.model.Cartera;
 import com.example.cryptoacademy.persistance.model.Usuario;
 import com.example.cryptoacademy.persistance.repository.CarteraRepository;
 import com.example.cryptoacademy.api.response.ApiResponse;
+import com.example.cryptoacademy.service.PortfolioModificadoEvent;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -28,10 +30,12 @@ public class CarteraController {
     private static final Logger log = LoggerFactory.getLogger(CarteraController.class);
 
     private final CarteraRepository carteraRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public CarteraController(CarteraRepository carteraRepository) {
+    public CarteraController(CarteraRepository carteraRepository, ApplicationEventPublisher eventPublisher) {
         this.carteraRepository = carteraRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @PostMapping
@@ -58,6 +62,7 @@ public class CarteraController {
 
             Cartera carteraGuardada = carteraRepository.save(cartera);
             log.info("Cartera creada con ID {} para usuario [{}]", carteraGuardada.getIdCartera(), usuarioAutenticado.getEmail());
+            eventPublisher.publishEvent(new PortfolioModificadoEvent(usuarioAutenticado.getId()));
 
             return ResponseEntity.status(HttpStatus.CREATED).body(
                     new ApiResponse<>(
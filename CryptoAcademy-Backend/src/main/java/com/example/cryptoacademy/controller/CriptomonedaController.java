@@ -3,13 +3,17 @@ package com.example.cryptoacademy.controller;
 import com.example.cryptoacademy.dto.CoinGeckoChartDataDTO;
 import com.example.cryptoacademy.dto.CriptoApiDTO;
 import com.example.cryptoacademy.dto.MarketCoinDTO;
+import com.example.cryptoacademy.exception.CoinGeckoNoDisponibleException;
 import com.example.cryptoacademy.persistance.model.Criptomoneda;
 import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
 import com.example.cryptoacademy.service.CoinGeckoService;
+import com.example.cryptoacademy.service.CriptomonedaUpdateService;
+import com.example.cryptoacademy.service.VelasCriptoService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -30,13 +34,19 @@ public class CriptomonedaController {
 
     private final CriptomonedaRepository criptomonedaRepository;
     private final CoinGeckoService coinGeckoService;
+    private final VelasCriptoService velasCriptoService;
+    private final CriptomonedaUpdateService criptomonedaUpdateService;
 
     private static final DateTimeFormatter API_DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     public CriptomonedaController(CriptomonedaRepository criptomonedaRepository,
-                                  CoinGeckoService coinGeckoService) {
+                                  CoinGeckoService coinGeckoService,
+                                  VelasCriptoService velasCriptoService,
+                                  CriptomonedaUpdateService criptomonedaUpdateService) {
         this.criptomonedaRepository = criptomonedaRepository;
         this.coinGeckoService = coinGeckoService;
+        this.velasCriptoService = velasCriptoService;
+        this.criptomonedaUpdateService = criptomonedaUpdateService;
     }
 
     @GetMapping
@@ -58,10 +68,16 @@ public class CriptomonedaController {
                 if (marketCoinDTO != null) {
                     Criptomoneda nuevaCripto = mapMarketCoinDTOToEntidad(marketCoinDTO);
                     Criptomoneda guardada = criptomonedaRepository.save(nuevaCripto);
+                    criptomonedaUpdateService.marcarRecarga();
                     return ResponseEntity.status(HttpStatus.CREATED).body(mapEntidadToApiDTO(guardada));
                 } else {
                     return ResponseEntity.notFound().build();
                 }
+            } catch (CoinGeckoNoDisponibleException e) {
+                log.warn("Detalles de {} no disponibles: {}", criptoId, e.getMessage());
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, segundosHastaReintento(e))
+                        .build();
             } catch (IOException e) {
                 log.error("Error de IO al obtener detalles de {} desde CoinGecko: {}", criptoId, e.getMessage());
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -85,7 +101,7 @@ public class CriptomonedaController {
             @RequestParam(defaultValue = "7") String dias) {
 
         try {
-            CoinGeckoChartDataDTO chartData = coinGeckoService.getCoinMarketChart(criptoId, vsCurrency, dias);
+            CoinGeckoChartDataDTO chartData = velasCriptoService.obtenerGrafico(criptoId, vsCurrency, dias);
             if (chartData != null && chartData.getPrices() != null && !chartData.getPrices().isEmpty()) {
                 return ResponseEntity.ok(chartData);
             } else {
@@ -93,6 +109,11 @@ public class CriptomonedaController {
             }
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (CoinGeckoNoDisponibleException e) {
+            log.warn("Gráfico de {} no disponible: {}", criptoId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, segundosHastaReintento(e))
+                    .body("El servicio de datos de mercado no está disponible temporalmente.");
         } catch (IOException e) {
             log.error("Error de IO al obtener datos de gráfico para Cripto ID [{}] desde CoinGecko: {}", criptoId, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error al contactar el servicio de datos de mercado.");
@@ -103,6 +124,10 @@ public class CriptomonedaController {
     }
 
 
+    private static String segundosHastaReintento(CoinGeckoNoDisponibleException e) {
+        return String.valueOf(Math.max(1, (e.getReintentarEnMs() + 999) / 1000));
+    }
+
     private CriptoApiDTO mapEntidadToApiDTO(Criptomoneda entidad) {
         if (entidad == null) return null;
         return new CriptoApiDTO(
@@ -0,0 +1,127 @@
+package com.example.cryptoacademy.controller;
+
+import com.example.cryptoacademy.api.response.ApiResponse;
+import com.example.cryptoacademy.dto.OrdenPendienteRequestDTO;
+import com.example.cryptoacademy.dto.OrdenPendienteResponseDTO;
+import com.example.cryptoacademy.exception.RecursoNoEncontradoException;
+import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.service.OrdenPendienteService;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/ordenes")
+public class OrdenController {
+
+    private static final Logger log = LoggerFactory.getLogger(OrdenController.class);
+
+    private final OrdenPendienteService ordenPendienteService;
+
+    @Autowired
+    public OrdenController(OrdenPendienteService ordenPendienteService) {
+        this.ordenPendienteService = ordenPendienteService;
+    }
+
+    @PostMapping
+    public ResponseEntity<ApiResponse<OrdenPendienteResponseDTO>> crearOrden(
+            @Valid @RequestBody OrdenPendienteRequestDTO requestDTO,
+            @AuthenticationPrincipal Usuario usuarioAutenticado) {
+
+        if (usuarioAutenticado == null) {
+            log.warn("Intento de crear orden pendiente sin autenticación.");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
+                    new ApiResponse<>(false, "Usuario no autenticado.", null)
+            );
+        }
+
+        log.info("Usuario [{}] solicitando orden {} de {} {} de {} con precio de activación {}",
+                usuarioAutenticado.getEmail(), requestDTO.getTipoOrden(), requestDTO.getTipoTransaccion(),
+                requestDTO.getCantidad(), requestDTO.getIdCriptomoneda(), requestDTO.getPrecioActivacion());
+        try {
+            OrdenPendienteResponseDTO orden = ordenPendienteService.crearOrden(usuarioAutenticado, requestDTO);
+            return ResponseEntity.status(HttpStatus.CREATED).body(
+                    new ApiResponse<>(true, "Orden registrada correctamente.", orden)
+            );
+        } catch (RecursoNoEncontradoException e) {
+            log.warn("Error al crear orden para Usuario [{}]: {}", usuarioAutenticado.getEmail(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                    new ApiResponse<>(false, e.getMessage(), null)
+            );
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                    new ApiResponse<>(false, e.getMessage(), null)
+            );
+        } catch (Exception e) {
+            log.error("Error interno al crear orden para Usuario [{}]: {}", usuarioAutenticado.getEmail(), e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                    new ApiResponse<>(false, "Error interno al registrar la orden.", null)
+            );
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<ApiResponse<List<OrdenPendienteResponseDTO>>> obtenerOrdenesPendientes(
+            @AuthenticationPrincipal Usuario usuarioAutenticado) {
+
+        if (usuarioAutenticado == null) {
+            log.warn("Intento de obtener órdenes pendientes sin autenticación.");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
+                    new ApiResponse<>(false, "Usuario no autenticado.", null)
+            );
+        }
+
+        try {
+            List<OrdenPendienteResponseDTO> ordenes = ordenPendienteService.obtenerOrdenesPendientes(usuarioAutenticado);
+            return ResponseEntity.ok(
+                    new ApiResponse<>(true, "Órdenes pendientes obtenidas correctamente.", ordenes)
+            );
+        } catch (Exception e) {
+            log.error("Error interno al obtener órdenes pendientes para Usuario [{}]: {}", usuarioAutenticado.getEmail(), e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                    new ApiResponse<>(false, "Error interno al obtener las órdenes pendientes.", null)
+            );
+        }
+    }
+
+    @DeleteMapping("/{idOrden}")
+    public ResponseEntity<ApiResponse<OrdenPendienteResponseDTO>> cancelarOrden(
+            @PathVariable Long idOrden,
+            @AuthenticationPrincipal Usuario usuarioAutenticado) {
+
+        if (usuarioAutenticado == null) {
+            log.warn("Intento de cancelar orden ID {} sin autenticación.", idOrden);
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
+                    new ApiResponse<>(false, "Usuario no autenticado.", null)
+            );
+        }
+
+        log.info("Usuario [{}] solicitando cancelar orden ID {}", usuarioAutenticado.getEmail(), idOrden);
+        try {
+            OrdenPendienteResponseDTO orden = ordenPendienteService.cancelarOrden(usuarioAutenticado, idOrden);
+            return ResponseEntity.ok(
+                    new ApiResponse<>(true, "Orden cancelada correctamente.", orden)
+            );
+        } catch (RecursoNoEncontradoException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                    new ApiResponse<>(false, e.getMessage(), null)
+            );
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(
+                    new ApiResponse<>(false, e.getMessage(), null)
+            );
+        } catch (Exception e) {
+            log.error("Error interno al cancelar orden ID {} para Usuario [{}]: {}", idOrden, usuarioAutenticado.getEmail(), e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                    new ApiResponse<>(false, "Error interno al cancelar la orden.", null)
+            );
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.cryptoacademy.controller;
+
+import com.example.cryptoacademy.api.response.ApiResponse;
+import com.example.cryptoacademy.dto.HistorialPortfolioDTO;
+import com.example.cryptoacademy.exception.RecursoNoEncontradoException;
+import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.service.RangoHistorial;
+import com.example.cryptoacademy.service.SnapshotCarteraService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/portfolio")
+public class PortfolioController {
+
+    private static final Logger log = LoggerFactory.getLogger(PortfolioController.class);
+
+    private final SnapshotCarteraService snapshotCarteraService;
+
+    public PortfolioController(SnapshotCarteraService snapshotCarteraService) {
+        this.snapshotCarteraService = snapshotCarteraService;
+    }
+
+    @GetMapping("/{idCartera}/historial")
+    public ResponseEntity<ApiResponse<HistorialPortfolioDTO>> obtenerHistorial(
+            @PathVariable Long idCartera,
+            @RequestParam(defaultValue = "1m") String rango,
+            @AuthenticationPrincipal Usuario usuarioAutenticado) {
+
+        if (usuarioAutenticado == null) {
+            log.warn("Intento de obtener historial de cartera ID {} sin autenticación.", idCartera);
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
+                    new ApiResponse<>(false, "Usuario no autenticado.", null)
+            );
+        }
+
+        Optional<RangoHistorial> rangoHistorial = RangoHistorial.desdeCodigo(rango);
+        if (rangoHistorial.isEmpty()) {
+            return ResponseEntity.badRequest().body(
+                    new ApiResponse<>(false, "Rango no válido: " + rango + ". Valores admitidos: 1d, 7d, 1m, 3m, 1a, max.", null)
+            );
+        }
+
+        try {
+            HistorialPortfolioDTO historial = snapshotCarteraService.obtenerHistorial(
+                    usuarioAutenticado.getId(), idCartera, rangoHistorial.get());
+            return ResponseEntity.ok(
+                    new ApiResponse<>(true, "Historial de la cartera obtenido correctamente.", historial)
+            );
+        } catch (RecursoNoEncontradoException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                    new ApiResponse<>(false, e.getMessage(), null)
+            );
+        } catch (Exception e) {
+            log.error("Error interno al obtener historial de cartera ID {} para Usuario [{}]: {}",
+                    idCartera, usuarioAutenticado.getEmail(), e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(
+                    new ApiResponse<>(false, "Error interno al obtener el historial de la cartera.", null)
+            );
+        }
+    }
+}
@@ -1,57 +1,126 @@
 package com.example.cryptoacademy.controller;
 
 import com.example.cryptoacademy.dto.RankingItemDTO;
+import com.example.cryptoacademy.dto.RankingPosicionDTO;
+import com.example.cryptoacademy.persistance.model.Usuario;
 import com.example.cryptoacademy.service.RankingService;
+import com.example.cryptoacademy.service.RankingSnapshot;
 import com.example.cryptoacademy.api.response.ApiResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
+import java.util.OptionalInt;
 
+/**
+ * Las respuestas salen de la versión vigente de {@link RankingSnapshot} y llevan un ETag por versión y vista:
+ * Spring responde 304 sin cuerpo cuando el cliente envía un If-None-Match que coincide.
+ */
 @RestController
 @RequestMapping("/api/ranking")
 public class RankingController {
 
     private static final Logger log = LoggerFactory.getLogger(RankingController.class);
+    private static final int TAMAÑO_MAXIMO_PAGINA = 500;
+    private static final int VECINOS_MAXIMOS = 50;
+    private static final String CABECERA_TOTAL = "X-Total-Count";
+    private static final String CABECERA_VERSION = "X-Ranking-Version";
 
     private final RankingService rankingService;
 
     @Value("${ranking.default-limit:50}")
     private int defaultRankingLimit;
 
+    @Value("${ranking.me.vecinos:5}")
+    private int defaultVecinos;
+
     public RankingController(RankingService rankingService) {
         this.rankingService = rankingService;
     }
 
+    /**
+     * {@code limite} devuelve el Top N (primera página); {@code page}/{@code size} recorren el ranking completo.
+     */
     @GetMapping
     public ResponseEntity<ApiResponse<List<RankingItemDTO>>> obtenerRanking(
-            @RequestParam(required = false) Integer limite) {
+            @RequestParam(required = false) Integer limite,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size) {
+
+        int pagina = (page != null && page >= 0) ? page : 0;
+        int tamañoPagina;
+        if (size != null && size > 0) {
+            tamañoPagina = Math.min(size, TAMAÑO_MAXIMO_PAGINA);
+        } else {
+            tamañoPagina = (limite != null && limite > 0) ? limite : defaultRankingLimit;
+        }
+        log.info("Solicitud GET /api/ranking, página {} de tamaño {}", pagina, tamañoPagina);
+
+        try {
+            RankingSnapshot snapshot = rankingService.obtenerSnapshot();
+            List<RankingItemDTO> ranking = snapshot.pagina(pagina, tamañoPagina);
+            String mensaje = ranking.isEmpty() ? "Ranking vacío o no disponible." : "Ranking obtenido correctamente.";
+            return ResponseEntity.ok()
+                    .eTag(snapshot.etag("p" + pagina + "-" + tamañoPagina))
+                    .cacheControl(CacheControl.noCache())
+                    .header(CABECERA_TOTAL, String.valueOf(snapshot.totalUsuarios()))
+                    .header(CABECERA_VERSION, String.valueOf(snapshot.getVersion()))
+                    .body(new ApiResponse<>(true, mensaje, ranking));
+        } catch (Exception e) {
+            log.error("Error al obtener el ranking: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(
+                    new ApiResponse<>(false, "Error interno al obtener el ranking.", null)
+            );
+        }
+    }
 
-        int limitToApply = (limite != null && limite > 0) ? limite : defaultRankingLimit;
-        log.info("Solicitud GET /api/ranking con límite: {}", limitToApply);
+    @GetMapping("/me")
+    public ResponseEntity<ApiResponse<RankingPosicionDTO>> obtenerMiPosicion(
+            @RequestParam(required = false) Integer vecinos,
+            @AuthenticationPrincipal Usuario usuarioAutenticado) {
 
+        if (usuarioAutenticado == null) {
+            log.warn("Intento de obtener la posición en el ranking sin autenticación.");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
+                    new ApiResponse<>(false, "Usuario no autenticado.", null)
+            );
+        }
+
+        int vecinosAMostrar = (vecinos != null && vecinos >= 0) ? Math.min(vecinos, VECINOS_MAXIMOS) : defaultVecinos;
         try {
-            List<RankingItemDTO> ranking = rankingService.obtenerRanking(limitToApply);
-            if (ranking.isEmpty()) {
-                log.info("El ranking está vacío o no hay usuarios para mostrar.");
-                return ResponseEntity.ok(
-                        new ApiResponse<>(true, "Ranking vacío o no disponible.", ranking)
+            RankingSnapshot snapshot = rankingService.obtenerSnapshot();
+            OptionalInt indice = snapshot.indiceDe(usuarioAutenticado.getId());
+            if (indice.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                        new ApiResponse<>(false, "Tu posición aparecerá en el ranking tras la próxima actualización de precios.", null)
                 );
             }
-            return ResponseEntity.ok(
-                    new ApiResponse<>(true, "Ranking obtenido correctamente.", ranking)
+
+            RankingPosicionDTO posicion = new RankingPosicionDTO(
+                    snapshot.get(indice.getAsInt()),
+                    snapshot.entorno(indice.getAsInt(), vecinosAMostrar),
+                    snapshot.totalUsuarios(),
+                    snapshot.getVersion()
             );
+            return ResponseEntity.ok()
+                    .eTag(snapshot.etag("u" + usuarioAutenticado.getId() + "-" + vecinosAMostrar))
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .header(CABECERA_VERSION, String.valueOf(snapshot.getVersion()))
+                    .body(new ApiResponse<>(true, "Posición en el ranking obtenida correctamente.", posicion));
         } catch (Exception e) {
-            log.error("Error al obtener el ranking: {}", e.getMessage(), e);
+            log.error("Error al obtener la posición en el ranking del Usuario [{}]: {}", usuarioAutenticado.getEmail(), e.getMessage(), e);
             return ResponseEntity.internalServerError().body(
-                    new ApiResponse<>(false, "Error interno al obtener el ranking.", null)
+                    new ApiResponse<>(false, "Error interno al obtener la posición en el ranking.", null)
             );
         }
     }
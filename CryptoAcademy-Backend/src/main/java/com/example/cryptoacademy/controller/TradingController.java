@@ -1,26 +1,57 @@
 package com.example.cryptoacademy.controller;
 
+import com.example.cryptoacademy.dto.CotizacionRequestDTO;
+import com.example.cryptoacademy.dto.CotizacionResponseDTO;
+import com.example.cryptoacademy.dto.HistorialCursorResponseDTO;
+import com.example.cryptoacademy.dto.OrdenLoteRequestDTO;
+import com.example.cryptoacademy.dto.OrdenLoteResponseDTO;
 import com.example.cryptoacademy.dto.OrdenRequestDTO;
 import com.example.cryptoacademy.dto.PortfolioResponseDTO;
 import com.example.cryptoacademy.dto.TransaccionResponseDTO;
 import com.example.cryptoacademy.exception.CantidadInsuficienteException;
+import com.example.cryptoacademy.exception.ClaveIdempotenciaReutilizadaException;
+import com.example.cryptoacademy.exception.ConflictoConcurrenciaException;
+import com.example.cryptoacademy.exception.CotizacionExpiradaException;
 import com.example.cryptoacademy.exception.RecursoNoEncontradoException;
 import com.example.cryptoacademy.exception.SaldoInsuficienteException;
+import com.example.cryptoacademy.persistance.model.RolUsuario;
 import com.example.cryptoacademy.persistance.model.TipoTransaccion;
 import com.example.cryptoacademy.persistance.model.Transaccion;
 import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.service.Cotizacion;
+import com.example.cryptoacademy.service.CotizacionService;
+import com.example.cryptoacademy.service.CursorHistorial;
+import com.example.cryptoacademy.service.ExportacionTransaccionesService;
+import com.example.cryptoacademy.service.FiltroHistorial;
+import com.example.cryptoacademy.service.FormatoExportacion;
+import com.example.cryptoacademy.service.IdempotenciaService;
 import com.example.cryptoacademy.service.TradingServiceI;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api")
@@ -28,16 +59,67 @@ public class TradingController {
 
     private static final Logger log = LoggerFactory.getLogger(TradingController.class);
     private final TradingServiceI tradingService;
+    private final CotizacionService cotizacionService;
+
+    private final IdempotenciaService idempotenciaService;
+
+    private final ExportacionTransaccionesService exportacionService;
+
+    @Value("${exportacion.transacciones.tiempo-maximo-ms:600000}")
+    private long tiempoMaximoExportacionMs;
 
     private static final DateTimeFormatter API_DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String CABECERA_IDEMPOTENCIA = "Idempotency-Key";
+    private static final String CABECERA_REPETIDA = "Idempotent-Replayed";
+    private static final int LIMITE_HISTORIAL_POR_DEFECTO = 50;
+    private static final int LIMITE_HISTORIAL_MAXIMO = 200;
 
-    public TradingController(TradingServiceI tradingService) {
+    public TradingController(TradingServiceI tradingService, CotizacionService cotizacionService,
+                             IdempotenciaService idempotenciaService,
+                             ExportacionTransaccionesService exportacionService) {
         this.tradingService = tradingService;
+        this.cotizacionService = cotizacionService;
+        this.idempotenciaService = idempotenciaService;
+        this.exportacionService = exportacionService;
+    }
+
+    @PostMapping("/transacciones/cotizar")
+    public ResponseEntity<?> cotizarCriptomoneda(
+            @Valid @RequestBody CotizacionRequestDTO cotizacionRequestDTO,
+            @AuthenticationPrincipal Usuario usuarioAutenticado) {
+
+        if (usuarioAutenticado == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Usuario no autenticado.");
+        }
+
+        try {
+            Cotizacion cotizacion = cotizacionService.crearCotizacion(cotizacionRequestDTO.getIdCriptomoneda(), usuarioAutenticado.getId());
+            CotizacionResponseDTO responseDTO = CotizacionResponseDTO.builder()
+                    .idCotizacion(cotizacion.getIdCotizacion())
+                    .idCriptomoneda(cotizacion.getIdCriptomoneda())
+                    .nombreCriptomoneda(cotizacion.getNombreCriptomoneda())
+                    .simboloCriptomoneda(cotizacion.getSimboloCriptomoneda())
+                    .precioPorUnidadEUR(cotizacion.getPrecioPorUnidadEUR())
+                    .fechaExpiracion(cotizacion.getFechaExpiracion().atZone(ZoneId.systemDefault()).format(API_DATE_TIME_FORMATTER))
+                    .validezSegundos(cotizacionService.getValidezSegundos())
+                    .build();
+            return ResponseEntity.ok(responseDTO);
+
+        } catch (RecursoNoEncontradoException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("ERROR INESPERADO al cotizar Cripto [{}] para Usuario [{}]: {}",
+                    cotizacionRequestDTO.getIdCriptomoneda(), usuarioAutenticado.getEmail(), e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Ocurrió un error inesperado al generar la cotización.");
+        }
     }
 
     @PostMapping("/transacciones/comprar")
     public ResponseEntity<?> comprarCriptomoneda(
             @Valid @RequestBody OrdenRequestDTO ordenRequestDTO,
+            @RequestHeader(value = CABECERA_IDEMPOTENCIA, required = false) String claveIdempotencia,
             @AuthenticationPrincipal Usuario usuarioAutenticado) {
 
         if (usuarioAutenticado == null) {
@@ -45,17 +127,20 @@ public class TradingController {
         }
 
         try {
-            Transaccion transaccionRealizada = tradingService.comprarCripto(
+            IdempotenciaService.RespuestaIdempotente resultado = idempotenciaService.ejecutar(
                     usuarioAutenticado.getId(),
-                    ordenRequestDTO.getIdCartera(),
-                    ordenRequestDTO.getIdCriptomoneda(),
-                    ordenRequestDTO.getCantidad()
+                    claveIdempotencia,
+                    huellaOrden(TipoTransaccion.COMPRA, ordenRequestDTO),
+                    () -> ejecutarCompra(ordenRequestDTO, usuarioAutenticado)
             );
-            TransaccionResponseDTO responseDTO = mapTransaccionToResponseDTO(transaccionRealizada);
-            return ResponseEntity.status(HttpStatus.CREATED).body(responseDTO);
+            return respuestaOrden(resultado);
 
         } catch (RecursoNoEncontradoException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (CotizacionExpiradaException | ConflictoConcurrenciaException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (ClaveIdempotenciaReutilizadaException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(e.getMessage());
         } catch (SaldoInsuficienteException | IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (Exception e) {
@@ -67,6 +152,7 @@ public class TradingController {
     @PostMapping("/transacciones/vender")
     public ResponseEntity<?> venderCriptomoneda(
             @Valid @RequestBody OrdenRequestDTO ordenRequestDTO,
+            @RequestHeader(value = CABECERA_IDEMPOTENCIA, required = false) String claveIdempotencia,
             @AuthenticationPrincipal Usuario usuarioAutenticado) {
 
         if (usuarioAutenticado == null) {
@@ -74,17 +160,20 @@ public class TradingController {
         }
 
         try {
-            Transaccion transaccionRealizada = tradingService.venderCripto(
+            IdempotenciaService.RespuestaIdempotente resultado = idempotenciaService.ejecutar(
                     usuarioAutenticado.getId(),
-                    ordenRequestDTO.getIdCartera(),
-                    ordenRequestDTO.getIdCriptomoneda(),
-                    ordenRequestDTO.getCantidad()
+                    claveIdempotencia,
+                    huellaOrden(TipoTransaccion.VENTA, ordenRequestDTO),
+                    () -> ejecutarVenta(ordenRequestDTO, usuarioAutenticado)
             );
-            TransaccionResponseDTO responseDTO = mapTransaccionToResponseDTO(transaccionRealizada);
-            return ResponseEntity.status(HttpStatus.CREATED).body(responseDTO);
+            return respuestaOrden(resultado);
 
         } catch (RecursoNoEncontradoException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (CotizacionExpiradaException | ConflictoConcurrenciaException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (ClaveIdempotenciaReutilizadaException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(e.getMessage());
         } catch (CantidadInsuficienteException | IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (Exception e) {
@@ -94,6 +183,43 @@ public class TradingController {
         }
     }
 
+    @PostMapping("/transacciones/lote")
+    public ResponseEntity<?> ejecutarLoteOrdenes(
+            @Valid @RequestBody OrdenLoteRequestDTO ordenLoteRequestDTO,
+            @AuthenticationPrincipal Usuario usuarioAutenticado) {
+
+        if (usuarioAutenticado == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Usuario no autenticado.");
+        }
+
+        try {
+            List<Transaccion> transacciones = tradingService.ejecutarLoteOrdenes(
+                    usuarioAutenticado.getId(),
+                    ordenLoteRequestDTO.getIdCartera(),
+                    ordenLoteRequestDTO.getOrdenes()
+            );
+            OrdenLoteResponseDTO responseDTO = OrdenLoteResponseDTO.builder()
+                    .idCartera(ordenLoteRequestDTO.getIdCartera())
+                    .saldoVirtualEUR(transacciones.get(0).getCartera().getSaldoVirtualEUR())
+                    .transacciones(transacciones.stream()
+                            .map(transaccion -> mapTransaccionToResponseDTO(transaccion, usuarioAutenticado))
+                            .collect(Collectors.toList()))
+                    .build();
+            return ResponseEntity.status(HttpStatus.CREATED).body(responseDTO);
+
+        } catch (RecursoNoEncontradoException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (SaldoInsuficienteException | CantidadInsuficienteException | IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (ConflictoConcurrenciaException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("ERROR INESPERADO durante lote de órdenes para Usuario [{}], Cartera [{}]: {}",
+                    usuarioAutenticado.getEmail(), ordenLoteRequestDTO.getIdCartera(), e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Ocurrió un error inesperado al procesar el lote de órdenes.");
+        }
+    }
+
     @GetMapping("/portfolio/{idCartera}")
     public ResponseEntity<?> obtenerPortfolioPorCartera(
             @PathVariable Long idCartera,
@@ -144,11 +270,210 @@ public class TradingController {
         }
     }
 
-    private TransaccionResponseDTO mapTransaccionToResponseDTO(Transaccion transaccion) {
+    /**
+     * Historial por cursor: {@code after} es el {@code siguienteCursor} de la respuesta anterior. El coste de cada
+     * página no depende de lo profunda que esté; el total solo se calcula si se pide con {@code contar=true}.
+     */
+    @GetMapping("/transacciones/historial/cursor")
+    public ResponseEntity<?> obtenerHistorialTransaccionesCursor(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limite,
+            @RequestParam(required = false) TipoTransaccion tipo,
+            @RequestParam(required = false) String idCriptomoneda,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(defaultValue = "false") boolean contar,
+            @AuthenticationPrincipal Usuario usuarioAutenticado) {
+
+        if (usuarioAutenticado == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Usuario no autenticado.");
+        }
+
+        CursorHistorial cursor = null;
+        if (after != null && !after.isBlank()) {
+            Optional<CursorHistorial> cursorLeido = CursorHistorial.desdeCodigo(after);
+            if (cursorLeido.isEmpty()) {
+                return ResponseEntity.badRequest().body("Cursor no válido: " + after + ". Formato esperado: <fecha ISO>,<idTransaccion>.");
+            }
+            cursor = cursorLeido.get();
+        }
+        int limiteEfectivo = (limite != null && limite > 0) ? Math.min(limite, LIMITE_HISTORIAL_MAXIMO) : LIMITE_HISTORIAL_POR_DEFECTO;
+
+        try {
+            HistorialCursorResponseDTO historial = tradingService.obtenerHistorialTransaccionesCursor(
+                    usuarioAutenticado.getId(),
+                    new FiltroHistorial(tipo, idCriptomoneda, desde, hasta),
+                    cursor,
+                    limiteEfectivo,
+                    contar
+            );
+            return ResponseEntity.ok(historial);
+        } catch (RecursoNoEncontradoException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("ERROR INESPERADO al obtener historial por cursor para Usuario [{}], Cursor [{}]: {}",
+                    usuarioAutenticado.getEmail(), after, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Ocurrió un error inesperado al obtener el historial de transacciones.");
+        }
+    }
+
+    /**
+     * Descarga del historial completo en streaming ({@code formato=csv|ndjson}), comprimido si el cliente acepta
+     * gzip. Un ADMIN puede exportar el de otro usuario con {@code idUsuario}.
+     */
+    @GetMapping("/transacciones/exportar")
+    public ResponseEntity<?> exportarHistorialTransacciones(
+            @RequestParam(defaultValue = "csv") String formato,
+            @RequestParam(required = false) TipoTransaccion tipo,
+            @RequestParam(required = false) Integer idUsuario,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @AuthenticationPrincipal Usuario usuarioAutenticado,
+            HttpServletRequest peticion) {
+
+        if (usuarioAutenticado == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Usuario no autenticado.");
+        }
+
+        Optional<FormatoExportacion> formatoExportacion = FormatoExportacion.desdeCodigo(formato);
+        if (formatoExportacion.isEmpty()) {
+            return ResponseEntity.badRequest().body("Formato no válido: " + formato + ". Valores admitidos: csv, ndjson.");
+        }
+
+        Integer idUsuarioExportado = idUsuario != null ? idUsuario : usuarioAutenticado.getId();
+        if (!idUsuarioExportado.equals(usuarioAutenticado.getId()) && usuarioAutenticado.getRol() != RolUsuario.ADMIN) {
+            log.warn("Usuario [{}] sin rol ADMIN intentó exportar el historial del Usuario ID {}",
+                    usuarioAutenticado.getEmail(), idUsuarioExportado);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Solo un administrador puede exportar el historial de otro usuario.");
+        }
+
+        FormatoExportacion formatoElegido = formatoExportacion.get();
+        boolean gzip = aceptaGzip(acceptEncoding);
+        String nombreFichero = "transacciones-" + idUsuarioExportado + "." + formatoElegido.getCodigo();
+        ampliarTiempoMaximoAsincrono(peticion, tiempoMaximoExportacionMs);
+
+        // La consulta se abre ya dentro del cuerpo, en el hilo asíncrono que escribe la respuesta.
+        StreamingResponseBody cuerpo = salida -> {
+            try {
+                exportacionService.exportar(idUsuarioExportado, tipo, formatoElegido, gzip, salida);
+            } catch (Exception e) {
+                log.warn("Exportación del historial del Usuario ID {} interrumpida: {}", idUsuarioExportado, e.getMessage());
+                throw e;
+            }
+        };
+
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, formatoElegido.getTipoContenido())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + nombreFichero + "\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            respuesta.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return respuesta.body(cuerpo);
+    }
+
+    // gzip solo si el cliente lo acepta con calidad mayor que 0 ("gzip;q=0" lo rechaza expresamente).
+    private static boolean aceptaGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String codificacion : acceptEncoding.split(",")) {
+            String[] partes = codificacion.split(";");
+            if (!partes[0].trim().equalsIgnoreCase("gzip")) {
+                continue;
+            }
+            for (int i = 1; i < partes.length; i++) {
+                String parametro = partes[i].trim().toLowerCase();
+                if (parametro.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parametro.substring(2).trim()) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // El tiempo máximo de las respuestas asíncronas es global; solo la descarga del historial necesita más.
+    private static void ampliarTiempoMaximoAsincrono(HttpServletRequest peticion, long tiempoMaximoMs) {
+        WebAsyncUtils.getAsyncManager(peticion).registerCallableInterceptor(TradingController.class.getName(),
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                        if (request instanceof AsyncWebRequest asyncWebRequest) {
+                            asyncWebRequest.setTimeout(tiempoMaximoMs);
+                        }
+                    }
+                });
+    }
+
+    private TransaccionResponseDTO ejecutarCompra(OrdenRequestDTO ordenRequestDTO, Usuario usuarioAutenticado) {
+        if (ordenRequestDTO.getIdCotizacion() != null) {
+            Cotizacion cotizacion = cotizacionService.obtenerCotizacionVigente(
+                    ordenRequestDTO.getIdCotizacion(), ordenRequestDTO.getIdCriptomoneda(), usuarioAutenticado.getId());
+            Transaccion transaccionRealizada = tradingService.comprarCripto(
+                    usuarioAutenticado.getId(),
+                    ordenRequestDTO.getIdCartera(),
+                    cotizacion,
+                    ordenRequestDTO.getCantidad()
+            );
+            return mapTransaccionToResponseDTO(transaccionRealizada, usuarioAutenticado, cotizacion);
+        }
+        Transaccion transaccionRealizada = tradingService.comprarCripto(
+                usuarioAutenticado.getId(),
+                ordenRequestDTO.getIdCartera(),
+                ordenRequestDTO.getIdCriptomoneda(),
+                ordenRequestDTO.getCantidad()
+        );
+        return mapTransaccionToResponseDTO(transaccionRealizada, usuarioAutenticado);
+    }
+
+    private TransaccionResponseDTO ejecutarVenta(OrdenRequestDTO ordenRequestDTO, Usuario usuarioAutenticado) {
+        if (ordenRequestDTO.getIdCotizacion() != null) {
+            Cotizacion cotizacion = cotizacionService.obtenerCotizacionVigente(
+                    ordenRequestDTO.getIdCotizacion(), ordenRequestDTO.getIdCriptomoneda(), usuarioAutenticado.getId());
+            Transaccion transaccionRealizada = tradingService.venderCripto(
+                    usuarioAutenticado.getId(),
+                    ordenRequestDTO.getIdCartera(),
+                    cotizacion,
+                    ordenRequestDTO.getCantidad()
+            );
+            return mapTransaccionToResponseDTO(transaccionRealizada, usuarioAutenticado, cotizacion);
+        }
+        Transaccion transaccionRealizada = tradingService.venderCripto(
+                usuarioAutenticado.getId(),
+                ordenRequestDTO.getIdCartera(),
+                ordenRequestDTO.getIdCriptomoneda(),
+                ordenRequestDTO.getCantidad()
+        );
+        return mapTransaccionToResponseDTO(transaccionRealizada, usuarioAutenticado);
+    }
+
+    // Identifica la orden para detectar una Idempotency-Key reutilizada con otros parámetros. Sin cantidad la
+    // huella se calcula igual y la orden la rechaza después el servicio con un 400.
+    private String huellaOrden(TipoTransaccion tipo, OrdenRequestDTO ordenRequestDTO) {
+        String cantidad = ordenRequestDTO.getCantidad() != null
+                ? ordenRequestDTO.getCantidad().stripTrailingZeros().toPlainString() : null;
+        return tipo + "|" + ordenRequestDTO.getIdCartera() + "|" + ordenRequestDTO.getIdCriptomoneda() + "|"
+                + cantidad + "|" + ordenRequestDTO.getIdCotizacion();
+    }
+
+    private ResponseEntity<TransaccionResponseDTO> respuestaOrden(IdempotenciaService.RespuestaIdempotente resultado) {
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.status(HttpStatus.CREATED);
+        if (resultado.repetida()) {
+            respuesta.header(CABECERA_REPETIDA, "true");
+        }
+        return respuesta.body(resultado.respuesta());
+    }
+
+    // El email sale del usuario autenticado, dueño de la operación, para no inicializar la referencia perezosa.
+    private TransaccionResponseDTO mapTransaccionToResponseDTO(Transaccion transaccion, Usuario usuarioAutenticado) {
         if (transaccion == null) return null;
         return TransaccionResponseDTO.builder()
                 .idTransaccion(transaccion.getIdTransaccion())
-                .usuarioEmail(transaccion.getUsuario().getEmail())
+                .usuarioEmail(usuarioAutenticado.getEmail())
                 .idCartera(transaccion.getCartera().getIdCartera())
                 .idCriptomoneda(transaccion.getCriptomoneda().getId_Criptomoneda())
                 .simboloCriptomoneda(transaccion.getCriptomoneda().getSimbolo())
@@ -161,4 +486,23 @@ public class TradingController {
                         transaccion.getFechaTransaccion().format(API_DATE_TIME_FORMATTER) : null)
                 .build();
     }
+
+    // La criptomoneda de una orden cotizada es una referencia sin inicializar; nombre y símbolo salen de la cotización.
+    private TransaccionResponseDTO mapTransaccionToResponseDTO(Transaccion transaccion, Usuario usuarioAutenticado, Cotizacion cotizacion) {
+        if (transaccion == null) return null;
+        return TransaccionResponseDTO.builder()
+                .idTransaccion(transaccion.getIdTransaccion())
+                .usuarioEmail(usuarioAutenticado.getEmail())
+                .idCartera(transaccion.getCartera().getIdCartera())
+                .idCriptomoneda(cotizacion.getIdCriptomoneda())
+                .simboloCriptomoneda(cotizacion.getSimboloCriptomoneda())
+                .nombreCriptomoneda(cotizacion.getNombreCriptomoneda())
+                .tipoTransaccion(transaccion.getTipoTransaccion())
+                .cantidadCripto(transaccion.getCantidadCripto())
+                .precioPorUnidadEUR(transaccion.getPrecioPorUnidadeEUR())
+                .valorTotalEUR(transaccion.getValorTotalEUR())
+                .fechaTransaccion(transaccion.getFechaTransaccion() != null ?
+                        transaccion.getFechaTransaccion().format(API_DATE_TIME_FORMATTER) : null)
+                .build();
+    }
 }
\ No newline at end of file
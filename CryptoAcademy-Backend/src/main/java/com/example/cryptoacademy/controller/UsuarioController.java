@@ -2,6 +2,7 @@ package com.example.cryptoacademy.controller;
 
 import com.example.cryptoacademy.api.response.ApiResponse;
 import com.example.cryptoacademy.dto.ActualizarNombreRequestDTO;
+import com.example.cryptoacademy.dto.ResumenUsuarioDTO;
 import com.example.cryptoacademy.dto.UsuarioDetallesResponseDTO;
 import com.example.cryptoacademy.security.auth.dto.LoginRequestDTO;
 import com.example.cryptoacademy.security.auth.dto.AuthResponseDTO;
@@ -9,12 +10,14 @@ import com.example.cryptoacademy.dto.UsuarioRequestDTO;
 import com.example.cryptoacademy.persistance.model.Usuario;
 import com.example.cryptoacademy.persistance.repository.UsuarioRepository;
 import com.example.cryptoacademy.security.auth.service.JWTServiceI;
-import com.example.cryptoacademy.service.TradingServiceI;
+import com.example.cryptoacademy.service.PortfolioModificadoEvent;
+import com.example.cryptoacademy.service.RankingService;
 
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -37,7 +40,10 @@ public class UsuarioController {
     private JWTServiceI jwtService;
 
     @Autowired
-    private TradingServiceI tradingService;
+    private RankingService rankingService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     @PostMapping("/registro")
     public ResponseEntity<ApiResponse<String>> crearUsuario(@RequestBody UsuarioRequestDTO dto) {
@@ -55,6 +61,7 @@ public class UsuarioController {
             usuario.setHashContrasena(new BCryptPasswordEncoder().encode(dto.getHashContrasena()));
 
             usuarioRepository.save(usuario);
+            eventPublisher.publishEvent(new PortfolioModificadoEvent(usuario.getId()));
 
             return ResponseEntity.ok(
                     new ApiResponse<>(true, "Usuario creado correctamente", null)
@@ -128,7 +135,12 @@ public class UsuarioController {
         try {
             Integer idUsuario = usuarioAutenticado.getId();
             log.info("Solicitando saldo fiat total para el usuario autenticado ID: {}", idUsuario);
-            BigDecimal saldoTotal = tradingService.getSaldoFiatTotalPorUsuario(idUsuario);
+            Optional<ResumenUsuarioDTO> resumen = rankingService.obtenerResumenUsuario(idUsuario);
+            if (resumen.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(new ApiResponse<>(false, "Usuario no encontrado.", null));
+            }
+            BigDecimal saldoTotal = resumen.get().getSaldoFiatTotalEUR();
             log.info("Saldo fiat total para el usuario ID {}: {}", idUsuario, saldoTotal);
             return ResponseEntity.ok(
                     new ApiResponse<>(true, "Saldo fiat total del usuario obtenido correctamente.", saldoTotal)
@@ -187,7 +199,12 @@ public class UsuarioController {
         try {
             Integer idUsuario = usuarioAutenticado.getId();
             log.info("Solicitando valor cripto total para el usuario autenticado ID: {}", idUsuario);
-            BigDecimal valorCriptoTotal = tradingService.getValorCriptoTotalPorUsuario(idUsuario);
+            Optional<ResumenUsuarioDTO> resumen = rankingService.obtenerResumenUsuario(idUsuario);
+            if (resumen.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(new ApiResponse<>(false, "Usuario no encontrado.", null));
+            }
+            BigDecimal valorCriptoTotal = resumen.get().getValorCriptoTotalEUR();
             log.info("Valor cripto total para el usuario ID {}: {}", idUsuario, valorCriptoTotal);
             return ResponseEntity.ok(
                     new ApiResponse<>(true, "Valor cripto total del usuario obtenido correctamente.", valorCriptoTotal)
@@ -200,6 +217,40 @@ public class UsuarioController {
                     .body(new ApiResponse<>(false, "Error interno al obtener el valor cripto total del usuario.", null));
         }
     }
+
+    /**
+     * Saldo fiat, valor cripto, total y posición en una sola llamada, servidos desde los totales en memoria del
+     * ranking. Un usuario recién registrado se incorpora al ranking en la primera consulta.
+     */
+    @GetMapping("/me/resumen")
+    public ResponseEntity<ApiResponse<ResumenUsuarioDTO>> getMiResumen(
+            @AuthenticationPrincipal Usuario usuarioAutenticado) {
+
+        if (usuarioAutenticado == null) {
+            log.warn("Intento de acceso a /me/resumen sin autenticación.");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new ApiResponse<>(false, "Usuario no autenticado. Se requiere iniciar sesión.", null));
+        }
+
+        try {
+            Integer idUsuario = usuarioAutenticado.getId();
+            Optional<ResumenUsuarioDTO> resumen = rankingService.obtenerResumenUsuario(idUsuario);
+            if (resumen.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(new ApiResponse<>(false, "Usuario no encontrado.", null));
+            }
+            return ResponseEntity.ok(
+                    new ApiResponse<>(true, "Resumen del usuario obtenido correctamente.", resumen.get())
+            );
+        } catch (Exception e) {
+            log.error("Error al obtener el resumen para el usuario autenticado ID {}: {}",
+                    usuarioAutenticado.getId(),
+                    e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "Error interno al obtener el resumen del usuario.", null));
+        }
+    }
+
     @PutMapping("/me/nombre")
     public ResponseEntity<ApiResponse<UsuarioDetallesResponseDTO>> updateMyNombre(
             @AuthenticationPrincipal Usuario usuarioAutenticado,
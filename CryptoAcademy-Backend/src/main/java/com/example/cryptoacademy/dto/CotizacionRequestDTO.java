@@ -0,0 +1,15 @@
+package com.example.cryptoacademy.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CotizacionRequestDTO {
+
+    @NotBlank(message = "El ID de la criptomoneda no puede estar vacío.")
+    private String idCriptomoneda;
+}
@@ -0,0 +1,23 @@
+package com.example.cryptoacademy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CotizacionResponseDTO {
+
+    private String idCotizacion;
+    private String idCriptomoneda;
+    private String nombreCriptomoneda;
+    private String simboloCriptomoneda;
+    private BigDecimal precioPorUnidadEUR;
+    private String fechaExpiracion;
+    private long validezSegundos;
+}
@@ -0,0 +1,19 @@
+package com.example.cryptoacademy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistorialCursorResponseDTO {
+    private List<TransaccionResponseDTO> transacciones;
+    // Valor para ?after= de la siguiente página; null si no hay más.
+    private String siguienteCursor;
+    private boolean hayMas;
+    // Solo se calcula con ?contar=true.
+    private Long totalTransacciones;
+}
@@ -0,0 +1,16 @@
+package com.example.cryptoacademy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistorialPortfolioDTO {
+    private Long idCartera;
+    private String rango;
+    private List<PuntoHistorialPortfolioDTO> puntos;
+}
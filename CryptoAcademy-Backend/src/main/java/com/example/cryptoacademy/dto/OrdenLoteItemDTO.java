@@ -0,0 +1,27 @@
+package com.example.cryptoacademy.dto;
+
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrdenLoteItemDTO {
+
+    @NotNull(message = "El tipo de la orden no puede ser nulo.")
+    private TipoTransaccion tipo;
+
+    @NotBlank(message = "El ID de la criptomoneda no puede estar vacío.")
+    private String idCriptomoneda;
+
+    @NotNull(message = "La cantidad no puede ser nula.")
+    @DecimalMin(value = "0.00000001", message = "La cantidad debe ser positiva.")
+    private BigDecimal cantidad;
+}
@@ -0,0 +1,24 @@
+package com.example.cryptoacademy.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrdenLoteRequestDTO {
+
+    @NotNull(message = "El ID de la cartera no puede ser nulo.")
+    private Long idCartera;
+
+    @NotEmpty(message = "El lote debe contener al menos una orden.")
+    @Size(max = 100, message = "El lote no puede contener más de 100 órdenes.")
+    private List<@Valid OrdenLoteItemDTO> ordenes;
+}
@@ -0,0 +1,20 @@
+package com.example.cryptoacademy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrdenLoteResponseDTO {
+
+    private Long idCartera;
+    private BigDecimal saldoVirtualEUR;
+    private List<TransaccionResponseDTO> transacciones;
+}
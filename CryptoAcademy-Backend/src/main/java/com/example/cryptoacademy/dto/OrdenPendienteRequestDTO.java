@@ -0,0 +1,38 @@
+package com.example.cryptoacademy.dto;
+
+import com.example.cryptoacademy.persistance.model.TipoOrden;
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrdenPendienteRequestDTO {
+
+    @NotNull(message = "El ID de la cartera no puede ser nulo.")
+    private Long idCartera;
+
+    @NotBlank(message = "El ID de la criptomoneda no puede estar vacío.")
+    private String idCriptomoneda;
+
+    @NotNull(message = "El tipo de transacción no puede ser nulo.")
+    private TipoTransaccion tipoTransaccion;
+
+    @NotNull(message = "El tipo de orden no puede ser nulo.")
+    private TipoOrden tipoOrden;
+
+    @NotNull(message = "La cantidad no puede ser nula.")
+    @DecimalMin(value = "0.00000001", message = "La cantidad debe ser positiva.")
+    private BigDecimal cantidad;
+
+    @NotNull(message = "El precio de activación no puede ser nulo.")
+    @DecimalMin(value = "0.0001", message = "El precio de activación debe ser positivo.")
+    private BigDecimal precioActivacion;
+}
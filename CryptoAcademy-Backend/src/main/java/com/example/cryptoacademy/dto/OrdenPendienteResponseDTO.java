@@ -0,0 +1,34 @@
+package com.example.cryptoacademy.dto;
+
+import com.example.cryptoacademy.persistance.model.EstadoOrden;
+import com.example.cryptoacademy.persistance.model.TipoOrden;
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrdenPendienteResponseDTO {
+
+    private Long idOrden;
+    private Long idCartera;
+    private String idCriptomoneda;
+    private String nombreCriptomoneda;
+    private String simboloCriptomoneda;
+    private TipoTransaccion tipoTransaccion;
+    private TipoOrden tipoOrden;
+    private BigDecimal cantidad;
+    private BigDecimal precioActivacion;
+    private EstadoOrden estado;
+    private Long idTransaccion;
+    private String motivoEstado;
+    private LocalDateTime fechaCreacion;
+    private LocalDateTime fechaEjecucion;
+}
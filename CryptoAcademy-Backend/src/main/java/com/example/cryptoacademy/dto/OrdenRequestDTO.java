@@ -24,4 +24,6 @@ public class OrdenRequestDTO {
     @DecimalMin(value = "0.00000001", message = "La cantidad debe ser positiva.")
     private BigDecimal cantidad;
 
+    private String idCotizacion;
+
 }
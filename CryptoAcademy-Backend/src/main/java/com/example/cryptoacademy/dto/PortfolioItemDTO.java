@@ -22,4 +22,11 @@ public class PortfolioItemDTO {
     private BigDecimal precioActualPorUnidadEUR;
     private BigDecimal valorTotalTenenciaEUR;
     private Double cambioPorcentaje24h;
+
+    // Coste medio ponderado; null si la tenencia está a cero.
+    private BigDecimal precioMedioCompraEUR;
+    private BigDecimal costeTotalEUR;
+    private BigDecimal pygNoRealizadoEUR;
+    private Double pygNoRealizadoPorcentaje;
+    private BigDecimal pygRealizadoEUR;
 }
@@ -0,0 +1,17 @@
+package com.example.cryptoacademy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PuntoHistorialPortfolioDTO {
+    private LocalDateTime fecha;
+    private BigDecimal valorTotalEUR;
+    private BigDecimal valorCriptosEUR;
+}
@@ -0,0 +1,17 @@
+package com.example.cryptoacademy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RankingPosicionDTO {
+    private RankingItemDTO usuario;
+    private List<RankingItemDTO> entorno;
+    private int totalUsuarios;
+    private long versionRanking;
+}
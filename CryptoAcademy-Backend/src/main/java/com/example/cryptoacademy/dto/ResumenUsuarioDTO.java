@@ -0,0 +1,18 @@
+package com.example.cryptoacademy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumenUsuarioDTO {
+    private BigDecimal saldoFiatTotalEUR;
+    private BigDecimal valorCriptoTotalEUR;
+    private BigDecimal valorTotalEUR;
+    private int posicionRanking;
+    private int totalUsuarios;
+}
@@ -0,0 +1,21 @@
+package com.example.cryptoacademy.exception;
+
+import java.io.IOException;
+
+/**
+ * La llamada a CoinGecko no se ha hecho porque el circuito está abierto o no hay presupuesto de llamadas a tiempo.
+ * Es una {@link IOException} para que los llamantes la traten como cualquier otro fallo del upstream.
+ */
+public class CoinGeckoNoDisponibleException extends IOException {
+
+    private final long reintentarEnMs;
+
+    public CoinGeckoNoDisponibleException(String message, long reintentarEnMs) {
+        super(message);
+        this.reintentarEnMs = reintentarEnMs;
+    }
+
+    public long getReintentarEnMs() {
+        return reintentarEnMs;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.cryptoacademy.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class CotizacionExpiradaException extends RuntimeException {
+    public CotizacionExpiradaException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.cryptoacademy.persistance.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "audit_log_transacciones",
+        indexes = @Index(name = "UQ_audit_transaccion_original", columnList = "id_transaccion_original", unique = true))
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class AuditoriaTransaccion extends RegistroAuditoriaTransaccion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_audit")
+    private Integer idAudit;
+}
@@ -0,0 +1,20 @@
+package com.example.cryptoacademy.persistance.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "audit_log_transacciones_archivo",
+        indexes = @Index(name = "IDX_audit_archivo_transaccion", columnList = "id_transaccion_original"))
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class AuditoriaTransaccionArchivada extends RegistroAuditoriaTransaccion {
+
+    // Mismo id que tenía en audit_log_transacciones.
+    @Id
+    @Column(name = "id_audit")
+    private Integer idAudit;
+}
@@ -0,0 +1,68 @@
+package com.example.cryptoacademy.persistance.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "claves_idempotencia")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClaveIdempotencia implements Persistable<String> {
+
+    // Clave compuesta "idUsuario:Idempotency-Key", así cada usuario tiene su propio espacio de claves.
+    @Id
+    @Column(nullable = false, length = 150)
+    private String clave;
+
+    @Column(name = "id_usuario", nullable = false)
+    private Integer idUsuario;
+
+    @Column(nullable = false, length = 64)
+    private String huella;
+
+    // Nula mientras la orden está en curso: la fila reserva la clave antes de ejecutarla.
+    @Column(length = 2000)
+    private String respuesta;
+
+    @Column(name = "fecha_creacion", nullable = false, updatable = false)
+    private LocalDateTime fechaCreacion;
+
+    // La clave se asigna a mano: sin esto save() haría un merge (SELECT + UPDATE) y podría pisar
+    // la respuesta guardada por otra instancia en lugar de fallar por clave duplicada.
+    @Transient
+    private boolean nueva = true;
+
+    public ClaveIdempotencia(String clave, Integer idUsuario, String huella, String respuesta) {
+        this.clave = clave;
+        this.idUsuario = idUsuario;
+        this.huella = huella;
+        this.respuesta = respuesta;
+        this.fechaCreacion = LocalDateTime.now();
+    }
+
+    public boolean estaEnCurso() {
+        return respuesta == null;
+    }
+
+    @Override
+    public String getId() {
+        return clave;
+    }
+
+    @Override
+    public boolean isNew() {
+        return nueva;
+    }
+
+    @PostLoad
+    @PostPersist
+    protected void marcarPersistida() {
+        this.nueva = false;
+    }
+}
@@ -7,6 +7,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
 
 @Entity
@@ -35,12 +36,30 @@ public class CriptosAlmacenadas {
     @Column(nullable = false, precision = 24, scale = 8)
     private BigDecimal cantidad;
 
+    // Coste de adquisición de la cantidad actual (coste medio ponderado): cada venta descuenta la parte proporcional.
+    @Column(name = "coste_total_eur", nullable = false, precision = 19, scale = 4)
+    private BigDecimal costeTotalEUR;
+
+    // Ganancia o pérdida acumulada de las ventas frente a su coste medio.
+    @Column(name = "pyg_realizado_eur", nullable = false, precision = 19, scale = 4)
+    private BigDecimal pygRealizadoEUR;
+
     @Column(name = "fecha_ultima_actualizacion", nullable = false)
     private LocalDateTime fechaUltimaActualizacion;
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @PrePersist
     protected void onCreate() {
         fechaUltimaActualizacion = LocalDateTime.now();
+        if (costeTotalEUR == null) {
+            costeTotalEUR = BigDecimal.ZERO;
+        }
+        if (pygRealizadoEUR == null) {
+            pygRealizadoEUR = BigDecimal.ZERO;
+        }
     }
 
     @PreUpdate
@@ -49,9 +68,33 @@ public class CriptosAlmacenadas {
     }
 
     public CriptosAlmacenadas(Cartera cartera, Criptomoneda criptomoneda, BigDecimal cantidad) {
+        this(cartera, criptomoneda, cantidad, BigDecimal.ZERO);
+    }
+
+    public CriptosAlmacenadas(Cartera cartera, Criptomoneda criptomoneda, BigDecimal cantidad, BigDecimal costeTotalEUR) {
         this.cartera = cartera;
         this.criptomoneda = criptomoneda;
         this.cantidad = cantidad;
+        this.costeTotalEUR = costeTotalEUR;
+        this.pygRealizadoEUR = BigDecimal.ZERO;
         this.fechaUltimaActualizacion = LocalDateTime.now();
     }
+
+    /**
+     * Parte del coste total que corresponde a vender {@code cantidadVendida} de la cantidad actual.
+     */
+    public BigDecimal costeDeVenta(BigDecimal cantidadVendida) {
+        return costeProporcional(costeTotalEUR, cantidad, cantidadVendida);
+    }
+
+    // Mismo redondeo que ROUND(coste_total_eur * ? / cantidad, 4) en las escrituras JDBC.
+    public static BigDecimal costeProporcional(BigDecimal costeTotal, BigDecimal cantidadPoseida, BigDecimal cantidadVendida) {
+        if (costeTotal == null || cantidadPoseida == null || cantidadPoseida.signum() <= 0) {
+            return BigDecimal.ZERO;
+        }
+        if (cantidadVendida.compareTo(cantidadPoseida) >= 0) {
+            return costeTotal;
+        }
+        return costeTotal.multiply(cantidadVendida).divide(cantidadPoseida, 4, RoundingMode.HALF_UP);
+    }
 }
@@ -0,0 +1,8 @@
+package com.example.cryptoacademy.persistance.model;
+
+public enum EstadoOrden {
+    PENDIENTE,
+    EJECUTADA,
+    CANCELADA,
+    FALLIDA
+}
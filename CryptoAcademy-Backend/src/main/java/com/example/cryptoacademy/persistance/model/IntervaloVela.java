@@ -0,0 +1,38 @@
+package com.example.cryptoacademy.persistance.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Intervalos de las velas OHLC de {@code velas_cripto}. Los inicios se alinean a la época en UTC, así que las velas
+ * diarias empiezan a las 00:00 UTC.
+ */
+public enum IntervaloVela {
+    M1(TimeUnit.MINUTES.toMillis(1)),
+    H1(TimeUnit.HOURS.toMillis(1)),
+    D1(TimeUnit.DAYS.toMillis(1));
+
+    private final long duracionMs;
+
+    IntervaloVela(long duracionMs) {
+        this.duracionMs = duracionMs;
+    }
+
+    public long getDuracionMs() {
+        return duracionMs;
+    }
+
+    public long inicioDe(long instanteMs) {
+        return Math.floorDiv(instanteMs, duracionMs) * duracionMs;
+    }
+
+    /**
+     * Intervalo con el que se sirve un gráfico de {@code dias} días, con la misma granularidad que CoinGecko
+     * (minutos en un día, horas hasta 90 días, días a partir de ahí).
+     */
+    public static IntervaloVela paraDias(double dias) {
+        if (dias <= 1) {
+            return M1;
+        }
+        return dias <= 90 ? H1 : D1;
+    }
+}
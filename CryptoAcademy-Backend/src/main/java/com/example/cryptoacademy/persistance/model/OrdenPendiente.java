@@ -0,0 +1,76 @@
+package com.example.cryptoacademy.persistance.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "ordenes_pendientes")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrdenPendiente {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_orden")
+    private Long idOrden;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "id_usuario", nullable = false)
+    private Usuario usuario;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "id_cartera", nullable = false)
+    private Cartera cartera;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "id_criptomoneda", referencedColumnName = "id_criptomoneda", nullable = false)
+    private Criptomoneda criptomoneda;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo_transaccion", nullable = false, length = 10)
+    private TipoTransaccion tipoTransaccion;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo_orden", nullable = false, length = 10)
+    private TipoOrden tipoOrden;
+
+    @Column(nullable = false, precision = 24, scale = 8)
+    private BigDecimal cantidad;
+
+    @Column(name = "precio_activacion", nullable = false, precision = 19, scale = 4)
+    private BigDecimal precioActivacion;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private EstadoOrden estado;
+
+    @Column(name = "id_transaccion")
+    private Long idTransaccion;
+
+    @Column(name = "motivo_estado")
+    private String motivoEstado;
+
+    @Column(name = "fecha_creacion", nullable = false, updatable = false)
+    private LocalDateTime fechaCreacion;
+
+    @Column(name = "fecha_ejecucion")
+    private LocalDateTime fechaEjecucion;
+
+    @PrePersist
+    protected void onCreate() {
+        if (fechaCreacion == null) {
+            fechaCreacion = LocalDateTime.now();
+        }
+        if (estado == null) {
+            estado = EstadoOrden.PENDIENTE;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.cryptoacademy.persistance.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.MappedSuperclass;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Columnas comunes de la auditoría de transacciones, viva y archivada. Las filas las escribe el trigger
+ * {@code TRG_Audit_Transacciones_Insert} y las mueve {@code ArchivoTransaccionesService} por JDBC; las entidades
+ * solo describen las tablas.
+ */
+@MappedSuperclass
+@Data
+@NoArgsConstructor
+public abstract class RegistroAuditoriaTransaccion {
+
+    @Column(name = "id_transaccion_original")
+    private Long idTransaccionOriginal;
+
+    @Column(name = "tipo_operacion_auditada", length = 10)
+    private String tipoOperacionAuditada;
+
+    @Column(name = "id_usuario_transaccion")
+    private Integer idUsuarioTransaccion;
+
+    @Column(name = "id_cartera_transaccion")
+    private Long idCarteraTransaccion;
+
+    @Column(name = "id_criptomoneda_transaccion", length = 100)
+    private String idCriptomonedaTransaccion;
+
+    @Column(name = "tipo_transaccion_original", length = 10)
+    private String tipoTransaccionOriginal;
+
+    @Column(name = "cantidad_cripto_transaccion", precision = 24, scale = 8)
+    private BigDecimal cantidadCriptoTransaccion;
+
+    @Column(name = "precio_por_unidad_eur_transaccion", precision = 19, scale = 4)
+    private BigDecimal precioPorUnidadEurTransaccion;
+
+    @Column(name = "valor_total_eur_transaccion", precision = 19, scale = 4)
+    private BigDecimal valorTotalEurTransaccion;
+
+    @Column(name = "fecha_transaccion_original")
+    private LocalDateTime fechaTransaccionOriginal;
+
+    @Column(name = "fecha_audit")
+    private LocalDateTime fechaAudit;
+
+    @Column(name = "usuario_db_accion")
+    private String usuarioDbAccion;
+}
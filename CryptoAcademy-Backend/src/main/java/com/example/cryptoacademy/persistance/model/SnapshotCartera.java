@@ -0,0 +1,39 @@
+package com.example.cryptoacademy.persistance.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Valor de una cartera en un instante, escrito en bloque por {@code SnapshotCarteraService} tras los refrescos de
+ * precios. Las filas se insertan y leen por JDBC; la entidad solo describe la tabla.
+ */
+@Entity
+@Table(name = "snapshots_cartera",
+        indexes = @Index(name = "IDX_snapshot_cartera_fecha", columnList = "id_cartera, fecha_snapshot"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SnapshotCartera {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_snapshot")
+    private Long idSnapshot;
+
+    @Column(name = "id_cartera", nullable = false)
+    private Long idCartera;
+
+    @Column(name = "fecha_snapshot", nullable = false)
+    private LocalDateTime fechaSnapshot;
+
+    @Column(name = "valor_total_eur", nullable = false, precision = 19, scale = 4)
+    private BigDecimal valorTotalEUR;
+
+    @Column(name = "valor_criptos_eur", nullable = false, precision = 19, scale = 4)
+    private BigDecimal valorCriptosEUR;
+}
@@ -0,0 +1,12 @@
+package com.example.cryptoacademy.persistance.model;
+
+public enum TipoOrden {
+    LIMITE,
+    STOP;
+
+    // Una compra límite o un stop de venta se activan cuando el precio baja hasta el umbral;
+    // una venta límite o un stop de compra, cuando sube hasta él.
+    public boolean seActivaAlBajar(TipoTransaccion tipoTransaccion) {
+        return (this == LIMITE) == (tipoTransaccion == TipoTransaccion.COMPRA);
+    }
+}
@@ -10,7 +10,11 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transacciones")
+@Table(name = "transacciones",
+        indexes = {
+                @Index(name = "IDX_transaccion_usuario_fecha", columnList = "id_usuario, fecha_transaccion, id_transaccion"),
+                @Index(name = "IDX_transaccion_usuario_tipo_fecha", columnList = "id_usuario, tipo_transaccion, fecha_transaccion")
+        })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
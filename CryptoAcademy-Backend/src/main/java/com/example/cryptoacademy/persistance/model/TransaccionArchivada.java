@@ -0,0 +1,55 @@
+package com.example.cryptoacademy.persistance.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Transacción de un mes cerrado movida a {@code transacciones_archivo} por {@code ArchivoTransaccionesService}.
+ * Conserva el id original y es de solo lectura; las asociaciones no llevan clave foránea en la tabla.
+ */
+@Entity
+@Table(name = "transacciones_archivo",
+        indexes = {
+                @Index(name = "IDX_transaccion_archivo_usuario_fecha", columnList = "id_usuario, fecha_transaccion, id_transaccion"),
+                @Index(name = "IDX_transaccion_archivo_cartera", columnList = "id_cartera")
+        })
+@Data
+@NoArgsConstructor
+public class TransaccionArchivada {
+
+    @Id
+    @Column(name = "id_transaccion")
+    private Long idTransaccion;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "id_usuario", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    private Usuario usuario;
+
+    @Column(name = "id_cartera", nullable = false)
+    private Long idCartera;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "id_criptomoneda", referencedColumnName = "id_criptomoneda", nullable = false,
+            foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    private Criptomoneda criptomoneda;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo_transaccion", nullable = false, length = 10)
+    private TipoTransaccion tipoTransaccion;
+
+    @Column(name = "cantidad_cripto", nullable = false, precision = 24, scale = 8)
+    private BigDecimal cantidadCripto;
+
+    @Column(name = "precio_por_unidad_eur", nullable = false, precision = 19, scale = 4)
+    private BigDecimal precioPorUnidadeEUR;
+
+    @Column(name = "valor_total_eur", nullable = false, precision = 19, scale = 4)
+    private BigDecimal valorTotalEUR;
+
+    @Column(name = "fecha_transaccion", nullable = false, updatable = false)
+    private LocalDateTime fechaTransaccion;
+}
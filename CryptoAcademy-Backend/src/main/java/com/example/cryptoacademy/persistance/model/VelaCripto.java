@@ -0,0 +1,48 @@
+package com.example.cryptoacademy.persistance.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Vela OHLC (EUR) de una criptomoneda, construida con los refrescos de precios y con el histórico descargado de
+ * CoinGecko. Las filas se escriben y leen por JDBC desde {@code VelasCriptoService}; la entidad solo describe la tabla.
+ */
+@Entity
+@Table(name = "velas_cripto",
+        uniqueConstraints = @UniqueConstraint(name = "UQ_vela_cripto_intervalo_inicio",
+                columnNames = {"id_criptomoneda", "intervalo", "inicio_ms"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VelaCripto {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_vela")
+    private Long idVela;
+
+    @Column(name = "id_criptomoneda", nullable = false, length = 100)
+    private String idCriptomoneda;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 2)
+    private IntervaloVela intervalo;
+
+    // Inicio de la vela en milisegundos desde la época (UTC), como las marcas de tiempo de CoinGecko.
+    @Column(name = "inicio_ms", nullable = false)
+    private Long inicioMs;
+
+    @Column(nullable = false)
+    private Double apertura;
+
+    @Column(nullable = false)
+    private Double maximo;
+
+    @Column(nullable = false)
+    private Double minimo;
+
+    @Column(nullable = false)
+    private Double cierre;
+}
@@ -0,0 +1,101 @@
+package com.example.cryptoacademy.persistance.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Movimiento de transacciones de meses cerrados (y de su auditoría) a las tablas de archivo. Trabaja por tramos
+ * consecutivos de la clave primaria: cada tramo se copia con INSERT ... SELECT y se borra de la tabla caliente.
+ */
+@Repository
+public class ArchivoTransaccionesJdbcRepository {
+
+    private static final String COLUMNAS_TRANSACCION =
+            "id_transaccion, cantidad_cripto, fecha_transaccion, precio_por_unidad_eur, tipo_transaccion, " +
+            "valor_total_eur, id_cartera, id_criptomoneda, id_usuario";
+
+    private static final String COLUMNAS_AUDITORIA =
+            "id_audit, id_transaccion_original, tipo_operacion_auditada, id_usuario_transaccion, id_cartera_transaccion, " +
+            "id_criptomoneda_transaccion, tipo_transaccion_original, cantidad_cripto_transaccion, " +
+            "precio_por_unidad_eur_transaccion, valor_total_eur_transaccion, fecha_transaccion_original, fecha_audit, " +
+            "usuario_db_accion";
+
+    // Los ids crecen con la fecha, así que las transacciones a archivar están al principio de la clave primaria.
+    private static final String SQL_SIGUIENTE_LOTE =
+            "SELECT id_transaccion, fecha_transaccion FROM transacciones WHERE id_transaccion > ? " +
+            "ORDER BY id_transaccion LIMIT ?";
+
+    private static final String SQL_COPIAR_AUDITORIA =
+            "INSERT INTO audit_log_transacciones_archivo (" + COLUMNAS_AUDITORIA + ") " +
+            "SELECT " + COLUMNAS_AUDITORIA + " FROM audit_log_transacciones " +
+            "WHERE id_transaccion_original BETWEEN ? AND ? AND fecha_transaccion_original < ?";
+
+    private static final String SQL_BORRAR_AUDITORIA =
+            "DELETE FROM audit_log_transacciones " +
+            "WHERE id_transaccion_original BETWEEN ? AND ? AND fecha_transaccion_original < ?";
+
+    private static final String SQL_COPIAR_TRANSACCIONES =
+            "INSERT INTO transacciones_archivo (" + COLUMNAS_TRANSACCION + ") " +
+            "SELECT " + COLUMNAS_TRANSACCION + " FROM transacciones " +
+            "WHERE id_transaccion BETWEEN ? AND ? AND fecha_transaccion < ?";
+
+    private static final String SQL_BORRAR_TRANSACCIONES =
+            "DELETE FROM transacciones WHERE id_transaccion BETWEEN ? AND ? AND fecha_transaccion < ?";
+
+    /**
+     * Tramo {@code [primerId, ultimoId]} de la clave primaria con {@code filas} transacciones, de las que
+     * {@code anteriores} son anteriores al corte.
+     */
+    public record LoteArchivo(long primerId, long ultimoId, int filas, int anteriores) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ArchivoTransaccionesJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Siguientes {@code tamaño} transacciones calientes con id mayor que {@code despuesDeId}; vacío si no quedan.
+     */
+    public Optional<LoteArchivo> siguienteLote(long despuesDeId, int tamaño, LocalDateTime corte) {
+        return jdbcTemplate.query(SQL_SIGUIENTE_LOTE, rs -> {
+            long primerId = 0;
+            long ultimoId = 0;
+            int filas = 0;
+            int anteriores = 0;
+            while (rs.next()) {
+                ultimoId = rs.getLong(1);
+                if (filas++ == 0) {
+                    primerId = ultimoId;
+                }
+                if (rs.getTimestamp(2).toLocalDateTime().isBefore(corte)) {
+                    anteriores++;
+                }
+            }
+            return filas == 0 ? Optional.empty() : Optional.of(new LoteArchivo(primerId, ultimoId, filas, anteriores));
+        }, despuesDeId, tamaño);
+    }
+
+    /**
+     * Mueve la auditoría del tramo y después sus transacciones; debe ejecutarse en una transacción. El orden
+     * importa: borrar antes las transacciones dejaría a NULL {@code id_transaccion_original} por el ON DELETE SET NULL.
+     * Devuelve el número de transacciones archivadas.
+     */
+    public int archivarTramo(long primerId, long ultimoId, LocalDateTime corte) {
+        Timestamp limite = Timestamp.valueOf(corte);
+        jdbcTemplate.update(SQL_COPIAR_AUDITORIA, primerId, ultimoId, limite);
+        jdbcTemplate.update(SQL_BORRAR_AUDITORIA, primerId, ultimoId, limite);
+        int copiadas = jdbcTemplate.update(SQL_COPIAR_TRANSACCIONES, primerId, ultimoId, limite);
+        int borradas = jdbcTemplate.update(SQL_BORRAR_TRANSACCIONES, primerId, ultimoId, limite);
+        if (copiadas != borradas) {
+            throw new IllegalStateException("Tramo [" + primerId + ", " + ultimoId + "]: copiadas " + copiadas
+                    + " transacciones al archivo pero borradas " + borradas);
+        }
+        return borradas;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.cryptoacademy.persistance.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Escritura de {@code audit_log_transacciones} desde la aplicación, alternativa al trigger
+ * {@code TRG_Audit_Transacciones_Insert}. Todas las inserciones son INSERT IGNORE sobre el índice único de
+ * {@code id_transaccion_original}: una transacción auditada dos veces (cola y barrido, o aplicación y trigger)
+ * deja una sola fila.
+ */
+@Repository
+public class AuditoriaTransaccionesJdbcRepository {
+
+    private static final String SQL_INSERTAR =
+            "INSERT IGNORE INTO audit_log_transacciones (id_transaccion_original, tipo_operacion_auditada, " +
+            "id_usuario_transaccion, id_cartera_transaccion, id_criptomoneda_transaccion, tipo_transaccion_original, " +
+            "cantidad_cripto_transaccion, precio_por_unidad_eur_transaccion, valor_total_eur_transaccion, " +
+            "fecha_transaccion_original, fecha_audit, usuario_db_accion) VALUES ";
+
+    private static final String SQL_FILA = "(?, 'INSERT', ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_RANGO_IDS_TRANSACCION =
+            "SELECT MIN(id_transaccion), MAX(id_transaccion) FROM transacciones";
+
+    // Transacciones confirmadas del tramo que no tienen fila de auditoría; el índice único resuelve el anti-join.
+    private static final String SQL_RECUPERAR =
+            "INSERT IGNORE INTO audit_log_transacciones (id_transaccion_original, tipo_operacion_auditada, " +
+            "id_usuario_transaccion, id_cartera_transaccion, id_criptomoneda_transaccion, tipo_transaccion_original, " +
+            "cantidad_cripto_transaccion, precio_por_unidad_eur_transaccion, valor_total_eur_transaccion, " +
+            "fecha_transaccion_original, fecha_audit, usuario_db_accion) " +
+            "SELECT t.id_transaccion, 'INSERT', t.id_usuario, t.id_cartera, t.id_criptomoneda, t.tipo_transaccion, " +
+            "t.cantidad_cripto, t.precio_por_unidad_eur, t.valor_total_eur, t.fecha_transaccion, ?, ? " +
+            "FROM transacciones t LEFT JOIN audit_log_transacciones a ON a.id_transaccion_original = t.id_transaccion " +
+            "WHERE t.id_transaccion > ? AND t.id_transaccion <= ? AND t.fecha_transaccion < ? AND a.id_audit IS NULL";
+
+    private static final String SQL_PRIMERA_RECIENTE =
+            "SELECT MIN(id_transaccion) FROM transacciones " +
+            "WHERE id_transaccion > ? AND id_transaccion <= ? AND fecha_transaccion >= ?";
+
+    private static final String SQL_EXISTE_TRIGGER =
+            "SELECT COUNT(*) FROM information_schema.triggers WHERE trigger_schema = DATABASE() AND trigger_name = 'TRG_Audit_Transacciones_Insert'";
+
+    public record RegistroAuditoria(long idTransaccion, Integer idUsuario, Long idCartera, String idCriptomoneda,
+                                    String tipoTransaccion, BigDecimal cantidadCripto, BigDecimal precioPorUnidadEUR,
+                                    BigDecimal valorTotalEUR, LocalDateTime fechaTransaccion) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AuditoriaTransaccionesJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserta el lote en una sola sentencia multi-fila. Devuelve las filas nuevas (sin las ya auditadas).
+     */
+    public int insertarLote(List<RegistroAuditoria> registros, LocalDateTime fechaAudit, String usuarioAccion) {
+        if (registros.isEmpty()) {
+            return 0;
+        }
+        StringBuilder sql = new StringBuilder(SQL_INSERTAR.length() + registros.size() * (SQL_FILA.length() + 2))
+                .append(SQL_INSERTAR);
+        List<Object> parametros = new ArrayList<>(registros.size() * 11);
+        Timestamp audit = Timestamp.valueOf(fechaAudit);
+        for (int i = 0; i < registros.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(SQL_FILA);
+            RegistroAuditoria r = registros.get(i);
+            parametros.add(r.idTransaccion());
+            parametros.add(r.idUsuario());
+            parametros.add(r.idCartera());
+            parametros.add(r.idCriptomoneda());
+            parametros.add(r.tipoTransaccion());
+            parametros.add(r.cantidadCripto());
+            parametros.add(r.precioPorUnidadEUR());
+            parametros.add(r.valorTotalEUR());
+            parametros.add(Timestamp.valueOf(r.fechaTransaccion()));
+            parametros.add(audit);
+            parametros.add(usuarioAccion);
+        }
+        return jdbcTemplate.update(sql.toString(), parametros.toArray());
+    }
+
+    /**
+     * {@code [min, max]} de id_transaccion en la tabla caliente, vacío si no hay transacciones.
+     */
+    public Optional<long[]> rangoIdsTransaccion() {
+        return jdbcTemplate.query(SQL_RANGO_IDS_TRANSACCION, rs -> {
+            if (!rs.next() || rs.getObject(1) == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new long[]{rs.getLong(1), rs.getLong(2)});
+        });
+    }
+
+    /**
+     * Audita las transacciones de {@code (despuesDeId, hastaId]} anteriores a {@code limite} que no lo estén.
+     */
+    public int recuperarSinAuditar(long despuesDeId, long hastaId, LocalDateTime limite,
+                                   LocalDateTime fechaAudit, String usuarioAccion) {
+        return jdbcTemplate.update(SQL_RECUPERAR, Timestamp.valueOf(fechaAudit), usuarioAccion,
+                despuesDeId, hastaId, Timestamp.valueOf(limite));
+    }
+
+    /**
+     * Primera transacción de {@code (despuesDeId, hastaId]} posterior a {@code limite}, si la hay.
+     */
+    public Optional<Long> primeraPosteriorA(long despuesDeId, long hastaId, LocalDateTime limite) {
+        Long id = jdbcTemplate.queryForObject(SQL_PRIMERA_RECIENTE, Long.class,
+                despuesDeId, hastaId, Timestamp.valueOf(limite));
+        return Optional.ofNullable(id);
+    }
+
+    public boolean existeTrigger() {
+        Integer triggers = jdbcTemplate.queryForObject(SQL_EXISTE_TRIGGER, Integer.class);
+        return triggers != null && triggers > 0;
+    }
+}
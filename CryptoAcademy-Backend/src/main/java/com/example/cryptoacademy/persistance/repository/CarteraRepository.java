@@ -3,7 +3,10 @@ package com.example.cryptoacademy.persistance.repository;
 import com.example.cryptoacademy.persistance.model.Cartera;
 import com.example.cryptoacademy.persistance.model.Usuario;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,4 +15,17 @@ public interface CarteraRepository extends JpaRepository<Cartera, Long> {
     List<Cartera> findByUsuario(Usuario usuario);
     List<Cartera> findByUsuarioId(Integer idUsuario);
     Optional<Cartera> findByIdCarteraAndUsuario(Long idCartera, Usuario usuario);
+    boolean existsByIdCarteraAndUsuarioId(Long idCartera, Integer idUsuario);
+
+    // Cartera, tenencias y criptomonedas en una sola consulta (portfolio).
+    @Query("SELECT c FROM Cartera c LEFT JOIN FETCH c.criptos t LEFT JOIN FETCH t.criptomoneda " +
+            "WHERE c.idCartera = :idCartera AND c.usuario.id = :idUsuario")
+    Optional<Cartera> findConTenencias(@Param("idCartera") Long idCartera, @Param("idUsuario") Integer idUsuario);
+
+    // [idUsuario, saldo EUR total] por usuario con al menos una cartera.
+    @Query("SELECT c.usuario.id, SUM(c.saldoVirtualEUR) FROM Cartera c GROUP BY c.usuario.id")
+    List<Object[]> sumarSaldosPorUsuario();
+
+    @Query("SELECT c.usuario.id, SUM(c.saldoVirtualEUR) FROM Cartera c WHERE c.usuario.id IN :idsUsuario GROUP BY c.usuario.id")
+    List<Object[]> sumarSaldosPorUsuario(@Param("idsUsuario") Collection<Integer> idsUsuario);
 }
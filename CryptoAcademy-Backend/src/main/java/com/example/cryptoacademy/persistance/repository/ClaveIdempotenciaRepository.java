@@ -0,0 +1,23 @@
+package com.example.cryptoacademy.persistance.repository;
+
+import com.example.cryptoacademy.persistance.model.ClaveIdempotencia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface ClaveIdempotenciaRepository extends JpaRepository<ClaveIdempotencia, String> {
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ClaveIdempotencia c WHERE c.fechaCreacion < :limite")
+    int eliminarAnterioresA(@Param("limite") LocalDateTime limite);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE ClaveIdempotencia c SET c.respuesta = :respuesta WHERE c.clave = :clave AND c.respuesta IS NULL")
+    int completar(@Param("clave") String clave, @Param("respuesta") String respuesta);
+}
@@ -0,0 +1,94 @@
+package com.example.cryptoacademy.persistance.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Accesos del recálculo inicial de coste base y PyG realizado a partir de {@code transacciones}.
+ */
+@Repository
+public class CosteBaseJdbcRepository {
+
+    private static final int TAMAÑO_LOTE_ACTUALIZACION = 1000;
+
+    private static final String SQL_RANGO_IDS_CARTERA =
+            "SELECT MIN(id_cartera), MAX(id_cartera) FROM carteras";
+
+    // Bloquea las tenencias del tramo: una operación concurrente espera a que se escriba el recálculo.
+    private static final String SQL_BLOQUEAR_TENENCIAS =
+            "SELECT id_cartera, id_criptomoneda, cantidad FROM criptos_almacenadas " +
+            "WHERE id_cartera BETWEEN ? AND ? FOR UPDATE";
+
+    private static final String SQL_TRANSACCIONES_TRAMO =
+            "SELECT id_cartera, id_criptomoneda, tipo_transaccion, cantidad_cripto, valor_total_eur FROM transacciones " +
+            "WHERE id_cartera BETWEEN ? AND ? ORDER BY fecha_transaccion, id_transaccion";
+
+    private static final String SQL_TRANSACCIONES_ARCHIVADAS_TRAMO =
+            "SELECT id_cartera, id_criptomoneda, tipo_transaccion, cantidad_cripto, valor_total_eur FROM transacciones_archivo " +
+            "WHERE id_cartera BETWEEN ? AND ? ORDER BY fecha_transaccion, id_transaccion";
+
+    private static final String SQL_ACTUALIZAR_COSTE =
+            "UPDATE criptos_almacenadas SET coste_total_eur = ?, pyg_realizado_eur = ?, version = version + 1 " +
+            "WHERE id_cartera = ? AND id_criptomoneda = ?";
+
+    public record TenenciaFila(long idCartera, String idCriptomoneda, BigDecimal cantidad) {
+    }
+
+    public record CosteBaseFila(long idCartera, String idCriptomoneda, BigDecimal costeTotalEUR, BigDecimal pygRealizadoEUR) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate jdbcTemplateCursor;
+
+    public CosteBaseJdbcRepository(JdbcTemplate jdbcTemplate, DataSource dataSource,
+                                   @Value("${portfolio.coste-base.backfill.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jdbcTemplateCursor = new JdbcTemplate(dataSource);
+        this.jdbcTemplateCursor.setFetchSize(fetchSize);
+    }
+
+    public Optional<long[]> rangoIdsCartera() {
+        return jdbcTemplate.query(SQL_RANGO_IDS_CARTERA, rs -> {
+            if (!rs.next() || rs.getObject(1) == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new long[]{rs.getLong(1), rs.getLong(2)});
+        });
+    }
+
+    /**
+     * Tenencias del tramo, bloqueadas hasta el final de la transacción en curso.
+     */
+    public List<TenenciaFila> bloquearTenencias(long desdeId, long hastaId) {
+        return jdbcTemplate.query(SQL_BLOQUEAR_TENENCIAS,
+                (rs, i) -> new TenenciaFila(rs.getLong(1), rs.getString(2), rs.getBigDecimal(3)),
+                desdeId, hastaId);
+    }
+
+    /**
+     * Recorre en orden cronológico las transacciones del tramo con un cursor; no las carga todas en memoria.
+     * Las archivadas van primero porque son todas anteriores a las de la tabla caliente.
+     */
+    public void recorrerTransacciones(long desdeId, long hastaId, RowCallbackHandler handler) {
+        jdbcTemplateCursor.query(SQL_TRANSACCIONES_ARCHIVADAS_TRAMO, handler, desdeId, hastaId);
+        jdbcTemplateCursor.query(SQL_TRANSACCIONES_TRAMO, handler, desdeId, hastaId);
+    }
+
+    public void actualizarCostesBase(List<CosteBaseFila> filas) {
+        jdbcTemplate.batchUpdate(SQL_ACTUALIZAR_COSTE, filas, TAMAÑO_LOTE_ACTUALIZACION,
+                (PreparedStatement ps, CosteBaseFila fila) -> {
+                    ps.setBigDecimal(1, fila.costeTotalEUR());
+                    ps.setBigDecimal(2, fila.pygRealizadoEUR());
+                    ps.setLong(3, fila.idCartera());
+                    ps.setString(4, fila.idCriptomoneda());
+                });
+    }
+}
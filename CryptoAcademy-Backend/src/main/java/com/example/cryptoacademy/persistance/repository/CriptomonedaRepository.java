@@ -4,9 +4,16 @@ import com.example.cryptoacademy.persistance.model.Criptomoneda;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface CriptomonedaRepository extends JpaRepository<Criptomoneda, String> {
     Page<Criptomoneda> findByNombreContainingOrSimboloContaining(String nombre, String simbolo, Pageable pageable);
+
+    // [idCriptomoneda, precio actual EUR]
+    @Query("SELECT c.id_Criptomoneda, c.precio_actual FROM Criptomoneda c")
+    List<Object[]> findPreciosActuales();
 }
\ No newline at end of file
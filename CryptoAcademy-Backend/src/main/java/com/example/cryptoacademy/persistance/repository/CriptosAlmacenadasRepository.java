@@ -3,13 +3,27 @@ package com.example.cryptoacademy.persistance.repository;
 import com.example.cryptoacademy.persistance.model.Cartera;
 import com.example.cryptoacademy.persistance.model.Criptomoneda;
 import com.example.cryptoacademy.persistance.model.CriptosAlmacenadas;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface CriptosAlmacenadasRepository extends JpaRepository<CriptosAlmacenadas, Long> {
 
     Optional<CriptosAlmacenadas> findByCarteraAndCriptomoneda(Cartera cartera, Criptomoneda criptomoneda);
+    @EntityGraph(attributePaths = "criptomoneda")
     List<CriptosAlmacenadas> findByCartera(Cartera cartera);
+
+    // [idUsuario, idCriptomoneda, cantidad total] sumando todas las carteras de cada usuario.
+    @Query("SELECT c.cartera.usuario.id, c.criptomoneda.id_Criptomoneda, SUM(c.cantidad) FROM CriptosAlmacenadas c " +
+            "GROUP BY c.cartera.usuario.id, c.criptomoneda.id_Criptomoneda")
+    List<Object[]> sumarCantidadesPorUsuario();
+
+    @Query("SELECT c.cartera.usuario.id, c.criptomoneda.id_Criptomoneda, SUM(c.cantidad) FROM CriptosAlmacenadas c " +
+            "WHERE c.cartera.usuario.id IN :idsUsuario GROUP BY c.cartera.usuario.id, c.criptomoneda.id_Criptomoneda")
+    List<Object[]> sumarCantidadesPorUsuario(@Param("idsUsuario") Collection<Integer> idsUsuario);
 }
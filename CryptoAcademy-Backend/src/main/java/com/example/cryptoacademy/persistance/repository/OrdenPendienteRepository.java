@@ -0,0 +1,48 @@
+package com.example.cryptoacademy.persistance.repository;
+
+import com.example.cryptoacademy.persistance.model.EstadoOrden;
+import com.example.cryptoacademy.persistance.model.OrdenPendiente;
+import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.service.OrdenEnLibro;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface OrdenPendienteRepository extends JpaRepository<OrdenPendiente, Long> {
+
+    @EntityGraph(attributePaths = {"cartera", "criptomoneda"})
+    List<OrdenPendiente> findByUsuarioAndEstadoOrderByFechaCreacionDesc(Usuario usuario, EstadoOrden estado);
+
+    Optional<OrdenPendiente> findByIdOrdenAndUsuario(Long idOrden, Usuario usuario);
+
+    // Bloquea la fila: una cancelación y la ejecución de la misma orden no pueden confirmarse las dos.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM OrdenPendiente o WHERE o.idOrden = :idOrden AND o.usuario = :usuario")
+    Optional<OrdenPendiente> findParaActualizar(@Param("idOrden") Long idOrden, @Param("usuario") Usuario usuario);
+
+    /**
+     * Cierra la orden solo si sigue pendiente; devuelve 0 si otra operación (cancelación o ejecución) la cerró antes.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OrdenPendiente o SET o.estado = :estado, o.idTransaccion = :idTransaccion, o.motivoEstado = :motivo, " +
+            "o.fechaEjecucion = :fecha WHERE o.idOrden = :idOrden " +
+            "AND o.estado = com.example.cryptoacademy.persistance.model.EstadoOrden.PENDIENTE")
+    int cerrarSiPendiente(@Param("idOrden") Long idOrden, @Param("estado") EstadoOrden estado,
+                          @Param("idTransaccion") Long idTransaccion, @Param("motivo") String motivo,
+                          @Param("fecha") LocalDateTime fecha);
+
+    @Query("SELECT new com.example.cryptoacademy.service.OrdenEnLibro(" +
+            "o.idOrden, o.criptomoneda.id_Criptomoneda, o.precioActivacion, o.tipoTransaccion, o.tipoOrden) " +
+            "FROM OrdenPendiente o WHERE o.estado = :estado")
+    List<OrdenEnLibro> findEntradasLibroByEstado(@Param("estado") EstadoOrden estado);
+}
@@ -0,0 +1,94 @@
+package com.example.cryptoacademy.persistance.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Escritura del refresco de mercado sobre {@code criptomonedas} sin pasar por entidades: una lectura completa al
+ * cargar la tabla en memoria y, en cada ciclo, un único lote JDBC con las filas cuyos precios han cambiado.
+ */
+@Repository
+public class RefrescoCriptomonedasJdbcRepository {
+
+    private static final String SQL_CARGAR =
+            "SELECT id_criptomoneda, nombre, simbolo, imagen, precio_actual, capitalizacion, volumen_24h, " +
+            "cambio_porcentaje_24h, fecha_actualizacion FROM criptomonedas";
+
+    private static final String SQL_ACTUALIZAR_PRECIOS =
+            "UPDATE criptomonedas SET precio_actual = ?, capitalizacion = ?, volumen_24h = ?, cambio_porcentaje_24h = ?, " +
+            "fecha_actualizacion = ? WHERE id_criptomoneda = ?";
+
+    private static final String SQL_ACTUALIZAR_DESCRIPCION =
+            "UPDATE criptomonedas SET nombre = ?, simbolo = ?, imagen = ? WHERE id_criptomoneda = ?";
+
+    public record FilaCriptomoneda(String idCriptomoneda, String nombre, String simbolo, String imagen,
+                                   BigDecimal precioActual, BigDecimal capitalizacion, BigDecimal volumen24h,
+                                   Double cambioPorcentaje24h, LocalDateTime fechaActualizacion) {
+    }
+
+    public record CambioPrecio(String idCriptomoneda, BigDecimal precioActual, BigDecimal capitalizacion,
+                               BigDecimal volumen24h, Double cambioPorcentaje24h, LocalDateTime fechaActualizacion) {
+    }
+
+    public record CambioDescripcion(String idCriptomoneda, String nombre, String simbolo, String imagen) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RefrescoCriptomonedasJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<FilaCriptomoneda> cargarCriptomonedas() {
+        return jdbcTemplate.query(SQL_CARGAR, (rs, n) -> {
+            Timestamp fecha = rs.getTimestamp(9);
+            double cambio = rs.getDouble(8);
+            Double cambioPorcentaje = rs.wasNull() ? null : cambio;
+            return new FilaCriptomoneda(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                    rs.getBigDecimal(5), rs.getBigDecimal(6), rs.getBigDecimal(7), cambioPorcentaje,
+                    fecha != null ? fecha.toLocalDateTime() : null);
+        });
+    }
+
+    /**
+     * Escribe los precios cambiados en un solo lote (una ida y vuelta con {@code rewriteBatchedStatements}).
+     */
+    public void actualizarPrecios(List<CambioPrecio> cambios) {
+        if (cambios.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(SQL_ACTUALIZAR_PRECIOS, cambios, cambios.size(), (ps, c) -> {
+            ps.setBigDecimal(1, c.precioActual());
+            ps.setBigDecimal(2, c.capitalizacion());
+            ps.setBigDecimal(3, c.volumen24h());
+            if (c.cambioPorcentaje24h() != null) {
+                ps.setDouble(4, c.cambioPorcentaje24h());
+            } else {
+                ps.setNull(4, Types.DOUBLE);
+            }
+            ps.setTimestamp(5, c.fechaActualizacion() != null ? Timestamp.valueOf(c.fechaActualizacion()) : null);
+            ps.setString(6, c.idCriptomoneda());
+        });
+    }
+
+    /**
+     * Nombre, símbolo o imagen cambiados: poco frecuente, va en un lote aparte para no ensanchar el de precios.
+     */
+    public void actualizarDescripciones(List<CambioDescripcion> cambios) {
+        if (cambios.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(SQL_ACTUALIZAR_DESCRIPCION, cambios, cambios.size(), (ps, c) -> {
+            ps.setString(1, c.nombre());
+            ps.setString(2, c.simbolo());
+            ps.setString(3, c.imagen());
+            ps.setString(4, c.idCriptomoneda());
+        });
+    }
+}
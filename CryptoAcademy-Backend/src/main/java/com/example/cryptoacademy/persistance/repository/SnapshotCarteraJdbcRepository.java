@@ -0,0 +1,110 @@
+package com.example.cryptoacademy.persistance.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+public class SnapshotCarteraJdbcRepository {
+
+    private static final int TAMAÑO_LOTE_INSERCION = 1000;
+
+    private static final String SQL_RANGO_IDS_CARTERA =
+            "SELECT MIN(id_cartera), MAX(id_cartera) FROM carteras";
+
+    private static final String SQL_SALDOS_CARTERAS =
+            "SELECT id_cartera, saldo_virtual_eur FROM carteras WHERE id_cartera BETWEEN ? AND ?";
+
+    private static final String SQL_TENENCIAS_CARTERAS =
+            "SELECT id_cartera, id_criptomoneda, cantidad FROM criptos_almacenadas " +
+            "WHERE id_cartera BETWEEN ? AND ? AND cantidad > 0";
+
+    private static final String SQL_INSERTAR_SNAPSHOT =
+            "INSERT INTO snapshots_cartera (id_cartera, fecha_snapshot, valor_total_eur, valor_criptos_eur) VALUES (?, ?, ?, ?)";
+
+    private static final String SQL_PRIMERA_FECHA =
+            "SELECT MIN(fecha_snapshot) FROM snapshots_cartera WHERE id_cartera = ?";
+
+    private static final String SQL_HISTORIAL =
+            "SELECT fecha_snapshot, valor_total_eur, valor_criptos_eur FROM snapshots_cartera " +
+            "WHERE id_cartera = ? AND fecha_snapshot >= ? ORDER BY fecha_snapshot";
+
+    private static final String SQL_ELIMINAR_ANTERIORES =
+            "DELETE FROM snapshots_cartera WHERE fecha_snapshot < ?";
+
+    public record TenenciaFila(long idCartera, String idCriptomoneda, BigDecimal cantidad) {
+    }
+
+    public record SnapshotFila(long idCartera, BigDecimal valorTotalEUR, BigDecimal valorCriptosEUR) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SnapshotCarteraJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * {@code [min, max]} de id_cartera, vacío si no hay carteras.
+     */
+    public Optional<long[]> rangoIdsCartera() {
+        return jdbcTemplate.query(SQL_RANGO_IDS_CARTERA, rs -> {
+            if (!rs.next() || rs.getObject(1) == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new long[]{rs.getLong(1), rs.getLong(2)});
+        });
+    }
+
+    public Map<Long, BigDecimal> saldosCarteras(long desdeId, long hastaId) {
+        Map<Long, BigDecimal> saldos = new HashMap<>();
+        jdbcTemplate.query(SQL_SALDOS_CARTERAS,
+                (RowCallbackHandler) rs -> saldos.put(rs.getLong(1), rs.getBigDecimal(2)),
+                desdeId, hastaId);
+        return saldos;
+    }
+
+    public List<TenenciaFila> tenenciasCarteras(long desdeId, long hastaId) {
+        return jdbcTemplate.query(SQL_TENENCIAS_CARTERAS,
+                (rs, i) -> new TenenciaFila(rs.getLong(1), rs.getString(2), rs.getBigDecimal(3)),
+                desdeId, hastaId);
+    }
+
+    public void insertarSnapshots(LocalDateTime fecha, List<SnapshotFila> filas) {
+        if (filas.isEmpty()) {
+            return;
+        }
+        Timestamp fechaSnapshot = Timestamp.valueOf(fecha);
+        jdbcTemplate.batchUpdate(SQL_INSERTAR_SNAPSHOT, filas, TAMAÑO_LOTE_INSERCION, (ps, fila) -> {
+            ps.setLong(1, fila.idCartera());
+            ps.setTimestamp(2, fechaSnapshot);
+            ps.setBigDecimal(3, fila.valorTotalEUR());
+            ps.setBigDecimal(4, fila.valorCriptosEUR());
+        });
+    }
+
+    public Optional<LocalDateTime> primeraFecha(Long idCartera) {
+        Timestamp primera = jdbcTemplate.queryForObject(SQL_PRIMERA_FECHA, Timestamp.class, idCartera);
+        return Optional.ofNullable(primera).map(Timestamp::toLocalDateTime);
+    }
+
+    /**
+     * Recorre en orden cronológico los snapshots de la cartera desde {@code desde}, sin acumularlos en memoria.
+     * Columnas: fecha_snapshot, valor_total_eur, valor_criptos_eur.
+     */
+    public void recorrerHistorial(Long idCartera, LocalDateTime desde, RowCallbackHandler handler) {
+        jdbcTemplate.query(SQL_HISTORIAL, handler, idCartera, Timestamp.valueOf(desde));
+    }
+
+    public int eliminarAnterioresA(LocalDateTime fecha) {
+        return jdbcTemplate.update(SQL_ELIMINAR_ANTERIORES, Timestamp.valueOf(fecha));
+    }
+}
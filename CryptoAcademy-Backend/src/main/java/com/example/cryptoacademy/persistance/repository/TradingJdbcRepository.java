@@ -0,0 +1,211 @@
+package com.example.cryptoacademy.persistance.repository;
+
+import com.example.cryptoacademy.persistance.model.Transaccion;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+public class TradingJdbcRepository {
+
+    private static final String SQL_AJUSTAR_SALDO =
+            "UPDATE carteras SET saldo_virtual_eur = saldo_virtual_eur + ?, version = version + 1 " +
+            "WHERE id_cartera = ? AND saldo_virtual_eur + ? >= 0";
+
+    private static final String SQL_DEBITAR_SALDO =
+            "UPDATE carteras SET saldo_virtual_eur = saldo_virtual_eur - ?, version = version + 1 " +
+            "WHERE id_cartera = ? AND id_usuario = ? AND saldo_virtual_eur >= ?";
+
+    private static final String SQL_ACREDITAR_SALDO =
+            "UPDATE carteras SET saldo_virtual_eur = saldo_virtual_eur + ?, version = version + 1 " +
+            "WHERE id_cartera = ? AND id_usuario = ?";
+
+    private static final String SQL_SALDO_CARTERA =
+            "SELECT saldo_virtual_eur FROM carteras WHERE id_cartera = ? AND id_usuario = ?";
+
+    // El coste vendido es la parte proporcional del coste total; las asignaciones van en este orden porque MySQL
+    // evalúa cada una con los valores ya actualizados por las anteriores.
+    private static final String SQL_RESTAR_TENENCIA =
+            "UPDATE criptos_almacenadas SET " +
+            "pyg_realizado_eur = pyg_realizado_eur + ? - ROUND(coste_total_eur * ? / cantidad, 4), " +
+            "coste_total_eur = coste_total_eur - ROUND(coste_total_eur * ? / cantidad, 4), " +
+            "cantidad = cantidad - ?, fecha_ultima_actualizacion = ?, version = version + 1 " +
+            "WHERE id_cartera = ? AND id_criptomoneda = ? AND cantidad >= ?";
+
+    private static final String SQL_CANTIDAD_TENENCIA =
+            "SELECT cantidad FROM criptos_almacenadas WHERE id_cartera = ? AND id_criptomoneda = ?";
+
+    private static final String SQL_UPSERT_TENENCIA =
+            "INSERT INTO criptos_almacenadas (id_cartera, id_criptomoneda, cantidad, coste_total_eur, pyg_realizado_eur, " +
+            "fecha_ultima_actualizacion, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, 0) " +
+            "ON DUPLICATE KEY UPDATE cantidad = cantidad + VALUES(cantidad), " +
+            "coste_total_eur = coste_total_eur + VALUES(coste_total_eur), " +
+            "pyg_realizado_eur = pyg_realizado_eur + VALUES(pyg_realizado_eur), version = version + 1, " +
+            "fecha_ultima_actualizacion = VALUES(fecha_ultima_actualizacion)";
+
+    private static final String SQL_CONTAR_TENENCIAS_NEGATIVAS =
+            "SELECT COUNT(*) FROM criptos_almacenadas WHERE id_cartera = ? AND cantidad < 0";
+
+    private static final String SQL_INSERTAR_TRANSACCION =
+            "INSERT INTO transacciones (id_usuario, id_cartera, id_criptomoneda, tipo_transaccion, " +
+            "cantidad_cripto, precio_por_unidad_eur, valor_total_eur, fecha_transaccion) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Variación neta de una tenencia: cantidad, coste total y PyG realizado.
+     */
+    public record DeltaTenencia(BigDecimal cantidad, BigDecimal costeTotalEUR, BigDecimal pygRealizadoEUR) {
+
+        public static final DeltaTenencia CERO = new DeltaTenencia(BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO);
+
+        public DeltaTenencia mas(DeltaTenencia otro) {
+            return new DeltaTenencia(cantidad.add(otro.cantidad), costeTotalEUR.add(otro.costeTotalEUR),
+                    pygRealizadoEUR.add(otro.pygRealizadoEUR));
+        }
+
+        public boolean esNula() {
+            return cantidad.signum() == 0 && costeTotalEUR.signum() == 0 && pygRealizadoEUR.signum() == 0;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TradingJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Suma {@code delta} (positivo o negativo) al saldo de la cartera solo si el resultado no queda en negativo.
+     * Devuelve el número de filas afectadas: 0 indica saldo insuficiente o cartera inexistente.
+     */
+    public int ajustarSaldoCartera(Long idCartera, BigDecimal delta) {
+        return jdbcTemplate.update(SQL_AJUSTAR_SALDO, delta, idCartera, delta);
+    }
+
+    /**
+     * Resta {@code importe} del saldo solo si la cartera pertenece al usuario y tiene fondos suficientes.
+     * Devuelve 0 si no se cumple alguna de las dos condiciones.
+     */
+    public int debitarSaldo(Long idCartera, Integer idUsuario, BigDecimal importe) {
+        return jdbcTemplate.update(SQL_DEBITAR_SALDO, importe, idCartera, idUsuario, importe);
+    }
+
+    public int acreditarSaldo(Long idCartera, Integer idUsuario, BigDecimal importe) {
+        return jdbcTemplate.update(SQL_ACREDITAR_SALDO, importe, idCartera, idUsuario);
+    }
+
+    public Optional<BigDecimal> obtenerSaldo(Long idCartera, Integer idUsuario) {
+        List<BigDecimal> saldos = jdbcTemplate.queryForList(SQL_SALDO_CARTERA, BigDecimal.class, idCartera, idUsuario);
+        return saldos.isEmpty() ? Optional.empty() : Optional.ofNullable(saldos.get(0));
+    }
+
+    public void sumarTenencia(Long idCartera, String idCriptomoneda, BigDecimal cantidad, BigDecimal costeEUR, LocalDateTime fecha) {
+        jdbcTemplate.update(SQL_UPSERT_TENENCIA, idCartera, idCriptomoneda, cantidad, costeEUR, BigDecimal.ZERO, Timestamp.valueOf(fecha));
+    }
+
+    /**
+     * Resta {@code cantidad} de la tenencia solo si existe y es suficiente, descontando su parte del coste y
+     * sumando al PyG realizado {@code ingresoEUR} menos esa parte. Devuelve 0 si no se cumple la condición.
+     */
+    public int restarTenencia(Long idCartera, String idCriptomoneda, BigDecimal cantidad, BigDecimal ingresoEUR, LocalDateTime fecha) {
+        return jdbcTemplate.update(SQL_RESTAR_TENENCIA, ingresoEUR, cantidad, cantidad, cantidad, Timestamp.valueOf(fecha),
+                idCartera, idCriptomoneda, cantidad);
+    }
+
+    public Optional<BigDecimal> obtenerCantidadTenencia(Long idCartera, String idCriptomoneda) {
+        List<BigDecimal> cantidades = jdbcTemplate.queryForList(SQL_CANTIDAD_TENENCIA, BigDecimal.class, idCartera, idCriptomoneda);
+        return cantidades.isEmpty() ? Optional.empty() : Optional.ofNullable(cantidades.get(0));
+    }
+
+    /**
+     * Aplica en un único batch JDBC la variación neta de cantidad, coste y PyG por criptomoneda, creando la tenencia
+     * si no existe (clave única UK_cartera_cripto).
+     */
+    public void ajustarTenencias(Long idCartera, Map<String, DeltaTenencia> deltasPorCripto, LocalDateTime fecha) {
+        if (deltasPorCripto.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, DeltaTenencia>> deltas = new ArrayList<>(deltasPorCripto.entrySet());
+        Timestamp fechaActualizacion = Timestamp.valueOf(fecha);
+        jdbcTemplate.batchUpdate(SQL_UPSERT_TENENCIA, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<String, DeltaTenencia> delta = deltas.get(i);
+                ps.setLong(1, idCartera);
+                ps.setString(2, delta.getKey());
+                ps.setBigDecimal(3, delta.getValue().cantidad());
+                ps.setBigDecimal(4, delta.getValue().costeTotalEUR());
+                ps.setBigDecimal(5, delta.getValue().pygRealizadoEUR());
+                ps.setTimestamp(6, fechaActualizacion);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return deltas.size();
+            }
+        });
+    }
+
+    public boolean existenTenenciasNegativas(Long idCartera) {
+        Integer negativas = jdbcTemplate.queryForObject(SQL_CONTAR_TENENCIAS_NEGATIVAS, Integer.class, idCartera);
+        return negativas != null && negativas > 0;
+    }
+
+    public void insertarTransaccion(Transaccion transaccion) {
+        insertarTransacciones(List.of(transaccion));
+    }
+
+    /**
+     * Inserta las transacciones en un único batch JDBC y asigna a cada una el ID generado.
+     */
+    public void insertarTransacciones(List<Transaccion> transacciones) {
+        if (transacciones.isEmpty()) {
+            return;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(SQL_INSERTAR_TRANSACCION, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Transaccion transaccion = transacciones.get(i);
+                        ps.setInt(1, transaccion.getUsuario().getId());
+                        ps.setLong(2, transaccion.getCartera().getIdCartera());
+                        ps.setString(3, transaccion.getCriptomoneda().getId_Criptomoneda());
+                        ps.setString(4, transaccion.getTipoTransaccion().name());
+                        ps.setBigDecimal(5, transaccion.getCantidadCripto());
+                        ps.setBigDecimal(6, transaccion.getPrecioPorUnidadeEUR());
+                        ps.setBigDecimal(7, transaccion.getValorTotalEUR());
+                        ps.setTimestamp(8, Timestamp.valueOf(transaccion.getFechaTransaccion()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return transacciones.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> claves = keyHolder.getKeyList();
+        for (int i = 0; i < transacciones.size() && i < claves.size(); i++) {
+            Object clave = claves.get(i).values().iterator().next();
+            if (clave instanceof Number) {
+                transacciones.get(i).setIdTransaccion(((Number) clave).longValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.cryptoacademy.persistance.repository;
+
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import com.example.cryptoacademy.persistance.model.TransaccionArchivada;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface TransaccionArchivadaRepository extends JpaRepository<TransaccionArchivada, Long> {
+
+    // Mismas condiciones que TransaccionRepository.findHistorialDesdeCursor, sobre transacciones_archivo.
+    @EntityGraph(attributePaths = {"usuario", "criptomoneda"})
+    @Query("SELECT t FROM TransaccionArchivada t WHERE t.usuario.id = :idUsuario " +
+            "AND (:tipo IS NULL OR t.tipoTransaccion = :tipo) " +
+            "AND (:idCriptomoneda IS NULL OR t.criptomoneda.id_Criptomoneda = :idCriptomoneda) " +
+            "AND (:desde IS NULL OR t.fechaTransaccion >= :desde) " +
+            "AND (:hasta IS NULL OR t.fechaTransaccion < :hasta) " +
+            "AND (:fechaCursor IS NULL OR t.fechaTransaccion < :fechaCursor " +
+            "     OR (t.fechaTransaccion = :fechaCursor AND t.idTransaccion < :idCursor)) " +
+            "ORDER BY t.fechaTransaccion DESC, t.idTransaccion DESC")
+    List<TransaccionArchivada> findHistorialDesdeCursor(
+            @Param("idUsuario") Integer idUsuario,
+            @Param("tipo") TipoTransaccion tipo,
+            @Param("idCriptomoneda") String idCriptomoneda,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta,
+            @Param("fechaCursor") LocalDateTime fechaCursor,
+            @Param("idCursor") Long idCursor,
+            Limit limite
+    );
+
+    @Query("SELECT COUNT(t) FROM TransaccionArchivada t WHERE t.usuario.id = :idUsuario " +
+            "AND (:tipo IS NULL OR t.tipoTransaccion = :tipo) " +
+            "AND (:idCriptomoneda IS NULL OR t.criptomoneda.id_Criptomoneda = :idCriptomoneda) " +
+            "AND (:desde IS NULL OR t.fechaTransaccion >= :desde) " +
+            "AND (:hasta IS NULL OR t.fechaTransaccion < :hasta)")
+    long countHistorial(
+            @Param("idUsuario") Integer idUsuario,
+            @Param("tipo") TipoTransaccion tipo,
+            @Param("idCriptomoneda") String idCriptomoneda,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta
+    );
+}
@@ -0,0 +1,92 @@
+package com.example.cryptoacademy.persistance.repository;
+
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.DatabaseMetaData;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Lectura del historial completo de un usuario para exportarlo: un único cursor de solo avance con fetch size, sin
+ * OFFSET ni COUNT, que entrega las filas una a una sin materializar entidades ni listas.
+ * En MySQL se usa el modo streaming del driver ({@code fetchSize = Integer.MIN_VALUE}), que entrega las filas de una
+ * en una sin cargar el resultado en memoria y sin cambiar la configuración del datasource compartido; con otras
+ * bases de datos se usa el fetch size configurado. Las transacciones archivadas se leen a continuación de las
+ * calientes, ya que son todas anteriores.
+ */
+@Repository
+public class TransaccionExportJdbcRepository {
+
+    private static final String SQL_COLUMNAS =
+            "SELECT t.id_transaccion, t.fecha_transaccion, t.tipo_transaccion, t.id_cartera, t.id_criptomoneda, " +
+            "c.simbolo, t.cantidad_cripto, t.precio_por_unidad_eur, t.valor_total_eur ";
+
+    private static final String SQL_HISTORIAL = SQL_COLUMNAS +
+            "FROM transacciones t JOIN criptomonedas c ON c.id_criptomoneda = t.id_criptomoneda " +
+            "WHERE t.id_usuario = ? ";
+
+    private static final String SQL_HISTORIAL_ARCHIVO = SQL_COLUMNAS +
+            "FROM transacciones_archivo t JOIN criptomonedas c ON c.id_criptomoneda = t.id_criptomoneda " +
+            "WHERE t.id_usuario = ? ";
+
+    private static final String SQL_FILTRO_TIPO = "AND t.tipo_transaccion = ? ";
+
+    private static final String SQL_ORDEN = "ORDER BY t.fecha_transaccion DESC, t.id_transaccion DESC";
+
+    public record TransaccionExportFila(long idTransaccion, LocalDateTime fechaTransaccion, String tipoTransaccion,
+                                        long idCartera, String idCriptomoneda, String simboloCriptomoneda,
+                                        BigDecimal cantidadCripto, BigDecimal precioPorUnidadEUR,
+                                        BigDecimal valorTotalEUR) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransaccionExportJdbcRepository(DataSource dataSource,
+                                           @Value("${exportacion.transacciones.fetch-size:1000}") int fetchSize) {
+        // Plantilla propia: el fetch size solo aplica a esta consulta y no al resto de repositorios.
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(esMySql(dataSource) ? Integer.MIN_VALUE : fetchSize);
+    }
+
+    private static boolean esMySql(DataSource dataSource) {
+        try {
+            String producto = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return "MySQL".equalsIgnoreCase(producto);
+        } catch (MetaDataAccessException e) {
+            throw new IllegalStateException("No se pudo determinar la base de datos para la exportación.", e);
+        }
+    }
+
+    /**
+     * Recorre las transacciones del usuario de la más reciente a la más antigua. La conexión se mantiene solo
+     * mientras dura el recorrido, así que {@code consumidor} debe escribir y no bloquearse en otra cosa.
+     */
+    public void recorrerHistorial(Integer idUsuario, TipoTransaccion tipo, Consumer<TransaccionExportFila> consumidor) {
+        RowCallbackHandler handler = rs -> consumidor.accept(new TransaccionExportFila(
+                rs.getLong(1),
+                rs.getTimestamp(2).toLocalDateTime(),
+                rs.getString(3),
+                rs.getLong(4),
+                rs.getString(5),
+                rs.getString(6),
+                rs.getBigDecimal(7),
+                rs.getBigDecimal(8),
+                rs.getBigDecimal(9)));
+        for (String consulta : List.of(SQL_HISTORIAL, SQL_HISTORIAL_ARCHIVO)) {
+            if (tipo == null) {
+                jdbcTemplate.query(consulta + SQL_ORDEN, handler, idUsuario);
+            } else {
+                jdbcTemplate.query(consulta + SQL_FILTRO_TIPO + SQL_ORDEN, handler, idUsuario, tipo.name());
+            }
+        }
+    }
+}
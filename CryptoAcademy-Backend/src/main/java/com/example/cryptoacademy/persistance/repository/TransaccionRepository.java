@@ -2,18 +2,63 @@ package com.example.cryptoacademy.persistance.repository;
 
 import com.example.cryptoacademy.persistance.model.TipoTransaccion;
 import com.example.cryptoacademy.persistance.model.Transaccion;
-import com.example.cryptoacademy.persistance.model.Usuario;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 
 public interface TransaccionRepository extends JpaRepository<Transaccion, Long> {
 
-    Page<Transaccion> findByUsuarioOrderByFechaTransaccionDesc(Usuario usuario, Pageable pageable);
-    Page<Transaccion> findByUsuarioAndTipoTransaccionOrderByFechaTransaccionDesc(
-            Usuario usuario,
+    // Las asociaciones que usa el DTO del historial se cargan en la misma consulta que la página.
+    @EntityGraph(attributePaths = {"usuario", "cartera", "criptomoneda"})
+    Page<Transaccion> findByUsuarioIdOrderByFechaTransaccionDesc(Integer idUsuario, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"usuario", "cartera", "criptomoneda"})
+    Page<Transaccion> findByUsuarioIdAndTipoTransaccionOrderByFechaTransaccionDesc(
+            Integer idUsuario,
             TipoTransaccion tipoTransaccion,
             Pageable pageable
     );
+
+    // Keyset: las transacciones estrictamente anteriores a (fechaCursor, idCursor) en orden (fecha, id) descendente.
+    // Recorre el índice (id_usuario, fecha_transaccion, id_transaccion) desde el cursor, sin OFFSET ni COUNT.
+    @EntityGraph(attributePaths = {"usuario", "cartera", "criptomoneda"})
+    @Query("SELECT t FROM Transaccion t WHERE t.usuario.id = :idUsuario " +
+            "AND (:tipo IS NULL OR t.tipoTransaccion = :tipo) " +
+            "AND (:idCriptomoneda IS NULL OR t.criptomoneda.id_Criptomoneda = :idCriptomoneda) " +
+            "AND (:desde IS NULL OR t.fechaTransaccion >= :desde) " +
+            "AND (:hasta IS NULL OR t.fechaTransaccion < :hasta) " +
+            "AND (:fechaCursor IS NULL OR t.fechaTransaccion < :fechaCursor " +
+            "     OR (t.fechaTransaccion = :fechaCursor AND t.idTransaccion < :idCursor)) " +
+            "ORDER BY t.fechaTransaccion DESC, t.idTransaccion DESC")
+    List<Transaccion> findHistorialDesdeCursor(
+            @Param("idUsuario") Integer idUsuario,
+            @Param("tipo") TipoTransaccion tipo,
+            @Param("idCriptomoneda") String idCriptomoneda,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta,
+            @Param("fechaCursor") LocalDateTime fechaCursor,
+            @Param("idCursor") Long idCursor,
+            Limit limite
+    );
+
+    @Query("SELECT COUNT(t) FROM Transaccion t WHERE t.usuario.id = :idUsuario " +
+            "AND (:tipo IS NULL OR t.tipoTransaccion = :tipo) " +
+            "AND (:idCriptomoneda IS NULL OR t.criptomoneda.id_Criptomoneda = :idCriptomoneda) " +
+            "AND (:desde IS NULL OR t.fechaTransaccion >= :desde) " +
+            "AND (:hasta IS NULL OR t.fechaTransaccion < :hasta)")
+    long countHistorial(
+            @Param("idUsuario") Integer idUsuario,
+            @Param("tipo") TipoTransaccion tipo,
+            @Param("idCriptomoneda") String idCriptomoneda,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta
+    );
 }
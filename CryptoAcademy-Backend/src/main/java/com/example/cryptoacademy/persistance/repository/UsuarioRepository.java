@@ -1,11 +1,22 @@
 package com.example.cryptoacademy.persistance.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.cryptoacademy.persistance.model.Usuario;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UsuarioRepository extends JpaRepository<Usuario, Integer> {
     Optional<Usuario> findByEmail(String email);
+
+    // [idUsuario, nombre, email] sin cargar la entidad completa; los usuarios sin nombre aparecen como "Usuario Anónimo".
+    @Query("SELECT u.id, COALESCE(u.nombre, 'Usuario Anónimo'), u.email FROM Usuario u")
+    List<Object[]> findDatosRanking();
+
+    @Query("SELECT u.id, COALESCE(u.nombre, 'Usuario Anónimo'), u.email FROM Usuario u WHERE u.id IN :idsUsuario")
+    List<Object[]> findDatosRanking(@Param("idsUsuario") Collection<Integer> idsUsuario);
 }
@@ -0,0 +1,129 @@
+package com.example.cryptoacademy.persistance.repository;
+
+import com.example.cryptoacademy.persistance.model.IntervaloVela;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Acceso a {@code velas_cripto}. Todas las lecturas filtran por {@code (id_criptomoneda, intervalo)} y recorren
+ * {@code inicio_ms} dentro del índice único, sin ordenar en memoria.
+ */
+@Repository
+public class VelaCriptoJdbcRepository {
+
+    // Un tick abre la vela con su precio o amplía máximo/mínimo y mueve el cierre de la existente.
+    private static final String SQL_REGISTRAR_TICK =
+            "INSERT INTO velas_cripto (id_criptomoneda, intervalo, inicio_ms, apertura, maximo, minimo, cierre) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE maximo = GREATEST(maximo, VALUES(maximo)), " +
+            "minimo = LEAST(minimo, VALUES(minimo)), cierre = VALUES(cierre)";
+
+    // El histórico descargado nunca pisa velas construidas con ticks propios.
+    private static final String SQL_INSERTAR_HISTORICO =
+            "INSERT IGNORE INTO velas_cripto (id_criptomoneda, intervalo, inicio_ms, apertura, maximo, minimo, cierre) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_EXTREMOS =
+            "SELECT MIN(inicio_ms), MAX(inicio_ms) FROM velas_cripto WHERE id_criptomoneda = ? AND intervalo = ?";
+
+    private static final String SQL_SERIE =
+            "SELECT inicio_ms, apertura, maximo, minimo, cierre FROM velas_cripto " +
+            "WHERE id_criptomoneda = ? AND intervalo = ? AND inicio_ms >= ? ORDER BY inicio_ms";
+
+    private static final String SQL_CRIPTOS = "SELECT id_criptomoneda FROM criptomonedas";
+
+    private static final String SQL_ELIMINAR_ANTERIORES =
+            "DELETE FROM velas_cripto WHERE id_criptomoneda = ? AND intervalo = ? AND inicio_ms < ?";
+
+    public record VelaFila(String idCriptomoneda, IntervaloVela intervalo, long inicioMs,
+                           double apertura, double maximo, double minimo, double cierre) {
+    }
+
+    /**
+     * Recibe las velas de una serie en orden cronológico.
+     */
+    @FunctionalInterface
+    public interface ConsumidorVelas {
+        void aceptar(long inicioMs, double apertura, double maximo, double minimo, double cierre);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VelaCriptoJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Aplica los ticks de un refresco en un solo lote. Cada fila lleva el precio como apertura, máximo, mínimo y cierre.
+     */
+    public void registrarTicks(List<VelaFila> ticks) {
+        jdbcTemplate.batchUpdate(SQL_REGISTRAR_TICK, ticks, ticks.size(), (ps, t) -> {
+            ps.setString(1, t.idCriptomoneda());
+            ps.setString(2, t.intervalo().name());
+            ps.setLong(3, t.inicioMs());
+            ps.setDouble(4, t.apertura());
+            ps.setDouble(5, t.maximo());
+            ps.setDouble(6, t.minimo());
+            ps.setDouble(7, t.cierre());
+        });
+    }
+
+    /**
+     * Inserta velas de histórico que aún no existan. Devuelve las filas nuevas.
+     */
+    public int insertarHistorico(List<VelaFila> velas) {
+        if (velas.isEmpty()) {
+            return 0;
+        }
+        int[][] resultados = jdbcTemplate.batchUpdate(SQL_INSERTAR_HISTORICO, velas, velas.size(), (ps, v) -> {
+            ps.setString(1, v.idCriptomoneda());
+            ps.setString(2, v.intervalo().name());
+            ps.setLong(3, v.inicioMs());
+            ps.setDouble(4, v.apertura());
+            ps.setDouble(5, v.maximo());
+            ps.setDouble(6, v.minimo());
+            ps.setDouble(7, v.cierre());
+        });
+        int insertadas = 0;
+        for (int[] lote : resultados) {
+            for (int filas : lote) {
+                // SUCCESS_NO_INFO (-2) cuenta como insertada: solo se usa para decidir si recargar el buffer.
+                insertadas += filas != 0 ? 1 : 0;
+            }
+        }
+        return insertadas;
+    }
+
+    /**
+     * Inicio de la primera y la última vela guardadas, o vacío si no hay ninguna.
+     */
+    public Optional<long[]> extremos(String idCriptomoneda, IntervaloVela intervalo) {
+        return jdbcTemplate.query(SQL_EXTREMOS, rs -> {
+            rs.next();
+            long primera = rs.getLong(1);
+            if (rs.wasNull()) {
+                return Optional.<long[]>empty();
+            }
+            return Optional.of(new long[]{primera, rs.getLong(2)});
+        }, idCriptomoneda, intervalo.name());
+    }
+
+    /**
+     * Entrega a {@code consumidor} las velas con inicio igual o posterior a {@code desdeMs}, en orden cronológico.
+     */
+    public void recorrerSerie(String idCriptomoneda, IntervaloVela intervalo, long desdeMs, ConsumidorVelas consumidor) {
+        jdbcTemplate.query(SQL_SERIE, rs -> {
+            consumidor.aceptar(rs.getLong(1), rs.getDouble(2), rs.getDouble(3), rs.getDouble(4), rs.getDouble(5));
+        }, idCriptomoneda, intervalo.name(), desdeMs);
+    }
+
+    public List<String> idsCriptomonedas() {
+        return jdbcTemplate.queryForList(SQL_CRIPTOS, String.class);
+    }
+
+    public int eliminarAnteriores(String idCriptomoneda, IntervaloVela intervalo, long antesDeMs) {
+        return jdbcTemplate.update(SQL_ELIMINAR_ANTERIORES, idCriptomoneda, intervalo.name(), antesDeMs);
+    }
+}
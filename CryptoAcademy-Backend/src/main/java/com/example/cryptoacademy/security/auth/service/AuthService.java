@@ -9,10 +9,12 @@ import com.example.cryptoacademy.persistance.repository.UsuarioRepository;
 import com.example.cryptoacademy.security.auth.dto.AuthResponseDTO;
 import com.example.cryptoacademy.security.auth.dto.LoginRequestDTO;
 import com.example.cryptoacademy.security.auth.dto.RegisterRequestDTO;
+import com.example.cryptoacademy.service.PortfolioModificadoEvent;
 
 import java.time.LocalDateTime;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -36,6 +38,9 @@ public class AuthService implements AuthServiceI {
     @Autowired
     private AuthenticationManager authenticationManager;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     public AuthResponseDTO login(LoginRequestDTO request) {
         authenticationManager.authenticate(
@@ -71,6 +76,7 @@ public class AuthService implements AuthServiceI {
         cartera.setFechaCreacion(LocalDateTime.now());
 
         carteraRepository.save(cartera);
+        eventPublisher.publishEvent(new PortfolioModificadoEvent(usuarioGuardado.getId()));
 
         String token = jwtService.getToken(usuarioGuardado);
         return new AuthResponseDTO(token);
@@ -81,6 +81,7 @@ public class SecurityConfig {
         configuration.setAllowedHeaders(Arrays.asList(
                 "Authorization",
                 "Cache-Control",
+                "If-None-Match",
                 "Content-Type",
                 "X-Requested-With",
                 "accept",
@@ -89,7 +90,7 @@ public class SecurityConfig {
                 "Access-Control-Request-Headers"
         ));
         configuration.setAllowCredentials(true);
-        configuration.setExposedHeaders(Arrays.asList("Authorization", "Content-Disposition"));
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "Content-Disposition", "ETag", "X-Total-Count", "X-Ranking-Version"));
         configuration.setMaxAge(3600L); // 1 hora
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
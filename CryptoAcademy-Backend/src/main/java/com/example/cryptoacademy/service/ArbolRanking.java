@@ -0,0 +1,166 @@
+package com.example.cryptoacademy.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Árbol de estadísticos de orden (treap con tamaño de subárbol) para el ranking: ordena usuarios por valor de
+ * portfolio descendente y, a igualdad, por id ascendente. Inserción, borrado, posición de un usuario y acceso por
+ * posición son O(log n) esperado; recorrer un tramo de {@code m} posiciones es O(log n + m).
+ * No es thread-safe: {@link RankingServiceImpl} lo protege con un lock de lectura/escritura.
+ */
+class ArbolRanking {
+
+    private static final class Nodo {
+        final long valor;
+        final int idUsuario;
+        final int prioridad = ThreadLocalRandom.current().nextInt();
+        int tamaño = 1;
+        Nodo izquierdo;
+        Nodo derecho;
+
+        Nodo(long valor, int idUsuario) {
+            this.valor = valor;
+            this.idUsuario = idUsuario;
+        }
+    }
+
+    private Nodo raiz;
+
+    int tamaño() {
+        return tamaño(raiz);
+    }
+
+    void insertar(long valor, int idUsuario) {
+        Nodo[] partes = dividir(raiz, valor, idUsuario);
+        raiz = unir(unir(partes[0], new Nodo(valor, idUsuario)), partes[1]);
+    }
+
+    /**
+     * Elimina la entrada exacta {@code (valor, idUsuario)}. Devuelve {@code false} si no estaba.
+     */
+    boolean eliminar(long valor, int idUsuario) {
+        int antes = tamaño(raiz);
+        raiz = eliminar(raiz, valor, idUsuario);
+        return tamaño(raiz) < antes;
+    }
+
+    /**
+     * Posición (1 = primero) que ocupa la entrada {@code (valor, idUsuario)}; debe estar en el árbol.
+     */
+    int posicion(long valor, int idUsuario) {
+        int anteriores = 0;
+        Nodo nodo = raiz;
+        while (nodo != null) {
+            int cmp = comparar(valor, idUsuario, nodo);
+            if (cmp < 0) {
+                nodo = nodo.izquierdo;
+            } else {
+                anteriores += tamaño(nodo.izquierdo);
+                if (cmp == 0) {
+                    return anteriores + 1;
+                }
+                anteriores++;
+                nodo = nodo.derecho;
+            }
+        }
+        throw new IllegalStateException("El usuario " + idUsuario + " no está en el ranking con valor " + valor);
+    }
+
+    /**
+     * Recorre en orden las posiciones {@code desde} (1 = primero) a {@code desde + cantidad - 1} que existan,
+     * entregando a {@code consumidor} el id de usuario y su posición.
+     */
+    void recorrer(int desde, int cantidad, ObjIntConsumer<Integer> consumidor) {
+        if (desde < 1 || cantidad <= 0) {
+            return;
+        }
+        recorrer(raiz, desde - 1, cantidad, 0, consumidor);
+    }
+
+    // Devuelve cuántas entradas se han entregado en este subárbol.
+    private int recorrer(Nodo nodo, int saltar, int restantes, int base, ObjIntConsumer<Integer> consumidor) {
+        if (nodo == null || restantes <= 0) {
+            return 0;
+        }
+        int tamañoIzquierdo = tamaño(nodo.izquierdo);
+        int entregadas = 0;
+        if (saltar < tamañoIzquierdo) {
+            entregadas = recorrer(nodo.izquierdo, saltar, restantes, base, consumidor);
+        }
+        if (entregadas < restantes && saltar <= tamañoIzquierdo) {
+            consumidor.accept(nodo.idUsuario, base + tamañoIzquierdo + 1);
+            entregadas++;
+        }
+        if (entregadas < restantes) {
+            int saltarDerecho = Math.max(0, saltar - tamañoIzquierdo - 1);
+            entregadas += recorrer(nodo.derecho, saltarDerecho, restantes - entregadas, base + tamañoIzquierdo + 1, consumidor);
+        }
+        return entregadas;
+    }
+
+    private static Nodo eliminar(Nodo nodo, long valor, int idUsuario) {
+        if (nodo == null) {
+            return null;
+        }
+        int cmp = comparar(valor, idUsuario, nodo);
+        if (cmp == 0) {
+            return unir(nodo.izquierdo, nodo.derecho);
+        }
+        if (cmp < 0) {
+            nodo.izquierdo = eliminar(nodo.izquierdo, valor, idUsuario);
+        } else {
+            nodo.derecho = eliminar(nodo.derecho, valor, idUsuario);
+        }
+        actualizar(nodo);
+        return nodo;
+    }
+
+    // [0] = entradas que van antes de (valor, idUsuario); [1] = el resto.
+    private static Nodo[] dividir(Nodo nodo, long valor, int idUsuario) {
+        if (nodo == null) {
+            return new Nodo[]{null, null};
+        }
+        if (comparar(valor, idUsuario, nodo) > 0) {
+            Nodo[] partes = dividir(nodo.derecho, valor, idUsuario);
+            nodo.derecho = partes[0];
+            actualizar(nodo);
+            return new Nodo[]{nodo, partes[1]};
+        }
+        Nodo[] partes = dividir(nodo.izquierdo, valor, idUsuario);
+        nodo.izquierdo = partes[1];
+        actualizar(nodo);
+        return new Nodo[]{partes[0], nodo};
+    }
+
+    private static Nodo unir(Nodo a, Nodo b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.prioridad > b.prioridad) {
+            a.derecho = unir(a.derecho, b);
+            actualizar(a);
+            return a;
+        }
+        b.izquierdo = unir(a, b.izquierdo);
+        actualizar(b);
+        return b;
+    }
+
+    // Negativo si (valor, idUsuario) va antes que el nodo: más valor primero y, a igualdad, menor id.
+    private static int comparar(long valor, int idUsuario, Nodo nodo) {
+        int cmp = Long.compare(nodo.valor, valor);
+        return cmp != 0 ? cmp : Integer.compare(idUsuario, nodo.idUsuario);
+    }
+
+    private static void actualizar(Nodo nodo) {
+        nodo.tamaño = 1 + tamaño(nodo.izquierdo) + tamaño(nodo.derecho);
+    }
+
+    private static int tamaño(Nodo nodo) {
+        return nodo == null ? 0 : nodo.tamaño;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import com.example.cryptoacademy.persistance.repository.ArchivoTransaccionesJdbcRepository;
+import com.example.cryptoacademy.persistance.repository.ArchivoTransaccionesJdbcRepository.LoteArchivo;
+import com.example.cryptoacademy.persistance.repository.TransaccionArchivadaRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reparto de {@code transacciones} en almacenamiento caliente y frío. Los meses cerrados que quedan fuera de los
+ * últimos {@code transacciones.archivo.meses-calientes} se mueven, junto con su auditoría, a
+ * {@code transacciones_archivo} y {@code audit_log_transacciones_archivo}; así el historial reciente solo recorre
+ * los índices de la tabla caliente y el archivo se consulta únicamente cuando el rango pedido llega hasta él.
+ * Todo lo archivado es anterior a {@link #corteActual()}, por lo que el corte basta para decidir si una consulta
+ * necesita el archivo (reducir los meses calientes es seguro; ampliarlos no devuelve filas a la tabla caliente).
+ */
+@Service
+public class ArchivoTransaccionesService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchivoTransaccionesService.class);
+
+    private final ArchivoTransaccionesJdbcRepository archivoRepository;
+    private final TransaccionArchivadaRepository transaccionArchivadaRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<ClaveConteo, Long> conteos;
+    private final ExecutorService ejecutor;
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+
+    @Value("${transacciones.archivo.enabled:false}")
+    private boolean habilitado;
+
+    @Value("${transacciones.archivo.meses-calientes:6}")
+    private int mesesCalientes;
+
+    @Value("${transacciones.archivo.tamano-lote:1000}")
+    private int tamañoLote;
+
+    private record ClaveConteo(Integer idUsuario, TipoTransaccion tipo) {
+    }
+
+    public ArchivoTransaccionesService(ArchivoTransaccionesJdbcRepository archivoRepository,
+                                       TransaccionArchivadaRepository transaccionArchivadaRepository,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${transacciones.archivo.conteos.max-entradas:10000}") long maxEntradas,
+                                       @Value("${transacciones.archivo.conteos.ttl-minutos:10}") long ttlMinutos) {
+        this.archivoRepository = archivoRepository;
+        this.transaccionArchivadaRepository = transaccionArchivadaRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.conteos = Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutos))
+                .build();
+        // Hilo propio: el archivado puede durar minutos y no debe retener el planificador compartido.
+        this.ejecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "archivo-transacciones");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /**
+     * Inicio del mes más antiguo que se mantiene en caliente: todo lo archivado es anterior a este instante.
+     */
+    public LocalDateTime corteActual() {
+        return YearMonth.now().minusMonths(mesesCalientes).atDay(1).atStartOfDay();
+    }
+
+    /**
+     * Si un rango que empieza en {@code desde} (null = sin límite) puede incluir transacciones archivadas.
+     */
+    public boolean puedeIncluirArchivo(LocalDateTime desde) {
+        return desde == null || desde.isBefore(corteActual());
+    }
+
+    /**
+     * Transacciones archivadas del usuario, opcionalmente de un tipo. Se cachea porque la paginación por
+     * desplazamiento la necesita en cada página para el total; el archivo solo cambia al ejecutar el archivado.
+     */
+    public long contarArchivadas(Integer idUsuario, TipoTransaccion tipo) {
+        return conteos.get(new ClaveConteo(idUsuario, tipo),
+                clave -> transaccionArchivadaRepository.countHistorial(idUsuario, tipo, null, null, null));
+    }
+
+    /**
+     * Lanza el archivado en su propio hilo; si el de la ejecución anterior sigue en curso, se omite.
+     */
+    @Scheduled(cron = "${transacciones.archivo.cron:0 15 4 * * *}")
+    public void archivarPeriodosCerrados() {
+        if (!habilitado) {
+            return;
+        }
+        if (!enCurso.compareAndSet(false, true)) {
+            log.warn("El archivado de transacciones anterior sigue en curso; se omite esta ejecución.");
+            return;
+        }
+        ejecutor.execute(() -> {
+            try {
+                archivar(corteActual());
+            } catch (Exception e) {
+                log.error("Error al archivar transacciones: {}", e.getMessage(), e);
+            } finally {
+                enCurso.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    /**
+     * Archiva las transacciones anteriores a {@code corte} en lotes de la clave primaria, una transacción por lote.
+     * Se detiene en el primer lote sin ninguna anterior al corte, de modo que una ejecución sin nada que mover solo
+     * lee un lote. Devuelve el número de transacciones archivadas.
+     */
+    public int archivar(LocalDateTime corte) {
+        long inicio = System.currentTimeMillis();
+        long despuesDeId = 0;
+        int archivadas = 0;
+        Optional<LoteArchivo> lote;
+        while ((lote = archivoRepository.siguienteLote(despuesDeId, tamañoLote, corte)).isPresent()
+                && lote.get().anteriores() > 0) {
+            LoteArchivo actual = lote.get();
+            Integer movidas = transactionTemplate.execute(
+                    status -> archivoRepository.archivarTramo(actual.primerId(), actual.ultimoId(), corte));
+            archivadas += movidas != null ? movidas : 0;
+            despuesDeId = actual.ultimoId();
+        }
+        if (archivadas > 0) {
+            conteos.invalidateAll();
+            log.info("Archivadas {} transacciones anteriores a {} en {} ms.",
+                    archivadas, corte, System.currentTimeMillis() - inicio);
+        }
+        return archivadas;
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.persistance.model.Transaccion;
+import com.example.cryptoacademy.persistance.repository.AuditoriaTransaccionesJdbcRepository;
+import com.example.cryptoacademy.persistance.repository.AuditoriaTransaccionesJdbcRepository.RegistroAuditoria;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Auditoría de transacciones desde la aplicación, alternativa al trigger {@code TRG_Audit_Transacciones_Insert}
+ * (se activa con {@code auditoria.transacciones.aplicacion.enabled} y entonces el trigger debe eliminarse).
+ * Las operaciones confirmadas se encolan en memoria, en una cola acotada, y un único hilo las escribe en lotes
+ * con INSERT multi-fila, fuera de la transacción de la operación.
+ * La durabilidad no depende de la cola: la propia fila de {@code transacciones}, confirmada con la operación, hace
+ * de outbox. El mismo hilo barre periódicamente las transacciones sin auditar desde la última marca y las audita
+ * con un INSERT ... SELECT, así que lo que se pierda (cola llena, error al escribir o caída del proceso) se
+ * recupera en el siguiente barrido.
+ */
+@Service
+public class AuditoriaTransaccionesService {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditoriaTransaccionesService.class);
+
+    private record Pendiente(RegistroAuditoria registro, long encoladoNanos) {
+    }
+
+    private final AuditoriaTransaccionesJdbcRepository auditoriaRepository;
+    private final BlockingQueue<Pendiente> cola;
+    private final boolean habilitado;
+
+    private final Counter escritas;
+    private final Counter descartadas;
+    private final Counter fallidas;
+    private final Counter recuperadas;
+    private final Timer retraso;
+
+    @Value("${auditoria.transacciones.lote.tamano:500}")
+    private int tamañoLote;
+
+    @Value("${auditoria.transacciones.barrido.interval.ms:60000}")
+    private long intervaloBarridoMs;
+
+    @Value("${auditoria.transacciones.barrido.gracia-segundos:120}")
+    private long graciaSegundos;
+
+    @Value("${auditoria.transacciones.barrido.tamano:10000}")
+    private int tamañoBarrido;
+
+    @Value("${spring.datasource.username:}")
+    private String usuarioBaseDatos;
+
+    // Todas las transacciones con id <= marca están auditadas (o no llegaron a confirmarse).
+    private long marca = -1;
+    private volatile boolean activo;
+    private Thread escritor;
+
+    public AuditoriaTransaccionesService(AuditoriaTransaccionesJdbcRepository auditoriaRepository,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${auditoria.transacciones.aplicacion.enabled:false}") boolean habilitado,
+                                         @Value("${auditoria.transacciones.cola.capacidad:10000}") int capacidad) {
+        this.auditoriaRepository = auditoriaRepository;
+        this.habilitado = habilitado;
+        this.cola = new ArrayBlockingQueue<>(capacidad);
+
+        Gauge.builder("auditoria.transacciones.cola", cola, BlockingQueue::size)
+                .description("Transacciones confirmadas pendientes de auditar en memoria")
+                .register(meterRegistry);
+        Gauge.builder("auditoria.transacciones.cola.antiguedad", this, AuditoriaTransaccionesService::antiguedadSegundos)
+                .description("Segundos que lleva en la cola la transacción más antigua sin auditar")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.retraso = Timer.builder("auditoria.transacciones.retraso")
+                .description("Tiempo desde la confirmación de la operación hasta la escritura de su auditoría")
+                .register(meterRegistry);
+        this.escritas = contador(meterRegistry, "escrita");
+        this.descartadas = contador(meterRegistry, "descartada");
+        this.fallidas = contador(meterRegistry, "fallida");
+        this.recuperadas = contador(meterRegistry, "recuperada");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            if (auditoriaRepository.existeTrigger()) {
+                log.warn("Auditoría desde la aplicación activa pero TRG_Audit_Transacciones_Insert sigue existiendo: " +
+                        "las filas no se duplican, pero cada operación sigue pagando la inserción del trigger.");
+            }
+        } catch (Exception e) {
+            log.debug("No se ha podido comprobar el trigger de auditoría: {}", e.getMessage());
+        }
+        activo = true;
+        escritor = new Thread(this::bucleEscritura, "auditoria-transacciones");
+        escritor.setDaemon(true);
+        escritor.start();
+        log.info("Auditoría de transacciones desde la aplicación iniciada (cola de {} registros).", cola.remainingCapacity());
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        if (escritor == null) {
+            return;
+        }
+        activo = false;
+        escritor.interrupt();
+        escritor.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPortfolioModificado(PortfolioModificadoEvent event) {
+        if (!habilitado) {
+            return;
+        }
+        long ahora = System.nanoTime();
+        for (Transaccion t : event.transacciones()) {
+            // Si la cola está llena no se bloquea la operación: el barrido la auditará.
+            if (!cola.offer(new Pendiente(registro(t), ahora))) {
+                descartadas.increment();
+            }
+        }
+    }
+
+    /**
+     * Audita las transacciones confirmadas sin auditar desde la última marca, en tramos de id. Solo se consideran
+     * las anteriores al periodo de gracia: las más recientes pueden estar todavía en la cola o sin confirmar, y la
+     * marca se detiene en la primera de ellas. Devuelve el número de transacciones recuperadas.
+     */
+    public synchronized int barrer() {
+        Optional<long[]> rango = auditoriaRepository.rangoIdsTransaccion();
+        if (rango.isEmpty()) {
+            return 0;
+        }
+        // La primera vez se revisa la tabla caliente completa: lo que se perdió antes de un reinicio.
+        if (marca < rango.get()[0] - 1) {
+            marca = rango.get()[0] - 1;
+        }
+        long maxId = rango.get()[1];
+        LocalDateTime limite = LocalDateTime.now().minusSeconds(graciaSegundos);
+        int total = 0;
+        while (marca < maxId) {
+            long hasta = Math.min(marca + tamañoBarrido, maxId);
+            total += auditoriaRepository.recuperarSinAuditar(marca, hasta, limite, LocalDateTime.now(), usuarioBaseDatos);
+            Optional<Long> reciente = auditoriaRepository.primeraPosteriorA(marca, hasta, limite);
+            if (reciente.isPresent()) {
+                marca = reciente.get() - 1;
+                break;
+            }
+            marca = hasta;
+        }
+        if (total > 0) {
+            recuperadas.increment(total);
+            log.warn("Recuperadas {} transacciones sin auditar.", total);
+        }
+        return total;
+    }
+
+    private void bucleEscritura() {
+        List<Pendiente> lote = new ArrayList<>(tamañoLote);
+        long proximoBarrido = System.nanoTime();
+        while (activo) {
+            try {
+                Pendiente primero = cola.poll(Math.min(intervaloBarridoMs, 1000), TimeUnit.MILLISECONDS);
+                if (primero != null) {
+                    lote.add(primero);
+                    cola.drainTo(lote, tamañoLote - 1);
+                    escribir(lote);
+                }
+                if (System.nanoTime() - proximoBarrido >= 0) {
+                    barrer();
+                    proximoBarrido = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(intervaloBarridoMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Error en el barrido de auditoría de transacciones: {}", e.getMessage(), e);
+            }
+        }
+        // Al parar se vacía lo que quede; lo que no llegue a escribirse lo recupera el barrido del siguiente arranque.
+        while (cola.drainTo(lote, tamañoLote) > 0) {
+            escribir(lote);
+        }
+    }
+
+    private void escribir(List<Pendiente> lote) {
+        try {
+            List<RegistroAuditoria> registros = lote.stream().map(Pendiente::registro).toList();
+            auditoriaRepository.insertarLote(registros, LocalDateTime.now(), usuarioBaseDatos);
+            escritas.increment(lote.size());
+            retraso.record(Duration.ofNanos(System.nanoTime() - lote.get(0).encoladoNanos()));
+        } catch (Exception e) {
+            fallidas.increment(lote.size());
+            log.error("Error al escribir {} registros de auditoría; se recuperarán en el barrido: {}", lote.size(), e.getMessage());
+        } finally {
+            lote.clear();
+        }
+    }
+
+    private double antiguedadSegundos() {
+        Pendiente primero = cola.peek();
+        return primero == null ? 0 : (System.nanoTime() - primero.encoladoNanos()) / 1e9;
+    }
+
+    private static RegistroAuditoria registro(Transaccion t) {
+        return new RegistroAuditoria(
+                t.getIdTransaccion(),
+                t.getUsuario().getId(),
+                t.getCartera().getIdCartera(),
+                t.getCriptomoneda().getId_Criptomoneda(),
+                t.getTipoTransaccion().name(),
+                t.getCantidadCripto(),
+                t.getPrecioPorUnidadeEUR(),
+                t.getValorTotalEUR(),
+                t.getFechaTransaccion());
+    }
+
+    private static Counter contador(MeterRegistry meterRegistry, String resultado) {
+        return Counter.builder("auditoria.transacciones.registros")
+                .description("Registros de auditoría de transacciones, por resultado")
+                .tag("resultado", resultado)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.cryptoacademy.service;
+
+/**
+ * Últimas {@code capacidad} velas de una criptomoneda en un intervalo, en un buffer circular de arrays primitivos:
+ * sin objetos por vela ni boxing. Lo escribe el refresco de precios y lo leen las peticiones de gráfico, de ahí los
+ * métodos sincronizados (secciones cortas, sin E/S).
+ */
+final class BufferVelas {
+
+    private final long[] inicios;
+    private final double[] apertura;
+    private final double[] maximo;
+    private final double[] minimo;
+    private final double[] cierre;
+    // Posición física de la vela más antigua y número de velas guardadas.
+    private int primero;
+    private int tamaño;
+
+    BufferVelas(int capacidad) {
+        inicios = new long[capacidad];
+        apertura = new double[capacidad];
+        maximo = new double[capacidad];
+        minimo = new double[capacidad];
+        cierre = new double[capacidad];
+    }
+
+    /**
+     * Aplica un precio a la vela que empieza en {@code inicio}: la actualiza si es la última o abre una nueva si es
+     * posterior. Los precios de velas anteriores a la última se ignoran.
+     */
+    synchronized void registrar(long inicio, double precio) {
+        if (tamaño > 0) {
+            int ultima = fisica(tamaño - 1);
+            if (inicios[ultima] == inicio) {
+                maximo[ultima] = Math.max(maximo[ultima], precio);
+                minimo[ultima] = Math.min(minimo[ultima], precio);
+                cierre[ultima] = precio;
+                return;
+            }
+            if (inicio < inicios[ultima]) {
+                return;
+            }
+        }
+        añadirAlFinal(inicio, precio, precio, precio, precio);
+    }
+
+    /**
+     * Añade una vela completa posterior a la última (carga desde BD en orden cronológico).
+     */
+    synchronized void añadir(long inicio, double a, double max, double min, double c) {
+        if (tamaño > 0 && inicio <= inicios[fisica(tamaño - 1)]) {
+            return;
+        }
+        añadirAlFinal(inicio, a, max, min, c);
+    }
+
+    /**
+     * Inicio de la vela más antigua guardada, o {@link Long#MAX_VALUE} si no hay ninguna.
+     */
+    synchronized long inicioMasAntiguo() {
+        return tamaño == 0 ? Long.MAX_VALUE : inicios[primero];
+    }
+
+    /**
+     * Copia de las velas con inicio igual o posterior a {@code desdeMs}.
+     */
+    synchronized SerieVelas desde(long desdeMs) {
+        // Búsqueda binaria de la primera vela >= desdeMs sobre los índices lógicos.
+        int bajo = 0;
+        int alto = tamaño;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (inicios[fisica(medio)] < desdeMs) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        int cantidad = tamaño - bajo;
+        if (cantidad == 0) {
+            return SerieVelas.vacia();
+        }
+        long[] i = new long[cantidad];
+        double[] a = new double[cantidad];
+        double[] max = new double[cantidad];
+        double[] min = new double[cantidad];
+        double[] c = new double[cantidad];
+        int capacidad = inicios.length;
+        int origen = fisica(bajo);
+        // Como mucho dos tramos contiguos: hasta el final del array y desde el principio.
+        int primerTramo = Math.min(cantidad, capacidad - origen);
+        copiar(origen, 0, primerTramo, i, a, max, min, c);
+        copiar(0, primerTramo, cantidad - primerTramo, i, a, max, min, c);
+        return new SerieVelas(i, a, max, min, c, cantidad);
+    }
+
+    private void copiar(int origen, int destino, int longitud, long[] i, double[] a, double[] max, double[] min, double[] c) {
+        if (longitud <= 0) {
+            return;
+        }
+        System.arraycopy(inicios, origen, i, destino, longitud);
+        System.arraycopy(apertura, origen, a, destino, longitud);
+        System.arraycopy(maximo, origen, max, destino, longitud);
+        System.arraycopy(minimo, origen, min, destino, longitud);
+        System.arraycopy(cierre, origen, c, destino, longitud);
+    }
+
+    private void añadirAlFinal(long inicio, double a, double max, double min, double c) {
+        int posicion;
+        if (tamaño < inicios.length) {
+            posicion = fisica(tamaño);
+            tamaño++;
+        } else {
+            // Lleno: la nueva vela ocupa el hueco de la más antigua.
+            posicion = primero;
+            primero = (primero + 1) % inicios.length;
+        }
+        inicios[posicion] = inicio;
+        apertura[posicion] = a;
+        maximo[posicion] = max;
+        minimo[posicion] = min;
+        cierre[posicion] = c;
+    }
+
+    private int fisica(int indiceLogico) {
+        return (primero + indiceLogico) % inicios.length;
+    }
+}
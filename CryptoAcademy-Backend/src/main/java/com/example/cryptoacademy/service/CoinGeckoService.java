@@ -2,8 +2,11 @@ package com.example.cryptoacademy.service;
 
 import com.example.cryptoacademy.dto.CoinGeckoChartDataDTO;
 import com.example.cryptoacademy.dto.MarketCoinDTO;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.StreamReadFeature;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -26,15 +29,29 @@ public class CoinGeckoService {
     private final ObjectMapper objectMapper;
     private final String apiKey;
     private final String apiUrlBase;
+    private final ProteccionCoinGecko proteccion;
+    // Lectores inmutables y reutilizables: el tipo se resuelve una vez y no en cada llamada.
+    private final ObjectReader lectorMercados;
+    private final ObjectReader lectorGrafico;
+
+    @FunctionalInterface
+    private interface LectorRespuesta<T> {
+        T leer(JsonParser parser) throws IOException;
+    }
 
     public CoinGeckoService(OkHttpClient okHttpClient,
                             ObjectMapper objectMapper,
+                            ProteccionCoinGecko proteccion,
                             @Value("${coingecko.api.key}") String apiKey,
                             @Value("${coingecko.api.url}") String apiUrlBase) {
         this.okHttpClient = okHttpClient;
         this.objectMapper = objectMapper;
+        this.proteccion = proteccion;
         this.apiKey = apiKey;
         this.apiUrlBase = apiUrlBase;
+        this.lectorMercados = objectMapper.readerFor(new TypeReference<List<MarketCoinDTO>>() {
+        });
+        this.lectorGrafico = objectMapper.readerFor(CoinGeckoChartDataDTO.class);
     }
 
     private Request buildGetRequest(String url) {
@@ -46,36 +63,68 @@ public class CoinGeckoService {
                 .build();
     }
 
-    private <T> T handleResponse(Response response, TypeReference<T> typeReference, String context) throws IOException {
-        String responseBodyString = "";
+    /**
+     * Toda llamada pasa por {@link ProteccionCoinGecko}: espera turno en el presupuesto (o falla al instante si el
+     * circuito está abierto) y el resultado alimenta el circuito.
+     */
+    private Response ejecutar(Request request, String context) throws IOException {
+        proteccion.adquirir(context);
+        Response response;
+        try {
+            response = this.okHttpClient.newCall(request).execute();
+        } catch (IOException e) {
+            proteccion.registrarFalloDeRed();
+            throw e;
+        }
+        proteccion.registrarRespuesta(response.code(), response.header("Retry-After"));
+        return response;
+    }
+
+    /**
+     * Decodifica el cuerpo directamente del flujo de bytes de la respuesta, sin pasarlo antes a un String.
+     * Un cuerpo vacío con 200 devuelve {@code siVacia}.
+     */
+    private <T> T handleResponse(Response response, LectorRespuesta<T> lector, T siVacia, String context) throws IOException {
         try (ResponseBody body = response.body()) {
-            if (body != null) {
-                responseBodyString = body.string();
+            if (!response.isSuccessful()) {
+                log.error("Error en llamada a CoinGecko para {}. Status: {}, Body: {}", context, response.code(), cuerpoDeError(body, context));
+                throw new IOException("Respuesta no exitosa (" + response.code() + ") de CoinGecko para " + context);
+            }
+            if (body == null) {
+                return siVacia;
+            }
+            try (JsonParser parser = objectMapper.getFactory().createParser(body.byteStream())) {
+                // Los decimales se convierten desde el buffer del parser, sin un String por número.
+                parser.enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER.mappedFeature());
+                if (parser.nextToken() == null) {
+                    return siVacia;
+                }
+                return lector.leer(parser);
+            } catch (IOException e) {
+                log.error("Error al leer cuerpo de respuesta para {}. Código: {}", context, response.code(), e);
+                throw e;
             }
-        } catch (IOException e) {
-            log.error("Error al leer cuerpo de respuesta para {}. Código: {}", context, response.code(), e);
-            if (response.isSuccessful()) throw e;
         }
+    }
 
-        if (!response.isSuccessful()) {
-            log.error("Error en llamada a CoinGecko para {}. Status: {}, Body: {}", context, response.code(), responseBodyString);
-            throw new IOException("Respuesta no exitosa (" + response.code() + ") de CoinGecko para " + context);
+    // Solo las respuestas de error (pequeñas) se leen completas, para el log.
+    private String cuerpoDeError(ResponseBody body, String context) {
+        if (body == null) {
+            return "";
         }
-        if (responseBodyString.isEmpty() && response.code() == 200) {
-            if (typeReference.getType().equals(new TypeReference<List<?>>() {
-            }.getType())) {
-                return objectMapper.readValue("[]", typeReference);
-            }
+        try {
+            return body.string();
+        } catch (IOException e) {
+            log.warn("No se ha podido leer el cuerpo de error para {}: {}", context, e.getMessage());
+            return "";
         }
-        return objectMapper.readValue(responseBodyString, typeReference);
     }
 
     public List<MarketCoinDTO> getTopMarketData(int limit) throws IOException {
         String url = String.format("%s/coins/markets?vs_currency=eur&order=market_cap_desc&per_page=%d&page=1&sparkline=false", apiUrlBase, limit);
         Request request = buildGetRequest(url);
-        try (Response response = this.okHttpClient.newCall(request).execute()) {
-            return handleResponse(response, new TypeReference<>() {
-            }, "top market data");
+        try (Response response = ejecutar(request, "top market data")) {
+            return handleResponse(response, lectorMercados::readValue, List.of(), "top market data");
         }
     }
 
@@ -91,9 +140,8 @@ public class CoinGeckoService {
         String url = String.format("%s/coins/markets?vs_currency=eur&ids=%s&order=market_cap_desc&per_page=%d&page=1&sparkline=false", apiUrlBase, joinedIds, perPage);
         // log.info("Obteniendo datos de mercado para {} IDs de CoinGecko: {}", ids.size(), url);
         Request request = buildGetRequest(url);
-        try (Response response = this.okHttpClient.newCall(request).execute()) {
-            return handleResponse(response, new TypeReference<>() {
-            }, "market data for specific IDs");
+        try (Response response = ejecutar(request, "market data for specific IDs")) {
+            return handleResponse(response, lectorMercados::readValue, List.of(), "market data for specific IDs");
         }
     }
 
@@ -103,12 +151,11 @@ public class CoinGeckoService {
         }
         String url = String.format("%s/coins/markets?vs_currency=eur&ids=%s&order=market_cap_desc&per_page=1&page=1&sparkline=false", apiUrlBase, id);
         Request request = buildGetRequest(url);
-        try (Response response = this.okHttpClient.newCall(request).execute()) {
+        try (Response response = ejecutar(request, "market data for ID " + id)) {
             if (response.code() == 404) {
                 return null;
             }
-            List<MarketCoinDTO> coinList = handleResponse(response, new TypeReference<>() {
-            }, "market data for ID " + id);
+            List<MarketCoinDTO> coinList = handleResponse(response, lectorMercados::readValue, List.of(), "market data for ID " + id);
 
             if (coinList == null || coinList.isEmpty()) {
                 return null;
@@ -128,9 +175,26 @@ public class CoinGeckoService {
 
         Request request = buildGetRequest(url);
 
-        try (Response response = this.okHttpClient.newCall(request).execute()) {
-            return handleResponse(response, new TypeReference<>() {
-            }, "datos de gráfico para " + coinId);
+        try (Response response = ejecutar(request, "datos de gráfico para " + coinId)) {
+            return handleResponse(response, lectorGrafico::readValue, null, "datos de gráfico para " + coinId);
+        }
+    }
+
+    /**
+     * Puntos de precio entre dos instantes (segundos Unix), en arrays primitivos. CoinGecko elige la granularidad
+     * según la amplitud del rango.
+     */
+    public SeriePrecios getCoinMarketChartRange(String coinId, String vsCurrency, long desdeSegundos, long hastaSegundos) throws IOException {
+        if (coinId == null || coinId.trim().isEmpty() || vsCurrency == null || vsCurrency.trim().isEmpty()) {
+            throw new IllegalArgumentException("coinId y vsCurrency no pueden ser vacíos.");
+        }
+        String url = String.format("%s/coins/%s/market_chart/range?vs_currency=%s&from=%d&to=%d",
+                apiUrlBase, coinId, vsCurrency, desdeSegundos, hastaSegundos);
+
+        Request request = buildGetRequest(url);
+
+        try (Response response = ejecutar(request, "rango de gráfico para " + coinId)) {
+            return handleResponse(response, SeriePrecios::leer, SeriePrecios.vacia(), "rango de gráfico para " + coinId);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,174 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.persistance.model.CriptosAlmacenadas;
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import com.example.cryptoacademy.persistance.repository.CosteBaseJdbcRepository;
+import com.example.cryptoacademy.persistance.repository.CosteBaseJdbcRepository.CosteBaseFila;
+import com.example.cryptoacademy.persistance.repository.CosteBaseJdbcRepository.TenenciaFila;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recálculo inicial del coste base y del PyG realizado de las tenencias que existían antes de llevarlos en
+ * {@code criptos_almacenadas}: reproduce {@code transacciones} en orden cronológico con la misma regla de coste
+ * medio que las operaciones. Se activa con {@code portfolio.coste-base.backfill.enabled} para un arranque y puede
+ * repetirse sin efectos, porque escribe valores absolutos.
+ * Las carteras se reparten en tramos de id procesados en paralelo; cada tramo es una transacción que bloquea sus
+ * tenencias, recorre sus transacciones con un cursor y actualiza por lotes.
+ */
+@Service
+public class CosteBaseBackfillService {
+
+    private static final Logger log = LoggerFactory.getLogger(CosteBaseBackfillService.class);
+
+    private final CosteBaseJdbcRepository costeBaseRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${portfolio.coste-base.backfill.enabled:false}")
+    private boolean habilitado;
+
+    @Value("${portfolio.coste-base.backfill.paralelismo:4}")
+    private int paralelismo;
+
+    @Value("${portfolio.coste-base.backfill.tamano-tramo:500}")
+    private int tamañoTramo;
+
+    public CosteBaseBackfillService(CosteBaseJdbcRepository costeBaseRepository,
+                                    PlatformTransactionManager transactionManager) {
+        this.costeBaseRepository = costeBaseRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    private static final class Posicion {
+        BigDecimal cantidad = BigDecimal.ZERO;
+        BigDecimal coste = BigDecimal.ZERO;
+        BigDecimal pygRealizado = BigDecimal.ZERO;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        if (!habilitado) {
+            return;
+        }
+        Thread hilo = new Thread(() -> {
+            try {
+                recalcular();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Error en el recálculo de coste base: {}", e.getMessage(), e);
+            }
+        }, "backfill-coste-base");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Recalcula todas las carteras. Devuelve el número de tenencias actualizadas.
+     */
+    public int recalcular() throws InterruptedException {
+        long inicio = System.currentTimeMillis();
+        long[] rango = costeBaseRepository.rangoIdsCartera().orElse(null);
+        if (rango == null) {
+            return 0;
+        }
+
+        List<Callable<Integer>> tramos = new ArrayList<>();
+        for (long desde = rango[0]; desde <= rango[1]; desde += tamañoTramo) {
+            long desdeId = desde;
+            long hastaId = Math.min(rango[1], desde + tamañoTramo - 1);
+            tramos.add(() -> transactionTemplate.execute(estado -> recalcularTramo(desdeId, hastaId)));
+        }
+
+        AtomicInteger numeroHilo = new AtomicInteger();
+        ExecutorService ejecutor = Executors.newFixedThreadPool(Math.max(1, paralelismo), r -> {
+            Thread hilo = new Thread(r, "backfill-coste-base-" + numeroHilo.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        int actualizadas = 0;
+        int fallidos = 0;
+        try {
+            for (Future<Integer> resultado : ejecutor.invokeAll(tramos)) {
+                try {
+                    actualizadas += resultado.get();
+                } catch (ExecutionException e) {
+                    fallidos++;
+                    log.error("Fallo al recalcular el coste base de un tramo de carteras: {}", e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } finally {
+            ejecutor.shutdownNow();
+        }
+        log.info("Recálculo de coste base: {} tenencias en {} tramos ({} fallidos) en {} ms.",
+                actualizadas, tramos.size(), fallidos, System.currentTimeMillis() - inicio);
+        return actualizadas;
+    }
+
+    private int recalcularTramo(long desdeId, long hastaId) {
+        List<TenenciaFila> tenencias = costeBaseRepository.bloquearTenencias(desdeId, hastaId);
+        if (tenencias.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Posicion> posiciones = new HashMap<>();
+        costeBaseRepository.recorrerTransacciones(desdeId, hastaId, rs -> {
+            Posicion posicion = posiciones.computeIfAbsent(clave(rs.getLong(1), rs.getString(2)), k -> new Posicion());
+            BigDecimal cantidad = rs.getBigDecimal(4);
+            BigDecimal importe = rs.getBigDecimal(5);
+            if (TipoTransaccion.COMPRA.name().equals(rs.getString(3))) {
+                posicion.cantidad = posicion.cantidad.add(cantidad);
+                posicion.coste = posicion.coste.add(importe);
+            } else {
+                BigDecimal costeVendido = CriptosAlmacenadas.costeProporcional(posicion.coste, posicion.cantidad, cantidad);
+                posicion.cantidad = posicion.cantidad.subtract(cantidad);
+                posicion.coste = posicion.coste.subtract(costeVendido);
+                posicion.pygRealizado = posicion.pygRealizado.add(importe.subtract(costeVendido));
+            }
+        });
+
+        List<CosteBaseFila> filas = new ArrayList<>(tenencias.size());
+        int descuadradas = 0;
+        for (TenenciaFila tenencia : tenencias) {
+            Posicion posicion = posiciones.getOrDefault(clave(tenencia.idCartera(), tenencia.idCriptomoneda()), new Posicion());
+            BigDecimal coste = posicion.coste;
+            // Tenencias creadas fuera de las operaciones (datos iniciales): se aplica el coste medio reproducido
+            // a la cantidad real, o cero si no hay compras de las que sacarlo.
+            if (posicion.cantidad.compareTo(tenencia.cantidad()) != 0) {
+                descuadradas++;
+                coste = posicion.cantidad.signum() > 0
+                        ? posicion.coste.multiply(tenencia.cantidad()).divide(posicion.cantidad, PuntoFijo.ESCALA_EUR, RoundingMode.HALF_UP)
+                        : BigDecimal.ZERO;
+            }
+            filas.add(new CosteBaseFila(tenencia.idCartera(), tenencia.idCriptomoneda(), coste, posicion.pygRealizado));
+        }
+        if (descuadradas > 0) {
+            log.warn("Carteras {}-{}: {} tenencias no cuadran con su historial de transacciones.", desdeId, hastaId, descuadradas);
+        }
+        costeBaseRepository.actualizarCostesBase(filas);
+        return filas.size();
+    }
+
+    private static String clave(long idCartera, String idCriptomoneda) {
+        return idCartera + "|" + idCriptomoneda;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.cryptoacademy.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Getter
+@AllArgsConstructor
+public class Cotizacion {
+
+    private final String idCotizacion;
+    private final Integer idUsuario;
+    private final String idCriptomoneda;
+    private final String nombreCriptomoneda;
+    private final String simboloCriptomoneda;
+    private final BigDecimal precioPorUnidadEUR;
+    private final Instant fechaExpiracion;
+
+    // Una cotización se usa para una sola orden: se reserva dentro de su transacción y se libera si esta no confirma.
+    @Getter(lombok.AccessLevel.NONE)
+    private final AtomicBoolean consumida = new AtomicBoolean();
+
+    public boolean estaVigente(Instant ahora) {
+        return ahora.isBefore(fechaExpiracion);
+    }
+
+    public boolean perteneceA(Integer idUsuario) {
+        return this.idUsuario != null && this.idUsuario.equals(idUsuario);
+    }
+
+    public boolean estaConsumida() {
+        return consumida.get();
+    }
+
+    /**
+     * Reserva la cotización para una orden. Devuelve {@code false} si otra orden ya la ha usado o la tiene reservada.
+     */
+    boolean consumir() {
+        return consumida.compareAndSet(false, true);
+    }
+
+    void liberar() {
+        consumida.set(false);
+    }
+}
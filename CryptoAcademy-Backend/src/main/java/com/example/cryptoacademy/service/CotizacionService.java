@@ -0,0 +1,92 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.exception.CotizacionExpiradaException;
+import com.example.cryptoacademy.exception.RecursoNoEncontradoException;
+import com.example.cryptoacademy.persistance.model.Criptomoneda;
+import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+@Service
+public class CotizacionService {
+
+    private static final int MONETARY_SCALE = 4;
+
+    private final CriptomonedaRepository criptomonedaRepository;
+
+    // Las cotizaciones viven solo en memoria: las órdenes que las usan no vuelven a leer la tabla criptomonedas.
+    // Caducan con su validez y el tamaño está acotado para que ráfagas de peticiones no agoten el heap.
+    private final Cache<String, Cotizacion> cotizaciones;
+
+    private final long validezSegundos;
+
+    public CotizacionService(CriptomonedaRepository criptomonedaRepository,
+                             @Value("${trading.cotizacion.validez-segundos:15}") long validezSegundos,
+                             @Value("${trading.cotizacion.max-entradas:100000}") long maxEntradas) {
+        this.criptomonedaRepository = criptomonedaRepository;
+        this.validezSegundos = validezSegundos;
+        this.cotizaciones = Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfterWrite(Duration.ofSeconds(validezSegundos))
+                .build();
+    }
+
+    @Transactional(readOnly = true)
+    public Cotizacion crearCotizacion(String idCriptomoneda, Integer idUsuario) throws RecursoNoEncontradoException {
+        Criptomoneda criptomoneda = criptomonedaRepository.findById(idCriptomoneda)
+                .orElseThrow(() -> new RecursoNoEncontradoException("Criptomoneda no encontrada con ID: " + idCriptomoneda + ". No se puede cotizar."));
+
+        BigDecimal precio = criptomoneda.getPrecio_actual();
+        if (precio == null || precio.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalStateException("El precio para la criptomoneda " + criptomoneda.getNombre() + " no está disponible o es inválido. No se puede cotizar.");
+        }
+
+        Cotizacion cotizacion = new Cotizacion(
+                UUID.randomUUID().toString(),
+                idUsuario,
+                criptomoneda.getId_Criptomoneda(),
+                criptomoneda.getNombre(),
+                criptomoneda.getSimbolo(),
+                precio.setScale(MONETARY_SCALE, RoundingMode.HALF_UP),
+                Instant.now().plusSeconds(validezSegundos)
+        );
+        cotizaciones.put(cotizacion.getIdCotizacion(), cotizacion);
+        return cotizacion;
+    }
+
+    /**
+     * Cotización vigente y sin usar de {@code idUsuario}. La de otro usuario se trata como inexistente. La orden que
+     * la use la marca como consumida dentro de su propia transacción ({@link TradingServiceImpl}).
+     */
+    public Cotizacion obtenerCotizacionVigente(String idCotizacion, String idCriptomoneda, Integer idUsuario)
+            throws RecursoNoEncontradoException, CotizacionExpiradaException, IllegalArgumentException {
+        Cotizacion cotizacion = cotizaciones.getIfPresent(idCotizacion);
+        if (cotizacion == null || !cotizacion.perteneceA(idUsuario)) {
+            throw new RecursoNoEncontradoException("Cotización no encontrada con ID: " + idCotizacion);
+        }
+        if (idCriptomoneda != null && !idCriptomoneda.equals(cotizacion.getIdCriptomoneda())) {
+            throw new IllegalArgumentException("La cotización " + idCotizacion + " no corresponde a la criptomoneda " + idCriptomoneda + ".");
+        }
+        if (!cotizacion.estaVigente(Instant.now())) {
+            cotizaciones.invalidate(idCotizacion);
+            throw new CotizacionExpiradaException("La cotización " + idCotizacion + " ha expirado. Solicite una nueva.");
+        }
+        if (cotizacion.estaConsumida()) {
+            throw new CotizacionExpiradaException("La cotización " + idCotizacion + " ya se ha utilizado. Solicite una nueva.");
+        }
+        return cotizacion;
+    }
+
+    public long getValidezSegundos() {
+        return validezSegundos;
+    }
+}
@@ -1,144 +1,191 @@
 package com.example.cryptoacademy.service;
 
 import com.example.cryptoacademy.dto.MarketCoinDTO;
-import com.example.cryptoacademy.persistance.model.Criptomoneda;
-import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import com.example.cryptoacademy.exception.CoinGeckoNoDisponibleException;
+import com.example.cryptoacademy.persistance.repository.RefrescoCriptomonedasJdbcRepository;
+import com.example.cryptoacademy.service.TablaPreciosCriptomonedas.CambiosRefresco;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeParseException;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Refresco periódico de los datos de mercado de todas las criptomonedas guardadas.
+ * <ul>
+ *     <li>Los ids se reparten en lotes del tamaño de página de {@code /coins/markets} (250 como máximo), que se
+ *     piden en paralelo sin pasar del presupuesto de llamadas por minuto configurado.</li>
+ *     <li>Cada lote se compara con {@link TablaPreciosCriptomonedas} (últimos valores escritos, en memoria) y solo
+ *     las criptos que han cambiado se escriben, con un único {@code UPDATE} por lotes JDBC en su propia transacción.
+ *     Un lote que falla (red, CoinGecko o BD) se registra y se omite sin deshacer los demás ni tocar la tabla, y se
+ *     vuelve a intentar en el siguiente ciclo.</li>
+ *     <li>La tabla se lee de BD en el primer ciclo, cada {@code coingecko.update.recarga-minutos} y tras
+ *     {@link #marcarRecarga()}, para recoger altas y cambios hechos fuera del refresco.</li>
+ *     <li>Al terminar se publica un único {@link PreciosActualizadosEvent} con los precios de todos los lotes aplicados.</li>
+ * </ul>
+ */
 @Service
 public class CriptomonedaUpdateService {
 
     private static final Logger log = LoggerFactory.getLogger(CriptomonedaUpdateService.class);
 
-    private final CoinGeckoService coinGeckoService;
-    private final CriptomonedaRepository criptomonedaRepository;
+    // per_page máximo de /coins/markets.
+    private static final int TAMAÑO_MAXIMO_LOTE = 250;
 
-    @Value("${coingecko.update.enabled:true}")
-    private boolean updateEnabled;
+    private final CoinGeckoService coinGeckoService;
+    private final RefrescoCriptomonedasJdbcRepository refrescoRepository;
+    private final TablaPreciosCriptomonedas tablaPrecios = new TablaPreciosCriptomonedas();
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService ejecutorLotes;
+    private final PresupuestoLlamadas presupuesto;
+    private final int tamañoLote;
+    private final boolean updateEnabled;
+    private final long intervaloRecargaNanos;
+    private volatile boolean recargaPendiente = true;
+    private long ultimaCargaNanos;
 
     public CriptomonedaUpdateService(CoinGeckoService coinGeckoService,
-                                     CriptomonedaRepository criptomonedaRepository) {
+                                     RefrescoCriptomonedasJdbcRepository refrescoRepository,
+                                     ApplicationEventPublisher eventPublisher,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${coingecko.update.enabled:true}") boolean updateEnabled,
+                                     @Value("${coingecko.update.tamano-lote:250}") int tamañoLote,
+                                     @Value("${coingecko.update.paralelismo:2}") int paralelismo,
+                                     @Value("${coingecko.update.llamadas-por-minuto:20}") int llamadasPorMinuto,
+                                     @Value("${coingecko.update.recarga-minutos:60}") long minutosRecarga) {
         this.coinGeckoService = coinGeckoService;
-        this.criptomonedaRepository = criptomonedaRepository;
+        this.refrescoRepository = refrescoRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.updateEnabled = updateEnabled;
+        this.tamañoLote = Math.max(1, Math.min(tamañoLote, TAMAÑO_MAXIMO_LOTE));
+        this.presupuesto = new PresupuestoLlamadas(llamadasPorMinuto);
+        this.intervaloRecargaNanos = TimeUnit.MINUTES.toNanos(Math.max(1, minutosRecarga));
+        AtomicInteger numeroHilo = new AtomicInteger();
+        this.ejecutorLotes = Executors.newFixedThreadPool(Math.max(1, paralelismo), r -> {
+            Thread hilo = new Thread(r, "refresco-criptomonedas-" + numeroHilo.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /**
+     * Fuerza a releer la tabla de precios en el siguiente ciclo (p. ej. tras dar de alta una criptomoneda).
+     */
+    public void marcarRecarga() {
+        recargaPendiente = true;
+    }
+
+    @PreDestroy
+    public void detenerEjecutor() {
+        ejecutorLotes.shutdownNow();
     }
 
     @Scheduled(fixedRateString = "${coingecko.update.interval.ms:60000}", initialDelayString = "${coingecko.update.initial-delay.ms:60000}")
-    @Transactional
     public void actualizarDatosCriptomonedas() {
         if (!updateEnabled) {
             return;
         }
 
-        List<Criptomoneda> monedasLocales = criptomonedaRepository.findAll();
-        if (monedasLocales.isEmpty()) {
+        recargarTablaSiProcede();
+        List<String> idsParaActualizar = tablaPrecios.ids();
+        if (idsParaActualizar.isEmpty()) {
             return;
         }
 
-        List<String> idsParaActualizar = monedasLocales.stream()
-                .map(Criptomoneda::getId_Criptomoneda)
-                .collect(Collectors.toList());
+        List<Callable<Boolean>> lotes = new ArrayList<>();
+        Map<String, BigDecimal> preciosRefrescados = new ConcurrentHashMap<>();
+        for (int desde = 0; desde < idsParaActualizar.size(); desde += tamañoLote) {
+            List<String> lote = idsParaActualizar.subList(desde, Math.min(desde + tamañoLote, idsParaActualizar.size()));
+            lotes.add(() -> actualizarLote(lote, preciosRefrescados));
+        }
 
+        int fallidos = 0;
         try {
-            List<MarketCoinDTO> datosExternos = coinGeckoService.getMarketDataForIds(idsParaActualizar);
-
-            if (datosExternos == null || datosExternos.isEmpty()) {
-                return;
+            for (Future<Boolean> resultado : ejecutorLotes.invokeAll(lotes)) {
+                if (!resultado.get()) {
+                    fallidos++;
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Refresco de criptomonedas interrumpido; se publican los precios de los lotes ya aplicados.");
+        } catch (ExecutionException e) {
+            log.error("Error inesperado durante actualización de criptomonedas: {}", e.getCause().getMessage(), e.getCause());
+        }
+        if (fallidos > 0) {
+            log.warn("Refresco de criptomonedas: {} de {} lotes no se han podido actualizar.", fallidos, lotes.size());
+        }
 
-            Map<String, Criptomoneda> mapaMonedasLocales = monedasLocales.stream()
-                    .collect(Collectors.toMap(Criptomoneda::getId_Criptomoneda, Function.identity()));
-
-            List<Criptomoneda> monedasParaGuardar = new ArrayList<>();
-            for (MarketCoinDTO dto : datosExternos) {
-                if (dto.getId() == null) {
-                    continue;
-                }
+        if (!preciosRefrescados.isEmpty()) {
+            eventPublisher.publishEvent(new PreciosActualizadosEvent(new HashMap<>(preciosRefrescados)));
+        }
+    }
 
-                Criptomoneda entidadLocal = mapaMonedasLocales.get(dto.getId());
-                if (entidadLocal != null) {
-                    boolean fueActualizada = mapDtoToExistingEntity(dto, entidadLocal);
-                    if (fueActualizada) {
-                        monedasParaGuardar.add(entidadLocal);
-                    }
-                }
+    /**
+     * Pide y aplica un lote. Devuelve {@code false} si ha fallado; el fallo no se propaga a los demás lotes.
+     */
+    private boolean actualizarLote(List<String> ids, Map<String, BigDecimal> preciosRefrescados) {
+        try {
+            presupuesto.esperarTurno();
+            List<MarketCoinDTO> datosExternos = coinGeckoService.getMarketDataForIds(ids);
+            if (datosExternos == null || datosExternos.isEmpty()) {
+                return true;
             }
-
-            if (!monedasParaGuardar.isEmpty()) {
-                criptomonedaRepository.saveAll(monedasParaGuardar);
+            CambiosRefresco cambios = tablaPrecios.calcularCambios(datosExternos);
+            if (!cambios.precios().isEmpty() || !cambios.descripciones().isEmpty()) {
+                transactionTemplate.executeWithoutResult(estado -> {
+                    refrescoRepository.actualizarPrecios(cambios.precios());
+                    refrescoRepository.actualizarDescripciones(cambios.descripciones());
+                });
+                tablaPrecios.confirmar(cambios);
             }
-
+            preciosRefrescados.putAll(cambios.preciosRefrescados());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (CoinGeckoNoDisponibleException e) {
+            // Circuito abierto o sin presupuesto: los datos actuales se mantienen hasta el siguiente ciclo.
+            log.warn("Lote de {} criptomonedas omitido: {}", ids.size(), e.getMessage());
+            return false;
         } catch (IOException e) {
-            log.error("IOException durante actualización de criptomonedas desde CoinGecko: {}", e.getMessage(), e);
+            log.error("IOException durante actualización de criptomonedas desde CoinGecko ({} ids desde {}): {}", ids.size(), ids.get(0), e.getMessage(), e);
+            return false;
         } catch (Exception e) {
-            log.error("Error inesperado durante actualización de criptomonedas: {}", e.getMessage(), e);
+            log.error("Error inesperado durante actualización de criptomonedas ({} ids desde {}): {}", ids.size(), ids.get(0), e.getMessage(), e);
+            return false;
         }
     }
 
-    private boolean mapDtoToExistingEntity(MarketCoinDTO dto, Criptomoneda entidad) {
-        boolean actualizada = false;
-
-        if (dto.getName() != null && !dto.getName().equals(entidad.getNombre())) {
-            entidad.setNombre(dto.getName());
-            actualizada = true;
-        }
-        if (dto.getSymbol() != null && !dto.getSymbol().equalsIgnoreCase(entidad.getSimbolo())) {
-            entidad.setSimbolo(dto.getSymbol().toLowerCase());
-            actualizada = true;
-        }
-        if (dto.getCurrentPrice() != null && (entidad.getPrecio_actual() == null || dto.getCurrentPrice().compareTo(entidad.getPrecio_actual()) != 0)) {
-            entidad.setPrecio_actual(dto.getCurrentPrice());
-            actualizada = true;
-        }
-        if (dto.getImage() != null && !dto.getImage().equals(entidad.getImagen())) {
-            entidad.setImagen(dto.getImage());
-            actualizada = true;
-        }
-        if (dto.getMarketCap() != null && (entidad.getCapitalizacion() == null || dto.getMarketCap().compareTo(entidad.getCapitalizacion()) != 0)) {
-            entidad.setCapitalizacion(dto.getMarketCap());
-            actualizada = true;
-        }
-        if (dto.getPriceChangePercentage24h() != null && !Objects.equals(dto.getPriceChangePercentage24h(), entidad.getCambioPorcentaje24h())) {
-            entidad.setCambioPorcentaje24h(dto.getPriceChangePercentage24h());
-            actualizada = true;
-        }
-        if (dto.getTotalVolume() != null && (entidad.getVolumen_24h() == null || dto.getTotalVolume().compareTo(entidad.getVolumen_24h()) != 0)) {
-            entidad.setVolumen_24h(dto.getTotalVolume());
-            actualizada = true;
-        }
-
-        LocalDateTime nuevaFechaActualizacion = null;
-        if (dto.getLastUpdated() != null && !dto.getLastUpdated().isEmpty()) {
-            try {
-                Instant instant = Instant.parse(dto.getLastUpdated());
-                nuevaFechaActualizacion = LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
-            } catch (DateTimeParseException e) {
-            }
-        }
-
-        if (actualizada) {
-            entidad.setFecha_actualizacion(nuevaFechaActualizacion != null ? nuevaFechaActualizacion : LocalDateTime.now(ZoneOffset.UTC));
-        } else if (nuevaFechaActualizacion != null && (entidad.getFecha_actualizacion() == null || nuevaFechaActualizacion.isAfter(entidad.getFecha_actualizacion()))) {
-            entidad.setFecha_actualizacion(nuevaFechaActualizacion);
-            actualizada = true;
+    private void recargarTablaSiProcede() {
+        long ahora = System.nanoTime();
+        if (!recargaPendiente && ahora - ultimaCargaNanos < intervaloRecargaNanos) {
+            return;
         }
-
-        return actualizada;
+        recargaPendiente = false;
+        tablaPrecios.cargar(refrescoRepository.cargarCriptomonedas());
+        ultimaCargaNanos = ahora;
+        log.debug("Tabla de precios recargada con {} criptomonedas.", tablaPrecios.tamaño());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,31 @@
+package com.example.cryptoacademy.service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+
+/**
+ * Posición en el historial de transacciones para la paginación por cursor ({@code ?after=<fecha,id>}): la última
+ * transacción devuelta. La siguiente página empieza justo después en orden (fecha, id) descendente.
+ */
+public record CursorHistorial(LocalDateTime fechaTransaccion, Long idTransaccion) {
+
+    public String codificar() {
+        return DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(fechaTransaccion) + "," + idTransaccion;
+    }
+
+    public static Optional<CursorHistorial> desdeCodigo(String codigo) {
+        int coma = codigo.lastIndexOf(',');
+        if (coma <= 0 || coma == codigo.length() - 1) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new CursorHistorial(
+                    LocalDateTime.parse(codigo.substring(0, coma).trim(), DateTimeFormatter.ISO_LOCAL_DATE_TIME),
+                    Long.parseLong(codigo.substring(coma + 1).trim())));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+}
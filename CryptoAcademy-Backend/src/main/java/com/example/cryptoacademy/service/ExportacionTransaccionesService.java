@@ -0,0 +1,146 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import com.example.cryptoacademy.persistance.repository.TransaccionExportJdbcRepository;
+import com.example.cryptoacademy.persistance.repository.TransaccionExportJdbcRepository.TransaccionExportFila;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exporta el historial completo de transacciones de un usuario en CSV o NDJSON escribiendo cada fila en cuanto
+ * llega del cursor: la memoria usada no depende del número de transacciones.
+ */
+@Service
+public class ExportacionTransaccionesService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportacionTransaccionesService.class);
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int TAMAÑO_BUFFER = 64 * 1024;
+    private static final String CABECERA_CSV =
+            "idTransaccion,fechaTransaccion,tipoTransaccion,idCartera,idCriptomoneda,simboloCriptomoneda," +
+            "cantidadCripto,precioPorUnidadEUR,valorTotalEUR\n";
+
+    private final TransaccionExportJdbcRepository exportRepository;
+    private final ObjectMapper objectMapper;
+
+    public ExportacionTransaccionesService(TransaccionExportJdbcRepository exportRepository, ObjectMapper objectMapper) {
+        this.exportRepository = exportRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Escribe el historial en {@code salida} y la cierra. Devuelve el número de transacciones exportadas.
+     */
+    public long exportar(Integer idUsuario, TipoTransaccion tipo, FormatoExportacion formato,
+                         boolean gzip, OutputStream salida) throws IOException {
+        long inicio = System.nanoTime();
+        OutputStream destino = gzip ? new GZIPOutputStream(salida, TAMAÑO_BUFFER) : salida;
+        long filas;
+        try {
+            filas = formato == FormatoExportacion.CSV
+                    ? exportarCsv(idUsuario, tipo, destino)
+                    : exportarNdjson(idUsuario, tipo, destino);
+        } catch (UncheckedIOException e) {
+            // Normalmente el cliente ha cortado la descarga; el cursor ya se ha cerrado al propagarse.
+            throw e.getCause();
+        }
+        log.info("Exportadas {} transacciones del Usuario ID {} en {} (gzip: {}) en {} ms",
+                filas, idUsuario, formato.getCodigo(), gzip, (System.nanoTime() - inicio) / 1_000_000);
+        return filas;
+    }
+
+    private long exportarCsv(Integer idUsuario, TipoTransaccion tipo, OutputStream destino) throws IOException {
+        long[] filas = {0};
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(destino, StandardCharsets.UTF_8), TAMAÑO_BUFFER)) {
+            writer.write(CABECERA_CSV);
+            exportRepository.recorrerHistorial(idUsuario, tipo, fila -> {
+                try {
+                    escribirCsv(writer, fila);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                filas[0]++;
+            });
+        }
+        return filas[0];
+    }
+
+    private long exportarNdjson(Integer idUsuario, TipoTransaccion tipo, OutputStream destino) throws IOException {
+        long[] filas = {0};
+        try (JsonGenerator generador = objectMapper.getFactory().createGenerator(destino)) {
+            generador.setRootValueSeparator(new SerializedString("\n"));
+            exportRepository.recorrerHistorial(idUsuario, tipo, fila -> {
+                try {
+                    escribirJson(generador, fila);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                filas[0]++;
+            });
+            if (filas[0] > 0) {
+                generador.writeRaw('\n');
+            }
+        }
+        return filas[0];
+    }
+
+    private static void escribirCsv(Writer writer, TransaccionExportFila fila) throws IOException {
+        writer.write(Long.toString(fila.idTransaccion()));
+        writer.write(',');
+        writer.write(FORMATO_FECHA.format(fila.fechaTransaccion()));
+        writer.write(',');
+        writer.write(fila.tipoTransaccion());
+        writer.write(',');
+        writer.write(Long.toString(fila.idCartera()));
+        writer.write(',');
+        writer.write(campoCsv(fila.idCriptomoneda()));
+        writer.write(',');
+        writer.write(campoCsv(fila.simboloCriptomoneda()));
+        writer.write(',');
+        writer.write(fila.cantidadCripto().toPlainString());
+        writer.write(',');
+        writer.write(fila.precioPorUnidadEUR().toPlainString());
+        writer.write(',');
+        writer.write(fila.valorTotalEUR().toPlainString());
+        writer.write('\n');
+    }
+
+    private static void escribirJson(JsonGenerator generador, TransaccionExportFila fila) throws IOException {
+        generador.writeStartObject();
+        generador.writeNumberField("idTransaccion", fila.idTransaccion());
+        generador.writeStringField("fechaTransaccion", FORMATO_FECHA.format(fila.fechaTransaccion()));
+        generador.writeStringField("tipoTransaccion", fila.tipoTransaccion());
+        generador.writeNumberField("idCartera", fila.idCartera());
+        generador.writeStringField("idCriptomoneda", fila.idCriptomoneda());
+        generador.writeStringField("simboloCriptomoneda", fila.simboloCriptomoneda());
+        generador.writeNumberField("cantidadCripto", fila.cantidadCripto());
+        generador.writeNumberField("precioPorUnidadEUR", fila.precioPorUnidadEUR());
+        generador.writeNumberField("valorTotalEUR", fila.valorTotalEUR());
+        generador.writeEndObject();
+    }
+
+    // RFC 4180: entre comillas si contiene separador, comillas o saltos de línea.
+    private static String campoCsv(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            return valor;
+        }
+        return '"' + valor.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filtros opcionales del historial por cursor; {@code null} en un campo significa sin filtro.
+ * El rango de fechas es {@code [desde, hasta)}.
+ */
+public record FiltroHistorial(TipoTransaccion tipo, String idCriptomoneda, LocalDateTime desde, LocalDateTime hasta) {
+}
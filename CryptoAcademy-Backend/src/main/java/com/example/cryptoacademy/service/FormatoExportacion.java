@@ -0,0 +1,36 @@
+package com.example.cryptoacademy.service;
+
+import java.util.Optional;
+
+/**
+ * Formatos admitidos por la exportación del historial de transacciones ({@code ?formato=}).
+ */
+public enum FormatoExportacion {
+    CSV("csv", "text/csv;charset=UTF-8"),
+    NDJSON("ndjson", "application/x-ndjson");
+
+    private final String codigo;
+    private final String tipoContenido;
+
+    FormatoExportacion(String codigo, String tipoContenido) {
+        this.codigo = codigo;
+        this.tipoContenido = tipoContenido;
+    }
+
+    public String getCodigo() {
+        return codigo;
+    }
+
+    public String getTipoContenido() {
+        return tipoContenido;
+    }
+
+    public static Optional<FormatoExportacion> desdeCodigo(String codigo) {
+        for (FormatoExportacion formato : values()) {
+            if (formato.codigo.equalsIgnoreCase(codigo)) {
+                return Optional.of(formato);
+            }
+        }
+        return Optional.empty();
+    }
+}
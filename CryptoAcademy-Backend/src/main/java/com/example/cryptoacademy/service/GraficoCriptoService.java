@@ -0,0 +1,173 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.CoinGeckoChartDataDTO;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Caché de los datos de gráfico de CoinGecko por {@code (coinId, vsCurrency, días)}.
+ * <ul>
+ *     <li>Los fallos concurrentes de una misma clave comparten una única llamada en curso.</li>
+ *     <li>La vigencia depende del rango, igual que la granularidad que devuelve CoinGecko: cinco minutos para un
+ *     día, horaria hasta 90 días y diaria a partir de ahí.</li>
+ *     <li>Pasada la vigencia, la entrada se sigue sirviendo mientras se recarga en segundo plano (una sola recarga
+ *     por clave); si la recarga falla se conserva la anterior hasta que caduca del todo.</li>
+ *     <li>El número de entradas está acotado: se expulsan las menos usadas.</li>
+ * </ul>
+ */
+@Service
+public class GraficoCriptoService {
+
+    private static final Logger log = LoggerFactory.getLogger(GraficoCriptoService.class);
+
+    private record ClaveGrafico(String coinId, String vsCurrency, String dias) {
+    }
+
+    private record EntradaGrafico(CoinGeckoChartDataDTO datos, long obtenidoNanos) {
+    }
+
+    private final CoinGeckoService coinGeckoService;
+    private final ExecutorService ejecutor;
+    private final AsyncLoadingCache<ClaveGrafico, EntradaGrafico> cache;
+
+    private final Duration vigenciaIntradia;
+    private final Duration vigenciaHoraria;
+    private final Duration vigenciaDiaria;
+    private final long factorVidaMaxima;
+
+    public GraficoCriptoService(CoinGeckoService coinGeckoService,
+                                MeterRegistry meterRegistry,
+                                @Value("${coingecko.grafico.cache.max-entradas:500}") long maxEntradas,
+                                @Value("${coingecko.grafico.vigencia.intradia-segundos:60}") long intradiaSegundos,
+                                @Value("${coingecko.grafico.vigencia.horaria-segundos:600}") long horariaSegundos,
+                                @Value("${coingecko.grafico.vigencia.diaria-segundos:3600}") long diariaSegundos,
+                                @Value("${coingecko.grafico.vida-maxima-factor:10}") long factorVidaMaxima,
+                                @Value("${coingecko.grafico.hilos:4}") int hilos) {
+        this.coinGeckoService = coinGeckoService;
+        this.vigenciaIntradia = Duration.ofSeconds(intradiaSegundos);
+        this.vigenciaHoraria = Duration.ofSeconds(horariaSegundos);
+        this.vigenciaDiaria = Duration.ofSeconds(diariaSegundos);
+        this.factorVidaMaxima = Math.max(1, factorVidaMaxima);
+        // Las llamadas a CoinGecko bloquean: van a un pool propio y no al ForkJoinPool común de Caffeine.
+        this.ejecutor = Executors.newFixedThreadPool(Math.max(1, hilos), r -> {
+            Thread hilo = new Thread(r, "graficos-coingecko");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfter(new Expiry<ClaveGrafico, EntradaGrafico>() {
+                    @Override
+                    public long expireAfterCreate(ClaveGrafico clave, EntradaGrafico entrada, long ahora) {
+                        return vidaMaxima(clave).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ClaveGrafico clave, EntradaGrafico entrada, long ahora, long restante) {
+                        return vidaMaxima(clave).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(ClaveGrafico clave, EntradaGrafico entrada, long ahora, long restante) {
+                        return restante;
+                    }
+                })
+                .executor(ejecutor)
+                .recordStats()
+                .buildAsync(this::cargar);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "graficos");
+    }
+
+    @PreDestroy
+    public void detenerEjecutor() {
+        ejecutor.shutdownNow();
+    }
+
+    public CoinGeckoChartDataDTO obtenerGrafico(String coinId, String vsCurrency, String dias) throws IOException {
+        if (coinId == null || coinId.trim().isEmpty() ||
+                vsCurrency == null || vsCurrency.trim().isEmpty() ||
+                dias == null || dias.trim().isEmpty()) {
+            throw new IllegalArgumentException("coinId, vsCurrency y days no pueden ser vacíos.");
+        }
+        ClaveGrafico clave = new ClaveGrafico(
+                coinId.trim().toLowerCase(Locale.ROOT),
+                vsCurrency.trim().toLowerCase(Locale.ROOT),
+                dias.trim().toLowerCase(Locale.ROOT));
+
+        CompletableFuture<EntradaGrafico> futuro = cache.get(clave);
+        EntradaGrafico entrada;
+        try {
+            entrada = futuro.get();
+        } catch (ExecutionException | CompletionException e) {
+            // Caffeine descarta el fallo en segundo plano; se quita ya para que el siguiente intento vuelva a llamar.
+            cache.asMap().remove(clave, futuro);
+            throw comoIOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrumpido esperando los datos de gráfico de " + coinId, e);
+        }
+
+        if (System.nanoTime() - entrada.obtenidoNanos() > vigencia(clave).toNanos()) {
+            // Caffeine no lanza una segunda recarga si ya hay una en curso para la clave.
+            cache.synchronous().refresh(clave);
+        }
+        return entrada.datos();
+    }
+
+    private EntradaGrafico cargar(ClaveGrafico clave) {
+        try {
+            CoinGeckoChartDataDTO datos = coinGeckoService.getCoinMarketChart(clave.coinId(), clave.vsCurrency(), clave.dias());
+            return new EntradaGrafico(datos, System.nanoTime());
+        } catch (IOException e) {
+            log.warn("No se han podido cargar los datos de gráfico de {} ({} días): {}", clave.coinId(), clave.dias(), e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Vigencia según la granularidad de CoinGecko: 1 día o menos, hasta 90 días, y más (incluido "max").
+     */
+    private Duration vigencia(ClaveGrafico clave) {
+        try {
+            double dias = Double.parseDouble(clave.dias());
+            if (dias <= 1) {
+                return vigenciaIntradia;
+            }
+            return dias <= 90 ? vigenciaHoraria : vigenciaDiaria;
+        } catch (NumberFormatException e) {
+            return vigenciaDiaria;
+        }
+    }
+
+    private Duration vidaMaxima(ClaveGrafico clave) {
+        return vigencia(clave).multipliedBy(factorVidaMaxima);
+    }
+
+    private static IOException comoIOException(Throwable causa) {
+        if (causa instanceof UncheckedIOException unchecked) {
+            return unchecked.getCause();
+        }
+        if (causa instanceof IllegalArgumentException argumento) {
+            throw argumento;
+        }
+        return new IOException(causa != null ? causa.getMessage() : "Error al obtener los datos de gráfico", causa);
+    }
+}
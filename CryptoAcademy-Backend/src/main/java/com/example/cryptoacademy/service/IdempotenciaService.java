@@ -0,0 +1,267 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.TransaccionResponseDTO;
+import com.example.cryptoacademy.exception.CantidadInsuficienteException;
+import com.example.cryptoacademy.exception.ClaveIdempotenciaReutilizadaException;
+import com.example.cryptoacademy.exception.ConflictoConcurrenciaException;
+import com.example.cryptoacademy.exception.CotizacionExpiradaException;
+import com.example.cryptoacademy.exception.RecursoNoEncontradoException;
+import com.example.cryptoacademy.exception.SaldoInsuficienteException;
+import com.example.cryptoacademy.persistance.model.ClaveIdempotencia;
+import com.example.cryptoacademy.persistance.repository.ClaveIdempotenciaRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Deduplica órdenes de compra/venta reintentadas con la misma cabecera {@code Idempotency-Key}.
+ * La respuesta original se busca primero en una caché en memoria acotada en tamaño y tiempo y, si ya no está,
+ * en la tabla {@code claves_idempotencia}. Una clave nueva se reserva en la tabla (fila sin respuesta) antes de
+ * ejecutar la operación: la clave primaria impide que dos peticiones o instancias la ejecuten a la vez, y si el
+ * proceso cae tras confirmar la orden la clave sigue reservada, de modo que un reintento nunca la repite.
+ */
+@Service
+public class IdempotenciaService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotenciaService.class);
+    private static final int LONGITUD_MAXIMA_CLAVE = 100;
+
+    private final ClaveIdempotenciaRepository claveIdempotenciaRepository;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, ClaveIdempotencia> cache;
+    private final ConcurrentHashMap<String, CompletableFuture<TransaccionResponseDTO>> enCurso = new ConcurrentHashMap<>();
+
+    private final Counter aciertosCache;
+    private final Counter aciertosBaseDatos;
+    private final Counter aciertosEnCurso;
+    private final Counter clavesNuevas;
+
+    @Value("${trading.idempotencia.retencion-horas:24}")
+    private long retencionHoras;
+
+    public IdempotenciaService(ClaveIdempotenciaRepository claveIdempotenciaRepository,
+                               ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${trading.idempotencia.cache.max-entradas:10000}") long maxEntradas,
+                               @Value("${trading.idempotencia.cache.ttl-minutos:10}") long ttlMinutos) {
+        this.claveIdempotenciaRepository = claveIdempotenciaRepository;
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutos))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "idempotencia");
+
+        this.aciertosCache = contador(meterRegistry, "cache");
+        this.aciertosBaseDatos = contador(meterRegistry, "bd");
+        this.aciertosEnCurso = contador(meterRegistry, "en_curso");
+        this.clavesNuevas = contador(meterRegistry, "nueva");
+    }
+
+    public record RespuestaIdempotente(TransaccionResponseDTO respuesta, boolean repetida) {
+    }
+
+    /**
+     * Ejecuta {@code operacion} una sola vez por usuario y clave. Un reintento con la misma clave devuelve la
+     * respuesta original; si la primera ejecución sigue en curso en esta instancia, espera a que termine, y si está
+     * en curso en otra lanza {@link ConflictoConcurrenciaException}. Reutilizar la clave con una orden distinta
+     * ({@code huella} diferente) lanza {@link ClaveIdempotenciaReutilizadaException}.
+     * Sin clave, la operación se ejecuta siempre.
+     */
+    public RespuestaIdempotente ejecutar(Integer idUsuario, String claveIdempotencia, String huella,
+                                         Supplier<TransaccionResponseDTO> operacion) {
+        if (claveIdempotencia == null) {
+            return new RespuestaIdempotente(operacion.get(), false);
+        }
+        if (claveIdempotencia.isBlank() || claveIdempotencia.length() > LONGITUD_MAXIMA_CLAVE) {
+            throw new IllegalArgumentException("La cabecera Idempotency-Key debe tener entre 1 y " + LONGITUD_MAXIMA_CLAVE + " caracteres.");
+        }
+
+        String clave = idUsuario + ":" + claveIdempotencia;
+        String huellaHash = hash(huella);
+
+        ClaveIdempotencia enCache = cache.getIfPresent(clave);
+        if (enCache != null) {
+            aciertosCache.increment();
+            return new RespuestaIdempotente(respuestaGuardada(enCache, huellaHash), true);
+        }
+
+        CompletableFuture<TransaccionResponseDTO> futuro = new CompletableFuture<>();
+        CompletableFuture<TransaccionResponseDTO> existente = enCurso.putIfAbsent(clave, futuro);
+        if (existente != null) {
+            aciertosEnCurso.increment();
+            return new RespuestaIdempotente(esperar(existente), true);
+        }
+
+        try {
+            Optional<ClaveIdempotencia> enBaseDatos = claveIdempotenciaRepository.findById(clave);
+            if (enBaseDatos.isPresent() || !reservar(clave, idUsuario, huellaHash)) {
+                TransaccionResponseDTO respuesta = respuestaExistente(clave, enBaseDatos, huellaHash);
+                futuro.complete(respuesta);
+                return new RespuestaIdempotente(respuesta, true);
+            }
+
+            clavesNuevas.increment();
+            TransaccionResponseDTO respuesta;
+            try {
+                respuesta = operacion.get();
+            } catch (RuntimeException e) {
+                // Una orden rechazada no deja rastro: el cliente puede reintentarla con la misma clave. Ante un
+                // fallo inesperado no se sabe si la orden llegó a confirmarse, así que la clave sigue reservada y
+                // los reintentos reciben un conflicto hasta la limpieza periódica.
+                if (esRechazo(e)) {
+                    liberar(clave);
+                } else {
+                    log.warn("Fallo inesperado en la orden con clave de idempotencia {}; la clave queda reservada: {}", clave, e.getMessage());
+                }
+                throw e;
+            }
+            String respuestaSerializada = serializar(respuesta);
+            cache.put(clave, new ClaveIdempotencia(clave, idUsuario, huellaHash, respuestaSerializada));
+            completar(clave, respuestaSerializada);
+            futuro.complete(respuesta);
+            return new RespuestaIdempotente(respuesta, false);
+
+        } catch (RuntimeException e) {
+            futuro.completeExceptionally(e);
+            throw e;
+        } finally {
+            enCurso.remove(clave, futuro);
+        }
+    }
+
+    @Scheduled(fixedRateString = "${trading.idempotencia.limpieza.interval.ms:3600000}")
+    public void purgarClavesCaducadas() {
+        int eliminadas = claveIdempotenciaRepository.eliminarAnterioresA(LocalDateTime.now().minusHours(retencionHoras));
+        if (eliminadas > 0) {
+            log.info("Eliminadas {} claves de idempotencia caducadas.", eliminadas);
+        }
+    }
+
+    // Inserta la clave sin respuesta; false si otra petición o instancia la ha reservado antes.
+    private boolean reservar(String clave, Integer idUsuario, String huellaHash) {
+        try {
+            claveIdempotenciaRepository.save(new ClaveIdempotencia(clave, idUsuario, huellaHash, null));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    private TransaccionResponseDTO respuestaExistente(String clave, Optional<ClaveIdempotencia> leida, String huellaHash) {
+        ClaveIdempotencia registro = leida.isPresent() ? leida.get() : claveIdempotenciaRepository.findById(clave).orElse(null);
+        if (registro == null) {
+            // Reservada y liberada entre medias por una orden rechazada.
+            throw new ConflictoConcurrenciaException("La orden con esta clave de idempotencia acaba de rechazarse. Inténtelo de nuevo.");
+        }
+        if (!registro.getHuella().equals(huellaHash)) {
+            throw new ClaveIdempotenciaReutilizadaException("La clave de idempotencia ya se utilizó con una orden distinta.");
+        }
+        if (registro.estaEnCurso()) {
+            throw new ConflictoConcurrenciaException("Ya hay una orden en curso con esta clave de idempotencia. Inténtelo de nuevo en unos segundos.");
+        }
+        aciertosBaseDatos.increment();
+        cache.put(clave, registro);
+        return respuestaGuardada(registro, huellaHash);
+    }
+
+    // La orden ya está confirmada: si no se puede guardar la respuesta, la clave queda reservada y los reintentos
+    // reciben un conflicto en lugar de repetir la orden.
+    private void completar(String clave, String respuesta) {
+        try {
+            claveIdempotenciaRepository.completar(clave, respuesta);
+        } catch (RuntimeException e) {
+            log.error("No se pudo guardar la respuesta de la clave de idempotencia {}: {}", clave, e.getMessage(), e);
+        }
+    }
+
+    // Excepciones de validación, de negocio o de concurrencia: la transacción de la orden se ha revertido.
+    private static boolean esRechazo(RuntimeException e) {
+        return e instanceof IllegalArgumentException
+                || e instanceof IllegalStateException
+                || e instanceof SaldoInsuficienteException
+                || e instanceof CantidadInsuficienteException
+                || e instanceof RecursoNoEncontradoException
+                || e instanceof CotizacionExpiradaException
+                || e instanceof ConflictoConcurrenciaException
+                || e instanceof ConcurrencyFailureException;
+    }
+
+    private void liberar(String clave) {
+        try {
+            claveIdempotenciaRepository.deleteById(clave);
+        } catch (RuntimeException e) {
+            log.warn("No se pudo liberar la clave de idempotencia {}; caducará con la limpieza periódica: {}", clave, e.getMessage());
+        }
+    }
+
+    private TransaccionResponseDTO respuestaGuardada(ClaveIdempotencia registro, String huellaHash) {
+        if (!registro.getHuella().equals(huellaHash)) {
+            throw new ClaveIdempotenciaReutilizadaException("La clave de idempotencia ya se utilizó con una orden distinta.");
+        }
+        try {
+            return objectMapper.readValue(registro.getRespuesta(), TransaccionResponseDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo leer la respuesta guardada para la clave de idempotencia.", e);
+        }
+    }
+
+    private TransaccionResponseDTO esperar(CompletableFuture<TransaccionResponseDTO> futuro) {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    private String serializar(TransaccionResponseDTO respuesta) {
+        try {
+            return objectMapper.writeValueAsString(respuesta);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar la respuesta para la clave de idempotencia.", e);
+        }
+    }
+
+    private static String hash(String valor) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(valor.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Counter contador(MeterRegistry meterRegistry, String resultado) {
+        return Counter.builder("trading.idempotencia.peticiones")
+                .description("Órdenes recibidas con Idempotency-Key, por origen de la respuesta")
+                .tag("resultado", resultado)
+                .register(meterRegistry);
+    }
+}
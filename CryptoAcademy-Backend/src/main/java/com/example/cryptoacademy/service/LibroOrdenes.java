@@ -0,0 +1,56 @@
+package com.example.cryptoacademy.service;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Órdenes pendientes de una criptomoneda, separadas por sentido de activación y ordenadas de forma que la
+ * siguiente orden en activarse esté siempre en cabeza: inserción, cancelación y extracción son O(log n).
+ * Las operaciones se serializan por libro, de modo que una orden la retira o la extrae una sola de ellas.
+ */
+class LibroOrdenes {
+
+    private static final Comparator<OrdenEnLibro> POR_PRECIO_ASC = Comparator
+            .comparing(OrdenEnLibro::getPrecioActivacion)
+            .thenComparingLong(OrdenEnLibro::getIdOrden);
+
+    // Se activan cuando el precio baja: la de umbral más alto es la primera en cruzarse.
+    private final NavigableSet<OrdenEnLibro> activanAlBajar = new TreeSet<>(
+            Comparator.comparing(OrdenEnLibro::getPrecioActivacion).reversed()
+                    .thenComparingLong(OrdenEnLibro::getIdOrden));
+
+    // Se activan cuando el precio sube: la de umbral más bajo es la primera en cruzarse.
+    private final NavigableSet<OrdenEnLibro> activanAlSubir = new TreeSet<>(POR_PRECIO_ASC);
+
+    synchronized void añadir(OrdenEnLibro orden) {
+        lado(orden).add(orden);
+    }
+
+    synchronized boolean retirar(OrdenEnLibro orden) {
+        return lado(orden).remove(orden);
+    }
+
+    /**
+     * Extrae las órdenes cuyo umbral ha sido cruzado por {@code precio} y las añade a {@code activadas}.
+     * Solo recorre las órdenes que se activan, nunca el libro completo.
+     */
+    synchronized void extraerActivadas(BigDecimal precio, List<OrdenEnLibro> activadas) {
+        while (!activanAlBajar.isEmpty() && activanAlBajar.first().getPrecioActivacion().compareTo(precio) >= 0) {
+            activadas.add(activanAlBajar.pollFirst());
+        }
+        while (!activanAlSubir.isEmpty() && activanAlSubir.first().getPrecioActivacion().compareTo(precio) <= 0) {
+            activadas.add(activanAlSubir.pollFirst());
+        }
+    }
+
+    synchronized int tamaño() {
+        return activanAlBajar.size() + activanAlSubir.size();
+    }
+
+    private NavigableSet<OrdenEnLibro> lado(OrdenEnLibro orden) {
+        return orden.isSeActivaAlBajar() ? activanAlBajar : activanAlSubir;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.persistance.model.TipoOrden;
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+@Getter
+public class OrdenEnLibro {
+
+    private final long idOrden;
+    private final String idCriptomoneda;
+    private final BigDecimal precioActivacion;
+    private final boolean seActivaAlBajar;
+
+    public OrdenEnLibro(Long idOrden, String idCriptomoneda, BigDecimal precioActivacion,
+                        TipoTransaccion tipoTransaccion, TipoOrden tipoOrden) {
+        this.idOrden = idOrden;
+        this.idCriptomoneda = idCriptomoneda;
+        this.precioActivacion = precioActivacion;
+        this.seActivaAlBajar = tipoOrden.seActivaAlBajar(tipoTransaccion);
+    }
+}
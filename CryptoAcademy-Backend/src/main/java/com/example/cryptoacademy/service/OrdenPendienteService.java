@@ -0,0 +1,340 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.OrdenLoteItemDTO;
+import com.example.cryptoacademy.dto.OrdenPendienteRequestDTO;
+import com.example.cryptoacademy.dto.OrdenPendienteResponseDTO;
+import com.example.cryptoacademy.exception.ConflictoConcurrenciaException;
+import com.example.cryptoacademy.exception.RecursoNoEncontradoException;
+import com.example.cryptoacademy.persistance.model.Cartera;
+import com.example.cryptoacademy.persistance.model.Criptomoneda;
+import com.example.cryptoacademy.persistance.model.EstadoOrden;
+import com.example.cryptoacademy.persistance.model.OrdenPendiente;
+import com.example.cryptoacademy.persistance.model.Transaccion;
+import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.persistance.repository.CarteraRepository;
+import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import com.example.cryptoacademy.persistance.repository.OrdenPendienteRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Órdenes límite y stop. Cada orden abierta se persiste en {@code ordenes_pendientes} y se mantiene además en el
+ * {@link LibroOrdenes} de su criptomoneda; tras cada refresco de precios solo se extraen las órdenes cuyo umbral se
+ * ha cruzado y se ejecutan, agrupadas por cartera, a través de {@link TradingServiceI#ejecutarLoteOrdenes}.
+ */
+@Service
+public class OrdenPendienteService {
+
+    private static final Logger log = LoggerFactory.getLogger(OrdenPendienteService.class);
+    private static final int LONGITUD_MAXIMA_MOTIVO = 255;
+    private static final int ESCALA_PRECIO = 4;
+
+    private final OrdenPendienteRepository ordenPendienteRepository;
+    private final CarteraRepository carteraRepository;
+    private final CriptomonedaRepository criptomonedaRepository;
+    private final TradingServiceI tradingService;
+
+    private final Map<String, LibroOrdenes> libros = new ConcurrentHashMap<>();
+
+    // Un único hilo ejecuta las órdenes activadas: los refrescos se procesan en orden y el planificador no espera.
+    private final ExecutorService ejecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "motor-ordenes");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    public OrdenPendienteService(OrdenPendienteRepository ordenPendienteRepository,
+                                 CarteraRepository carteraRepository,
+                                 CriptomonedaRepository criptomonedaRepository,
+                                 TradingServiceI tradingService) {
+        this.ordenPendienteRepository = ordenPendienteRepository;
+        this.carteraRepository = carteraRepository;
+        this.criptomonedaRepository = criptomonedaRepository;
+        this.tradingService = tradingService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarLibros() {
+        List<OrdenEnLibro> abiertas = ordenPendienteRepository.findEntradasLibroByEstado(EstadoOrden.PENDIENTE);
+        abiertas.forEach(this::registrarEnLibro);
+        log.info("Libro de órdenes cargado con {} órdenes pendientes.", abiertas.size());
+    }
+
+    @PreDestroy
+    public void detenerEjecutor() throws InterruptedException {
+        ejecutor.shutdown();
+        if (!ejecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    // Sin transacción envolvente: la orden queda confirmada en BD antes de entrar en el libro,
+    // así el motor nunca activa una orden que todavía no puede leer.
+    public OrdenPendienteResponseDTO crearOrden(Usuario usuario, OrdenPendienteRequestDTO request)
+            throws RecursoNoEncontradoException, IllegalArgumentException {
+
+        BigDecimal precioActivacion = validarSolicitud(request);
+
+        Cartera cartera = carteraRepository.findByIdCarteraAndUsuario(request.getIdCartera(), usuario)
+                .orElseThrow(() -> new RecursoNoEncontradoException("Cartera no encontrada con ID: " + request.getIdCartera() + " para el usuario " + usuario.getEmail()));
+
+        Criptomoneda criptomoneda = criptomonedaRepository.findById(request.getIdCriptomoneda())
+                .orElseThrow(() -> new RecursoNoEncontradoException("Criptomoneda no encontrada con ID: " + request.getIdCriptomoneda()));
+
+        OrdenPendiente orden = OrdenPendiente.builder()
+                .usuario(usuario)
+                .cartera(cartera)
+                .criptomoneda(criptomoneda)
+                .tipoTransaccion(request.getTipoTransaccion())
+                .tipoOrden(request.getTipoOrden())
+                .cantidad(request.getCantidad())
+                .precioActivacion(precioActivacion)
+                .build();
+
+        OrdenPendiente guardada = ordenPendienteRepository.save(orden);
+        registrarEnLibro(entradaLibro(guardada));
+        return mapToResponseDTO(guardada);
+    }
+
+    @Transactional(readOnly = true)
+    public List<OrdenPendienteResponseDTO> obtenerOrdenesPendientes(Usuario usuario) {
+        return ordenPendienteRepository.findByUsuarioAndEstadoOrderByFechaCreacionDesc(usuario, EstadoOrden.PENDIENTE)
+                .stream()
+                .map(this::mapToResponseDTO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * La fila se bloquea hasta confirmar: si el motor la está ejecutando, o la cancelación espera y encuentra la orden
+     * ya ejecutada, o el motor encuentra la orden cancelada y deshace la operación. El libro solo se toca al confirmar.
+     */
+    @Transactional
+    public OrdenPendienteResponseDTO cancelarOrden(Usuario usuario, Long idOrden)
+            throws RecursoNoEncontradoException, IllegalStateException {
+
+        OrdenPendiente orden = ordenPendienteRepository.findParaActualizar(idOrden, usuario)
+                .orElseThrow(() -> new RecursoNoEncontradoException("Orden no encontrada con ID: " + idOrden));
+
+        if (orden.getEstado() != EstadoOrden.PENDIENTE) {
+            throw new IllegalStateException("La orden ya no está pendiente (estado: " + orden.getEstado() + ").");
+        }
+
+        orden.setEstado(EstadoOrden.CANCELADA);
+        orden.setFechaEjecucion(LocalDateTime.now());
+        OrdenEnLibro entrada = entradaLibro(orden);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                retirarDeLibro(entrada);
+            }
+        });
+        return mapToResponseDTO(orden);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPreciosActualizados(PreciosActualizadosEvent evento) {
+        List<OrdenEnLibro> activadas = extraerActivadas(evento.precios());
+        if (activadas.isEmpty()) {
+            return;
+        }
+        log.info("{} órdenes pendientes activadas por el refresco de precios.", activadas.size());
+        ejecutor.execute(() -> ejecutarOrdenes(activadas));
+    }
+
+    List<OrdenEnLibro> extraerActivadas(Map<String, BigDecimal> precios) {
+        List<OrdenEnLibro> activadas = new ArrayList<>();
+        for (Map.Entry<String, BigDecimal> precio : precios.entrySet()) {
+            LibroOrdenes libro = libros.get(precio.getKey());
+            if (libro != null) {
+                libro.extraerActivadas(precio.getValue(), activadas);
+            }
+        }
+        return activadas;
+    }
+
+    int tamañoLibro(String idCriptomoneda) {
+        LibroOrdenes libro = libros.get(idCriptomoneda);
+        return libro != null ? libro.tamaño() : 0;
+    }
+
+    // Las órdenes extraídas que no llegan a cerrarse (ejecutada, fallida o ya cancelada) vuelven al libro.
+    void ejecutarOrdenes(List<OrdenEnLibro> activadas) {
+        Map<Long, OrdenEnLibro> sinCerrar = new LinkedHashMap<>();
+        for (OrdenEnLibro entrada : activadas) {
+            sinCerrar.put(entrada.getIdOrden(), entrada);
+        }
+        try {
+            Map<Long, List<OrdenPendiente>> porCartera = new LinkedHashMap<>();
+            Set<Long> pendientes = new HashSet<>();
+            for (OrdenPendiente orden : ordenPendienteRepository.findAllById(new ArrayList<>(sinCerrar.keySet()))) {
+                if (orden.getEstado() == EstadoOrden.PENDIENTE) {
+                    pendientes.add(orden.getIdOrden());
+                    porCartera.computeIfAbsent(orden.getCartera().getIdCartera(), k -> new ArrayList<>()).add(orden);
+                }
+            }
+            // Cancelada o ya cerrada antes de llegar aquí: no vuelve al libro.
+            sinCerrar.keySet().retainAll(pendientes);
+
+            for (List<OrdenPendiente> ordenesCartera : porCartera.values()) {
+                ejecutarLoteCartera(ordenesCartera, sinCerrar);
+            }
+        } catch (Exception e) {
+            log.error("Error inesperado ejecutando órdenes pendientes {}: {}", sinCerrar.keySet(), e.getMessage(), e);
+        } finally {
+            if (!sinCerrar.isEmpty()) {
+                log.warn("{} órdenes pendientes no se han podido procesar; vuelven al libro: {}", sinCerrar.size(), sinCerrar.keySet());
+                sinCerrar.values().forEach(this::registrarEnLibro);
+            }
+        }
+    }
+
+    // Primero se intenta todo el grupo en una única transacción; si el lote falla por una orden concreta
+    // (saldo, cantidad...) se reintenta orden a orden para no penalizar al resto.
+    private void ejecutarLoteCartera(List<OrdenPendiente> ordenes, Map<Long, OrdenEnLibro> sinCerrar) {
+        try {
+            ejecutarLote(ordenes);
+            ordenes.forEach(orden -> sinCerrar.remove(orden.getIdOrden()));
+            return;
+        } catch (RuntimeException e) {
+            if (ordenes.size() == 1) {
+                cerrarFallida(ordenes.get(0), e, sinCerrar);
+                return;
+            }
+            log.debug("Lote de {} órdenes de la cartera {} rechazado, se ejecutan por separado: {}",
+                    ordenes.size(), ordenes.get(0).getCartera().getIdCartera(), e.getMessage());
+        }
+
+        for (OrdenPendiente orden : ordenes) {
+            try {
+                ejecutarLote(List.of(orden));
+                sinCerrar.remove(orden.getIdOrden());
+            } catch (RuntimeException e) {
+                cerrarFallida(orden, e, sinCerrar);
+            }
+        }
+    }
+
+    // Las órdenes pasan a EJECUTADA en la misma transacción que sus operaciones.
+    private void ejecutarLote(List<OrdenPendiente> ordenes) {
+        List<OrdenLoteItemDTO> items = new ArrayList<>(ordenes.size());
+        for (OrdenPendiente orden : ordenes) {
+            items.add(new OrdenLoteItemDTO(orden.getTipoTransaccion(), orden.getCriptomoneda().getId_Criptomoneda(), orden.getCantidad()));
+        }
+        OrdenPendiente primera = ordenes.get(0);
+        tradingService.ejecutarLoteOrdenes(primera.getUsuario().getId(), primera.getCartera().getIdCartera(), items,
+                transacciones -> marcarEjecutadas(ordenes, transacciones));
+    }
+
+    private void marcarEjecutadas(List<OrdenPendiente> ordenes, List<Transaccion> transacciones) {
+        LocalDateTime ahora = LocalDateTime.now();
+        for (int i = 0; i < ordenes.size(); i++) {
+            Long idOrden = ordenes.get(i).getIdOrden();
+            if (ordenPendienteRepository.cerrarSiPendiente(idOrden, EstadoOrden.EJECUTADA,
+                    transacciones.get(i).getIdTransaccion(), null, ahora) == 0) {
+                throw new IllegalStateException("La orden " + idOrden + " ya no está pendiente.");
+            }
+        }
+    }
+
+    // Un fallo de infraestructura (BD, conflicto persistente) no es culpa de la orden: sigue sin cerrar y vuelve al libro.
+    private void cerrarFallida(OrdenPendiente orden, RuntimeException causa, Map<Long, OrdenEnLibro> sinCerrar) {
+        if (causa instanceof DataAccessException || causa instanceof TransactionException
+                || causa instanceof ConflictoConcurrenciaException) {
+            log.warn("Orden pendiente {} no ejecutada por un error transitorio: {}", orden.getIdOrden(), causa.getMessage());
+            return;
+        }
+        log.info("Orden pendiente {} no ejecutada: {}", orden.getIdOrden(), causa.getMessage());
+        String motivo = causa.getMessage() != null ? causa.getMessage() : causa.getClass().getSimpleName();
+        if (motivo.length() > LONGITUD_MAXIMA_MOTIVO) {
+            motivo = motivo.substring(0, LONGITUD_MAXIMA_MOTIVO);
+        }
+        // 0 filas: la cancelaron mientras se ejecutaba; en ambos casos queda cerrada.
+        ordenPendienteRepository.cerrarSiPendiente(orden.getIdOrden(), EstadoOrden.FALLIDA, null, motivo, LocalDateTime.now());
+        sinCerrar.remove(orden.getIdOrden());
+    }
+
+    // Las anotaciones de OrdenPendienteRequestDTO no se evalúan (no hay proveedor de Bean Validation).
+    private BigDecimal validarSolicitud(OrdenPendienteRequestDTO request) {
+        if (request.getIdCartera() == null) {
+            throw new IllegalArgumentException("El ID de la cartera no puede ser nulo.");
+        }
+        if (request.getIdCriptomoneda() == null || request.getIdCriptomoneda().isBlank()) {
+            throw new IllegalArgumentException("El ID de la criptomoneda no puede estar vacío.");
+        }
+        if (request.getTipoTransaccion() == null) {
+            throw new IllegalArgumentException("El tipo de transacción no puede ser nulo.");
+        }
+        if (request.getTipoOrden() == null) {
+            throw new IllegalArgumentException("El tipo de orden no puede ser nulo.");
+        }
+        if (request.getCantidad() == null || request.getCantidad().signum() <= 0) {
+            throw new IllegalArgumentException("La cantidad debe ser positiva.");
+        }
+        // Se guarda con la escala de la columna: el libro debe comparar con el mismo umbral que queda en BD.
+        BigDecimal precioActivacion = request.getPrecioActivacion() != null
+                ? request.getPrecioActivacion().setScale(ESCALA_PRECIO, RoundingMode.HALF_UP) : null;
+        if (precioActivacion == null || precioActivacion.signum() <= 0) {
+            throw new IllegalArgumentException("El precio de activación debe ser positivo.");
+        }
+        return precioActivacion;
+    }
+
+    private void registrarEnLibro(OrdenEnLibro entrada) {
+        libros.computeIfAbsent(entrada.getIdCriptomoneda(), k -> new LibroOrdenes()).añadir(entrada);
+    }
+
+    private boolean retirarDeLibro(OrdenEnLibro entrada) {
+        LibroOrdenes libro = libros.get(entrada.getIdCriptomoneda());
+        return libro != null && libro.retirar(entrada);
+    }
+
+    private OrdenEnLibro entradaLibro(OrdenPendiente orden) {
+        return new OrdenEnLibro(orden.getIdOrden(), orden.getCriptomoneda().getId_Criptomoneda(),
+                orden.getPrecioActivacion(), orden.getTipoTransaccion(), orden.getTipoOrden());
+    }
+
+    private OrdenPendienteResponseDTO mapToResponseDTO(OrdenPendiente orden) {
+        Criptomoneda criptomoneda = orden.getCriptomoneda();
+        return OrdenPendienteResponseDTO.builder()
+                .idOrden(orden.getIdOrden())
+                .idCartera(orden.getCartera().getIdCartera())
+                .idCriptomoneda(criptomoneda.getId_Criptomoneda())
+                .nombreCriptomoneda(criptomoneda.getNombre())
+                .simboloCriptomoneda(criptomoneda.getSimbolo())
+                .tipoTransaccion(orden.getTipoTransaccion())
+                .tipoOrden(orden.getTipoOrden())
+                .cantidad(orden.getCantidad())
+                .precioActivacion(orden.getPrecioActivacion())
+                .estado(orden.getEstado())
+                .idTransaccion(orden.getIdTransaccion())
+                .motivoEstado(orden.getMotivoEstado())
+                .fechaCreacion(orden.getFechaCreacion())
+                .fechaEjecucion(orden.getFechaEjecucion())
+                .build();
+    }
+}
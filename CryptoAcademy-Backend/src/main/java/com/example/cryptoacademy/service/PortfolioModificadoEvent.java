@@ -0,0 +1,17 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.persistance.model.Transaccion;
+
+import java.util.List;
+
+/**
+ * Se publica, ya confirmada la transacción, cuando cambia el saldo o las tenencias de alguna cartera del usuario:
+ * operaciones de trading, alta de usuario o alta de cartera. Las operaciones de trading incluyen sus
+ * transacciones para que los totales en memoria se actualicen sin esperar a la recarga desde BD.
+ */
+public record PortfolioModificadoEvent(Integer idUsuario, List<Transaccion> transacciones) {
+
+    public PortfolioModificadoEvent(Integer idUsuario) {
+        this(idUsuario, List.of());
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.cryptoacademy.service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Se publica cada vez que {@link CriptomonedaUpdateService} aplica un refresco de precios.
+ * Contiene el precio vigente (EUR) de cada criptomoneda incluida en el refresco.
+ */
+public record PreciosActualizadosEvent(Map<String, BigDecimal> precios) {
+}
@@ -0,0 +1,73 @@
+package com.example.cryptoacademy.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reparte un presupuesto de llamadas por minuto a un servicio externo (cubo de fichas en forma de calendario): cada
+ * llamada reserva el siguiente turno libre y espera, fuera del cerrojo, hasta que llega. Con una ráfaga mayor que 1
+ * se permiten hasta ese número de llamadas seguidas tras un periodo de inactividad; la media no pasa del presupuesto.
+ */
+final class PresupuestoLlamadas {
+
+    private final long intervaloNanos;
+    // Turnos que pueden quedar por detrás del reloj tras un periodo de inactividad: (ráfaga - 1).
+    private final long toleranciaNanos;
+    private final int rafaga;
+    private long siguienteTurno = System.nanoTime();
+
+    PresupuestoLlamadas(int llamadasPorMinuto) {
+        this(llamadasPorMinuto, 1);
+    }
+
+    PresupuestoLlamadas(int llamadasPorMinuto, int rafaga) {
+        this.intervaloNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, llamadasPorMinuto);
+        this.rafaga = Math.max(1, rafaga);
+        this.toleranciaNanos = (this.rafaga - 1) * intervaloNanos;
+    }
+
+    /**
+     * Bloquea hasta el turno reservado para esta llamada.
+     */
+    void esperarTurno() throws InterruptedException {
+        esperarTurno(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Reserva turno si llega antes de {@code esperaMaxima} y espera hasta él. Devuelve {@code false} sin reservar
+     * nada si habría que esperar más.
+     */
+    boolean esperarTurno(long esperaMaxima, TimeUnit unidad) throws InterruptedException {
+        long espera = reservar(unidad.toNanos(esperaMaxima));
+        if (espera < 0) {
+            return false;
+        }
+        if (espera > 0) {
+            TimeUnit.NANOSECONDS.sleep(espera);
+        }
+        return true;
+    }
+
+    /**
+     * Llamadas que podrían hacerse ahora mismo sin esperar.
+     */
+    synchronized int disponibles() {
+        long ahora = System.nanoTime();
+        long turno = Math.max(ahora - toleranciaNanos, siguienteTurno);
+        if (turno > ahora) {
+            return 0;
+        }
+        return (int) Math.min(rafaga, (ahora - turno) / intervaloNanos + 1);
+    }
+
+    // Espera en nanos hasta el turno reservado, o -1 si supera esperaMaximaNanos.
+    private synchronized long reservar(long esperaMaximaNanos) {
+        long ahora = System.nanoTime();
+        long turno = Math.max(ahora - toleranciaNanos, siguienteTurno);
+        long espera = Math.max(0, turno - ahora);
+        if (espera > esperaMaximaNanos) {
+            return -1;
+        }
+        siguienteTurno = turno + intervaloNanos;
+        return espera;
+    }
+}
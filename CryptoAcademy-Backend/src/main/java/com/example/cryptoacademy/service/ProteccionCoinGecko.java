@@ -0,0 +1,234 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.exception.CoinGeckoNoDisponibleException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.InterruptedIOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Protección del cliente de CoinGecko, compartida por todos sus llamantes (refresco, {@code DataInitializer},
+ * controlador y gráficos).
+ * <ul>
+ *     <li>Presupuesto de llamadas por minuto del plan contratado, con una pequeña ráfaga. Si no hay turno antes de la
+ *     espera máxima, la llamada se rechaza en lugar de acumularse.</li>
+ *     <li>Circuito: un 429 lo abre en el acto y {@code umbral-fallos} fallos seguidos (5xx, timeouts, red) también.
+ *     Abierto, las llamadas fallan al instante con {@link CoinGeckoNoDisponibleException} y cada llamante sirve lo
+ *     que ya tenga (caché de gráficos, velas, datos en BD).</li>
+ *     <li>La pausa empieza en {@code pausa-base-ms} y se duplica en cada apertura seguida hasta {@code pausa-maxima-ms};
+ *     un {@code Retry-After} mayor manda. Pasada la pausa se deja pasar una única llamada de prueba: si va bien el
+ *     circuito se cierra y la pausa vuelve a la base; si falla se reabre.</li>
+ * </ul>
+ */
+@Component
+public class ProteccionCoinGecko {
+
+    private static final Logger log = LoggerFactory.getLogger(ProteccionCoinGecko.class);
+
+    enum EstadoCircuito {
+        CERRADO, SEMIABIERTO, ABIERTO
+    }
+
+    private final PresupuestoLlamadas presupuesto;
+    private final long esperaMaximaMs;
+    private final int umbralFallos;
+    private final long pausaBaseMs;
+    private final long pausaMaximaMs;
+
+    private final Counter exitos;
+    private final Counter errores;
+    private final Counter limitadas;
+    private final Counter rechazadas;
+    private final Counter sinPresupuesto;
+    private final Counter aperturas;
+
+    // Estado del circuito, protegido por this.
+    private EstadoCircuito estado = EstadoCircuito.CERRADO;
+    private int fallosSeguidos;
+    private int aperturasSeguidas;
+    private long pausaActualMs;
+    private long abiertoHastaMs;
+    private boolean pruebaEnCurso;
+
+    public ProteccionCoinGecko(MeterRegistry meterRegistry,
+                               @Value("${coingecko.limite.llamadas-por-minuto:30}") int llamadasPorMinuto,
+                               @Value("${coingecko.limite.rafaga:5}") int rafaga,
+                               @Value("${coingecko.limite.espera-maxima-ms:10000}") long esperaMaximaMs,
+                               @Value("${coingecko.circuito.umbral-fallos:5}") int umbralFallos,
+                               @Value("${coingecko.circuito.pausa-base-ms:15000}") long pausaBaseMs,
+                               @Value("${coingecko.circuito.pausa-maxima-ms:600000}") long pausaMaximaMs) {
+        this.presupuesto = new PresupuestoLlamadas(llamadasPorMinuto, rafaga);
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.umbralFallos = Math.max(1, umbralFallos);
+        this.pausaBaseMs = Math.max(1, pausaBaseMs);
+        this.pausaMaximaMs = Math.max(this.pausaBaseMs, pausaMaximaMs);
+
+        this.exitos = contador(meterRegistry, "exito");
+        this.errores = contador(meterRegistry, "error");
+        this.limitadas = contador(meterRegistry, "limitada");
+        this.rechazadas = contador(meterRegistry, "rechazada");
+        this.sinPresupuesto = contador(meterRegistry, "sin_presupuesto");
+        this.aperturas = Counter.builder("coingecko.circuito.aperturas")
+                .description("Veces que se ha abierto el circuito de CoinGecko")
+                .register(meterRegistry);
+        Gauge.builder("coingecko.circuito.estado", this, p -> p.estado().ordinal())
+                .description("Estado del circuito de CoinGecko: 0 cerrado, 1 semiabierto, 2 abierto")
+                .register(meterRegistry);
+        Gauge.builder("coingecko.circuito.pausa.restante", this, p -> p.pausaRestanteMs() / 1000.0)
+                .description("Segundos hasta que el circuito abierto deje pasar una llamada de prueba")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("coingecko.circuito.pausa.actual", this, p -> p.pausaActualMs() / 1000.0)
+                .description("Duración de la última apertura del circuito (crece con las aperturas seguidas)")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("coingecko.limite.disponibles", presupuesto, PresupuestoLlamadas::disponibles)
+                .description("Llamadas a CoinGecko que pueden hacerse ahora sin esperar turno")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Se llama antes de cada petición: comprueba el circuito y espera turno en el presupuesto.
+     */
+    public void adquirir(String contexto) throws InterruptedIOException, CoinGeckoNoDisponibleException {
+        boolean esPrueba = false;
+        synchronized (this) {
+            long ahora = System.currentTimeMillis();
+            if (estado == EstadoCircuito.ABIERTO && ahora >= abiertoHastaMs) {
+                estado = EstadoCircuito.SEMIABIERTO;
+                pruebaEnCurso = false;
+            }
+            if (estado == EstadoCircuito.ABIERTO || (estado == EstadoCircuito.SEMIABIERTO && pruebaEnCurso)) {
+                rechazadas.increment();
+                throw new CoinGeckoNoDisponibleException("Circuito de CoinGecko abierto; no se solicita " + contexto,
+                        Math.max(0, abiertoHastaMs - ahora));
+            }
+            if (estado == EstadoCircuito.SEMIABIERTO) {
+                pruebaEnCurso = true;
+                esPrueba = true;
+            }
+        }
+        try {
+            if (!presupuesto.esperarTurno(esperaMaximaMs, TimeUnit.MILLISECONDS)) {
+                sinPresupuesto.increment();
+                liberarPrueba(esPrueba);
+                throw new CoinGeckoNoDisponibleException("Sin presupuesto de llamadas a CoinGecko para " + contexto, esperaMaximaMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            liberarPrueba(esPrueba);
+            throw new InterruptedIOException("Interrumpido esperando turno para llamar a CoinGecko (" + contexto + ")");
+        }
+    }
+
+    /**
+     * Registra el código de una respuesta recibida. Los 4xx distintos de 429 son errores de la petición, no del
+     * upstream, y cuentan como respuesta correcta para el circuito.
+     */
+    public void registrarRespuesta(int codigo, String retryAfter) {
+        if (codigo == 429) {
+            limitadas.increment();
+            registrarFallo(true, retryAfterMs(retryAfter));
+        } else if (codigo >= 500) {
+            errores.increment();
+            registrarFallo(false, retryAfterMs(retryAfter));
+        } else {
+            exitos.increment();
+            registrarExito();
+        }
+    }
+
+    /**
+     * Registra una llamada sin respuesta (timeout, conexión rechazada, etc.).
+     */
+    public void registrarFalloDeRed() {
+        errores.increment();
+        registrarFallo(false, 0);
+    }
+
+    synchronized EstadoCircuito estado() {
+        return estado;
+    }
+
+    synchronized long pausaRestanteMs() {
+        return estado == EstadoCircuito.ABIERTO ? Math.max(0, abiertoHastaMs - System.currentTimeMillis()) : 0;
+    }
+
+    synchronized long pausaActualMs() {
+        return pausaActualMs;
+    }
+
+    private synchronized void registrarExito() {
+        if (estado != EstadoCircuito.CERRADO) {
+            log.info("Circuito de CoinGecko cerrado tras una llamada de prueba correcta.");
+        }
+        estado = EstadoCircuito.CERRADO;
+        fallosSeguidos = 0;
+        aperturasSeguidas = 0;
+        pruebaEnCurso = false;
+    }
+
+    private synchronized void registrarFallo(boolean limitada, long retryAfterMs) {
+        fallosSeguidos++;
+        long ahora = System.currentTimeMillis();
+        if (estado == EstadoCircuito.ABIERTO) {
+            // Respuestas de llamadas que ya estaban en curso al abrir: solo pueden alargar la pausa vigente.
+            abiertoHastaMs = Math.max(abiertoHastaMs, ahora + retryAfterMs);
+            return;
+        }
+        if (!limitada && estado == EstadoCircuito.CERRADO && fallosSeguidos < umbralFallos) {
+            return;
+        }
+        aperturasSeguidas++;
+        long pausaExponencial = pausaBaseMs << Math.min(aperturasSeguidas - 1, 20);
+        pausaActualMs = Math.max(Math.min(pausaExponencial, pausaMaximaMs), retryAfterMs);
+        abiertoHastaMs = ahora + pausaActualMs;
+        estado = EstadoCircuito.ABIERTO;
+        pruebaEnCurso = false;
+        aperturas.increment();
+        log.warn("Circuito de CoinGecko abierto durante {} ms ({}, {} fallos seguidos).",
+                pausaActualMs, limitada ? "429 Too Many Requests" : "fallos del upstream", fallosSeguidos);
+    }
+
+    private synchronized void liberarPrueba(boolean esPrueba) {
+        if (esPrueba) {
+            pruebaEnCurso = false;
+        }
+    }
+
+    /**
+     * {@code Retry-After} en segundos o como fecha HTTP; 0 si falta o no se entiende.
+     */
+    static long retryAfterMs(String retryAfter) {
+        if (retryAfter == null || retryAfter.isBlank()) {
+            return 0;
+        }
+        String valor = retryAfter.trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(valor)));
+        } catch (NumberFormatException e) {
+            try {
+                long instante = ZonedDateTime.parse(valor, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                return Math.max(0, instante - System.currentTimeMillis());
+            } catch (DateTimeParseException ignorada) {
+                return 0;
+            }
+        }
+    }
+
+    private static Counter contador(MeterRegistry meterRegistry, String resultado) {
+        return Counter.builder("coingecko.llamadas")
+                .description("Llamadas a CoinGecko, por resultado")
+                .tag("resultado", resultado)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.cryptoacademy.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Aritmética monetaria en coma fija sobre {@code long}: importes en EUR con 4 decimales (1e4) y cantidades de
+ * cripto con 8 (1e8), las mismas escalas que las columnas DECIMAL(19,4) y DECIMAL(24,8). Los bucles de valoración
+ * y agregación operan con primitivos y solo se convierte a {@link BigDecimal} al construir los DTO.
+ * Las operaciones redondean HALF_UP, como el resto del servicio, y lanzan {@link ArithmeticException} si el
+ * resultado no cabe en un {@code long}.
+ */
+public final class PuntoFijo {
+
+    public static final int ESCALA_EUR = 4;
+    public static final int ESCALA_CANTIDAD = 8;
+
+    private static final long FACTOR_CANTIDAD = 100_000_000L;
+    private static final long[] POTENCIAS_DIEZ = {1L, 10L, 100L, 1_000L, 10_000L};
+
+    private PuntoFijo() {
+    }
+
+    public static long desdeBigDecimal(BigDecimal valor, int escala) {
+        if (valor == null) {
+            return 0L;
+        }
+        return valor.setScale(escala, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static long eur(BigDecimal valor) {
+        return desdeBigDecimal(valor, ESCALA_EUR);
+    }
+
+    public static long cantidad(BigDecimal valor) {
+        return desdeBigDecimal(valor, ESCALA_CANTIDAD);
+    }
+
+    public static BigDecimal aBigDecimal(long valor, int escala) {
+        return BigDecimal.valueOf(valor, escala);
+    }
+
+    public static long sumar(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long restar(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * Valor de {@code cantidad} (escala 8) a {@code precio} (escala 4, EUR), redondeado una sola vez a
+     * {@code escala} decimales (0 a 4), igual que {@code cantidad.multiply(precio).setScale(escala, HALF_UP)}.
+     * El producto se reparte entre parte entera y fraccionaria de la cantidad para no desbordar con carteras
+     * grandes; solo en casos extremos (precios de millones de EUR por unidad) recurre a {@link BigDecimal}.
+     */
+    public static long valorar(long cantidad, long precio, int escala) {
+        if (escala < 0 || escala > ESCALA_EUR) {
+            throw new IllegalArgumentException("Escala de valoración no soportada: " + escala);
+        }
+        if (cantidad < 0 || precio < 0) {
+            return valorarExacto(cantidad, precio, escala);
+        }
+        try {
+            long parteEntera = Math.multiplyExact(cantidad / FACTOR_CANTIDAD, precio);        // escala 4
+            long parteFraccion = Math.multiplyExact(cantidad % FACTOR_CANTIDAD, precio);      // escala 12
+            long valor = Math.addExact(parteEntera, parteFraccion / FACTOR_CANTIDAD);         // escala 4, truncado
+            long restoFraccion = parteFraccion % FACTOR_CANTIDAD;
+
+            long divisor = POTENCIAS_DIEZ[ESCALA_EUR - escala];
+            long cociente = valor / divisor;
+            // Lo descartado, en escala 12, frente a la mitad de una unidad de la escala pedida.
+            long descartado = (valor % divisor) * FACTOR_CANTIDAD + restoFraccion;
+            if (descartado * 2 >= divisor * FACTOR_CANTIDAD) {
+                cociente = Math.incrementExact(cociente);
+            }
+            return cociente;
+        } catch (ArithmeticException e) {
+            return valorarExacto(cantidad, precio, escala);
+        }
+    }
+
+    private static long valorarExacto(long cantidad, long precio, int escala) {
+        return BigDecimal.valueOf(cantidad, ESCALA_CANTIDAD)
+                .multiply(BigDecimal.valueOf(precio, ESCALA_EUR))
+                .setScale(escala, RoundingMode.HALF_UP)
+                .unscaledValue()
+                .longValueExact();
+    }
+}
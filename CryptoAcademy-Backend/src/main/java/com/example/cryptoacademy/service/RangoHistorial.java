@@ -0,0 +1,42 @@
+package com.example.cryptoacademy.service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Rangos admitidos por el historial de valor de una cartera ({@code ?rango=}).
+ */
+public enum RangoHistorial {
+    DIA("1d", Duration.ofDays(1)),
+    SEMANA("7d", Duration.ofDays(7)),
+    MES("1m", Duration.ofDays(30)),
+    TRIMESTRE("3m", Duration.ofDays(90)),
+    ANIO("1a", Duration.ofDays(365)),
+    TODO("max", null);
+
+    private final String codigo;
+    private final Duration duracion;
+
+    RangoHistorial(String codigo, Duration duracion) {
+        this.codigo = codigo;
+        this.duracion = duracion;
+    }
+
+    public String getCodigo() {
+        return codigo;
+    }
+
+    // null en TODO: el historial empieza en el primer snapshot de la cartera.
+    public Duration getDuracion() {
+        return duracion;
+    }
+
+    public static Optional<RangoHistorial> desdeCodigo(String codigo) {
+        for (RangoHistorial rango : values()) {
+            if (rango.codigo.equalsIgnoreCase(codigo)) {
+                return Optional.of(rango);
+            }
+        }
+        return Optional.empty();
+    }
+}
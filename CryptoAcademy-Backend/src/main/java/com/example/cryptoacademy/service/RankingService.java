@@ -1,8 +1,23 @@
 package com.example.cryptoacademy.service;
 
 import com.example.cryptoacademy.dto.RankingItemDTO;
+import com.example.cryptoacademy.dto.ResumenUsuarioDTO;
 import java.util.List;
+import java.util.Optional;
 
 public interface RankingService {
     List<RankingItemDTO> obtenerRanking(int limite);
+
+    // Foto versionada desde la que se sirven las páginas y la posición propia.
+    RankingSnapshot obtenerSnapshot();
+
+    // Posiciones desde 'desde' (1 = primero) hasta 'desde + cantidad - 1'.
+    List<RankingItemDTO> obtenerRango(int desde, int cantidad);
+
+    Optional<RankingItemDTO> obtenerPosicionUsuario(Integer idUsuario);
+
+    int contarUsuarios();
+
+    // Saldo, valor cripto y posición del usuario desde los totales en memoria, cargándolo si aún no lo está; vacío si no existe.
+    Optional<ResumenUsuarioDTO> obtenerResumenUsuario(Integer idUsuario);
 }
@@ -1,33 +1,91 @@
 package com.example.cryptoacademy.service;
 
 import com.example.cryptoacademy.dto.RankingItemDTO;
-
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
-import jakarta.persistence.Query;
+import com.example.cryptoacademy.dto.ResumenUsuarioDTO;
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import com.example.cryptoacademy.persistance.model.Transaccion;
+import com.example.cryptoacademy.persistance.repository.CarteraRepository;
+import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import com.example.cryptoacademy.persistance.repository.CriptosAlmacenadasRepository;
+import com.example.cryptoacademy.persistance.repository.UsuarioRepository;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-
+/**
+ * Ranking de usuarios por valor total de portfolio (saldo EUR de todas sus carteras más sus criptos a precio actual)
+ * mantenido en memoria en un {@link ArbolRanking}. Se construye una vez al arrancar y después solo se recalculan
+ * los usuarios afectados: los que han operado (recargados desde BD en el siguiente ciclo) y, tras cada refresco de
+ * precios, los que tienen alguna cripto cuyo precio ha cambiado (revalorados con las tenencias ya en memoria).
+ * Las lecturas se sirven desde un {@link RankingSnapshot} que se vuelve a generar una vez por refresco de precios.
+ * Los mismos totales por usuario alimentan {@link #obtenerResumenUsuario}: las operaciones de trading se aplican
+ * al momento sobre el saldo y las tenencias en memoria y se concilian con BD en el siguiente ciclo.
+ */
 @Service
 public class RankingServiceImpl implements RankingService {
 
     private static final Logger log = LoggerFactory.getLogger(RankingServiceImpl.class);
+    private static final int TAMAÑO_LOTE_RECARGA = 500;
+    private static final int ESCALA_VALOR_RANKING = 2;
+
+    private final UsuarioRepository usuarioRepository;
+    private final CarteraRepository carteraRepository;
+    private final CriptosAlmacenadasRepository criptosAlmacenadasRepository;
+    private final CriptomonedaRepository criptomonedaRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private ArbolRanking arbol = new ArbolRanking();
+    private final Map<Integer, Puntuacion> puntuaciones = new HashMap<>();
+    private final Map<String, Long> precios = new HashMap<>();
+    private final Map<String, Set<Integer>> tenedores = new HashMap<>();
+
+    private final Set<Integer> pendientes = ConcurrentHashMap.newKeySet();
+    private volatile boolean construido;
 
-    @PersistenceContext
-    private EntityManager entityManager;
+    private final Object publicacion = new Object();
+    private volatile RankingSnapshot snapshot = RankingSnapshot.vacio();
+
+    private static final class Puntuacion {
+        final int idUsuario;
+        String nombre;
+        String email;
+        long saldo;                                   // EUR, escala 4
+        Map<String, Long> cantidades = Map.of();      // escala 8, sumando todas sus carteras
+        long valor;                                   // EUR, escala 4
+
+        Puntuacion(int idUsuario) {
+            this.idUsuario = idUsuario;
+        }
+    }
 
     @Autowired
-    public RankingServiceImpl(EntityManager entityManager) {
-        this.entityManager = entityManager;
+    public RankingServiceImpl(UsuarioRepository usuarioRepository,
+                              CarteraRepository carteraRepository,
+                              CriptosAlmacenadasRepository criptosAlmacenadasRepository,
+                              CriptomonedaRepository criptomonedaRepository) {
+        this.usuarioRepository = usuarioRepository;
+        this.carteraRepository = carteraRepository;
+        this.criptosAlmacenadasRepository = criptosAlmacenadasRepository;
+        this.criptomonedaRepository = criptomonedaRepository;
     }
 
     private String ocultarEmail(String email) {
@@ -46,36 +104,338 @@ public class RankingServiceImpl implements RankingService {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public List<RankingItemDTO> obtenerRanking(int limite) {
-        log.info("Calculando ranking para el Top {} usuarios usando procedimiento almacenado.", limite);
-        Query query = entityManager.createNativeQuery("CALL CalcularRankingUsuarios(:limiteParam)")
-                .setParameter("limiteParam", limite);
+        return obtenerSnapshot().pagina(0, limite);
+    }
 
-        @SuppressWarnings("unchecked")
-        List<Object[]> resultadosNativos = query.getResultList();
+    @Override
+    public RankingSnapshot obtenerSnapshot() {
+        asegurarConstruido();
+        return snapshot;
+    }
 
-        List<RankingItemDTO> rankingFinal = new ArrayList<>();
+    @Override
+    public List<RankingItemDTO> obtenerRango(int desde, int cantidad) {
+        asegurarConstruido();
+        List<RankingItemDTO> resultado = new ArrayList<>(Math.max(0, Math.min(cantidad, 1000)));
+        lock.readLock().lock();
+        try {
+            arbol.recorrer(desde, cantidad, (idUsuario, posicion) ->
+                    resultado.add(aDTO(puntuaciones.get(idUsuario), posicion)));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return resultado;
+    }
 
-        for (Object[] fila : resultadosNativos) {
+    @Override
+    public Optional<RankingItemDTO> obtenerPosicionUsuario(Integer idUsuario) {
+        asegurarConstruido();
+        lock.readLock().lock();
+        try {
+            Puntuacion puntuacion = puntuaciones.get(idUsuario);
+            if (puntuacion == null) {
+                return Optional.empty();
+            }
+            return Optional.of(aDTO(puntuacion, arbol.posicion(puntuacion.valor, puntuacion.idUsuario)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-            int posicion = ((Number) fila[0]).intValue();
-            Integer idUsuario = ((Number) fila[1]).intValue();
-            String nombreUsuario = (String) fila[2];
-            String emailDevueltoPorSP = (String) fila[3]; // Email devuelto por el SP
-            BigDecimal valorTotalPortfolioEUR = (BigDecimal) fila[4];
+    @Override
+    public Optional<ResumenUsuarioDTO> obtenerResumenUsuario(Integer idUsuario) {
+        asegurarConstruido();
+        Optional<ResumenUsuarioDTO> resumen = resumenEnMemoria(idUsuario);
+        if (resumen.isPresent()) {
+            return resumen;
+        }
+        // Registrado después de la última carga: se incorpora al ranking en el momento.
+        recargar(List.of(idUsuario));
+        return resumenEnMemoria(idUsuario);
+    }
 
-            rankingFinal.add(new RankingItemDTO(
-                    posicion,
-                    idUsuario,
-                    nombreUsuario,
-                    ocultarEmail(emailDevueltoPorSP),
-                    valorTotalPortfolioEUR
+    private Optional<ResumenUsuarioDTO> resumenEnMemoria(Integer idUsuario) {
+        lock.readLock().lock();
+        try {
+            Puntuacion puntuacion = puntuaciones.get(idUsuario);
+            if (puntuacion == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new ResumenUsuarioDTO(
+                    PuntoFijo.aBigDecimal(puntuacion.saldo, PuntoFijo.ESCALA_EUR),
+                    PuntoFijo.aBigDecimal(PuntoFijo.restar(puntuacion.valor, puntuacion.saldo), PuntoFijo.ESCALA_EUR),
+                    PuntoFijo.aBigDecimal(puntuacion.valor, PuntoFijo.ESCALA_EUR),
+                    arbol.posicion(puntuacion.valor, puntuacion.idUsuario),
+                    arbol.tamaño()
             ));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int contarUsuarios() {
+        asegurarConstruido();
+        lock.readLock().lock();
+        try {
+            return arbol.tamaño();
+        } finally {
+            lock.readLock().unlock();
         }
+    }
+
+    /**
+     * Carga completa: todos los usuarios, el saldo y las tenencias agregadas por usuario y los precios actuales,
+     * en cuatro consultas. Se repite periódicamente como red de seguridad frente a cambios hechos fuera de la
+     * aplicación.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${ranking.reconstruccion.interval.ms:3600000}",
+            fixedDelayString = "${ranking.reconstruccion.interval.ms:3600000}")
+    public synchronized void construir() {
+        long inicio = System.currentTimeMillis();
+        List<Object[]> usuarios = usuarioRepository.findDatosRanking();
+        List<Object[]> saldos = carteraRepository.sumarSaldosPorUsuario();
+        List<Object[]> cantidades = criptosAlmacenadasRepository.sumarCantidadesPorUsuario();
+        List<Object[]> preciosActuales = criptomonedaRepository.findPreciosActuales();
 
-        log.info("Ranking calculado con {} usuarios desde el procedimiento almacenado.", rankingFinal.size());
-        return rankingFinal;
+        lock.writeLock().lock();
+        try {
+            arbol = new ArbolRanking();
+            puntuaciones.clear();
+            tenedores.clear();
+            precios.clear();
+            for (Object[] fila : preciosActuales) {
+                precios.put((String) fila[0], PuntoFijo.eur((BigDecimal) fila[1]));
+            }
+            aplicarRecarga(usuarios, saldos, cantidades, Set.of());
+            construido = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // Las reconstrucciones periódicas se reflejan en la foto con el siguiente refresco de precios.
+        if (snapshot.getVersion() == 0) {
+            publicarSnapshot();
+        }
+        log.info("Ranking construido en memoria con {} usuarios en {} ms.", puntuaciones.size(), System.currentTimeMillis() - inicio);
     }
 
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPortfolioModificado(PortfolioModificadoEvent event) {
+        if (event.idUsuario() == null) {
+            return;
+        }
+        if (construido && !event.transacciones().isEmpty()) {
+            lock.writeLock().lock();
+            try {
+                aplicarTransacciones(event.idUsuario(), event.transacciones());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        // También con las transacciones aplicadas: la recarga deja el saldo exacto de BD.
+        pendientes.add(event.idUsuario());
+    }
+
+    /**
+     * Recarga desde BD solo los usuarios marcados desde el ciclo anterior.
+     */
+    @Scheduled(fixedDelayString = "${ranking.refresco.interval.ms:1000}")
+    public synchronized void recalcularPendientes() {
+        if (!construido || pendientes.isEmpty()) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(pendientes);
+        ids.forEach(pendientes::remove);
+
+        for (int desde = 0; desde < ids.size(); desde += TAMAÑO_LOTE_RECARGA) {
+            recargar(ids.subList(desde, Math.min(desde + TAMAÑO_LOTE_RECARGA, ids.size())));
+        }
+        log.debug("Ranking: recalculados {} usuarios modificados.", ids.size());
+    }
+
+    private synchronized void recargar(List<Integer> lote) {
+        List<Object[]> usuarios = usuarioRepository.findDatosRanking(lote);
+        List<Object[]> saldos = carteraRepository.sumarSaldosPorUsuario(lote);
+        List<Object[]> cantidades = criptosAlmacenadasRepository.sumarCantidadesPorUsuario(lote);
+
+        lock.writeLock().lock();
+        try {
+            aplicarRecarga(usuarios, saldos, cantidades, lote);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPreciosActualizados(PreciosActualizadosEvent event) {
+        if (!construido) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Set<Integer> afectados = new HashSet<>();
+            event.precios().forEach((idCriptomoneda, precio) -> {
+                long nuevo = PuntoFijo.eur(precio);
+                Long anterior = precios.put(idCriptomoneda, nuevo);
+                if (anterior == null || anterior != nuevo) {
+                    afectados.addAll(tenedores.getOrDefault(idCriptomoneda, Set.of()));
+                }
+            });
+            for (Integer idUsuario : afectados) {
+                Puntuacion puntuacion = puntuaciones.get(idUsuario);
+                reposicionar(puntuacion, valorar(puntuacion));
+            }
+            log.debug("Ranking: revalorados {} usuarios tras el refresco de precios.", afectados.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        publicarSnapshot();
+    }
+
+    private void publicarSnapshot() {
+        synchronized (publicacion) {
+            List<RankingItemDTO> items;
+            lock.readLock().lock();
+            try {
+                items = new ArrayList<>(arbol.tamaño());
+                arbol.recorrer(1, arbol.tamaño(), (idUsuario, posicion) ->
+                        items.add(aDTO(puntuaciones.get(idUsuario), posicion)));
+            } finally {
+                lock.readLock().unlock();
+            }
+            snapshot = new RankingSnapshot(snapshot.getVersion() + 1, items);
+            log.debug("Publicada la versión {} del ranking con {} usuarios.", snapshot.getVersion(), items.size());
+        }
+    }
+
+    private void asegurarConstruido() {
+        if (!construido) {
+            synchronized (this) {
+                if (!construido) {
+                    construir();
+                }
+            }
+        }
+    }
+
+    // Llamar con el lock de escritura. Los ids de 'recargados' que ya no aparecen en 'usuarios' se eliminan.
+    private void aplicarRecarga(List<Object[]> usuarios, List<Object[]> saldos, List<Object[]> cantidades,
+                                Collection<Integer> recargados) {
+        Map<Integer, Long> saldoPorUsuario = new HashMap<>();
+        for (Object[] fila : saldos) {
+            saldoPorUsuario.put(((Number) fila[0]).intValue(), PuntoFijo.eur((BigDecimal) fila[1]));
+        }
+        Map<Integer, Map<String, Long>> cantidadesPorUsuario = new HashMap<>();
+        for (Object[] fila : cantidades) {
+            long cantidad = PuntoFijo.cantidad((BigDecimal) fila[2]);
+            if (cantidad != 0) {
+                cantidadesPorUsuario.computeIfAbsent(((Number) fila[0]).intValue(), k -> new HashMap<>())
+                        .put((String) fila[1], cantidad);
+            }
+        }
+
+        Set<Integer> eliminados = new HashSet<>(recargados);
+        for (Object[] fila : usuarios) {
+            int idUsuario = ((Number) fila[0]).intValue();
+            eliminados.remove(idUsuario);
+
+            Puntuacion puntuacion = puntuaciones.get(idUsuario);
+            boolean nueva = puntuacion == null;
+            if (nueva) {
+                puntuacion = new Puntuacion(idUsuario);
+                puntuaciones.put(idUsuario, puntuacion);
+            }
+            puntuacion.nombre = (String) fila[1];
+            puntuacion.email = (String) fila[2];
+            puntuacion.saldo = saldoPorUsuario.getOrDefault(idUsuario, 0L);
+            actualizarTenencias(puntuacion, cantidadesPorUsuario.getOrDefault(idUsuario, Map.of()));
+
+            if (nueva) {
+                puntuacion.valor = valorar(puntuacion);
+                arbol.insertar(puntuacion.valor, idUsuario);
+            } else {
+                reposicionar(puntuacion, valorar(puntuacion));
+            }
+        }
+
+        for (Integer idUsuario : eliminados) {
+            Puntuacion puntuacion = puntuaciones.remove(idUsuario);
+            if (puntuacion != null) {
+                arbol.eliminar(puntuacion.valor, idUsuario);
+                actualizarTenencias(puntuacion, Map.of());
+            }
+        }
+    }
+
+    // Llamar con el lock de escritura.
+    private void aplicarTransacciones(Integer idUsuario, List<Transaccion> transacciones) {
+        Puntuacion puntuacion = puntuaciones.get(idUsuario);
+        if (puntuacion == null) {
+            return;
+        }
+        Map<String, Long> cantidades = new HashMap<>(puntuacion.cantidades);
+        for (Transaccion transaccion : transacciones) {
+            long importe = PuntoFijo.eur(transaccion.getValorTotalEUR());
+            long cantidad = PuntoFijo.cantidad(transaccion.getCantidadCripto());
+            if (transaccion.getTipoTransaccion() == TipoTransaccion.VENTA) {
+                importe = -importe;
+                cantidad = -cantidad;
+            }
+            puntuacion.saldo = PuntoFijo.restar(puntuacion.saldo, importe);
+            String idCriptomoneda = transaccion.getCriptomoneda().getId_Criptomoneda();
+            long resultante = PuntoFijo.sumar(cantidades.getOrDefault(idCriptomoneda, 0L), cantidad);
+            if (resultante > 0) {
+                cantidades.put(idCriptomoneda, resultante);
+            } else {
+                cantidades.remove(idCriptomoneda);
+            }
+        }
+        actualizarTenencias(puntuacion, cantidades);
+        reposicionar(puntuacion, valorar(puntuacion));
+    }
+
+    private void actualizarTenencias(Puntuacion puntuacion, Map<String, Long> nuevas) {
+        for (String idCriptomoneda : puntuacion.cantidades.keySet()) {
+            if (!nuevas.containsKey(idCriptomoneda)) {
+                Set<Integer> ids = tenedores.get(idCriptomoneda);
+                if (ids != null) {
+                    ids.remove(puntuacion.idUsuario);
+                }
+            }
+        }
+        for (String idCriptomoneda : nuevas.keySet()) {
+            tenedores.computeIfAbsent(idCriptomoneda, k -> new HashSet<>()).add(puntuacion.idUsuario);
+        }
+        puntuacion.cantidades = nuevas;
+    }
+
+    private void reposicionar(Puntuacion puntuacion, long valor) {
+        if (puntuacion.valor == valor) {
+            return;
+        }
+        arbol.eliminar(puntuacion.valor, puntuacion.idUsuario);
+        puntuacion.valor = valor;
+        arbol.insertar(valor, puntuacion.idUsuario);
+    }
+
+    private long valorar(Puntuacion puntuacion) {
+        long total = puntuacion.saldo;
+        for (Map.Entry<String, Long> tenencia : puntuacion.cantidades.entrySet()) {
+            long precio = precios.getOrDefault(tenencia.getKey(), 0L);
+            total = PuntoFijo.sumar(total, PuntoFijo.valorar(tenencia.getValue(), precio, PuntoFijo.ESCALA_EUR));
+        }
+        return total;
+    }
+
+    private RankingItemDTO aDTO(Puntuacion puntuacion, int posicion) {
+        return new RankingItemDTO(
+                posicion,
+                puntuacion.idUsuario,
+                puntuacion.nombre,
+                ocultarEmail(puntuacion.email),
+                PuntoFijo.aBigDecimal(puntuacion.valor, PuntoFijo.ESCALA_EUR).setScale(ESCALA_VALOR_RANKING, RoundingMode.HALF_UP)
+        );
+    }
 }
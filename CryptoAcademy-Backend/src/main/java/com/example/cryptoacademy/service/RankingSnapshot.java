@@ -0,0 +1,92 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.RankingItemDTO;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+
+/**
+ * Foto inmutable y versionada del ranking completo. {@link RankingServiceImpl} publica una nueva como mucho una
+ * vez por refresco de precios y todas las lecturas (páginas y posición propia) se sirven desde ella, de modo que
+ * una misma versión devuelve siempre el mismo contenido y puede validarse con ETag.
+ */
+public final class RankingSnapshot {
+
+    // El instante de arranque distingue en el ETag versiones con el mismo número tras un reinicio.
+    private static final long INICIO = System.currentTimeMillis();
+
+    private final long version;
+    private final LocalDateTime generadoEn;
+    private final List<RankingItemDTO> items;
+    private final Map<Integer, Integer> indicePorUsuario;
+    private final String etagBase;
+
+    RankingSnapshot(long version, List<RankingItemDTO> items) {
+        this.version = version;
+        this.generadoEn = LocalDateTime.now();
+        this.items = List.copyOf(items);
+        this.indicePorUsuario = new HashMap<>(items.size() * 2);
+        for (int i = 0; i < items.size(); i++) {
+            indicePorUsuario.put(items.get(i).getIdUsuario(), i);
+        }
+        this.etagBase = Long.toHexString(INICIO) + "-" + version;
+    }
+
+    static RankingSnapshot vacio() {
+        return new RankingSnapshot(0, List.of());
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public LocalDateTime getGeneradoEn() {
+        return generadoEn;
+    }
+
+    public int totalUsuarios() {
+        return items.size();
+    }
+
+    /**
+     * Página {@code pagina} (desde 0) de {@code tamaño} posiciones; vacía si se sale del ranking.
+     */
+    public List<RankingItemDTO> pagina(int pagina, int tamaño) {
+        long desde = (long) pagina * tamaño;
+        if (pagina < 0 || tamaño <= 0 || desde >= items.size()) {
+            return List.of();
+        }
+        return items.subList((int) desde, (int) Math.min(desde + tamaño, items.size()));
+    }
+
+    /**
+     * Índice (desde 0) del usuario en esta versión del ranking, si ya figura en ella.
+     */
+    public OptionalInt indiceDe(Integer idUsuario) {
+        Integer indice = indicePorUsuario.get(idUsuario);
+        return indice == null ? OptionalInt.empty() : OptionalInt.of(indice);
+    }
+
+    /**
+     * Posiciones de {@code indice - vecinos} a {@code indice + vecinos}, recortadas a los extremos del ranking.
+     */
+    public List<RankingItemDTO> entorno(int indice, int vecinos) {
+        int desde = Math.max(0, indice - vecinos);
+        int hasta = Math.min(items.size(), indice + vecinos + 1);
+        return items.subList(desde, hasta);
+    }
+
+    public RankingItemDTO get(int indice) {
+        return items.get(indice);
+    }
+
+    /**
+     * ETag fuerte para una vista concreta ({@code vista} identifica página, usuario, etc.).
+     */
+    public String etag(String vista) {
+        return "\"" + etagBase + "-" + vista + "\"";
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.cryptoacademy.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Puntos {@code [instante ms, precio]} del array {@code prices} de un gráfico de CoinGecko, leídos token a token
+ * sobre arrays primitivos: ni {@code List<List<Double>>} ni un {@code Double} por número. Los arrays
+ * {@code market_caps} y {@code total_volumes} se saltan sin materializarlos.
+ */
+public final class SeriePrecios {
+
+    private static final SeriePrecios VACIA = new SeriePrecios(new long[0], new double[0], 0);
+
+    private final long[] instantes;
+    private final double[] precios;
+    private final int tamaño;
+
+    private SeriePrecios(long[] instantes, double[] precios, int tamaño) {
+        this.instantes = instantes;
+        this.precios = precios;
+        this.tamaño = tamaño;
+    }
+
+    static SeriePrecios vacia() {
+        return VACIA;
+    }
+
+    /**
+     * Lee el objeto del gráfico desde el token actual de {@code parser} (o el siguiente, si aún no ha empezado).
+     * Los puntos incompletos o con valores no numéricos se descartan.
+     */
+    public static SeriePrecios leer(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken() != null ? parser.currentToken() : parser.nextToken();
+        if (token == null) {
+            return VACIA;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Se esperaba un objeto de gráfico de CoinGecko");
+        }
+        long[] instantes = new long[256];
+        double[] precios = new double[256];
+        int tamaño = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String campo = parser.currentName();
+            JsonToken valor = parser.nextToken();
+            if (!"prices".equals(campo) || valor != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            JsonToken punto;
+            while ((punto = siguiente(parser)) != JsonToken.END_ARRAY) {
+                if (punto != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                int posicion = 0;
+                boolean valido = true;
+                long instante = 0;
+                double precio = 0;
+                JsonToken elemento;
+                while ((elemento = siguiente(parser)) != JsonToken.END_ARRAY) {
+                    if (posicion < 2) {
+                        valido &= elemento.isNumeric();
+                        if (elemento.isNumeric()) {
+                            if (posicion == 0) {
+                                instante = parser.getValueAsLong();
+                            } else {
+                                precio = parser.getDoubleValue();
+                            }
+                        }
+                    }
+                    parser.skipChildren();
+                    posicion++;
+                }
+                if (!valido || posicion < 2) {
+                    continue;
+                }
+                if (tamaño == instantes.length) {
+                    instantes = Arrays.copyOf(instantes, tamaño * 2);
+                    precios = Arrays.copyOf(precios, tamaño * 2);
+                }
+                instantes[tamaño] = instante;
+                precios[tamaño] = precio;
+                tamaño++;
+            }
+        }
+        return tamaño == 0 ? VACIA : new SeriePrecios(instantes, precios, tamaño);
+    }
+
+    private static JsonToken siguiente(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            throw new JsonParseException(parser, "Fin inesperado del gráfico de CoinGecko");
+        }
+        return token;
+    }
+
+    public int tamaño() {
+        return tamaño;
+    }
+
+    public boolean isEmpty() {
+        return tamaño == 0;
+    }
+
+    public long instante(int i) {
+        return instantes[i];
+    }
+
+    public double precio(int i) {
+        return precios[i];
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.cryptoacademy.service;
+
+import java.util.Arrays;
+
+/**
+ * Serie de velas OHLC en orden cronológico, en arrays primitivos paralelos: {@code inicios[i]} es el inicio (ms) de
+ * la vela {@code i}. Se construye copiando de un {@link BufferVelas} o acumulando filas de BD, y no se modifica después.
+ */
+public final class SerieVelas {
+
+    private static final SerieVelas VACIA = new SerieVelas(new long[0], new double[0], new double[0], new double[0], new double[0], 0);
+
+    private final long[] inicios;
+    private final double[] apertura;
+    private final double[] maximo;
+    private final double[] minimo;
+    private final double[] cierre;
+    private final int tamaño;
+
+    SerieVelas(long[] inicios, double[] apertura, double[] maximo, double[] minimo, double[] cierre, int tamaño) {
+        this.inicios = inicios;
+        this.apertura = apertura;
+        this.maximo = maximo;
+        this.minimo = minimo;
+        this.cierre = cierre;
+        this.tamaño = tamaño;
+    }
+
+    static SerieVelas vacia() {
+        return VACIA;
+    }
+
+    public int tamaño() {
+        return tamaño;
+    }
+
+    public boolean isEmpty() {
+        return tamaño == 0;
+    }
+
+    public long inicio(int i) {
+        return inicios[i];
+    }
+
+    public double apertura(int i) {
+        return apertura[i];
+    }
+
+    public double maximo(int i) {
+        return maximo[i];
+    }
+
+    public double minimo(int i) {
+        return minimo[i];
+    }
+
+    public double cierre(int i) {
+        return cierre[i];
+    }
+
+    /**
+     * Acumula velas en orden creciente de inicio, duplicando la capacidad de los arrays cuando se llenan.
+     */
+    public static final class Acumulador {
+        private long[] inicios;
+        private double[] apertura;
+        private double[] maximo;
+        private double[] minimo;
+        private double[] cierre;
+        private int tamaño;
+
+        public Acumulador(int capacidadInicial) {
+            int capacidad = Math.max(16, capacidadInicial);
+            inicios = new long[capacidad];
+            apertura = new double[capacidad];
+            maximo = new double[capacidad];
+            minimo = new double[capacidad];
+            cierre = new double[capacidad];
+        }
+
+        public void añadir(long inicio, double a, double max, double min, double c) {
+            if (tamaño == inicios.length) {
+                int capacidad = tamaño * 2;
+                inicios = Arrays.copyOf(inicios, capacidad);
+                apertura = Arrays.copyOf(apertura, capacidad);
+                maximo = Arrays.copyOf(maximo, capacidad);
+                minimo = Arrays.copyOf(minimo, capacidad);
+                cierre = Arrays.copyOf(cierre, capacidad);
+            }
+            inicios[tamaño] = inicio;
+            apertura[tamaño] = a;
+            maximo[tamaño] = max;
+            minimo[tamaño] = min;
+            cierre[tamaño] = c;
+            tamaño++;
+        }
+
+        public SerieVelas construir() {
+            return tamaño == 0 ? VACIA : new SerieVelas(inicios, apertura, maximo, minimo, cierre, tamaño);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.HistorialPortfolioDTO;
+import com.example.cryptoacademy.dto.PuntoHistorialPortfolioDTO;
+import com.example.cryptoacademy.exception.RecursoNoEncontradoException;
+import com.example.cryptoacademy.persistance.repository.CarteraRepository;
+import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import com.example.cryptoacademy.persistance.repository.SnapshotCarteraJdbcRepository;
+import com.example.cryptoacademy.persistance.repository.SnapshotCarteraJdbcRepository.SnapshotFila;
+import com.example.cryptoacademy.persistance.repository.SnapshotCarteraJdbcRepository.TenenciaFila;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Historial de valor de las carteras. Tras un refresco de precios, como mucho una vez por cadencia, valora todas
+ * las carteras con los precios recién aplicados y escribe una fila compacta por cartera en {@code snapshots_cartera}.
+ * Las carteras se reparten en tramos de id que se procesan en paralelo: cada tramo son dos lecturas (saldos y
+ * tenencias) y una inserción por lotes JDBC, sin consultas por cartera. El historial se sirve desde esas filas,
+ * reducido en el servidor a un número máximo de puntos.
+ */
+@Service
+public class SnapshotCarteraService {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotCarteraService.class);
+
+    private final SnapshotCarteraJdbcRepository snapshotRepository;
+    private final CarteraRepository carteraRepository;
+    private final CriptomonedaRepository criptomonedaRepository;
+
+    private final ExecutorService coordinador;
+    private final ExecutorService ejecutorTramos;
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+    private volatile LocalDateTime ultimaEjecucion;
+
+    @Value("${portfolio.snapshots.enabled:false}")
+    private boolean habilitado;
+
+    @Value("${portfolio.snapshots.cadencia.minutos:15}")
+    private long cadenciaMinutos;
+
+    @Value("${portfolio.snapshots.tamano-tramo:1000}")
+    private int tamañoTramo;
+
+    @Value("${portfolio.snapshots.retencion-dias:365}")
+    private long retencionDias;
+
+    @Value("${portfolio.historial.max-puntos:200}")
+    private int maxPuntos;
+
+    public SnapshotCarteraService(SnapshotCarteraJdbcRepository snapshotRepository,
+                                  CarteraRepository carteraRepository,
+                                  CriptomonedaRepository criptomonedaRepository,
+                                  @Value("${portfolio.snapshots.paralelismo:4}") int paralelismo) {
+        this.snapshotRepository = snapshotRepository;
+        this.carteraRepository = carteraRepository;
+        this.criptomonedaRepository = criptomonedaRepository;
+        this.coordinador = Executors.newSingleThreadExecutor(r -> hiloDaemon(r, "snapshots-cartera"));
+        AtomicInteger numeroHilo = new AtomicInteger();
+        this.ejecutorTramos = Executors.newFixedThreadPool(Math.max(1, paralelismo),
+                r -> hiloDaemon(r, "snapshots-cartera-" + numeroHilo.incrementAndGet()));
+    }
+
+    /**
+     * Lanza la valoración en segundo plano; si la anterior sigue en curso o no ha pasado la cadencia, se omite.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPreciosActualizados(PreciosActualizadosEvent event) {
+        if (!habilitado) {
+            return;
+        }
+        LocalDateTime anterior = ultimaEjecucion;
+        if (cadenciaMinutos > 0 && anterior != null
+                && anterior.plusMinutes(cadenciaMinutos).isAfter(LocalDateTime.now())) {
+            return;
+        }
+        if (!enCurso.compareAndSet(false, true)) {
+            log.debug("Snapshots de carteras aún en curso; se omite este refresco de precios.");
+            return;
+        }
+        coordinador.execute(() -> {
+            try {
+                tomarSnapshots(event.precios());
+            } catch (Exception e) {
+                log.error("Error al generar los snapshots de carteras: {}", e.getMessage(), e);
+            } finally {
+                enCurso.set(false);
+            }
+        });
+    }
+
+    /**
+     * Valora todas las carteras y escribe sus snapshots con la misma fecha. Los precios que faltan en
+     * {@code preciosRefresco} (criptos fuera del refresco) se cargan una sola vez de BD. Devuelve las filas escritas.
+     */
+    public int tomarSnapshots(Map<String, BigDecimal> preciosRefresco) throws InterruptedException {
+        long inicio = System.currentTimeMillis();
+        LocalDateTime fecha = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        ultimaEjecucion = fecha;
+
+        long[] rango = snapshotRepository.rangoIdsCartera().orElse(null);
+        if (rango == null) {
+            return 0;
+        }
+        Precios precios = new Precios(preciosRefresco);
+
+        List<Callable<Integer>> tramos = new ArrayList<>();
+        for (long desde = rango[0]; desde <= rango[1]; desde += tamañoTramo) {
+            long desdeId = desde;
+            long hastaId = Math.min(rango[1], desde + tamañoTramo - 1);
+            tramos.add(() -> valorarTramo(desdeId, hastaId, fecha, precios));
+        }
+
+        int escritas = 0;
+        for (Future<Integer> resultado : ejecutorTramos.invokeAll(tramos)) {
+            try {
+                escritas += resultado.get();
+            } catch (ExecutionException e) {
+                log.error("Fallo al valorar un tramo de carteras: {}", e.getCause().getMessage(), e.getCause());
+            }
+        }
+        log.info("Snapshots de carteras: {} filas en {} tramos en {} ms.", escritas, tramos.size(), System.currentTimeMillis() - inicio);
+        return escritas;
+    }
+
+    private int valorarTramo(long desdeId, long hastaId, LocalDateTime fecha, Precios precios) {
+        Map<Long, BigDecimal> saldos = snapshotRepository.saldosCarteras(desdeId, hastaId);
+        if (saldos.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Long> valorCriptosPorCartera = new HashMap<>();
+        for (TenenciaFila tenencia : snapshotRepository.tenenciasCarteras(desdeId, hastaId)) {
+            long valor = PuntoFijo.valorar(PuntoFijo.cantidad(tenencia.cantidad()),
+                    precios.precio(tenencia.idCriptomoneda()), PuntoFijo.ESCALA_EUR);
+            valorCriptosPorCartera.merge(tenencia.idCartera(), valor, PuntoFijo::sumar);
+        }
+
+        List<SnapshotFila> filas = new ArrayList<>(saldos.size());
+        saldos.forEach((idCartera, saldo) -> {
+            long valorCriptos = valorCriptosPorCartera.getOrDefault(idCartera, 0L);
+            long valorTotal = PuntoFijo.sumar(PuntoFijo.eur(saldo), valorCriptos);
+            filas.add(new SnapshotFila(idCartera,
+                    PuntoFijo.aBigDecimal(valorTotal, PuntoFijo.ESCALA_EUR),
+                    PuntoFijo.aBigDecimal(valorCriptos, PuntoFijo.ESCALA_EUR)));
+        });
+        snapshotRepository.insertarSnapshots(fecha, filas);
+        return filas.size();
+    }
+
+    public HistorialPortfolioDTO obtenerHistorial(Integer idUsuario, Long idCartera, RangoHistorial rango)
+            throws RecursoNoEncontradoException {
+        if (!carteraRepository.existsByIdCarteraAndUsuarioId(idCartera, idUsuario)) {
+            throw new RecursoNoEncontradoException("Cartera no encontrada con ID: " + idCartera);
+        }
+
+        LocalDateTime hasta = LocalDateTime.now();
+        LocalDateTime desde = rango.getDuracion() != null
+                ? hasta.minus(rango.getDuracion())
+                : snapshotRepository.primeraFecha(idCartera).orElse(hasta);
+
+        Muestreo muestreo = new Muestreo(desde, Duration.between(desde, hasta), maxPuntos);
+        snapshotRepository.recorrerHistorial(idCartera, desde, muestreo);
+        return new HistorialPortfolioDTO(idCartera, rango.getCodigo(), muestreo.puntos());
+    }
+
+    @Scheduled(cron = "${portfolio.snapshots.limpieza.cron:0 30 3 * * *}")
+    public void purgarSnapshotsAntiguos() {
+        int eliminados = snapshotRepository.eliminarAnterioresA(LocalDateTime.now().minusDays(retencionDias));
+        if (eliminados > 0) {
+            log.info("Eliminados {} snapshots de carteras anteriores a {} días.", eliminados, retencionDias);
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        coordinador.shutdownNow();
+        ejecutorTramos.shutdownNow();
+        try {
+            ejecutorTramos.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reparte el rango en {@code maxPuntos} intervalos iguales y conserva el último snapshot de cada uno
+     * (el valor de cierre del intervalo). Memoria O(maxPuntos) con independencia de las filas leídas.
+     */
+    static final class Muestreo implements RowCallbackHandler {
+
+        private final LocalDateTime desde;
+        private final long anchoIntervaloMs;
+        private final List<PuntoHistorialPortfolioDTO> puntos = new ArrayList<>();
+        private long intervaloActual = -1;
+        private PuntoHistorialPortfolioDTO ultimo;
+
+        Muestreo(LocalDateTime desde, Duration rango, int maxPuntos) {
+            this.desde = desde;
+            this.anchoIntervaloMs = Math.max(1, -Math.floorDiv(-rango.toMillis(), Math.max(1, maxPuntos)));
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            añadir(new PuntoHistorialPortfolioDTO(rs.getTimestamp(1).toLocalDateTime(), rs.getBigDecimal(2), rs.getBigDecimal(3)));
+        }
+
+        void añadir(PuntoHistorialPortfolioDTO punto) {
+            long intervalo = Duration.between(desde, punto.getFecha()).toMillis() / anchoIntervaloMs;
+            if (intervalo != intervaloActual && ultimo != null) {
+                puntos.add(ultimo);
+            }
+            intervaloActual = intervalo;
+            ultimo = punto;
+        }
+
+        List<PuntoHistorialPortfolioDTO> puntos() {
+            if (ultimo != null) {
+                puntos.add(ultimo);
+                ultimo = null;
+            }
+            return puntos;
+        }
+    }
+
+    // Precios (escala 4) del refresco; los que falten se completan con una única consulta compartida por los tramos.
+    private final class Precios {
+
+        private final Map<String, Long> valores = new ConcurrentHashMap<>();
+        private volatile boolean completos;
+
+        Precios(Map<String, BigDecimal> preciosRefresco) {
+            preciosRefresco.forEach((id, precio) -> valores.put(id, PuntoFijo.eur(precio)));
+        }
+
+        long precio(String idCriptomoneda) {
+            Long precio = valores.get(idCriptomoneda);
+            if (precio == null && !completos) {
+                completar();
+                precio = valores.get(idCriptomoneda);
+            }
+            return precio != null ? precio : 0L;
+        }
+
+        private synchronized void completar() {
+            if (completos) {
+                return;
+            }
+            for (Object[] fila : criptomonedaRepository.findPreciosActuales()) {
+                valores.putIfAbsent((String) fila[0], PuntoFijo.eur((BigDecimal) fila[1]));
+            }
+            completos = true;
+        }
+    }
+
+    private static Thread hiloDaemon(Runnable r, String nombre) {
+        Thread hilo = new Thread(r, nombre);
+        hilo.setDaemon(true);
+        return hilo;
+    }
+}
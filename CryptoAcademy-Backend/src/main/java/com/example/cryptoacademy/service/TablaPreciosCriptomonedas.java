@@ -0,0 +1,206 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.MarketCoinDTO;
+import com.example.cryptoacademy.persistance.repository.RefrescoCriptomonedasJdbcRepository.CambioDescripcion;
+import com.example.cryptoacademy.persistance.repository.RefrescoCriptomonedasJdbcRepository.CambioPrecio;
+import com.example.cryptoacademy.persistance.repository.RefrescoCriptomonedasJdbcRepository.FilaCriptomoneda;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Últimos valores escritos en {@code criptomonedas}, en arrays paralelos indexados por posición (sin entidades ni
+ * contexto de persistencia). El refresco calcula contra ella qué ha cambiado y, tras confirmar la escritura, la
+ * actualiza. Los importes se guardan con la escala de sus columnas para que coincidan con lo que hay en BD.
+ * Los lotes del refresco se calculan en paralelo sobre criptos distintas; los métodos están sincronizados.
+ */
+public class TablaPreciosCriptomonedas {
+
+    private static final int ESCALA_PRECIO = 4;
+    private static final int ESCALA_IMPORTE = 2;
+
+    /**
+     * Resultado de comparar un refresco con la tabla: filas a escribir y precio vigente de cada cripto refrescada.
+     */
+    public record CambiosRefresco(List<CambioPrecio> precios, List<CambioDescripcion> descripciones,
+                                  Map<String, BigDecimal> preciosRefrescados) {
+    }
+
+    private final Map<String, Integer> posiciones = new HashMap<>();
+    private String[] ids = new String[0];
+    private String[] nombres = new String[0];
+    private String[] simbolos = new String[0];
+    private String[] imagenes = new String[0];
+    private BigDecimal[] precios = new BigDecimal[0];
+    private BigDecimal[] capitalizaciones = new BigDecimal[0];
+    private BigDecimal[] volumenes = new BigDecimal[0];
+    private Double[] cambios24h = new Double[0];
+    private LocalDateTime[] fechas = new LocalDateTime[0];
+    // Último last_updated recibido que no era posterior a la fecha guardada: evita volver a parsearlo cada minuto.
+    private String[] fechasSinCambio = new String[0];
+
+    /**
+     * Sustituye el contenido por las filas leídas de BD.
+     */
+    public synchronized void cargar(List<FilaCriptomoneda> filas) {
+        int n = filas.size();
+        posiciones.clear();
+        ids = new String[n];
+        nombres = new String[n];
+        simbolos = new String[n];
+        imagenes = new String[n];
+        precios = new BigDecimal[n];
+        capitalizaciones = new BigDecimal[n];
+        volumenes = new BigDecimal[n];
+        cambios24h = new Double[n];
+        fechas = new LocalDateTime[n];
+        fechasSinCambio = new String[n];
+        for (int i = 0; i < n; i++) {
+            FilaCriptomoneda fila = filas.get(i);
+            posiciones.put(fila.idCriptomoneda(), i);
+            ids[i] = fila.idCriptomoneda();
+            nombres[i] = fila.nombre();
+            simbolos[i] = fila.simbolo();
+            imagenes[i] = fila.imagen();
+            precios[i] = fila.precioActual();
+            capitalizaciones[i] = fila.capitalizacion();
+            volumenes[i] = fila.volumen24h();
+            cambios24h[i] = fila.cambioPorcentaje24h();
+            fechas[i] = fila.fechaActualizacion();
+        }
+    }
+
+    public synchronized List<String> ids() {
+        return List.copyOf(Arrays.asList(ids));
+    }
+
+    public synchronized int tamaño() {
+        return ids.length;
+    }
+
+    /**
+     * Compara el refresco con la tabla sin modificarla. Una cripto cambia si difiere algún campo informado o si
+     * CoinGecko trae una fecha de actualización posterior; su fila de precios lleva siempre el grupo completo.
+     */
+    public synchronized CambiosRefresco calcularCambios(List<MarketCoinDTO> refresco) {
+        List<CambioPrecio> cambiosPrecio = new ArrayList<>();
+        List<CambioDescripcion> cambiosDescripcion = new ArrayList<>();
+        Map<String, BigDecimal> preciosRefrescados = new HashMap<>();
+        for (MarketCoinDTO dto : refresco) {
+            Integer posicion = dto.getId() != null ? posiciones.get(dto.getId()) : null;
+            if (posicion == null) {
+                continue;
+            }
+            int i = posicion;
+
+            String nombre = nombres[i];
+            String simbolo = simbolos[i];
+            String imagen = imagenes[i];
+            boolean descripcionCambiada = false;
+            if (dto.getName() != null && !dto.getName().equals(nombre)) {
+                nombre = dto.getName();
+                descripcionCambiada = true;
+            }
+            if (dto.getSymbol() != null && !dto.getSymbol().equalsIgnoreCase(simbolo)) {
+                simbolo = dto.getSymbol().toLowerCase();
+                descripcionCambiada = true;
+            }
+            if (dto.getImage() != null && !dto.getImage().equals(imagen)) {
+                imagen = dto.getImage();
+                descripcionCambiada = true;
+            }
+
+            BigDecimal precio = nuevoImporte(precios[i], dto.getCurrentPrice(), ESCALA_PRECIO);
+            BigDecimal capitalizacion = nuevoImporte(capitalizaciones[i], dto.getMarketCap(), ESCALA_IMPORTE);
+            BigDecimal volumen = nuevoImporte(volumenes[i], dto.getTotalVolume(), ESCALA_IMPORTE);
+            Double cambio24h = dto.getPriceChangePercentage24h() != null ? dto.getPriceChangePercentage24h() : cambios24h[i];
+            boolean actualizada = descripcionCambiada
+                    || precio != precios[i] || capitalizacion != capitalizaciones[i] || volumen != volumenes[i]
+                    || !Objects.equals(cambio24h, cambios24h[i]);
+
+            LocalDateTime fecha = fechas[i];
+            String lastUpdated = dto.getLastUpdated();
+            if (actualizada) {
+                LocalDateTime nuevaFecha = fechaDe(lastUpdated);
+                fecha = nuevaFecha != null ? nuevaFecha : LocalDateTime.now(ZoneOffset.UTC);
+            } else if (lastUpdated != null && !lastUpdated.equals(fechasSinCambio[i])) {
+                LocalDateTime nuevaFecha = fechaDe(lastUpdated);
+                if (nuevaFecha != null && (fecha == null || nuevaFecha.isAfter(fecha))) {
+                    fecha = nuevaFecha;
+                    actualizada = true;
+                } else {
+                    fechasSinCambio[i] = lastUpdated;
+                }
+            }
+
+            if (actualizada) {
+                cambiosPrecio.add(new CambioPrecio(ids[i], precio, capitalizacion, volumen, cambio24h, fecha));
+            }
+            if (descripcionCambiada) {
+                cambiosDescripcion.add(new CambioDescripcion(ids[i], nombre, simbolo, imagen));
+            }
+            if (precio != null) {
+                preciosRefrescados.put(ids[i], precio);
+            }
+        }
+        return new CambiosRefresco(cambiosPrecio, cambiosDescripcion, preciosRefrescados);
+    }
+
+    /**
+     * Aplica a la tabla unos cambios ya escritos en BD. Las criptos que ya no están (recarga intermedia) se ignoran.
+     */
+    public synchronized void confirmar(CambiosRefresco cambios) {
+        for (CambioPrecio c : cambios.precios()) {
+            Integer i = posiciones.get(c.idCriptomoneda());
+            if (i != null) {
+                precios[i] = c.precioActual();
+                capitalizaciones[i] = c.capitalizacion();
+                volumenes[i] = c.volumen24h();
+                cambios24h[i] = c.cambioPorcentaje24h();
+                fechas[i] = c.fechaActualizacion();
+                fechasSinCambio[i] = null;
+            }
+        }
+        for (CambioDescripcion c : cambios.descripciones()) {
+            Integer i = posiciones.get(c.idCriptomoneda());
+            if (i != null) {
+                nombres[i] = c.nombre();
+                simbolos[i] = c.simbolo();
+                imagenes[i] = c.imagen();
+            }
+        }
+    }
+
+    // Devuelve la misma instancia si no hay valor nuevo o si es igual al actual, para poder comparar por referencia.
+    private static BigDecimal nuevoImporte(BigDecimal actual, BigDecimal recibido, int escala) {
+        if (recibido == null) {
+            return actual;
+        }
+        if (actual != null && actual.compareTo(recibido) == 0) {
+            return actual;
+        }
+        BigDecimal escalado = recibido.setScale(escala, RoundingMode.HALF_UP);
+        return actual != null && actual.compareTo(escalado) == 0 ? actual : escalado;
+    }
+
+    private static LocalDateTime fechaDe(String lastUpdated) {
+        if (lastUpdated == null || lastUpdated.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDateTime.ofInstant(Instant.parse(lastUpdated), ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.HistorialCursorResponseDTO;
+import com.example.cryptoacademy.dto.OrdenLoteItemDTO;
+import com.example.cryptoacademy.dto.PortfolioResponseDTO;
+import com.example.cryptoacademy.dto.TransaccionResponseDTO;
+import com.example.cryptoacademy.exception.CantidadInsuficienteException;
+import com.example.cryptoacademy.exception.ConflictoConcurrenciaException;
+import com.example.cryptoacademy.exception.CotizacionExpiradaException;
+import com.example.cryptoacademy.exception.RecursoNoEncontradoException;
+import com.example.cryptoacademy.exception.SaldoInsuficienteException;
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import com.example.cryptoacademy.persistance.model.Transaccion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Envuelve {@link TradingServiceImpl} reintentando cada operación en una transacción nueva cuando el versionado
+ * optimista de Cartera/CriptosAlmacenadas detecta una escritura concurrente sobre la misma cartera.
+ * Cada operación confirmada publica un {@link PortfolioModificadoEvent} para el ranking.
+ */
+@Service
+@Primary
+public class TradingServiceConcurrenteImpl implements TradingServiceI {
+
+    private static final Logger log = LoggerFactory.getLogger(TradingServiceConcurrenteImpl.class);
+
+    private static final String CLAVE_TENENCIA = "uk_cartera_cripto";
+    private static final String TABLA_TENENCIAS = "criptos_almacenadas";
+
+    private final TradingServiceImpl tradingService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${trading.concurrencia.max-intentos:5}")
+    private int maxIntentos;
+
+    @Value("${trading.concurrencia.espera-base.ms:5}")
+    private long esperaBaseMs;
+
+    public TradingServiceConcurrenteImpl(TradingServiceImpl tradingService, ApplicationEventPublisher eventPublisher) {
+        this.tradingService = tradingService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public Transaccion comprarCripto(Integer idUsuario, Long idCartera, String idCriptomoneda, BigDecimal cantidadComprar)
+            throws RecursoNoEncontradoException, SaldoInsuficienteException, IllegalArgumentException {
+        return publicar(idUsuario, conReintentos("compra", idCartera,
+                () -> tradingService.comprarCripto(idUsuario, idCartera, idCriptomoneda, cantidadComprar)));
+    }
+
+    @Override
+    public Transaccion comprarCripto(Integer idUsuario, Long idCartera, Cotizacion cotizacion, BigDecimal cantidadComprar)
+            throws RecursoNoEncontradoException, SaldoInsuficienteException, CotizacionExpiradaException, IllegalArgumentException {
+        return publicar(idUsuario, conReintentos("compra", idCartera,
+                () -> tradingService.comprarCripto(idUsuario, idCartera, cotizacion, cantidadComprar)));
+    }
+
+    @Override
+    public Transaccion venderCripto(Integer idUsuario, Long idCartera, String idCriptomoneda, BigDecimal cantidadVender)
+            throws RecursoNoEncontradoException, CantidadInsuficienteException, IllegalArgumentException {
+        return publicar(idUsuario, conReintentos("venta", idCartera,
+                () -> tradingService.venderCripto(idUsuario, idCartera, idCriptomoneda, cantidadVender)));
+    }
+
+    @Override
+    public Transaccion venderCripto(Integer idUsuario, Long idCartera, Cotizacion cotizacion, BigDecimal cantidadVender)
+            throws RecursoNoEncontradoException, CantidadInsuficienteException, CotizacionExpiradaException, IllegalArgumentException {
+        return publicar(idUsuario, conReintentos("venta", idCartera,
+                () -> tradingService.venderCripto(idUsuario, idCartera, cotizacion, cantidadVender)));
+    }
+
+    @Override
+    public List<Transaccion> ejecutarLoteOrdenes(Integer idUsuario, Long idCartera, List<OrdenLoteItemDTO> ordenes)
+            throws RecursoNoEncontradoException, SaldoInsuficienteException, CantidadInsuficienteException, IllegalArgumentException {
+        List<Transaccion> transacciones = conReintentos("lote", idCartera,
+                () -> tradingService.ejecutarLoteOrdenes(idUsuario, idCartera, ordenes));
+        eventPublisher.publishEvent(new PortfolioModificadoEvent(idUsuario, transacciones));
+        return transacciones;
+    }
+
+    @Override
+    public List<Transaccion> ejecutarLoteOrdenes(Integer idUsuario, Long idCartera, List<OrdenLoteItemDTO> ordenes,
+                                                 Consumer<List<Transaccion>> enLaMismaTransaccion)
+            throws RecursoNoEncontradoException, SaldoInsuficienteException, CantidadInsuficienteException, IllegalArgumentException {
+        List<Transaccion> transacciones = conReintentos("lote", idCartera,
+                () -> tradingService.ejecutarLoteOrdenes(idUsuario, idCartera, ordenes, enLaMismaTransaccion));
+        eventPublisher.publishEvent(new PortfolioModificadoEvent(idUsuario, transacciones));
+        return transacciones;
+    }
+
+    @Override
+    public PortfolioResponseDTO obtenerPortfolio(Integer idUsuario, Long idCartera) throws RecursoNoEncontradoException {
+        return tradingService.obtenerPortfolio(idUsuario, idCartera);
+    }
+
+    @Override
+    public Page<TransaccionResponseDTO> obtenerHistorialTransaccionesUsuario(Integer idUsuario, TipoTransaccion tipoTransaccion, Pageable pageable)
+            throws RecursoNoEncontradoException {
+        return tradingService.obtenerHistorialTransaccionesUsuario(idUsuario, tipoTransaccion, pageable);
+    }
+
+    @Override
+    public HistorialCursorResponseDTO obtenerHistorialTransaccionesCursor(Integer idUsuario, FiltroHistorial filtro,
+                                                                          CursorHistorial despues, int limite, boolean contar)
+            throws RecursoNoEncontradoException {
+        return tradingService.obtenerHistorialTransaccionesCursor(idUsuario, filtro, despues, limite, contar);
+    }
+
+    @Override
+    public BigDecimal getSaldoFiatTotalPorUsuario(Integer idUsuario) {
+        return tradingService.getSaldoFiatTotalPorUsuario(idUsuario);
+    }
+
+    @Override
+    public BigDecimal getValorCriptoTotalPorUsuario(Integer idUsuario) {
+        return tradingService.getValorCriptoTotalPorUsuario(idUsuario);
+    }
+
+    private <T> T conReintentos(String operacion, Long idCartera, Supplier<T> accion) {
+        for (int intento = 1; ; intento++) {
+            try {
+                return accion.get();
+            } catch (ConcurrencyFailureException | DataIntegrityViolationException e) {
+                if (e instanceof DataIntegrityViolationException violacion && !esTenenciaDuplicada(violacion)) {
+                    throw e;
+                }
+                if (intento >= maxIntentos) {
+                    log.warn("Conflicto de concurrencia persistente en {} sobre Cartera [{}] tras {} intentos.", operacion, idCartera, intento);
+                    throw new ConflictoConcurrenciaException("La cartera está siendo modificada por otra operación. Inténtelo de nuevo.", e);
+                }
+                log.debug("Conflicto de concurrencia en {} sobre Cartera [{}], intento {}/{}: {}", operacion, idCartera, intento, maxIntentos, e.getMessage());
+                esperar(intento);
+            }
+        }
+    }
+
+    /**
+     * Solo la clave duplicada de UK_cartera_cripto (dos primeras compras simultáneas de la misma cripto) es un
+     * conflicto de concurrencia; cualquier otra violación de integridad (FK, NOT NULL, truncado) se propaga tal cual.
+     */
+    static boolean esTenenciaDuplicada(DataIntegrityViolationException e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof SQLException sql && esClaveDuplicada(sql)) {
+                String mensaje = String.valueOf(sql.getMessage()).toLowerCase(Locale.ROOT);
+                return mensaje.contains(CLAVE_TENENCIA) || mensaje.contains(TABLA_TENENCIAS);
+            }
+        }
+        return false;
+    }
+
+    // 1062 es ER_DUP_ENTRY de MySQL; 23505 es el SQLSTATE estándar de clave única (H2 en las pruebas).
+    private static boolean esClaveDuplicada(SQLException e) {
+        return e.getErrorCode() == 1062 || "23505".equals(e.getSQLState());
+    }
+
+    private Transaccion publicar(Integer idUsuario, Transaccion transaccion) {
+        eventPublisher.publishEvent(new PortfolioModificadoEvent(idUsuario, List.of(transaccion)));
+        return transaccion;
+    }
+
+    private void esperar(int intento) {
+        long espera = esperaBaseMs * intento + ThreadLocalRandom.current().nextLong(esperaBaseMs + 1);
+        try {
+            Thread.sleep(espera);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictoConcurrenciaException("Operación interrumpida mientras se reintentaba.", e);
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.example.cryptoacademy.service;
 
+import com.example.cryptoacademy.dto.HistorialCursorResponseDTO;
+import com.example.cryptoacademy.dto.OrdenLoteItemDTO;
 import com.example.cryptoacademy.dto.PortfolioResponseDTO;
 import com.example.cryptoacademy.dto.TransaccionResponseDTO;
 import com.example.cryptoacademy.exception.CantidadInsuficienteException;
+import com.example.cryptoacademy.exception.CotizacionExpiradaException;
 import com.example.cryptoacademy.exception.RecursoNoEncontradoException;
 import com.example.cryptoacademy.exception.SaldoInsuficienteException;
 import com.example.cryptoacademy.persistance.model.TipoTransaccion;
@@ -12,15 +15,34 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Consumer;
 
 public interface TradingServiceI {
 
     Transaccion comprarCripto(Integer idUsuario, Long idCartera, String idCriptomoneda, BigDecimal cantidadComprar)
             throws RecursoNoEncontradoException, SaldoInsuficienteException, IllegalArgumentException;
 
+    Transaccion comprarCripto(Integer idUsuario, Long idCartera, Cotizacion cotizacion, BigDecimal cantidadComprar)
+            throws RecursoNoEncontradoException, SaldoInsuficienteException, CotizacionExpiradaException, IllegalArgumentException;
+
     Transaccion venderCripto(Integer idUsuario, Long idCartera, String idCriptomoneda, BigDecimal cantidadVender)
             throws RecursoNoEncontradoException, CantidadInsuficienteException, IllegalArgumentException;
 
+    Transaccion venderCripto(Integer idUsuario, Long idCartera, Cotizacion cotizacion, BigDecimal cantidadVender)
+            throws RecursoNoEncontradoException, CantidadInsuficienteException, CotizacionExpiradaException, IllegalArgumentException;
+
+    List<Transaccion> ejecutarLoteOrdenes(Integer idUsuario, Long idCartera, List<OrdenLoteItemDTO> ordenes)
+            throws RecursoNoEncontradoException, SaldoInsuficienteException, CantidadInsuficienteException, IllegalArgumentException;
+
+    /**
+     * Como {@link #ejecutarLoteOrdenes(Integer, Long, List)}, llamando a {@code enLaMismaTransaccion} con las
+     * transacciones creadas antes de confirmar: lo que escriba se confirma o se deshace junto con el lote.
+     */
+    List<Transaccion> ejecutarLoteOrdenes(Integer idUsuario, Long idCartera, List<OrdenLoteItemDTO> ordenes,
+                                          Consumer<List<Transaccion>> enLaMismaTransaccion)
+            throws RecursoNoEncontradoException, SaldoInsuficienteException, CantidadInsuficienteException, IllegalArgumentException;
+
     PortfolioResponseDTO obtenerPortfolio(Integer idUsuario, Long idCartera)
             throws RecursoNoEncontradoException;
 
@@ -30,6 +52,18 @@ public interface TradingServiceI {
             Pageable pageable
     ) throws RecursoNoEncontradoException;
 
+    /**
+     * Historial paginado por cursor: {@code despues} nulo para la primera página. Con {@code contar} se añade el
+     * total de transacciones que cumplen el filtro (una consulta COUNT extra).
+     */
+    HistorialCursorResponseDTO obtenerHistorialTransaccionesCursor(
+            Integer idUsuario,
+            FiltroHistorial filtro,
+            CursorHistorial despues,
+            int limite,
+            boolean contar
+    ) throws RecursoNoEncontradoException;
+
     BigDecimal getSaldoFiatTotalPorUsuario(Integer idUsuario);
 
     @Transactional(readOnly = true)
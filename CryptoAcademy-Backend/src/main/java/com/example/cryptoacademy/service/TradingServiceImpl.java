@@ -1,30 +1,47 @@
 package com.example.cryptoacademy.service;
 
+import com.example.cryptoacademy.dto.HistorialCursorResponseDTO;
+import com.example.cryptoacademy.dto.OrdenLoteItemDTO;
 import com.example.cryptoacademy.dto.PortfolioItemDTO;
 import com.example.cryptoacademy.dto.PortfolioResponseDTO;
 import com.example.cryptoacademy.dto.TransaccionResponseDTO;
 import com.example.cryptoacademy.exception.CantidadInsuficienteException;
+import com.example.cryptoacademy.exception.CotizacionExpiradaException;
 import com.example.cryptoacademy.exception.RecursoNoEncontradoException;
 import com.example.cryptoacademy.exception.SaldoInsuficienteException;
 import com.example.cryptoacademy.persistance.model.*;
 import com.example.cryptoacademy.persistance.repository.*;
+import com.example.cryptoacademy.persistance.repository.TradingJdbcRepository.DeltaTenencia;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public class TradingServiceImpl implements TradingServiceI {
@@ -36,13 +53,20 @@ public class TradingServiceImpl implements TradingServiceI {
     private final CriptomonedaRepository criptomonedaRepository;
     private final CriptosAlmacenadasRepository criptosAlmacenadasRepository;
     private final TransaccionRepository transaccionRepository;
+    private final TradingJdbcRepository tradingJdbcRepository;
+    private final TransaccionArchivadaRepository transaccionArchivadaRepository;
+    private final ArchivoTransaccionesService archivoTransaccionesService;
 
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Value("${trading.escritura-atomica.enabled:false}")
+    private boolean escrituraAtomica;
+
     private static final int MONETARY_SCALE = 4;
     private static final int CRYPTO_QUANTITY_SCALE = 8;
     private static final int PORTFOLIO_VALUE_SCALE = 2;
+    private static final int MAXIMO_ORDENES_LOTE = 100;
     private static final DateTimeFormatter API_DATE_TIME_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
 
@@ -50,13 +74,19 @@ public class TradingServiceImpl implements TradingServiceI {
                               CarteraRepository carteraRepository,
                               CriptomonedaRepository criptomonedaRepository,
                               CriptosAlmacenadasRepository criptosAlmacenadasRepository,
-                              TransaccionRepository transaccionRepository
+                              TransaccionRepository transaccionRepository,
+                              TradingJdbcRepository tradingJdbcRepository,
+                              TransaccionArchivadaRepository transaccionArchivadaRepository,
+                              ArchivoTransaccionesService archivoTransaccionesService
     ) {
         this.usuarioRepository = usuarioRepository;
         this.carteraRepository = carteraRepository;
         this.criptomonedaRepository = criptomonedaRepository;
         this.criptosAlmacenadasRepository = criptosAlmacenadasRepository;
         this.transaccionRepository = transaccionRepository;
+        this.tradingJdbcRepository = tradingJdbcRepository;
+        this.transaccionArchivadaRepository = transaccionArchivadaRepository;
+        this.archivoTransaccionesService = archivoTransaccionesService;
     }
 
     @Override
@@ -64,11 +94,13 @@ public class TradingServiceImpl implements TradingServiceI {
     public Transaccion comprarCripto(Integer idUsuario, Long idCartera, String idCriptomoneda, BigDecimal cantidadComprar)
             throws RecursoNoEncontradoException, SaldoInsuficienteException, IllegalArgumentException {
 
+        cantidadComprar = validarCantidad(cantidadComprar, "La cantidad a comprar debe ser positiva y mayor que cero.");
 
-        if (cantidadComprar == null || cantidadComprar.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new IllegalArgumentException("La cantidad a comprar debe ser positiva y mayor que cero.");
+        if (escrituraAtomica) {
+            Criptomoneda criptomoneda = criptomonedaRepository.findById(idCriptomoneda)
+                    .orElseThrow(() -> new RecursoNoEncontradoException("Criptomoneda no encontrada con ID: " + idCriptomoneda + ". No se puede operar."));
+            return comprarAtomico(idUsuario, idCartera, criptomoneda, precioOperable(criptomoneda), cantidadComprar);
         }
-        cantidadComprar = cantidadComprar.setScale(CRYPTO_QUANTITY_SCALE, RoundingMode.HALF_UP);
 
         Usuario usuario = usuarioRepository.findById(idUsuario)
                 .orElseThrow(() -> new RecursoNoEncontradoException("Usuario no encontrado con ID: " + idUsuario));
@@ -79,13 +111,37 @@ public class TradingServiceImpl implements TradingServiceI {
         Criptomoneda criptomoneda = criptomonedaRepository.findById(idCriptomoneda)
                 .orElseThrow(() -> new RecursoNoEncontradoException("Criptomoneda no encontrada con ID: " + idCriptomoneda + ". No se puede operar."));
 
-        BigDecimal precioActualCripto = criptomoneda.getPrecio_actual();
-        if (precioActualCripto == null || precioActualCripto.compareTo(BigDecimal.ZERO) <= 0) {
-            log.error("Precio inválido o no disponible para la criptomoneda {} (ID: {}) en la base de datos. Precio: {}",
-                    criptomoneda.getNombre(), idCriptomoneda, precioActualCripto);
-            throw new IllegalStateException("El precio para la criptomoneda " + criptomoneda.getNombre() + " no está disponible o es inválido. No se puede realizar la transacción.");
+        BigDecimal precioActualCripto = precioOperable(criptomoneda);
+
+        return ejecutarCompra(usuario, cartera, criptomoneda, precioActualCripto, cantidadComprar);
+    }
+
+    @Override
+    @Transactional
+    public Transaccion comprarCripto(Integer idUsuario, Long idCartera, Cotizacion cotizacion, BigDecimal cantidadComprar)
+            throws RecursoNoEncontradoException, SaldoInsuficienteException, CotizacionExpiradaException, IllegalArgumentException {
+
+        cantidadComprar = validarCantidad(cantidadComprar, "La cantidad a comprar debe ser positiva y mayor que cero.");
+        consumirCotizacion(cotizacion, idUsuario);
+
+        if (escrituraAtomica) {
+            Criptomoneda criptomoneda = criptomonedaRepository.getReferenceById(cotizacion.getIdCriptomoneda());
+            return comprarAtomico(idUsuario, idCartera, criptomoneda, cotizacion.getPrecioPorUnidadEUR(), cantidadComprar);
         }
-        precioActualCripto = precioActualCripto.setScale(MONETARY_SCALE, RoundingMode.HALF_UP);
+
+        Usuario usuario = usuarioRepository.findById(idUsuario)
+                .orElseThrow(() -> new RecursoNoEncontradoException("Usuario no encontrado con ID: " + idUsuario));
+
+        Cartera cartera = carteraRepository.findByIdCarteraAndUsuario(idCartera, usuario)
+                .orElseThrow(() -> new RecursoNoEncontradoException("Cartera no encontrada con ID: " + idCartera + " para el usuario " + usuario.getEmail()));
+
+        Criptomoneda criptomoneda = criptomonedaRepository.getReferenceById(cotizacion.getIdCriptomoneda());
+
+        return ejecutarCompra(usuario, cartera, criptomoneda, cotizacion.getPrecioPorUnidadEUR(), cantidadComprar);
+    }
+
+    private Transaccion ejecutarCompra(Usuario usuario, Cartera cartera, Criptomoneda criptomoneda,
+                                       BigDecimal precioActualCripto, BigDecimal cantidadComprar) {
 
         BigDecimal costoTotalEUR = cantidadComprar.multiply(precioActualCripto).setScale(MONETARY_SCALE, RoundingMode.HALF_UP);
 
@@ -103,8 +159,10 @@ public class TradingServiceImpl implements TradingServiceI {
             tenencia = tenenciaOpt.get();
             BigDecimal nuevaCantidad = tenencia.getCantidad().add(cantidadComprar);
             tenencia.setCantidad(nuevaCantidad.setScale(CRYPTO_QUANTITY_SCALE, RoundingMode.HALF_UP));
+            tenencia.setCosteTotalEUR(tenencia.getCosteTotalEUR().add(costoTotalEUR));
         } else {
-            tenencia = new CriptosAlmacenadas(cartera, criptomoneda, cantidadComprar.setScale(CRYPTO_QUANTITY_SCALE, RoundingMode.HALF_UP));
+            tenencia = new CriptosAlmacenadas(cartera, criptomoneda,
+                    cantidadComprar.setScale(CRYPTO_QUANTITY_SCALE, RoundingMode.HALF_UP), costoTotalEUR);
         }
         criptosAlmacenadasRepository.save(tenencia);
 
@@ -125,10 +183,13 @@ public class TradingServiceImpl implements TradingServiceI {
     public Transaccion venderCripto(Integer idUsuario, Long idCartera, String idCriptomoneda, BigDecimal cantidadVender)
             throws RecursoNoEncontradoException, CantidadInsuficienteException, IllegalArgumentException {
 
-        if (cantidadVender == null || cantidadVender.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new IllegalArgumentException("La cantidad a vender debe ser positiva y mayor que cero.");
+        cantidadVender = validarCantidad(cantidadVender, "La cantidad a vender debe ser positiva y mayor que cero.");
+
+        if (escrituraAtomica) {
+            Criptomoneda criptomoneda = criptomonedaRepository.findById(idCriptomoneda)
+                    .orElseThrow(() -> new RecursoNoEncontradoException("Criptomoneda no encontrada con ID: " + idCriptomoneda + ". No se puede operar."));
+            return venderAtomico(idUsuario, idCartera, criptomoneda, criptomoneda.getNombre(), precioOperable(criptomoneda), cantidadVender);
         }
-        cantidadVender = cantidadVender.setScale(CRYPTO_QUANTITY_SCALE, RoundingMode.HALF_UP);
 
         Usuario usuario = usuarioRepository.findById(idUsuario)
                 .orElseThrow(() -> new RecursoNoEncontradoException("Usuario no encontrado con ID: " + idUsuario));
@@ -147,16 +208,51 @@ public class TradingServiceImpl implements TradingServiceI {
             throw new CantidadInsuficienteException("Cantidad insuficiente de " + criptomoneda.getNombre() + " para vender. Posee: " + tenencia.getCantidad());
         }
 
-        BigDecimal precioActualCripto = criptomoneda.getPrecio_actual();
-        if (precioActualCripto == null || precioActualCripto.compareTo(BigDecimal.ZERO) <= 0) {
-            log.error("Precio inválido o no disponible para la criptomoneda {} (ID: {}) al intentar vender. Precio: {}",
-                    criptomoneda.getNombre(), idCriptomoneda, precioActualCripto);
-            throw new IllegalStateException("El precio para la criptomoneda " + criptomoneda.getNombre() + " no está disponible o es inválido. No se puede realizar la transacción.");
+        BigDecimal precioActualCripto = precioOperable(criptomoneda);
+
+        return ejecutarVenta(usuario, cartera, criptomoneda, tenencia, precioActualCripto, cantidadVender);
+    }
+
+    @Override
+    @Transactional
+    public Transaccion venderCripto(Integer idUsuario, Long idCartera, Cotizacion cotizacion, BigDecimal cantidadVender)
+            throws RecursoNoEncontradoException, CantidadInsuficienteException, CotizacionExpiradaException, IllegalArgumentException {
+
+        cantidadVender = validarCantidad(cantidadVender, "La cantidad a vender debe ser positiva y mayor que cero.");
+        consumirCotizacion(cotizacion, idUsuario);
+
+        if (escrituraAtomica) {
+            Criptomoneda criptomoneda = criptomonedaRepository.getReferenceById(cotizacion.getIdCriptomoneda());
+            return venderAtomico(idUsuario, idCartera, criptomoneda, cotizacion.getNombreCriptomoneda(), cotizacion.getPrecioPorUnidadEUR(), cantidadVender);
+        }
+
+        Usuario usuario = usuarioRepository.findById(idUsuario)
+                .orElseThrow(() -> new RecursoNoEncontradoException("Usuario no encontrado con ID: " + idUsuario));
+
+        Cartera cartera = carteraRepository.findByIdCarteraAndUsuario(idCartera, usuario)
+                .orElseThrow(() -> new RecursoNoEncontradoException("Cartera no encontrada con ID: " + idCartera + " para el usuario " + usuario.getEmail()));
+
+        Criptomoneda criptomoneda = criptomonedaRepository.getReferenceById(cotizacion.getIdCriptomoneda());
+
+        CriptosAlmacenadas tenencia = criptosAlmacenadasRepository.findByCarteraAndCriptomoneda(cartera, criptomoneda)
+                .orElseThrow(() -> new RecursoNoEncontradoException("No posee " + cotizacion.getNombreCriptomoneda() + " en la cartera especificada."));
+
+        if (tenencia.getCantidad() == null || tenencia.getCantidad().compareTo(cantidadVender) < 0) {
+            throw new CantidadInsuficienteException("Cantidad insuficiente de " + cotizacion.getNombreCriptomoneda() + " para vender. Posee: " + tenencia.getCantidad());
         }
-        precioActualCripto = precioActualCripto.setScale(MONETARY_SCALE, RoundingMode.HALF_UP);
+
+        return ejecutarVenta(usuario, cartera, criptomoneda, tenencia, cotizacion.getPrecioPorUnidadEUR(), cantidadVender);
+    }
+
+    private Transaccion ejecutarVenta(Usuario usuario, Cartera cartera, Criptomoneda criptomoneda, CriptosAlmacenadas tenencia,
+                                      BigDecimal precioActualCripto, BigDecimal cantidadVender) {
 
         BigDecimal ingresoTotalEUR = cantidadVender.multiply(precioActualCripto).setScale(MONETARY_SCALE, RoundingMode.HALF_UP);
 
+        BigDecimal costeVendidoEUR = tenencia.costeDeVenta(cantidadVender);
+        tenencia.setCosteTotalEUR(tenencia.getCosteTotalEUR().subtract(costeVendidoEUR));
+        tenencia.setPygRealizadoEUR(tenencia.getPygRealizadoEUR().add(ingresoTotalEUR.subtract(costeVendidoEUR)));
+
         BigDecimal nuevaCantidadTenencia = tenencia.getCantidad().subtract(cantidadVender);
         tenencia.setCantidad(nuevaCantidadTenencia.setScale(CRYPTO_QUANTITY_SCALE, RoundingMode.HALF_UP));
 
@@ -178,10 +274,76 @@ public class TradingServiceImpl implements TradingServiceI {
         return transaccionRepository.save(transaccion);
     }
 
+    // Ruta atómica: cada comprobación de saldo o tenencia va dentro del propio UPDATE y el número de filas
+    // afectadas decide el resultado, sin cargar usuario, cartera ni tenencia como entidades.
+    private Transaccion comprarAtomico(Integer idUsuario, Long idCartera, Criptomoneda criptomoneda,
+                                       BigDecimal precioActualCripto, BigDecimal cantidadComprar) {
+
+        BigDecimal costoTotalEUR = cantidadComprar.multiply(precioActualCripto).setScale(MONETARY_SCALE, RoundingMode.HALF_UP);
+
+        if (tradingJdbcRepository.debitarSaldo(idCartera, idUsuario, costoTotalEUR) == 0) {
+            BigDecimal saldoActualCartera = tradingJdbcRepository.obtenerSaldo(idCartera, idUsuario)
+                    .orElseThrow(() -> new RecursoNoEncontradoException("Cartera no encontrada con ID: " + idCartera + " para el usuario con ID " + idUsuario));
+            throw new SaldoInsuficienteException("Saldo insuficiente en la cartera. Saldo disponible: " + saldoActualCartera + ", costo requerido: " + costoTotalEUR);
+        }
+
+        tradingJdbcRepository.sumarTenencia(idCartera, criptomoneda.getId_Criptomoneda(), cantidadComprar, costoTotalEUR, LocalDateTime.now());
+
+        Transaccion transaccion = new Transaccion(
+                usuarioRepository.getReferenceById(idUsuario),
+                carteraRepository.getReferenceById(idCartera),
+                criptomoneda,
+                TipoTransaccion.COMPRA,
+                cantidadComprar,
+                precioActualCripto
+        );
+        tradingJdbcRepository.insertarTransaccion(transaccion);
+        return transaccion;
+    }
+
+    private Transaccion venderAtomico(Integer idUsuario, Long idCartera, Criptomoneda criptomoneda, String nombreCripto,
+                                      BigDecimal precioActualCripto, BigDecimal cantidadVender) {
+
+        BigDecimal ingresoTotalEUR = cantidadVender.multiply(precioActualCripto).setScale(MONETARY_SCALE, RoundingMode.HALF_UP);
+
+        if (tradingJdbcRepository.acreditarSaldo(idCartera, idUsuario, ingresoTotalEUR) == 0) {
+            throw new RecursoNoEncontradoException("Cartera no encontrada con ID: " + idCartera + " para el usuario con ID " + idUsuario);
+        }
+
+        if (tradingJdbcRepository.restarTenencia(idCartera, criptomoneda.getId_Criptomoneda(), cantidadVender, ingresoTotalEUR, LocalDateTime.now()) == 0) {
+            BigDecimal cantidadPoseida = tradingJdbcRepository.obtenerCantidadTenencia(idCartera, criptomoneda.getId_Criptomoneda())
+                    .orElseThrow(() -> new RecursoNoEncontradoException("No posee " + nombreCripto + " en la cartera especificada."));
+            throw new CantidadInsuficienteException("Cantidad insuficiente de " + nombreCripto + " para vender. Posee: " + cantidadPoseida);
+        }
+
+        Transaccion transaccion = new Transaccion(
+                usuarioRepository.getReferenceById(idUsuario),
+                carteraRepository.getReferenceById(idCartera),
+                criptomoneda,
+                TipoTransaccion.VENTA,
+                cantidadVender,
+                precioActualCripto
+        );
+        tradingJdbcRepository.insertarTransaccion(transaccion);
+        return transaccion;
+    }
+
     @Override
-    @Transactional(readOnly = true)
-    public PortfolioResponseDTO obtenerPortfolio(Integer idUsuario, Long idCartera)
-            throws RecursoNoEncontradoException {
+    @Transactional
+    public List<Transaccion> ejecutarLoteOrdenes(Integer idUsuario, Long idCartera, List<OrdenLoteItemDTO> ordenes,
+                                                 Consumer<List<Transaccion>> enLaMismaTransaccion)
+            throws RecursoNoEncontradoException, SaldoInsuficienteException, CantidadInsuficienteException, IllegalArgumentException {
+        List<Transaccion> transacciones = ejecutarLoteOrdenes(idUsuario, idCartera, ordenes);
+        enLaMismaTransaccion.accept(transacciones);
+        return transacciones;
+    }
+
+    @Override
+    @Transactional
+    public List<Transaccion> ejecutarLoteOrdenes(Integer idUsuario, Long idCartera, List<OrdenLoteItemDTO> ordenes)
+            throws RecursoNoEncontradoException, SaldoInsuficienteException, CantidadInsuficienteException, IllegalArgumentException {
+
+        validarLote(idCartera, ordenes);
 
         Usuario usuario = usuarioRepository.findById(idUsuario)
                 .orElseThrow(() -> new RecursoNoEncontradoException("Usuario no encontrado con ID: " + idUsuario));
@@ -189,38 +351,223 @@ public class TradingServiceImpl implements TradingServiceI {
         Cartera cartera = carteraRepository.findByIdCarteraAndUsuario(idCartera, usuario)
                 .orElseThrow(() -> new RecursoNoEncontradoException("Cartera no encontrada con ID: " + idCartera + " para el usuario " + usuario.getEmail()));
 
-        List<CriptosAlmacenadas> tenencias = criptosAlmacenadasRepository.findByCartera(cartera);
+        Set<String> idsCriptos = new HashSet<>();
+        for (OrdenLoteItemDTO orden : ordenes) {
+            idsCriptos.add(orden.getIdCriptomoneda());
+        }
+        Map<String, Criptomoneda> criptosPorId = new HashMap<>();
+        for (Criptomoneda criptomoneda : criptomonedaRepository.findAllById(idsCriptos)) {
+            criptosPorId.put(criptomoneda.getId_Criptomoneda(), criptomoneda);
+        }
 
-        List<PortfolioItemDTO> itemsDTO = new ArrayList<>();
-        BigDecimal valorTotalCriptosEnEUR = BigDecimal.ZERO.setScale(PORTFOLIO_VALUE_SCALE, RoundingMode.HALF_UP);
+        Map<String, BigDecimal> cantidadesSimuladas = new HashMap<>();
+        Map<String, BigDecimal> costesSimulados = new HashMap<>();
+        for (CriptosAlmacenadas tenencia : criptosAlmacenadasRepository.findByCartera(cartera)) {
+            cantidadesSimuladas.put(tenencia.getCriptomoneda().getId_Criptomoneda(),
+                    tenencia.getCantidad() != null ? tenencia.getCantidad() : BigDecimal.ZERO);
+            costesSimulados.put(tenencia.getCriptomoneda().getId_Criptomoneda(),
+                    tenencia.getCosteTotalEUR() != null ? tenencia.getCosteTotalEUR() : BigDecimal.ZERO);
+        }
+
+        // Validación completa antes de escribir: las órdenes se simulan en el orden recibido,
+        // de modo que una venta puede financiar una compra posterior del mismo lote.
+        BigDecimal saldoSimulado = cartera.getSaldoVirtualEUR() != null ? cartera.getSaldoVirtualEUR() : BigDecimal.ZERO;
+        BigDecimal deltaSaldo = BigDecimal.ZERO;
+        // El coste vendido de cada venta se calcula sobre la tenencia simulada, igual que la cantidad.
+        Map<String, DeltaTenencia> deltasTenencias = new LinkedHashMap<>();
+        List<Transaccion> transacciones = new ArrayList<>(ordenes.size());
+
+        for (int i = 0; i < ordenes.size(); i++) {
+            OrdenLoteItemDTO orden = ordenes.get(i);
+            int numeroOrden = i + 1;
+            // Tipo y cantidad ya comprobados en validarLote.
+            BigDecimal cantidad = orden.getCantidad().setScale(CRYPTO_QUANTITY_SCALE, RoundingMode.HALF_UP);
+
+            Criptomoneda criptomoneda = criptosPorId.get(orden.getIdCriptomoneda());
+            if (criptomoneda == null) {
+                throw new RecursoNoEncontradoException("Orden " + numeroOrden + ": criptomoneda no encontrada con ID: " + orden.getIdCriptomoneda() + ". No se puede operar.");
+            }
+            BigDecimal precio = criptomoneda.getPrecio_actual();
+            if (precio == null || precio.compareTo(BigDecimal.ZERO) <= 0) {
+                throw new IllegalStateException("Orden " + numeroOrden + ": el precio para la criptomoneda " + criptomoneda.getNombre() + " no está disponible o es inválido.");
+            }
+            precio = precio.setScale(MONETARY_SCALE, RoundingMode.HALF_UP);
+            BigDecimal importeEUR = cantidad.multiply(precio).setScale(MONETARY_SCALE, RoundingMode.HALF_UP);
+            BigDecimal cantidadPoseida = cantidadesSimuladas.getOrDefault(criptomoneda.getId_Criptomoneda(), BigDecimal.ZERO);
+            BigDecimal costePoseido = costesSimulados.getOrDefault(criptomoneda.getId_Criptomoneda(), BigDecimal.ZERO);
+
+            if (orden.getTipo() == TipoTransaccion.COMPRA) {
+                if (saldoSimulado.compareTo(importeEUR) < 0) {
+                    throw new SaldoInsuficienteException("Orden " + numeroOrden + ": saldo insuficiente en la cartera. Saldo disponible: " + saldoSimulado + ", costo requerido: " + importeEUR);
+                }
+                saldoSimulado = saldoSimulado.subtract(importeEUR);
+                deltaSaldo = deltaSaldo.subtract(importeEUR);
+                cantidadesSimuladas.put(criptomoneda.getId_Criptomoneda(), cantidadPoseida.add(cantidad));
+                costesSimulados.put(criptomoneda.getId_Criptomoneda(), costePoseido.add(importeEUR));
+                deltasTenencias.merge(criptomoneda.getId_Criptomoneda(),
+                        new DeltaTenencia(cantidad, importeEUR, BigDecimal.ZERO), DeltaTenencia::mas);
+            } else {
+                if (cantidadPoseida.compareTo(cantidad) < 0) {
+                    throw new CantidadInsuficienteException("Orden " + numeroOrden + ": cantidad insuficiente de " + criptomoneda.getNombre() + " para vender. Posee: " + cantidadPoseida);
+                }
+                saldoSimulado = saldoSimulado.add(importeEUR);
+                deltaSaldo = deltaSaldo.add(importeEUR);
+                BigDecimal costeVendido = CriptosAlmacenadas.costeProporcional(costePoseido, cantidadPoseida, cantidad);
+                cantidadesSimuladas.put(criptomoneda.getId_Criptomoneda(), cantidadPoseida.subtract(cantidad));
+                costesSimulados.put(criptomoneda.getId_Criptomoneda(), costePoseido.subtract(costeVendido));
+                deltasTenencias.merge(criptomoneda.getId_Criptomoneda(),
+                        new DeltaTenencia(cantidad.negate(), costeVendido.negate(), importeEUR.subtract(costeVendido)),
+                        DeltaTenencia::mas);
+            }
+
+            transacciones.add(new Transaccion(usuario, cartera, criptomoneda, orden.getTipo(), cantidad, precio));
+        }
+
+        if (deltaSaldo.signum() != 0 && tradingJdbcRepository.ajustarSaldoCartera(idCartera, deltaSaldo) == 0) {
+            throw new SaldoInsuficienteException("Saldo insuficiente en la cartera para ejecutar el lote de órdenes.");
+        }
+        deltasTenencias.values().removeIf(DeltaTenencia::esNula);
+        tradingJdbcRepository.ajustarTenencias(idCartera, deltasTenencias, LocalDateTime.now());
+        // Una venta concurrente fuera del lote puede haber reducido la tenencia entre la lectura y el upsert.
+        if (deltasTenencias.values().stream().anyMatch(delta -> delta.cantidad().signum() < 0)
+                && tradingJdbcRepository.existenTenenciasNegativas(idCartera)) {
+            throw new CantidadInsuficienteException("Cantidad insuficiente en la cartera para ejecutar el lote de órdenes.");
+        }
+        tradingJdbcRepository.insertarTransacciones(transacciones);
+
+        cartera.setSaldoVirtualEUR(saldoSimulado);
+        entityManager.detach(cartera);
+
+        log.info("Lote de {} órdenes ejecutado para Usuario [{}] en Cartera [{}].", ordenes.size(), idUsuario, idCartera);
+        return transacciones;
+    }
+
+    private BigDecimal validarCantidad(BigDecimal cantidad, String mensajeError) {
+        if (cantidad == null || cantidad.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException(mensajeError);
+        }
+        return cantidad.setScale(CRYPTO_QUANTITY_SCALE, RoundingMode.HALF_UP);
+    }
+
+    // Las anotaciones de OrdenLoteRequestDTO no se evalúan (no hay proveedor de Bean Validation): se comprueba aquí,
+    // antes de consultar nada, para que un lote mal formado sea un 400 y no un error al buscar las criptomonedas.
+    private void validarLote(Long idCartera, List<OrdenLoteItemDTO> ordenes) {
+        if (idCartera == null) {
+            throw new IllegalArgumentException("El ID de la cartera no puede ser nulo.");
+        }
+        if (ordenes == null || ordenes.isEmpty()) {
+            throw new IllegalArgumentException("El lote debe contener al menos una orden.");
+        }
+        if (ordenes.size() > MAXIMO_ORDENES_LOTE) {
+            throw new IllegalArgumentException("El lote no puede contener más de " + MAXIMO_ORDENES_LOTE + " órdenes.");
+        }
+        for (int i = 0; i < ordenes.size(); i++) {
+            OrdenLoteItemDTO orden = ordenes.get(i);
+            int numeroOrden = i + 1;
+            if (orden == null) {
+                throw new IllegalArgumentException("Orden " + numeroOrden + ": la orden no puede ser nula.");
+            }
+            if (orden.getTipo() == null) {
+                throw new IllegalArgumentException("Orden " + numeroOrden + ": el tipo de la orden no puede ser nulo.");
+            }
+            if (orden.getIdCriptomoneda() == null || orden.getIdCriptomoneda().isBlank()) {
+                throw new IllegalArgumentException("Orden " + numeroOrden + ": el ID de la criptomoneda no puede estar vacío.");
+            }
+            validarCantidad(orden.getCantidad(), "Orden " + numeroOrden + ": la cantidad debe ser positiva y mayor que cero.");
+        }
+    }
+
+    private BigDecimal precioOperable(Criptomoneda criptomoneda) {
+        BigDecimal precio = criptomoneda.getPrecio_actual();
+        if (precio == null || precio.compareTo(BigDecimal.ZERO) <= 0) {
+            log.error("Precio inválido o no disponible para la criptomoneda {} (ID: {}) en la base de datos. Precio: {}",
+                    criptomoneda.getNombre(), criptomoneda.getId_Criptomoneda(), precio);
+            throw new IllegalStateException("El precio para la criptomoneda " + criptomoneda.getNombre() + " no está disponible o es inválido. No se puede realizar la transacción.");
+        }
+        return precio.setScale(MONETARY_SCALE, RoundingMode.HALF_UP);
+    }
+
+    // La cotización queda consumida con la transacción de la orden; si esta no confirma, vuelve a estar disponible.
+    private void consumirCotizacion(Cotizacion cotizacion, Integer idUsuario) {
+        if (cotizacion == null) {
+            throw new IllegalArgumentException("La cotización no puede ser nula.");
+        }
+        if (!cotizacion.perteneceA(idUsuario)) {
+            throw new RecursoNoEncontradoException("Cotización no encontrada con ID: " + cotizacion.getIdCotizacion());
+        }
+        if (!cotizacion.estaVigente(Instant.now())) {
+            throw new CotizacionExpiradaException("La cotización " + cotizacion.getIdCotizacion() + " ha expirado. Solicite una nueva.");
+        }
+        if (!cotizacion.consumir()) {
+            throw new CotizacionExpiradaException("La cotización " + cotizacion.getIdCotizacion() + " ya se ha utilizado. Solicite una nueva.");
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int estado) {
+                    if (estado != STATUS_COMMITTED) {
+                        cotizacion.liberar();
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PortfolioResponseDTO obtenerPortfolio(Integer idUsuario, Long idCartera)
+            throws RecursoNoEncontradoException {
+
+        Cartera cartera = carteraRepository.findConTenencias(idCartera, idUsuario).orElse(null);
+        if (cartera == null) {
+            Usuario usuario = usuarioRepository.findById(idUsuario)
+                    .orElseThrow(() -> new RecursoNoEncontradoException("Usuario no encontrado con ID: " + idUsuario));
+            throw new RecursoNoEncontradoException("Cartera no encontrada con ID: " + idCartera + " para el usuario " + usuario.getEmail());
+        }
+
+        List<CriptosAlmacenadas> tenencias = cartera.getCriptos();
+
+        List<PortfolioItemDTO> itemsDTO = new ArrayList<>(tenencias.size());
+        long valorTotalCriptos = 0L;
 
         for (CriptosAlmacenadas tenencia : tenencias) {
             Criptomoneda cripto = tenencia.getCriptomoneda();
-            BigDecimal precioActual = cripto.getPrecio_actual() != null ? cripto.getPrecio_actual().setScale(MONETARY_SCALE, RoundingMode.HALF_UP) : BigDecimal.ZERO;
-            BigDecimal cantidad = tenencia.getCantidad().setScale(CRYPTO_QUANTITY_SCALE, RoundingMode.HALF_UP);
-            BigDecimal valorTenenciaActual = cantidad.multiply(precioActual).setScale(PORTFOLIO_VALUE_SCALE, RoundingMode.HALF_UP);
+            long precioActual = PuntoFijo.eur(cripto.getPrecio_actual());
+            long cantidad = PuntoFijo.cantidad(tenencia.getCantidad());
+            long valorTenencia = PuntoFijo.valorar(cantidad, precioActual, PORTFOLIO_VALUE_SCALE);
+            long costeTotal = PuntoFijo.desdeBigDecimal(tenencia.getCosteTotalEUR(), PORTFOLIO_VALUE_SCALE);
+            long pygNoRealizado = PuntoFijo.restar(valorTenencia, costeTotal);
 
             PortfolioItemDTO itemDTO = PortfolioItemDTO.builder()
                     .idCriptomoneda(cripto.getId_Criptomoneda())
                     .nombreCriptomoneda(cripto.getNombre())
                     .simboloCriptomoneda(cripto.getSimbolo())
                     .imagenUrl(cripto.getImagen())
-                    .cantidadPoseida(cantidad)
-                    .precioActualPorUnidadEUR(precioActual)
-                    .valorTotalTenenciaEUR(valorTenenciaActual)
+                    .cantidadPoseida(PuntoFijo.aBigDecimal(cantidad, CRYPTO_QUANTITY_SCALE))
+                    .precioActualPorUnidadEUR(PuntoFijo.aBigDecimal(precioActual, MONETARY_SCALE))
+                    .valorTotalTenenciaEUR(PuntoFijo.aBigDecimal(valorTenencia, PORTFOLIO_VALUE_SCALE))
                     .cambioPorcentaje24h(cripto.getCambioPorcentaje24h())
+                    .precioMedioCompraEUR(cantidad > 0 && tenencia.getCosteTotalEUR() != null
+                            ? tenencia.getCosteTotalEUR().divide(tenencia.getCantidad(), MONETARY_SCALE, RoundingMode.HALF_UP)
+                            : null)
+                    .costeTotalEUR(PuntoFijo.aBigDecimal(costeTotal, PORTFOLIO_VALUE_SCALE))
+                    .pygNoRealizadoEUR(PuntoFijo.aBigDecimal(pygNoRealizado, PORTFOLIO_VALUE_SCALE))
+                    .pygNoRealizadoPorcentaje(costeTotal > 0 ? pygNoRealizado * 100.0 / costeTotal : null)
+                    .pygRealizadoEUR(PuntoFijo.aBigDecimal(
+                            PuntoFijo.desdeBigDecimal(tenencia.getPygRealizadoEUR(), PORTFOLIO_VALUE_SCALE), PORTFOLIO_VALUE_SCALE))
                     .build();
             itemsDTO.add(itemDTO);
-            valorTotalCriptosEnEUR = valorTotalCriptosEnEUR.add(valorTenenciaActual);
+            valorTotalCriptos = PuntoFijo.sumar(valorTotalCriptos, valorTenencia);
         }
 
-        BigDecimal saldoFiat = cartera.getSaldoVirtualEUR() != null ? cartera.getSaldoVirtualEUR().setScale(PORTFOLIO_VALUE_SCALE, RoundingMode.HALF_UP) : BigDecimal.ZERO.setScale(PORTFOLIO_VALUE_SCALE, RoundingMode.HALF_UP);
-        BigDecimal valorTotalPortfolio = saldoFiat.add(valorTotalCriptosEnEUR);
+        long saldoFiat = PuntoFijo.desdeBigDecimal(cartera.getSaldoVirtualEUR(), PORTFOLIO_VALUE_SCALE);
+        BigDecimal valorTotalCriptosEnEUR = PuntoFijo.aBigDecimal(valorTotalCriptos, PORTFOLIO_VALUE_SCALE);
+        BigDecimal valorTotalPortfolio = PuntoFijo.aBigDecimal(PuntoFijo.sumar(saldoFiat, valorTotalCriptos), PORTFOLIO_VALUE_SCALE);
 
         return PortfolioResponseDTO.builder()
                 .idCartera(cartera.getIdCartera())
                 .nombreCartera(cartera.getNombre())
-                .saldoVirtualEUR(saldoFiat)
+                .saldoVirtualEUR(PuntoFijo.aBigDecimal(saldoFiat, PORTFOLIO_VALUE_SCALE))
                 .items(itemsDTO)
                 .valorTotalCriptosEUR(valorTotalCriptosEnEUR)
                 .valorTotalPortfolioEUR(valorTotalPortfolio)
@@ -235,18 +582,111 @@ public class TradingServiceImpl implements TradingServiceI {
             Pageable pageable)
             throws RecursoNoEncontradoException {
 
-        Usuario usuario = usuarioRepository.findById(idUsuario)
-                .orElseThrow(() -> new RecursoNoEncontradoException("Usuario no encontrado con ID: " + idUsuario));
-
         Page<Transaccion> transaccionesPage;
         if (tipoTransaccion != null) {
-            transaccionesPage = transaccionRepository.findByUsuarioAndTipoTransaccionOrderByFechaTransaccionDesc(
-                    usuario, tipoTransaccion, pageable);
+            transaccionesPage = transaccionRepository.findByUsuarioIdAndTipoTransaccionOrderByFechaTransaccionDesc(
+                    idUsuario, tipoTransaccion, pageable);
         } else {
-            transaccionesPage = transaccionRepository.findByUsuarioOrderByFechaTransaccionDesc(usuario, pageable);
+            transaccionesPage = transaccionRepository.findByUsuarioIdOrderByFechaTransaccionDesc(idUsuario, pageable);
+        }
+
+        // El archivo va detrás de la tabla caliente (es más antiguo): sus filas solo se leen cuando la página llega
+        // hasta él, pero el total siempre las incluye (recuento cacheado) para que no cambie al avanzar de página.
+        long calientes = transaccionesPage.getTotalElements();
+        long archivadas = archivoTransaccionesService.contarArchivadas(idUsuario, tipoTransaccion);
+        List<TransaccionResponseDTO> contenido = new ArrayList<>(
+                transaccionesPage.map(this::mapTransaccionToResponseDTO).getContent());
+        if (archivadas > 0 && contenido.size() < pageable.getPageSize()) {
+            long saltar = Math.max(0, pageable.getOffset() - calientes);
+            buscarArchivadas(idUsuario, tipoTransaccion, saltar, pageable.getPageSize() - contenido.size())
+                    .forEach(t -> contenido.add(mapTransaccionArchivadaToResponseDTO(t)));
+        }
+
+        // Solo una página vacía puede deberse a un usuario inexistente; se comprueba entonces y no en cada petición.
+        if (contenido.isEmpty() && !usuarioRepository.existsById(idUsuario)) {
+            throw new RecursoNoEncontradoException("Usuario no encontrado con ID: " + idUsuario);
+        }
+
+        return new PageImpl<>(contenido, pageable, calientes + archivadas);
+    }
+
+    private List<TransaccionArchivada> buscarArchivadas(Integer idUsuario, TipoTransaccion tipo, long saltar, int maximo) {
+        return entityManager.createQuery(
+                        "SELECT t FROM TransaccionArchivada t JOIN FETCH t.usuario JOIN FETCH t.criptomoneda " +
+                        "WHERE t.usuario.id = :idUsuario AND (:tipo IS NULL OR t.tipoTransaccion = :tipo) " +
+                        "ORDER BY t.fechaTransaccion DESC, t.idTransaccion DESC", TransaccionArchivada.class)
+                .setParameter("idUsuario", idUsuario)
+                .setParameter("tipo", tipo)
+                .setFirstResult(Math.toIntExact(saltar))
+                .setMaxResults(maximo)
+                .getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public HistorialCursorResponseDTO obtenerHistorialTransaccionesCursor(
+            Integer idUsuario,
+            FiltroHistorial filtro,
+            CursorHistorial despues,
+            int limite,
+            boolean contar)
+            throws RecursoNoEncontradoException {
+
+        // Se pide una fila de más para saber si hay siguiente página sin contar.
+        LocalDateTime fechaCursor = despues != null ? despues.fechaTransaccion() : null;
+        Long idCursor = despues != null ? despues.idTransaccion() : null;
+        List<Transaccion> transacciones = transaccionRepository.findHistorialDesdeCursor(
+                idUsuario,
+                filtro.tipo(),
+                filtro.idCriptomoneda(),
+                filtro.desde(),
+                filtro.hasta(),
+                fechaCursor,
+                idCursor,
+                Limit.of(limite + 1));
+
+        List<TransaccionResponseDTO> filas = new ArrayList<>(limite + 1);
+        List<CursorHistorial> cursores = new ArrayList<>(limite + 1);
+        for (Transaccion t : transacciones) {
+            filas.add(mapTransaccionToResponseDTO(t));
+            cursores.add(new CursorHistorial(t.getFechaTransaccion(), t.getIdTransaccion()));
+        }
+
+        // Se sigue en el archivo solo si la tabla caliente no llena la página y el rango alcanza meses archivados.
+        boolean incluirArchivo = archivoTransaccionesService.puedeIncluirArchivo(filtro.desde());
+        if (filas.size() <= limite && incluirArchivo) {
+            List<TransaccionArchivada> archivadas = transaccionArchivadaRepository.findHistorialDesdeCursor(
+                    idUsuario,
+                    filtro.tipo(),
+                    filtro.idCriptomoneda(),
+                    filtro.desde(),
+                    filtro.hasta(),
+                    fechaCursor,
+                    idCursor,
+                    Limit.of(limite + 1 - filas.size()));
+            for (TransaccionArchivada t : archivadas) {
+                filas.add(mapTransaccionArchivadaToResponseDTO(t));
+                cursores.add(new CursorHistorial(t.getFechaTransaccion(), t.getIdTransaccion()));
+            }
+        }
+
+        if (filas.isEmpty() && despues == null && !usuarioRepository.existsById(idUsuario)) {
+            throw new RecursoNoEncontradoException("Usuario no encontrado con ID: " + idUsuario);
         }
 
-        return transaccionesPage.map(this::mapTransaccionToResponseDTO);
+        boolean hayMas = filas.size() > limite;
+        List<TransaccionResponseDTO> pagina = hayMas ? filas.subList(0, limite) : filas;
+        String siguienteCursor = hayMas ? cursores.get(limite - 1).codificar() : null;
+        Long total = null;
+        if (contar) {
+            total = transaccionRepository.countHistorial(idUsuario, filtro.tipo(), filtro.idCriptomoneda(), filtro.desde(), filtro.hasta());
+            if (incluirArchivo) {
+                total += transaccionArchivadaRepository.countHistorial(
+                        idUsuario, filtro.tipo(), filtro.idCriptomoneda(), filtro.desde(), filtro.hasta());
+            }
+        }
+
+        return new HistorialCursorResponseDTO(pagina, siguienteCursor, hayMas, total);
     }
 
     private TransaccionResponseDTO mapTransaccionToResponseDTO(Transaccion transaccion) {
@@ -267,6 +707,22 @@ public class TradingServiceImpl implements TradingServiceI {
                 .build();
     }
 
+    private TransaccionResponseDTO mapTransaccionArchivadaToResponseDTO(TransaccionArchivada transaccion) {
+        return TransaccionResponseDTO.builder()
+                .idTransaccion(transaccion.getIdTransaccion())
+                .usuarioEmail(transaccion.getUsuario().getEmail())
+                .idCartera(transaccion.getIdCartera())
+                .idCriptomoneda(transaccion.getCriptomoneda().getId_Criptomoneda())
+                .simboloCriptomoneda(transaccion.getCriptomoneda().getSimbolo())
+                .nombreCriptomoneda(transaccion.getCriptomoneda().getNombre())
+                .tipoTransaccion(transaccion.getTipoTransaccion())
+                .cantidadCripto(transaccion.getCantidadCripto())
+                .precioPorUnidadEUR(transaccion.getPrecioPorUnidadeEUR())
+                .valorTotalEUR(transaccion.getValorTotalEUR())
+                .fechaTransaccion(transaccion.getFechaTransaccion().format(API_DATE_TIME_FORMATTER))
+                .build();
+    }
+
     @Transactional(readOnly = true) // Adecuado para una función que solo lee datos
     public BigDecimal getSaldoFiatTotalPorUsuario(Integer idUsuario) {
         if (idUsuario == null) {
@@ -0,0 +1,364 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.CoinGeckoChartDataDTO;
+import com.example.cryptoacademy.persistance.model.IntervaloVela;
+import com.example.cryptoacademy.persistance.repository.VelaCriptoJdbcRepository;
+import com.example.cryptoacademy.persistance.repository.VelaCriptoJdbcRepository.VelaFila;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Almacén local de velas OHLC (1 minuto, 1 hora y 1 día) por criptomoneda, del que se sirven los gráficos.
+ * <ul>
+ *     <li>Cada refresco de precios actualiza las tres velas en curso de cada cripto, en BD y en memoria.</li>
+ *     <li>En memoria se guardan las velas recientes de cada cripto e intervalo en un {@link BufferVelas}; un gráfico
+ *     que cabe en el buffer no toca la BD.</li>
+ *     <li>Si a la serie le falta el principio del rango pedido, un hueco reciente o un hueco intermedio (p. ej. tras
+ *     un reinicio o refrescos fallidos), solo ese tramo se descarga de CoinGecko y se guarda, aunque el resto venga
+ *     del buffer; las peticiones concurrentes de la misma cripto e intervalo esperan a una única descarga.</li>
+ *     <li>Las monedas distintas de EUR y los rangos no numéricos ("max") siguen yendo a {@link GraficoCriptoService}.</li>
+ * </ul>
+ */
+@Service
+public class VelasCriptoService {
+
+    private static final Logger log = LoggerFactory.getLogger(VelasCriptoService.class);
+
+    private static final String MONEDA_ALMACEN = "eur";
+    private static final long MS_POR_DIA = TimeUnit.DAYS.toMillis(1);
+
+    private final VelaCriptoJdbcRepository velaRepository;
+    private final CoinGeckoService coinGeckoService;
+    private final GraficoCriptoService graficoCriptoService;
+
+    private final Map<IntervaloVela, Map<String, BufferVelas>> buffers = new EnumMap<>(IntervaloVela.class);
+    private final Map<IntervaloVela, Integer> capacidades = new EnumMap<>(IntervaloVela.class);
+    private final ConcurrentHashMap<String, Object> cerrojos = new ConcurrentHashMap<>();
+    // Por cripto e intervalo: instante más antiguo ya pedido a CoinGecko y hasta dónde se revisó el hueco reciente.
+    private final ConcurrentHashMap<String, Long> historicoPedidoDesde = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> huecoRevisadoHasta = new ConcurrentHashMap<>();
+    // Huecos intermedios ya pedidos ("cripto|intervalo|inicio"): si CoinGecko no tiene datos no se repiten.
+    private final Set<String> huecosPedidos = ConcurrentHashMap.newKeySet();
+
+    private final boolean habilitado;
+
+    @Value("${velas.retencion.minuto-dias:7}")
+    private long retencionMinutoDias;
+
+    @Value("${velas.retencion.hora-dias:400}")
+    private long retencionHoraDias;
+
+    public VelasCriptoService(VelaCriptoJdbcRepository velaRepository,
+                              CoinGeckoService coinGeckoService,
+                              GraficoCriptoService graficoCriptoService,
+                              @Value("${velas.enabled:false}") boolean habilitado,
+                              @Value("${velas.buffer.minuto:1440}") int capacidadMinuto,
+                              @Value("${velas.buffer.hora:2160}") int capacidadHora,
+                              @Value("${velas.buffer.dia:400}") int capacidadDia) {
+        this.velaRepository = velaRepository;
+        this.coinGeckoService = coinGeckoService;
+        this.graficoCriptoService = graficoCriptoService;
+        this.habilitado = habilitado;
+        capacidades.put(IntervaloVela.M1, Math.max(1, capacidadMinuto));
+        capacidades.put(IntervaloVela.H1, Math.max(1, capacidadHora));
+        capacidades.put(IntervaloVela.D1, Math.max(1, capacidadDia));
+        for (IntervaloVela intervalo : IntervaloVela.values()) {
+            buffers.put(intervalo, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Carga en memoria las últimas velas guardadas de cada cripto.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarBuffers() {
+        if (!habilitado) {
+            return;
+        }
+        long inicio = System.currentTimeMillis();
+        List<String> criptos = velaRepository.idsCriptomonedas();
+        for (String idCripto : criptos) {
+            for (IntervaloVela intervalo : IntervaloVela.values()) {
+                recargarBuffer(idCripto, intervalo, inicio);
+            }
+        }
+        log.info("Buffers de velas cargados para {} criptomonedas en {} ms.", criptos.size(), System.currentTimeMillis() - inicio);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPreciosActualizados(PreciosActualizadosEvent event) {
+        if (!habilitado || event.precios().isEmpty()) {
+            return;
+        }
+        try {
+            registrarPrecios(event.precios(), System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("Error al registrar las velas del refresco de precios: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Aplica los precios de un refresco a las velas en curso de {@code instanteMs}: un lote JDBC con tres filas por
+     * cripto y la misma actualización en los buffers.
+     */
+    public void registrarPrecios(Map<String, BigDecimal> precios, long instanteMs) {
+        List<VelaFila> ticks = new ArrayList<>(precios.size() * IntervaloVela.values().length);
+        for (Map.Entry<String, BigDecimal> precio : precios.entrySet()) {
+            if (precio.getValue() == null) {
+                continue;
+            }
+            String idCripto = precio.getKey();
+            double valor = precio.getValue().doubleValue();
+            for (IntervaloVela intervalo : IntervaloVela.values()) {
+                long inicioVela = intervalo.inicioDe(instanteMs);
+                ticks.add(new VelaFila(idCripto, intervalo, inicioVela, valor, valor, valor, valor));
+                buffer(idCripto, intervalo).registrar(inicioVela, valor);
+            }
+        }
+        velaRepository.registrarTicks(ticks);
+    }
+
+    public CoinGeckoChartDataDTO obtenerGrafico(String coinId, String vsCurrency, String dias) throws IOException {
+        if (coinId == null || coinId.trim().isEmpty() ||
+                vsCurrency == null || vsCurrency.trim().isEmpty() ||
+                dias == null || dias.trim().isEmpty()) {
+            throw new IllegalArgumentException("coinId, vsCurrency y days no pueden ser vacíos.");
+        }
+        double numeroDias;
+        try {
+            numeroDias = Double.parseDouble(dias.trim());
+        } catch (NumberFormatException e) {
+            numeroDias = -1;
+        }
+        if (!habilitado || numeroDias <= 0 || !MONEDA_ALMACEN.equalsIgnoreCase(vsCurrency.trim())) {
+            return graficoCriptoService.obtenerGrafico(coinId, vsCurrency, dias);
+        }
+
+        String idCripto = coinId.trim().toLowerCase(Locale.ROOT);
+        IntervaloVela intervalo = IntervaloVela.paraDias(numeroDias);
+        long ahora = System.currentTimeMillis();
+        long desde = intervalo.inicioDe(ahora - (long) (numeroDias * MS_POR_DIA));
+
+        SerieVelas serie = SerieVelas.vacia();
+        BufferVelas enMemoria = buffers.get(intervalo).get(idCripto);
+        if (enMemoria != null && enMemoria.inicioMasAntiguo() <= desde) {
+            serie = enMemoria.desde(desde);
+        }
+        if (serie.isEmpty()) {
+            completarHistorico(idCripto, intervalo, desde, ahora, List.of());
+            serie = leerSerie(idCripto, intervalo, desde);
+        }
+        List<long[]> huecos = huecosIntermedios(serie, intervalo.getDuracionMs());
+        if ((!huecos.isEmpty() || faltaReciente(serie, idCripto, intervalo, ahora))
+                && completarHistorico(idCripto, intervalo, desde, ahora, huecos)) {
+            serie = leerSerie(idCripto, intervalo, desde);
+        }
+        if (serie.isEmpty()) {
+            // Cripto sin velas ni histórico descargable (p. ej. fuera del listado): se delega en el proxy.
+            return graficoCriptoService.obtenerGrafico(coinId, vsCurrency, dias);
+        }
+        return aGrafico(serie);
+    }
+
+    /**
+     * Tramos sin velas entre dos velas consecutivas de la serie. Como en el hueco reciente, una vela suelta sin
+     * refresco es normal y no cuenta: solo los huecos de dos o más velas.
+     */
+    static List<long[]> huecosIntermedios(SerieVelas serie, long duracionMs) {
+        List<long[]> huecos = new ArrayList<>();
+        for (int i = 1; i < serie.tamaño(); i++) {
+            long anterior = serie.inicio(i - 1);
+            long siguiente = serie.inicio(i);
+            if (siguiente - anterior > 2 * duracionMs) {
+                huecos.add(new long[]{anterior + duracionMs, siguiente - 1});
+            }
+        }
+        return huecos;
+    }
+
+    // Misma regla que completarHistorico para el hueco entre la última vela y ahora, sin consultar la BD.
+    private boolean faltaReciente(SerieVelas serie, String idCripto, IntervaloVela intervalo, long ahoraMs) {
+        if (serie.isEmpty()) {
+            return false;
+        }
+        long duracion = intervalo.getDuracionMs();
+        long revisado = huecoRevisadoHasta.getOrDefault(idCripto + "|" + intervalo, Long.MIN_VALUE);
+        long huecoDesde = Math.max(serie.inicio(serie.tamaño() - 1) + duracion, revisado);
+        return huecoDesde < intervalo.inicioDe(ahoraMs) - duracion;
+    }
+
+    /**
+     * Descarga de CoinGecko solo lo que falta en BD para servir desde {@code desdeMs}: el tramo anterior a la
+     * primera vela guardada, el hueco entre la última y ahora y los {@code huecosIntermedios} indicados. Cada tramo
+     * se pide una sola vez. Devuelve si se ha guardado alguna vela nueva.
+     */
+    boolean completarHistorico(String idCripto, IntervaloVela intervalo, long desdeMs, long ahoraMs,
+                               List<long[]> huecosIntermedios) {
+        String clave = idCripto + "|" + intervalo;
+        Object cerrojo = cerrojos.computeIfAbsent(clave, k -> new Object());
+        synchronized (cerrojo) {
+            long duracion = intervalo.getDuracionMs();
+            Optional<long[]> extremos = velaRepository.extremos(idCripto, intervalo);
+            Long pedidoDesde = historicoPedidoDesde.get(clave);
+            boolean faltaAnterior = pedidoDesde == null || pedidoDesde > desdeMs;
+
+            List<long[]> tramos = new ArrayList<>(2 + huecosIntermedios.size());
+            List<String> huecosNuevos = new ArrayList<>(huecosIntermedios.size());
+            for (long[] hueco : huecosIntermedios) {
+                String claveHueco = clave + "|" + hueco[0];
+                if (!huecosPedidos.contains(claveHueco)) {
+                    tramos.add(hueco);
+                    huecosNuevos.add(claveHueco);
+                }
+            }
+            if (extremos.isEmpty()) {
+                if (faltaAnterior) {
+                    tramos.add(new long[]{desdeMs, ahoraMs});
+                }
+            } else {
+                long primera = extremos.get()[0];
+                long ultima = extremos.get()[1];
+                if (faltaAnterior && primera > desdeMs) {
+                    tramos.add(new long[]{desdeMs, primera - 1});
+                }
+                long huecoDesde = Math.max(ultima + duracion, huecoRevisadoHasta.getOrDefault(clave, Long.MIN_VALUE));
+                // Una o dos velas sin cerrar son normales entre refrescos; solo se rellenan huecos mayores.
+                if (huecoDesde < intervalo.inicioDe(ahoraMs) - duracion) {
+                    tramos.add(new long[]{huecoDesde, ahoraMs});
+                }
+            }
+            if (tramos.isEmpty()) {
+                return false;
+            }
+
+            int insertadas = 0;
+            for (long[] tramo : tramos) {
+                try {
+                    SeriePrecios datos = coinGeckoService.getCoinMarketChartRange(idCripto, MONEDA_ALMACEN,
+                            Math.floorDiv(tramo[0], 1000), Math.floorDiv(tramo[1], 1000) + 1);
+                    insertadas += velaRepository.insertarHistorico(agregar(idCripto, intervalo, datos, tramo[0], tramo[1]));
+                } catch (IOException | RuntimeException e) {
+                    // Se sirve lo que haya; el tramo se volverá a pedir en la próxima petición.
+                    log.warn("No se ha podido descargar el histórico de {} ({}) desde CoinGecko: {}", idCripto, intervalo, e.getMessage());
+                    if (insertadas > 0) {
+                        recargarBuffer(idCripto, intervalo, ahoraMs);
+                    }
+                    return insertadas > 0;
+                }
+            }
+            historicoPedidoDesde.merge(clave, desdeMs, Math::min);
+            huecoRevisadoHasta.put(clave, intervalo.inicioDe(ahoraMs));
+            huecosPedidos.addAll(huecosNuevos);
+            if (insertadas > 0) {
+                log.debug("Histórico de {} ({}): {} velas nuevas descargadas.", idCripto, intervalo, insertadas);
+                recargarBuffer(idCripto, intervalo, ahoraMs);
+            }
+            return insertadas > 0;
+        }
+    }
+
+    /**
+     * Borra las velas de minuto y de hora más antiguas que su retención; las diarias se conservan.
+     */
+    @Scheduled(cron = "${velas.limpieza.cron:0 45 3 * * *}")
+    public void purgarVelasAntiguas() {
+        if (!habilitado) {
+            return;
+        }
+        long ahora = System.currentTimeMillis();
+        long limiteMinuto = ahora - retencionMinutoDias * MS_POR_DIA;
+        long limiteHora = ahora - retencionHoraDias * MS_POR_DIA;
+        int eliminadas = 0;
+        for (String idCripto : velaRepository.idsCriptomonedas()) {
+            eliminadas += velaRepository.eliminarAnteriores(idCripto, IntervaloVela.M1, limiteMinuto);
+            eliminadas += velaRepository.eliminarAnteriores(idCripto, IntervaloVela.H1, limiteHora);
+        }
+        historicoPedidoDesde.clear();
+        huecosPedidos.clear();
+        if (eliminadas > 0) {
+            log.info("Purga de velas: {} velas de minuto y hora eliminadas.", eliminadas);
+        }
+    }
+
+    /**
+     * Agrupa los puntos de precio del tramo en velas del intervalo: apertura y cierre son el primer y el último punto
+     * de cada vela.
+     */
+    static List<VelaFila> agregar(String idCripto, IntervaloVela intervalo, SeriePrecios datos, long desdeMs, long hastaMs) {
+        if (datos == null || datos.isEmpty()) {
+            return List.of();
+        }
+        List<VelaFila> velas = new ArrayList<>();
+        long inicioActual = Long.MIN_VALUE;
+        double apertura = 0, maximo = 0, minimo = 0, cierre = 0;
+        for (int i = 0; i < datos.tamaño(); i++) {
+            long instante = datos.instante(i);
+            if (instante < desdeMs || instante > hastaMs) {
+                continue;
+            }
+            double precio = datos.precio(i);
+            long inicioVela = intervalo.inicioDe(instante);
+            if (inicioVela != inicioActual) {
+                if (inicioActual != Long.MIN_VALUE) {
+                    velas.add(new VelaFila(idCripto, intervalo, inicioActual, apertura, maximo, minimo, cierre));
+                }
+                inicioActual = inicioVela;
+                apertura = maximo = minimo = precio;
+            }
+            maximo = Math.max(maximo, precio);
+            minimo = Math.min(minimo, precio);
+            cierre = precio;
+        }
+        if (inicioActual != Long.MIN_VALUE) {
+            velas.add(new VelaFila(idCripto, intervalo, inicioActual, apertura, maximo, minimo, cierre));
+        }
+        return velas;
+    }
+
+    private SerieVelas leerSerie(String idCripto, IntervaloVela intervalo, long desdeMs) {
+        SerieVelas.Acumulador acumulador = new SerieVelas.Acumulador(capacidades.get(intervalo));
+        velaRepository.recorrerSerie(idCripto, intervalo, desdeMs, acumulador::añadir);
+        return acumulador.construir();
+    }
+
+    private void recargarBuffer(String idCripto, IntervaloVela intervalo, long ahoraMs) {
+        int capacidad = capacidades.get(intervalo);
+        long desde = intervalo.inicioDe(ahoraMs) - (long) (capacidad - 1) * intervalo.getDuracionMs();
+        BufferVelas buffer = buffer(idCripto, intervalo);
+        // Se rellena fuera del buffer compartido y se sustituye de una vez para que los lectores no vean uno a medias.
+        BufferVelas nuevo = new BufferVelas(capacidad);
+        velaRepository.recorrerSerie(idCripto, intervalo, desde, nuevo::añadir);
+        buffers.get(intervalo).replace(idCripto, buffer, nuevo);
+    }
+
+    private BufferVelas buffer(String idCripto, IntervaloVela intervalo) {
+        return buffers.get(intervalo).computeIfAbsent(idCripto, k -> new BufferVelas(capacidades.get(intervalo)));
+    }
+
+    private static CoinGeckoChartDataDTO aGrafico(SerieVelas serie) {
+        List<List<Double>> precios = new ArrayList<>(serie.tamaño());
+        for (int i = 0; i < serie.tamaño(); i++) {
+            precios.add(Arrays.asList((double) serie.inicio(i), serie.cierre(i)));
+        }
+        return new CoinGeckoChartDataDTO(precios);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.cryptoacademy.config;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LimitadorConexionesDataSourceTest {
+
+    @Test
+    void noEntregaMasConexionesQueElLimiteYLiberaAlCerrar() throws Exception {
+        DataSource destino = mock(DataSource.class);
+        Connection conexion = mock(Connection.class);
+        when(destino.getConnection()).thenReturn(conexion);
+        LimitadorConexionesDataSource limitador = new LimitadorConexionesDataSource(destino, 2, 50);
+
+        Connection primera = limitador.getConnection();
+        Connection segunda = limitador.getConnection();
+        assertThrows(SQLTransientConnectionException.class, limitador::getConnection);
+
+        primera.close();
+        primera.close();
+        assertEquals(1, limitador.permisosDisponibles());
+        verify(conexion, times(1)).close();
+
+        segunda.close();
+        assertEquals(2, limitador.permisosDisponibles());
+    }
+
+    @Test
+    void devuelveElPermisoSiElPoolFalla() throws Exception {
+        DataSource destino = mock(DataSource.class);
+        when(destino.getConnection()).thenThrow(new SQLTransientConnectionException("pool agotado"));
+        LimitadorConexionesDataSource limitador = new LimitadorConexionesDataSource(destino, 1, 50);
+
+        assertThrows(SQLTransientConnectionException.class, limitador::getConnection);
+        assertEquals(1, limitador.permisosDisponibles());
+    }
+}
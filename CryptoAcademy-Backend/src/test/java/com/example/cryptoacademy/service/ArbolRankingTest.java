@@ -0,0 +1,79 @@
+package com.example.cryptoacademy.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArbolRankingTest {
+
+    @Test
+    void ordenaPorValorDescendenteYDesempataPorId() {
+        ArbolRanking arbol = new ArbolRanking();
+        arbol.insertar(500, 3);
+        arbol.insertar(900, 7);
+        arbol.insertar(500, 1);
+        arbol.insertar(100, 2);
+
+        List<Integer> ids = new ArrayList<>();
+        List<Integer> posiciones = new ArrayList<>();
+        arbol.recorrer(1, 10, (id, posicion) -> {
+            ids.add(id);
+            posiciones.add(posicion);
+        });
+        assertEquals(List.of(7, 1, 3, 2), ids);
+        assertEquals(List.of(1, 2, 3, 4), posiciones);
+        assertEquals(3, arbol.posicion(500, 3));
+
+        assertTrue(arbol.eliminar(500, 1));
+        assertFalse(arbol.eliminar(500, 1));
+        assertEquals(2, arbol.posicion(500, 3));
+        assertEquals(3, arbol.tamaño());
+    }
+
+    @Test
+    void coincideConUnaListaOrdenadaTrasOperacionesAleatorias() {
+        Random random = new Random(42);
+        ArbolRanking arbol = new ArbolRanking();
+        Map<Integer, Long> valores = new HashMap<>();
+
+        for (int i = 0; i < 5_000; i++) {
+            int id = random.nextInt(400);
+            Long anterior = valores.get(id);
+            if (anterior != null) {
+                assertTrue(arbol.eliminar(anterior, id));
+            }
+            if (random.nextInt(5) == 0) {
+                valores.remove(id);
+            } else {
+                long valor = random.nextInt(50) * 1_000L;
+                valores.put(id, valor);
+                arbol.insertar(valor, id);
+            }
+        }
+
+        List<Integer> esperado = valores.keySet().stream()
+                .sorted(Comparator.<Integer>comparingLong(valores::get).reversed().thenComparing(Comparator.naturalOrder()))
+                .toList();
+        assertEquals(esperado.size(), arbol.tamaño());
+        for (int i = 0; i < esperado.size(); i++) {
+            int id = esperado.get(i);
+            assertEquals(i + 1, arbol.posicion(valores.get(id), id));
+        }
+
+        for (int desde = 1; desde <= esperado.size() + 1; desde += 37) {
+            List<Integer> tramo = new ArrayList<>();
+            arbol.recorrer(desde, 25, (id, posicion) -> tramo.add(id));
+            int fin = Math.min(esperado.size(), desde - 1 + 25);
+            assertEquals(esperado.subList(Math.min(desde - 1, fin), fin), tramo);
+        }
+    }
+}
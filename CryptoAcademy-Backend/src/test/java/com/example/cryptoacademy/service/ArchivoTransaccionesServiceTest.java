@@ -0,0 +1,184 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.HistorialCursorResponseDTO;
+import com.example.cryptoacademy.dto.TransaccionResponseDTO;
+import com.example.cryptoacademy.persistance.model.Cartera;
+import com.example.cryptoacademy.persistance.model.Criptomoneda;
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import com.example.cryptoacademy.persistance.model.Transaccion;
+import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.persistance.repository.CarteraRepository;
+import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import com.example.cryptoacademy.persistance.repository.TransaccionArchivadaRepository;
+import com.example.cryptoacademy.persistance.repository.TransaccionRepository;
+import com.example.cryptoacademy.persistance.repository.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Las transacciones antiguas se insertan después que las de otras pruebas y tienen ids altos: el lote cubre toda
+// la tabla para que la primera lectura ya las encuentre.
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "transacciones.archivo.tamano-lote=100000")
+class ArchivoTransaccionesServiceTest {
+
+    private static final LocalDateTime CORTE = LocalDateTime.of(2021, 1, 1, 0, 0);
+
+    @Autowired
+    private ArchivoTransaccionesService archivoService;
+    @Autowired
+    private TradingServiceI tradingService;
+    @Autowired
+    private ExportacionTransaccionesService exportacionService;
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    @Autowired
+    private CarteraRepository carteraRepository;
+    @Autowired
+    private CriptomonedaRepository criptomonedaRepository;
+    @Autowired
+    private TransaccionRepository transaccionRepository;
+    @Autowired
+    private TransaccionArchivadaRepository transaccionArchivadaRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Integer idUsuario;
+    private List<Long> idsAntiguas;
+
+    @BeforeEach
+    void setUp() {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Archivo");
+        usuario.setEmail("archivo-" + System.nanoTime() + "@cryptoacademy.test");
+        usuario.setHashContrasena("x");
+        usuario = usuarioRepository.save(usuario);
+
+        Cartera cartera = new Cartera();
+        cartera.setUsuario(usuario);
+        cartera.setNombre("Cartera archivo");
+        cartera.setSaldoVirtualEUR(new BigDecimal("10000.0000"));
+        cartera = carteraRepository.save(cartera);
+
+        Criptomoneda cripto = new Criptomoneda();
+        cripto.setId_Criptomoneda("archcoin-" + System.nanoTime());
+        cripto.setNombre("ArchCoin");
+        cripto.setSimbolo("ARC");
+        cripto.setPrecio_actual(new BigDecimal("10.0000"));
+        cripto.setFecha_actualizacion(LocalDateTime.now());
+        cripto = criptomonedaRepository.save(cripto);
+
+        idUsuario = usuario.getId();
+        idsAntiguas = new ArrayList<>();
+        for (int mes = 1; mes <= 3; mes++) {
+            Transaccion antigua = transaccionRepository.save(Transaccion.builder()
+                    .usuario(usuario)
+                    .cartera(cartera)
+                    .criptomoneda(cripto)
+                    .tipoTransaccion(TipoTransaccion.COMPRA)
+                    .cantidadCripto(new BigDecimal("1.00000000"))
+                    .precioPorUnidadeEUR(new BigDecimal("10.0000"))
+                    .valorTotalEUR(new BigDecimal("10.0000"))
+                    .fechaTransaccion(LocalDateTime.of(2020, mes, 10, 12, 0))
+                    .build());
+            idsAntiguas.add(antigua.getIdTransaccion());
+        }
+        // H2 no tiene el trigger de auditoría: se simula su fila para la primera transacción antigua.
+        jdbcTemplate.update("INSERT INTO audit_log_transacciones (id_transaccion_original, id_usuario_transaccion, " +
+                        "fecha_transaccion_original) VALUES (?, ?, ?)",
+                idsAntiguas.get(0), idUsuario, LocalDateTime.of(2020, 1, 10, 12, 0));
+
+        tradingService.comprarCripto(idUsuario, cartera.getIdCartera(), cripto.getId_Criptomoneda(), new BigDecimal("1"));
+        tradingService.comprarCripto(idUsuario, cartera.getIdCartera(), cripto.getId_Criptomoneda(), new BigDecimal("1"));
+
+        assertEquals(3, archivoService.archivar(CORTE));
+    }
+
+    @Test
+    void mueveLosMesesCerradosConSuAuditoria() {
+        for (Long id : idsAntiguas) {
+            assertFalse(transaccionRepository.existsById(id));
+            assertTrue(transaccionArchivadaRepository.existsById(id));
+        }
+        Long idAuditada = idsAntiguas.get(0);
+        assertEquals(0, contar("audit_log_transacciones", idAuditada));
+        assertEquals(1, contar("audit_log_transacciones_archivo", idAuditada));
+        assertEquals(0, archivoService.archivar(CORTE));
+    }
+
+    @Test
+    void elHistorialPaginadoContinuaEnElArchivo() {
+        Page<TransaccionResponseDTO> primera = tradingService.obtenerHistorialTransaccionesUsuario(idUsuario, null, PageRequest.of(0, 2));
+        Page<TransaccionResponseDTO> segunda = tradingService.obtenerHistorialTransaccionesUsuario(idUsuario, null, PageRequest.of(1, 2));
+        Page<TransaccionResponseDTO> tercera = tradingService.obtenerHistorialTransaccionesUsuario(idUsuario, null, PageRequest.of(2, 2));
+
+        assertEquals(5, primera.getTotalElements());
+        assertEquals(3, primera.getTotalPages());
+        assertFalse(idsAntiguas.contains(primera.getContent().get(0).getIdTransaccion()));
+        assertEquals(List.of(idsAntiguas.get(2), idsAntiguas.get(1)),
+                segunda.getContent().stream().map(TransaccionResponseDTO::getIdTransaccion).toList());
+        assertEquals(List.of(idsAntiguas.get(0)),
+                tercera.getContent().stream().map(TransaccionResponseDTO::getIdTransaccion).toList());
+        assertEquals("ARC", tercera.getContent().get(0).getSimboloCriptomoneda());
+        assertTrue(tercera.isLast());
+    }
+
+    @Test
+    void elTotalNoCambiaAlAvanzarDePagina() {
+        for (int pagina = 0; pagina < 5; pagina++) {
+            Page<TransaccionResponseDTO> actual = tradingService.obtenerHistorialTransaccionesUsuario(
+                    idUsuario, null, PageRequest.of(pagina, 1));
+            assertEquals(5, actual.getTotalElements());
+            assertEquals(5, actual.getTotalPages());
+        }
+    }
+
+    @Test
+    void elHistorialPorCursorSoloLeeElArchivoSiElRangoLoAlcanza() throws Exception {
+        List<Long> recorridas = new ArrayList<>();
+        CursorHistorial cursor = null;
+        HistorialCursorResponseDTO pagina;
+        do {
+            pagina = tradingService.obtenerHistorialTransaccionesCursor(
+                    idUsuario, new FiltroHistorial(null, null, null, null), cursor, 2, true);
+            pagina.getTransacciones().forEach(t -> recorridas.add(t.getIdTransaccion()));
+            assertEquals(5L, pagina.getTotalTransacciones());
+            cursor = pagina.isHayMas() ? CursorHistorial.desdeCodigo(pagina.getSiguienteCursor()).orElseThrow() : null;
+        } while (cursor != null);
+        assertEquals(5, recorridas.size());
+        assertEquals(List.of(idsAntiguas.get(2), idsAntiguas.get(1), idsAntiguas.get(0)), recorridas.subList(2, 5));
+
+        HistorialCursorResponseDTO recientes = tradingService.obtenerHistorialTransaccionesCursor(
+                idUsuario, new FiltroHistorial(null, null, archivoService.corteActual(), null), null, 10, true);
+        assertEquals(2, recientes.getTransacciones().size());
+        assertEquals(2L, recientes.getTotalTransacciones());
+        assertNull(recientes.getSiguienteCursor());
+
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        assertEquals(5, exportacionService.exportar(idUsuario, null, FormatoExportacion.CSV, false, salida));
+    }
+
+    private int contar(String tabla, Long idTransaccion) {
+        Integer filas = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + tabla + " WHERE id_transaccion_original = ?", Integer.class, idTransaccion);
+        return filas != null ? filas : 0;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.persistance.model.Cartera;
+import com.example.cryptoacademy.persistance.model.Criptomoneda;
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import com.example.cryptoacademy.persistance.model.Transaccion;
+import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.persistance.repository.CarteraRepository;
+import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import com.example.cryptoacademy.persistance.repository.TransaccionRepository;
+import com.example.cryptoacademy.persistance.repository.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Sin periodo de gracia y con el barrido automático solo al arrancar, para lanzarlo desde la prueba.
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "auditoria.transacciones.aplicacion.enabled=true",
+        "auditoria.transacciones.barrido.gracia-segundos=0",
+        "auditoria.transacciones.barrido.interval.ms=3600000"
+})
+class AuditoriaTransaccionesServiceTest {
+
+    @Autowired
+    private AuditoriaTransaccionesService auditoriaService;
+    @Autowired
+    private TradingServiceI tradingService;
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    @Autowired
+    private CarteraRepository carteraRepository;
+    @Autowired
+    private CriptomonedaRepository criptomonedaRepository;
+    @Autowired
+    private TransaccionRepository transaccionRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Usuario usuario;
+    private Cartera cartera;
+    private Criptomoneda cripto;
+
+    @BeforeEach
+    void setUp() {
+        usuario = new Usuario();
+        usuario.setNombre("Auditoría");
+        usuario.setEmail("auditoria-" + System.nanoTime() + "@cryptoacademy.test");
+        usuario.setHashContrasena("x");
+        usuario = usuarioRepository.save(usuario);
+
+        cartera = new Cartera();
+        cartera.setUsuario(usuario);
+        cartera.setNombre("Cartera auditoría");
+        cartera.setSaldoVirtualEUR(new BigDecimal("10000.0000"));
+        cartera = carteraRepository.save(cartera);
+
+        cripto = new Criptomoneda();
+        cripto.setId_Criptomoneda("audcoin-" + System.nanoTime());
+        cripto.setNombre("AudCoin");
+        cripto.setSimbolo("AUD");
+        cripto.setPrecio_actual(new BigDecimal("10.0000"));
+        cripto.setFecha_actualizacion(LocalDateTime.now());
+        cripto = criptomonedaRepository.save(cripto);
+    }
+
+    @Test
+    void lasOperacionesConfirmadasSeAuditanEnSegundoPlano() throws Exception {
+        Transaccion compra = tradingService.comprarCripto(usuario.getId(), cartera.getIdCartera(), cripto.getId_Criptomoneda(), new BigDecimal("2"));
+        Transaccion venta = tradingService.venderCripto(usuario.getId(), cartera.getIdCartera(), cripto.getId_Criptomoneda(), new BigDecimal("1"));
+
+        long limite = System.currentTimeMillis() + 5000;
+        while ((auditorias(compra.getIdTransaccion()) == 0 || auditorias(venta.getIdTransaccion()) == 0)
+                && System.currentTimeMillis() < limite) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(1, auditorias(compra.getIdTransaccion()));
+        assertEquals(1, auditorias(venta.getIdTransaccion()));
+        assertEquals("VENTA", jdbcTemplate.queryForObject(
+                "SELECT tipo_transaccion_original FROM audit_log_transacciones WHERE id_transaccion_original = ?",
+                String.class, venta.getIdTransaccion()));
+        assertEquals(usuario.getId(), jdbcTemplate.queryForObject(
+                "SELECT id_usuario_transaccion FROM audit_log_transacciones WHERE id_transaccion_original = ?",
+                Integer.class, compra.getIdTransaccion()));
+    }
+
+    @Test
+    void elBarridoAuditaLoQueNoPasoPorLaCola() {
+        // Insertada sin evento: como si se hubiera perdido de la cola en una caída.
+        Transaccion perdida = transaccionRepository.save(Transaccion.builder()
+                .usuario(usuario)
+                .cartera(cartera)
+                .criptomoneda(cripto)
+                .tipoTransaccion(TipoTransaccion.COMPRA)
+                .cantidadCripto(new BigDecimal("1.00000000"))
+                .precioPorUnidadeEUR(new BigDecimal("10.0000"))
+                .valorTotalEUR(new BigDecimal("10.0000"))
+                .fechaTransaccion(LocalDateTime.now().minusHours(1))
+                .build());
+        assertEquals(0, auditorias(perdida.getIdTransaccion()));
+
+        assertTrue(auditoriaService.barrer() >= 1);
+        auditoriaService.barrer();
+
+        assertEquals(1, auditorias(perdida.getIdTransaccion()));
+    }
+
+    private int auditorias(Long idTransaccion) {
+        Integer filas = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM audit_log_transacciones WHERE id_transaccion_original = ?", Integer.class, idTransaccion);
+        return filas != null ? filas : 0;
+    }
+}
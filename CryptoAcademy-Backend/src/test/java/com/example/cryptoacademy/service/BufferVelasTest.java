@@ -0,0 +1,48 @@
+package com.example.cryptoacademy.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BufferVelasTest {
+
+    @Test
+    void losTicksDeUnaMismaVelaActualizanMaximoMinimoYCierre() {
+        BufferVelas buffer = new BufferVelas(4);
+        buffer.registrar(60_000, 10);
+        buffer.registrar(60_000, 12);
+        buffer.registrar(60_000, 9);
+        buffer.registrar(60_000, 11);
+        // Un tick de una vela anterior a la última se ignora.
+        buffer.registrar(0, 100);
+
+        SerieVelas serie = buffer.desde(0);
+        assertEquals(1, serie.tamaño());
+        assertEquals(10, serie.apertura(0));
+        assertEquals(12, serie.maximo(0));
+        assertEquals(9, serie.minimo(0));
+        assertEquals(11, serie.cierre(0));
+    }
+
+    @Test
+    void alLlenarseSeDescartanLasVelasMasAntiguas() {
+        BufferVelas buffer = new BufferVelas(3);
+        for (int i = 1; i <= 5; i++) {
+            buffer.registrar(i * 1000L, i);
+        }
+
+        assertEquals(3000, buffer.inicioMasAntiguo());
+        SerieVelas todas = buffer.desde(0);
+        assertEquals(3, todas.tamaño());
+        assertEquals(3000, todas.inicio(0));
+        assertEquals(5000, todas.inicio(2));
+
+        // La serie cruza el final del array circular.
+        SerieVelas parcial = buffer.desde(3500);
+        assertEquals(2, parcial.tamaño());
+        assertEquals(4000, parcial.inicio(0));
+        assertEquals(5, parcial.cierre(1));
+        assertTrue(buffer.desde(6000).isEmpty());
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.config.OkHttpConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Rendimiento de las llamadas a CoinGecko con un upstream lento: un pool fijo de hilos de plataforma del tamaño
+ * del de Tomcat frente a un hilo virtual por petición. Se ejecuta con {@code mvn test -Pbenchmark}; la parte de
+ * hilos virtuales solo corre en JDK 21+.
+ */
+@Tag("benchmark")
+class CoinGeckoHilosVirtualesBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(CoinGeckoHilosVirtualesBenchmarkTest.class);
+
+    private static final int PETICIONES = 1000;
+    private static final int HILOS_TOMCAT = 200; // server.tomcat.threads.max por defecto
+    private static final long LATENCIA_UPSTREAM_MS = 300;
+    private static final byte[] RESPUESTA = "{\"prices\":[[1700000000000,35000.5],[1700000300000,35010.25]]}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer upstreamLento;
+    private ExecutorService hilosUpstream;
+    private CoinGeckoService coinGeckoService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        hilosUpstream = Executors.newCachedThreadPool();
+        upstreamLento = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), PETICIONES);
+        upstreamLento.createContext("/", exchange -> {
+            try {
+                Thread.sleep(LATENCIA_UPSTREAM_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, RESPUESTA.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(RESPUESTA);
+            }
+        });
+        upstreamLento.setExecutor(hilosUpstream);
+        upstreamLento.start();
+
+        // Presupuesto y circuito holgados: se mide el modelo de hilos, no la protección del upstream.
+        ProteccionCoinGecko proteccion = new ProteccionCoinGecko(new SimpleMeterRegistry(), 1_000_000, 1_000_000, 60_000, 1_000_000, 1000, 1000);
+        coinGeckoService = new CoinGeckoService(new OkHttpConfig().okHttpClient(), new ObjectMapper(), proteccion, "benchmark",
+                "http://127.0.0.1:" + upstreamLento.getAddress().getPort());
+    }
+
+    @AfterEach
+    void tearDown() {
+        upstreamLento.stop(0);
+        hilosUpstream.shutdownNow();
+    }
+
+    @Test
+    void compararRendimientoConUpstreamLento() throws Exception {
+        double plataforma = medir(Executors.newFixedThreadPool(HILOS_TOMCAT));
+        log.info("Hilos de plataforma ({}): {} peticiones/s", HILOS_TOMCAT, String.format("%.1f", plataforma));
+
+        ExecutorService virtuales = hilosVirtuales();
+        if (virtuales == null) {
+            log.info("Hilos virtuales no disponibles en JDK {}; se omite la comparación.", Runtime.version().feature());
+            return;
+        }
+        double virtual = medir(virtuales);
+        log.info("Hilos virtuales: {} peticiones/s ({}x)",
+                String.format("%.1f", virtual), String.format("%.1f", virtual / plataforma));
+        assertTrue(virtual > plataforma, "Con un upstream lento los hilos virtuales deberían atender más peticiones por segundo");
+    }
+
+    private double medir(ExecutorService ejecutor) throws Exception {
+        try {
+            ejecutar(ejecutor, HILOS_TOMCAT); // calentamiento: JIT y conexiones
+            long inicio = System.nanoTime();
+            ejecutar(ejecutor, PETICIONES);
+            return PETICIONES / ((System.nanoTime() - inicio) / 1_000_000_000.0);
+        } finally {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    private void ejecutar(ExecutorService ejecutor, int peticiones) throws Exception {
+        List<Future<?>> pendientes = new ArrayList<>(peticiones);
+        for (int i = 0; i < peticiones; i++) {
+            pendientes.add(ejecutor.submit(() -> coinGeckoService.getCoinMarketChart("bitcoin", "eur", "1")));
+        }
+        for (Future<?> pendiente : pendientes) {
+            pendiente.get();
+        }
+    }
+
+    // El proyecto compila con release 17, así que el ejecutor de hilos virtuales se obtiene por reflexión.
+    private static ExecutorService hilosVirtuales() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.config.OkHttpConfig;
+import com.example.cryptoacademy.dto.MarketCoinDTO;
+import com.example.cryptoacademy.exception.CoinGeckoNoDisponibleException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoinGeckoServiceTest {
+
+    private HttpServer upstream;
+    private CoinGeckoService coinGeckoService;
+    private SimpleMeterRegistry meterRegistry;
+    private ProteccionCoinGecko proteccion;
+    private final AtomicInteger peticiones = new AtomicInteger();
+    private volatile int estado;
+    private volatile String respuesta;
+    private volatile String retryAfter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        upstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 10);
+        upstream.createContext("/", exchange -> {
+            peticiones.incrementAndGet();
+            if (retryAfter != null) {
+                exchange.getResponseHeaders().add("Retry-After", retryAfter);
+            }
+            byte[] cuerpo = respuesta.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(estado, cuerpo.length == 0 ? -1 : cuerpo.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(cuerpo);
+            }
+        });
+        upstream.start();
+        estado = 200;
+        meterRegistry = new SimpleMeterRegistry();
+        // Circuito: se abre con 3 fallos seguidos; pausa de 100 ms que se duplica hasta 1 s.
+        crearServicio(new ProteccionCoinGecko(meterRegistry, 6000, 100, 1000, 3, 100, 1000));
+    }
+
+    private void crearServicio(ProteccionCoinGecko proteccion) {
+        this.proteccion = proteccion;
+        coinGeckoService = new CoinGeckoService(new OkHttpConfig().okHttpClient(), new ObjectMapper(), proteccion, "test",
+                "http://127.0.0.1:" + upstream.getAddress().getPort());
+    }
+
+    @AfterEach
+    void tearDown() {
+        upstream.stop(0);
+    }
+
+    @Test
+    void losMercadosSeDecodificanDesdeElFlujoIgnorandoCamposDesconocidos() throws Exception {
+        respuesta = "[{\"id\":\"bitcoin\",\"symbol\":\"btc\",\"current_price\":35000.5,\"ath\":73000,\"roi\":null}," +
+                "{\"id\":\"ethereum\",\"symbol\":\"eth\",\"current_price\":2000}]";
+
+        List<MarketCoinDTO> mercados = coinGeckoService.getTopMarketData(2);
+
+        assertEquals(2, mercados.size());
+        assertEquals("bitcoin", mercados.get(0).getId());
+        assertEquals(new BigDecimal("35000.5"), mercados.get(0).getCurrentPrice());
+        assertEquals("eth", mercados.get(1).getSymbol());
+    }
+
+    @Test
+    void unCuerpoVacioDevuelveUnaListaVacia() throws Exception {
+        respuesta = "";
+
+        assertTrue(coinGeckoService.getTopMarketData(10).isEmpty());
+    }
+
+    @Test
+    void elRangoSeLeeEnArraysPrimitivosSaltandoLosDemasArrays() throws Exception {
+        respuesta = "{\"market_caps\":[[1700000000000,1.0E12]]," +
+                "\"prices\":[[1700000000000,35000.5],[1700000300000,null],[1700000600000,35010.25,7],[1700000900000]]," +
+                "\"total_volumes\":[[1700000000000,2.5E10]]}";
+
+        SeriePrecios serie = coinGeckoService.getCoinMarketChartRange("bitcoin", "eur", 1_700_000_000L, 1_700_001_000L);
+
+        assertEquals(2, serie.tamaño());
+        assertEquals(1_700_000_000_000L, serie.instante(0));
+        assertEquals(35000.5, serie.precio(0));
+        assertEquals(1_700_000_600_000L, serie.instante(1));
+        assertEquals(35010.25, serie.precio(1));
+    }
+
+    @Test
+    void unaRespuestaDeErrorLanzaIOException() {
+        estado = 429;
+        respuesta = "{\"status\":{\"error_code\":429,\"error_message\":\"rate limited\"}}";
+
+        assertThrows(IOException.class, () -> coinGeckoService.getCoinMarketChart("bitcoin", "eur", "1"));
+    }
+
+    @Test
+    void un429AbreElCircuitoDuranteLoQuePideRetryAfter() throws Exception {
+        estado = 429;
+        retryAfter = "2";
+        respuesta = "{}";
+        assertThrows(IOException.class, () -> coinGeckoService.getTopMarketData(10));
+
+        estado = 200;
+        retryAfter = null;
+        respuesta = "[]";
+        CoinGeckoNoDisponibleException rechazo = assertThrows(CoinGeckoNoDisponibleException.class,
+                () -> coinGeckoService.getTopMarketData(10));
+
+        assertEquals(1, peticiones.get(), "Con el circuito abierto no se llama al upstream");
+        assertTrue(rechazo.getReintentarEnMs() > 1000 && rechazo.getReintentarEnMs() <= 2000);
+        assertEquals(ProteccionCoinGecko.EstadoCircuito.ABIERTO, proteccion.estado());
+        assertEquals(1.0, meterRegistry.get("coingecko.llamadas").tag("resultado", "limitada").counter().count());
+        assertEquals(1.0, meterRegistry.get("coingecko.llamadas").tag("resultado", "rechazada").counter().count());
+    }
+
+    @Test
+    void trasLaPausaUnaPruebaFallidaDuplicaLaPausaYUnaCorrectaCierraElCircuito() throws Exception {
+        estado = 503;
+        respuesta = "{}";
+        for (int i = 0; i < 3; i++) {
+            assertThrows(IOException.class, () -> coinGeckoService.getTopMarketData(10));
+        }
+        assertEquals(ProteccionCoinGecko.EstadoCircuito.ABIERTO, proteccion.estado());
+        assertEquals(100, proteccion.pausaActualMs());
+
+        Thread.sleep(150);
+        assertThrows(IOException.class, () -> coinGeckoService.getTopMarketData(10));
+        assertEquals(ProteccionCoinGecko.EstadoCircuito.ABIERTO, proteccion.estado());
+        assertEquals(200, proteccion.pausaActualMs());
+
+        Thread.sleep(250);
+        estado = 200;
+        respuesta = "[]";
+        assertTrue(coinGeckoService.getTopMarketData(10).isEmpty());
+        assertEquals(ProteccionCoinGecko.EstadoCircuito.CERRADO, proteccion.estado());
+        assertEquals(5, peticiones.get());
+    }
+
+    @Test
+    void sinTurnoDentroDeLaEsperaMaximaLaLlamadaSeRechaza() throws Exception {
+        // 60 llamadas por minuto sin ráfaga: la segunda tendría que esperar 1 s y la espera máxima es 50 ms.
+        crearServicio(new ProteccionCoinGecko(meterRegistry, 60, 1, 50, 3, 100, 1000));
+        respuesta = "[]";
+
+        coinGeckoService.getTopMarketData(10);
+        assertThrows(CoinGeckoNoDisponibleException.class, () -> coinGeckoService.getTopMarketData(10));
+
+        assertEquals(1, peticiones.get());
+        assertEquals(ProteccionCoinGecko.EstadoCircuito.CERRADO, proteccion.estado());
+    }
+
+    @Test
+    void retryAfterAdmiteSegundosYFechaHttp() {
+        assertEquals(120_000, ProteccionCoinGecko.retryAfterMs("120"));
+        String dentroDeUnMinuto = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(60));
+        long ms = ProteccionCoinGecko.retryAfterMs(dentroDeUnMinuto);
+        assertTrue(ms > 55_000 && ms <= 60_000);
+        assertEquals(0, ProteccionCoinGecko.retryAfterMs("pronto"));
+    }
+}
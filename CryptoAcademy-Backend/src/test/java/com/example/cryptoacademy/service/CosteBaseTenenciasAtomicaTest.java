@@ -0,0 +1,7 @@
+package com.example.cryptoacademy.service;
+
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = "trading.escritura-atomica.enabled=true")
+class CosteBaseTenenciasAtomicaTest extends CosteBaseTenenciasTest {
+}
@@ -0,0 +1,148 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.OrdenLoteItemDTO;
+import com.example.cryptoacademy.dto.PortfolioItemDTO;
+import com.example.cryptoacademy.persistance.model.Cartera;
+import com.example.cryptoacademy.persistance.model.Criptomoneda;
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.persistance.repository.CarteraRepository;
+import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import com.example.cryptoacademy.persistance.repository.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Coste medio y PyG de las tenencias por la ruta JPA; {@link CosteBaseTenenciasAtomicaTest} repite las pruebas
+ * por la ruta de escritura atómica.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class CosteBaseTenenciasTest {
+
+    @Autowired
+    private TradingServiceI tradingService;
+    @Autowired
+    private CosteBaseBackfillService backfillService;
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    @Autowired
+    private CarteraRepository carteraRepository;
+    @Autowired
+    private CriptomonedaRepository criptomonedaRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Integer idUsuario;
+    private Long idCartera;
+    private String idCripto;
+
+    @BeforeEach
+    void setUp() {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Coste base");
+        usuario.setEmail("coste-base-" + System.nanoTime() + "@cryptoacademy.test");
+        usuario.setHashContrasena("x");
+        usuario = usuarioRepository.save(usuario);
+
+        Cartera cartera = new Cartera();
+        cartera.setUsuario(usuario);
+        cartera.setNombre("Cartera coste base");
+        cartera.setSaldoVirtualEUR(new BigDecimal("10000.0000"));
+        cartera = carteraRepository.save(cartera);
+
+        Criptomoneda cripto = new Criptomoneda();
+        idCripto = "costecoin-" + System.nanoTime();
+        cripto.setId_Criptomoneda(idCripto);
+        cripto.setNombre("CosteCoin");
+        cripto.setSimbolo("cst");
+        cripto.setPrecio_actual(new BigDecimal("100.0000"));
+        cripto.setFecha_actualizacion(LocalDateTime.now());
+        criptomonedaRepository.save(cripto);
+
+        idUsuario = usuario.getId();
+        idCartera = cartera.getIdCartera();
+    }
+
+    @Test
+    void lasVentasRealizanContraElCosteMedio() {
+        tradingService.comprarCripto(idUsuario, idCartera, idCripto, new BigDecimal("2"));
+        cambiarPrecio("200");
+        tradingService.comprarCripto(idUsuario, idCartera, idCripto, new BigDecimal("2"));
+        cambiarPrecio("300");
+        tradingService.venderCripto(idUsuario, idCartera, idCripto, new BigDecimal("1"));
+
+        PortfolioItemDTO item = itemDelPortfolio();
+        assertEquals(0, new BigDecimal("150").compareTo(item.getPrecioMedioCompraEUR()));
+        assertEquals(0, new BigDecimal("450").compareTo(item.getCosteTotalEUR()));
+        assertEquals(0, new BigDecimal("450").compareTo(item.getPygNoRealizadoEUR()));
+        assertEquals(100.0, item.getPygNoRealizadoPorcentaje(), 1e-9);
+        assertEquals(0, new BigDecimal("150").compareTo(item.getPygRealizadoEUR()));
+
+        tradingService.venderCripto(idUsuario, idCartera, idCripto, new BigDecimal("3"));
+        Map<String, Object> fila = tenencia();
+        assertEquals(0, BigDecimal.ZERO.compareTo((BigDecimal) fila.get("coste_total_eur")));
+        assertEquals(0, new BigDecimal("600").compareTo((BigDecimal) fila.get("pyg_realizado_eur")));
+    }
+
+    @Test
+    void unLoteAplicaCosteYPygEnOrden() {
+        tradingService.ejecutarLoteOrdenes(idUsuario, idCartera, List.of(
+                new OrdenLoteItemDTO(TipoTransaccion.COMPRA, idCripto, new BigDecimal("3")),
+                new OrdenLoteItemDTO(TipoTransaccion.VENTA, idCripto, new BigDecimal("1"))));
+        cambiarPrecio("130");
+        tradingService.ejecutarLoteOrdenes(idUsuario, idCartera, List.of(
+                new OrdenLoteItemDTO(TipoTransaccion.VENTA, idCripto, new BigDecimal("1"))));
+
+        Map<String, Object> fila = tenencia();
+        assertEquals(0, new BigDecimal("100").compareTo((BigDecimal) fila.get("coste_total_eur")));
+        assertEquals(0, new BigDecimal("30").compareTo((BigDecimal) fila.get("pyg_realizado_eur")));
+    }
+
+    @Test
+    void elRecalculoReproduceLoQueMantienenLasOperaciones() throws Exception {
+        tradingService.comprarCripto(idUsuario, idCartera, idCripto, new BigDecimal("3"));
+        cambiarPrecio("70");
+        tradingService.comprarCripto(idUsuario, idCartera, idCripto, new BigDecimal("1"));
+        cambiarPrecio("90");
+        tradingService.venderCripto(idUsuario, idCartera, idCripto, new BigDecimal("1.5"));
+        Map<String, Object> esperada = tenencia();
+
+        jdbcTemplate.update("UPDATE criptos_almacenadas SET coste_total_eur = 0, pyg_realizado_eur = 0 WHERE id_cartera = ?", idCartera);
+        assertTrue(backfillService.recalcular() >= 1);
+
+        Map<String, Object> recalculada = tenencia();
+        assertEquals(0, ((BigDecimal) esperada.get("coste_total_eur")).compareTo((BigDecimal) recalculada.get("coste_total_eur")));
+        assertEquals(0, ((BigDecimal) esperada.get("pyg_realizado_eur")).compareTo((BigDecimal) recalculada.get("pyg_realizado_eur")));
+    }
+
+    private void cambiarPrecio(String precio) {
+        Criptomoneda cripto = criptomonedaRepository.findById(idCripto).orElseThrow();
+        cripto.setPrecio_actual(new BigDecimal(precio));
+        criptomonedaRepository.save(cripto);
+    }
+
+    private PortfolioItemDTO itemDelPortfolio() {
+        return tradingService.obtenerPortfolio(idUsuario, idCartera).getItems().stream()
+                .filter(item -> item.getIdCriptomoneda().equals(idCripto))
+                .findFirst().orElseThrow();
+    }
+
+    private Map<String, Object> tenencia() {
+        return jdbcTemplate.queryForMap(
+                "SELECT coste_total_eur, pyg_realizado_eur FROM criptos_almacenadas WHERE id_cartera = ? AND id_criptomoneda = ?",
+                idCartera, idCripto);
+    }
+}
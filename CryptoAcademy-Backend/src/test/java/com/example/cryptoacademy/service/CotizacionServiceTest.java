@@ -0,0 +1,83 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.exception.CotizacionExpiradaException;
+import com.example.cryptoacademy.exception.RecursoNoEncontradoException;
+import com.example.cryptoacademy.persistance.model.Criptomoneda;
+import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CotizacionServiceTest {
+
+    private CriptomonedaRepository criptomonedaRepository;
+    private CotizacionService cotizacionService;
+
+    @BeforeEach
+    void setUp() {
+        Criptomoneda bitcoin = new Criptomoneda();
+        bitcoin.setId_Criptomoneda("bitcoin");
+        bitcoin.setNombre("Bitcoin");
+        bitcoin.setSimbolo("btc");
+        bitcoin.setPrecio_actual(new BigDecimal("40000"));
+        criptomonedaRepository = mock(CriptomonedaRepository.class);
+        when(criptomonedaRepository.findById("bitcoin")).thenReturn(Optional.of(bitcoin));
+
+        cotizacionService = new CotizacionService(criptomonedaRepository, 15, 1000);
+    }
+
+    @Test
+    void otroUsuarioNoPuedeUsarLaCotizacion() {
+        Cotizacion cotizacion = cotizacionService.crearCotizacion("bitcoin", 1);
+
+        assertSame(cotizacion, cotizacionService.obtenerCotizacionVigente(cotizacion.getIdCotizacion(), "bitcoin", 1));
+        assertThrows(RecursoNoEncontradoException.class,
+                () -> cotizacionService.obtenerCotizacionVigente(cotizacion.getIdCotizacion(), "bitcoin", 2));
+    }
+
+    @Test
+    void unaCotizacionConsumidaNoSeReutilizaSalvoQueSeLibere() {
+        Cotizacion cotizacion = cotizacionService.crearCotizacion("bitcoin", 1);
+
+        assertTrue(cotizacion.consumir());
+        assertFalse(cotizacion.consumir());
+        assertThrows(CotizacionExpiradaException.class,
+                () -> cotizacionService.obtenerCotizacionVigente(cotizacion.getIdCotizacion(), "bitcoin", 1));
+
+        // Orden revertida: la cotización vuelve a estar disponible mientras siga vigente.
+        cotizacion.liberar();
+        assertSame(cotizacion, cotizacionService.obtenerCotizacionVigente(cotizacion.getIdCotizacion(), "bitcoin", 1));
+    }
+
+    @Test
+    void unaCotizacionCaducadaDesapareceDeMemoria() {
+        CotizacionService sinValidez = new CotizacionService(criptomonedaRepository, 0, 1000);
+        Cotizacion cotizacion = sinValidez.crearCotizacion("bitcoin", 1);
+
+        assertThrows(RecursoNoEncontradoException.class,
+                () -> sinValidez.obtenerCotizacionVigente(cotizacion.getIdCotizacion(), "bitcoin", 1));
+    }
+
+    @Test
+    void elNumeroDeCotizacionesEnMemoriaEstaAcotado() {
+        CotizacionService acotado = new CotizacionService(criptomonedaRepository, 15, 10);
+        for (int i = 0; i < 50; i++) {
+            acotado.crearCotizacion("bitcoin", 1);
+        }
+        Cache<?, ?> cotizaciones = (Cache<?, ?>) ReflectionTestUtils.getField(acotado, "cotizaciones");
+        cotizaciones.cleanUp();
+
+        assertTrue(cotizaciones.estimatedSize() <= 10, "Quedan " + cotizaciones.estimatedSize() + " cotizaciones en memoria");
+    }
+}
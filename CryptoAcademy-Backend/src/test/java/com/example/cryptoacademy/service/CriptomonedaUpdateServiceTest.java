@@ -0,0 +1,171 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.MarketCoinDTO;
+import com.example.cryptoacademy.persistance.model.Criptomoneda;
+import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import com.example.cryptoacademy.persistance.repository.RefrescoCriptomonedasJdbcRepository;
+import com.example.cryptoacademy.persistance.repository.RefrescoCriptomonedasJdbcRepository.CambioPrecio;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// El servicio se construye a mano sobre el repositorio real para sustituir CoinGecko y el publicador de eventos.
+@SpringBootTest
+@ActiveProfiles("test")
+class CriptomonedaUpdateServiceTest {
+
+    private static final BigDecimal PRECIO_INICIAL = new BigDecimal("10.0000");
+    private static final BigDecimal PRECIO_NUEVO = new BigDecimal("12.5000");
+
+    @Autowired
+    private CriptomonedaRepository criptomonedaRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private CoinGeckoService coinGeckoService;
+    private ApplicationEventPublisher eventPublisher;
+    private RefrescoCriptomonedasJdbcRepository refrescoRepository;
+    private CriptomonedaUpdateService service;
+    private final List<String> ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        String prefijo = "lote-" + System.nanoTime() + "-";
+        for (int i = 0; i < 7; i++) {
+            Criptomoneda cripto = new Criptomoneda();
+            cripto.setId_Criptomoneda(prefijo + i);
+            cripto.setNombre("Lote " + i);
+            cripto.setSimbolo("L" + i);
+            cripto.setPrecio_actual(PRECIO_INICIAL);
+            cripto.setFecha_actualizacion(LocalDateTime.now());
+            ids.add(criptomonedaRepository.save(cripto).getId_Criptomoneda());
+        }
+        coinGeckoService = mock(CoinGeckoService.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        refrescoRepository = spy(new RefrescoCriptomonedasJdbcRepository(jdbcTemplate));
+        service = new CriptomonedaUpdateService(coinGeckoService, refrescoRepository, eventPublisher,
+                transactionManager, true, 2, 3, 6000, 60);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.detenerEjecutor();
+        criptomonedaRepository.deleteAllById(ids);
+    }
+
+    @Test
+    void unLoteFallidoNoImpideAplicarLosDemas() throws Exception {
+        String idQueFalla = ids.get(3);
+        List<List<String>> lotesPedidos = Collections.synchronizedList(new ArrayList<>());
+        when(coinGeckoService.getMarketDataForIds(anyList())).thenAnswer(inv -> {
+            List<String> lote = new ArrayList<>(inv.getArgument(0));
+            lotesPedidos.add(lote);
+            if (lote.contains(idQueFalla)) {
+                throw new IOException("429 simulado");
+            }
+            return preciosDePrueba(lote, id -> PRECIO_NUEVO);
+        });
+
+        service.actualizarDatosCriptomonedas();
+
+        long totalCriptos = criptomonedaRepository.count();
+        assertEquals((totalCriptos + 1) / 2, lotesPedidos.size());
+        List<String> loteFallido = lotesPedidos.stream().filter(l -> l.contains(idQueFalla)).findFirst().orElseThrow();
+        for (List<String> lote : lotesPedidos) {
+            assertTrue(lote.size() <= 2);
+        }
+
+        ArgumentCaptor<PreciosActualizadosEvent> evento = ArgumentCaptor.forClass(PreciosActualizadosEvent.class);
+        verify(eventPublisher).publishEvent(evento.capture());
+        for (String id : ids) {
+            BigDecimal precio = criptomonedaRepository.findById(id).orElseThrow().getPrecio_actual();
+            if (loteFallido.contains(id)) {
+                assertEquals(0, PRECIO_INICIAL.compareTo(precio), "El lote fallido no debe aplicarse: " + id);
+                assertFalse(evento.getValue().precios().containsKey(id));
+            } else {
+                assertEquals(0, PRECIO_NUEVO.compareTo(precio), "Los demás lotes deben aplicarse: " + id);
+                assertEquals(0, PRECIO_NUEVO.compareTo(evento.getValue().precios().get(id)));
+            }
+        }
+    }
+
+    @Test
+    void soloSeEscribenLasCriptosQueCambian() throws Exception {
+        String idQueCambia = ids.get(5);
+        BigDecimal precioCambiado = new BigDecimal("13.25");
+        when(coinGeckoService.getMarketDataForIds(anyList()))
+                .thenAnswer(inv -> preciosDePrueba(inv.getArgument(0), id -> PRECIO_NUEVO));
+        service.actualizarDatosCriptomonedas();
+        clearInvocations(refrescoRepository);
+
+        // Segundo ciclo: mismo refresco salvo una cripto; la tabla ya no se relee de BD.
+        when(coinGeckoService.getMarketDataForIds(anyList()))
+                .thenAnswer(inv -> preciosDePrueba(inv.getArgument(0), id -> id.equals(idQueCambia) ? precioCambiado : PRECIO_NUEVO));
+        service.actualizarDatosCriptomonedas();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CambioPrecio>> escritas = ArgumentCaptor.forClass(List.class);
+        verify(refrescoRepository, atLeastOnce()).actualizarPrecios(escritas.capture());
+        verify(refrescoRepository, never()).cargarCriptomonedas();
+        List<String> idsEscritos = escritas.getAllValues().stream().flatMap(List::stream)
+                .map(CambioPrecio::idCriptomoneda).toList();
+        assertEquals(List.of(idQueCambia), idsEscritos);
+        assertEquals(0, precioCambiado.compareTo(criptomonedaRepository.findById(idQueCambia).orElseThrow().getPrecio_actual()));
+        assertEquals(0, PRECIO_NUEVO.compareTo(criptomonedaRepository.findById(ids.get(0)).orElseThrow().getPrecio_actual()));
+    }
+
+    // Solo se devuelven precios de las criptos de esta prueba: el resto de la BD es de otras clases.
+    private List<MarketCoinDTO> preciosDePrueba(List<String> lote, Function<String, BigDecimal> precio) {
+        List<MarketCoinDTO> datos = new ArrayList<>();
+        for (String id : lote) {
+            if (!ids.contains(id)) {
+                continue;
+            }
+            MarketCoinDTO dto = new MarketCoinDTO();
+            dto.setId(id);
+            dto.setCurrentPrice(precio.apply(id));
+            datos.add(dto);
+        }
+        return datos;
+    }
+
+    @Test
+    void elPresupuestoEspaciaLasLlamadas() throws Exception {
+        PresupuestoLlamadas presupuesto = new PresupuestoLlamadas(600);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            presupuesto.esperarTurno();
+        }
+        // 600 por minuto: una cada 100 ms, la primera sin esperar.
+        assertTrue(System.nanoTime() - inicio >= 290_000_000L);
+    }
+}
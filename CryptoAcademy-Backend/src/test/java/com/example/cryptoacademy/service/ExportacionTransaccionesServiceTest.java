@@ -0,0 +1,111 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.persistance.model.Cartera;
+import com.example.cryptoacademy.persistance.model.Criptomoneda;
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.persistance.repository.CarteraRepository;
+import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import com.example.cryptoacademy.persistance.repository.UsuarioRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ExportacionTransaccionesServiceTest {
+
+    @Autowired
+    private ExportacionTransaccionesService exportacionService;
+    @Autowired
+    private TradingServiceI tradingService;
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    @Autowired
+    private CarteraRepository carteraRepository;
+    @Autowired
+    private CriptomonedaRepository criptomonedaRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Integer idUsuario;
+
+    @BeforeEach
+    void setUp() {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Exportación");
+        usuario.setEmail("exportacion-" + System.nanoTime() + "@cryptoacademy.test");
+        usuario.setHashContrasena("x");
+        usuario = usuarioRepository.save(usuario);
+
+        Cartera cartera = new Cartera();
+        cartera.setUsuario(usuario);
+        cartera.setNombre("Cartera exportación");
+        cartera.setSaldoVirtualEUR(new BigDecimal("10000.0000"));
+        cartera = carteraRepository.save(cartera);
+
+        Criptomoneda cripto = new Criptomoneda();
+        String idCripto = "expcoin-" + System.nanoTime();
+        cripto.setId_Criptomoneda(idCripto);
+        cripto.setNombre("ExpCoin");
+        cripto.setSimbolo("e,\"x\"");
+        cripto.setPrecio_actual(new BigDecimal("10.0000"));
+        cripto.setFecha_actualizacion(LocalDateTime.now());
+        criptomonedaRepository.save(cripto);
+
+        idUsuario = usuario.getId();
+        for (int i = 0; i < 30; i++) {
+            tradingService.comprarCripto(idUsuario, cartera.getIdCartera(), idCripto, new BigDecimal("1"));
+        }
+        tradingService.venderCripto(idUsuario, cartera.getIdCartera(), idCripto, new BigDecimal("5"));
+    }
+
+    @Test
+    void exportaEnCsvConCabeceraYCamposEscapados() throws Exception {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        long filas = exportacionService.exportar(idUsuario, null, FormatoExportacion.CSV, false, salida);
+
+        List<String> lineas = salida.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(31, filas);
+        assertEquals(32, lineas.size());
+        assertTrue(lineas.get(0).startsWith("idTransaccion,fechaTransaccion"));
+        assertTrue(lineas.get(1).contains(",VENTA,"), lineas.get(1));
+        assertTrue(lineas.get(1).contains(",\"e,\"\"x\"\"\","), lineas.get(1));
+    }
+
+    @Test
+    void exportaEnNdjsonComprimidoYFiltradoPorTipo() throws Exception {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        long filas = exportacionService.exportar(idUsuario, TipoTransaccion.COMPRA, FormatoExportacion.NDJSON, true, salida);
+
+        byte[] descomprimido = new GZIPInputStream(new ByteArrayInputStream(salida.toByteArray())).readAllBytes();
+        List<String> lineas = new String(descomprimido, StandardCharsets.UTF_8).lines().toList();
+        assertEquals(30, filas);
+        assertEquals(30, lineas.size());
+        for (String linea : lineas) {
+            JsonNode transaccion = objectMapper.readTree(linea);
+            assertEquals("COMPRA", transaccion.get("tipoTransaccion").asText());
+            assertEquals(0, new BigDecimal("10.0000").compareTo(transaccion.get("valorTotalEUR").decimalValue()));
+        }
+        long primero = objectMapper.readTree(lineas.get(0)).get("idTransaccion").asLong();
+        long ultimo = objectMapper.readTree(lineas.get(29)).get("idTransaccion").asLong();
+        assertTrue(primero > ultimo);
+    }
+}
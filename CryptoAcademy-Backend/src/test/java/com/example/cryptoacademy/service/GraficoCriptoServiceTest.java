@@ -0,0 +1,100 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.CoinGeckoChartDataDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class GraficoCriptoServiceTest {
+
+    private CoinGeckoService coinGeckoService;
+    private GraficoCriptoService service;
+
+    @BeforeEach
+    void setUp() {
+        coinGeckoService = mock(CoinGeckoService.class);
+        // Vigencia de 1 s para los gráficos de un día; 10 min para el resto.
+        service = new GraficoCriptoService(coinGeckoService, new SimpleMeterRegistry(), 100, 1, 600, 3600, 10, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.detenerEjecutor();
+    }
+
+    private static CoinGeckoChartDataDTO grafico() {
+        return new CoinGeckoChartDataDTO();
+    }
+
+    @Test
+    void lasPeticionesConcurrentesCompartenUnaLlamada() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        CoinGeckoChartDataDTO datos = grafico();
+        when(coinGeckoService.getCoinMarketChart("bitcoin", "eur", "7")).thenAnswer(inv -> {
+            liberar.await(5, TimeUnit.SECONDS);
+            return datos;
+        });
+
+        ExecutorService clientes = Executors.newFixedThreadPool(20);
+        try {
+            List<Future<CoinGeckoChartDataDTO>> respuestas = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                respuestas.add(clientes.submit(() -> service.obtenerGrafico("bitcoin", "EUR", "7")));
+            }
+            Thread.sleep(100);
+            liberar.countDown();
+            for (Future<CoinGeckoChartDataDTO> respuesta : respuestas) {
+                assertSame(datos, respuesta.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            clientes.shutdownNow();
+        }
+        verify(coinGeckoService, times(1)).getCoinMarketChart("bitcoin", "eur", "7");
+    }
+
+    @Test
+    void unaEntradaVencidaSeSirveMientrasSeRecarga() throws Exception {
+        CoinGeckoChartDataDTO antiguo = grafico();
+        CoinGeckoChartDataDTO nuevo = grafico();
+        when(coinGeckoService.getCoinMarketChart("bitcoin", "eur", "1")).thenReturn(antiguo, nuevo);
+
+        assertSame(antiguo, service.obtenerGrafico("bitcoin", "eur", "1"));
+        Thread.sleep(1100);
+
+        assertSame(antiguo, service.obtenerGrafico("bitcoin", "eur", "1"));
+        verify(coinGeckoService, timeout(2000).times(2)).getCoinMarketChart("bitcoin", "eur", "1");
+        long limite = System.currentTimeMillis() + 2000;
+        CoinGeckoChartDataDTO actual;
+        do {
+            actual = service.obtenerGrafico("bitcoin", "eur", "1");
+        } while (actual != nuevo && System.currentTimeMillis() < limite);
+        assertSame(nuevo, actual);
+    }
+
+    @Test
+    void unFalloNoSeCacheaYSePropagaComoIOException() throws Exception {
+        CoinGeckoChartDataDTO datos = grafico();
+        when(coinGeckoService.getCoinMarketChart(anyString(), anyString(), anyString()))
+                .thenThrow(new IOException("429"))
+                .thenReturn(datos);
+
+        IOException error = assertThrows(IOException.class, () -> service.obtenerGrafico("ethereum", "eur", "30"));
+        assertEquals("429", error.getMessage());
+        assertSame(datos, service.obtenerGrafico("ethereum", "eur", "30"));
+        assertThrows(IllegalArgumentException.class, () -> service.obtenerGrafico("ethereum", "eur", " "));
+    }
+}
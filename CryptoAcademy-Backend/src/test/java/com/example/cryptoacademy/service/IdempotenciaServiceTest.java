@@ -0,0 +1,151 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.TransaccionResponseDTO;
+import com.example.cryptoacademy.exception.ClaveIdempotenciaReutilizadaException;
+import com.example.cryptoacademy.exception.ConflictoConcurrenciaException;
+import com.example.cryptoacademy.exception.SaldoInsuficienteException;
+import com.example.cryptoacademy.persistance.model.ClaveIdempotencia;
+import com.example.cryptoacademy.persistance.repository.ClaveIdempotenciaRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IdempotenciaServiceTest {
+
+    private ClaveIdempotenciaRepository repository;
+    private SimpleMeterRegistry meterRegistry;
+    private IdempotenciaService service;
+    private final AtomicInteger ejecuciones = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ClaveIdempotenciaRepository.class);
+        when(repository.findById(anyString())).thenReturn(Optional.empty());
+        meterRegistry = new SimpleMeterRegistry();
+        service = new IdempotenciaService(repository, new ObjectMapper(), meterRegistry, 100, 10);
+    }
+
+    private TransaccionResponseDTO comprar() {
+        return TransaccionResponseDTO.builder()
+                .idTransaccion((long) ejecuciones.incrementAndGet())
+                .cantidadCripto(BigDecimal.ONE)
+                .build();
+    }
+
+    private double peticiones(String resultado) {
+        return meterRegistry.get("trading.idempotencia.peticiones").tag("resultado", resultado).counter().count();
+    }
+
+    @Test
+    void reintentoConLaMismaClaveDevuelveLaRespuestaOriginal() {
+        IdempotenciaService.RespuestaIdempotente primera = service.ejecutar(1, "k1", "COMPRA|1|btc|1", this::comprar);
+        IdempotenciaService.RespuestaIdempotente segunda = service.ejecutar(1, "k1", "COMPRA|1|btc|1", this::comprar);
+
+        assertFalse(primera.repetida());
+        assertTrue(segunda.repetida());
+        assertEquals(primera.respuesta(), segunda.respuesta());
+        assertEquals(1, ejecuciones.get());
+        assertEquals(1, peticiones("nueva"));
+        assertEquals(1, peticiones("cache"));
+        verify(repository, times(1)).save(any(ClaveIdempotencia.class));
+    }
+
+    @Test
+    void lasClavesSonPorUsuario() {
+        service.ejecutar(1, "k1", "COMPRA|1|btc|1", this::comprar);
+        service.ejecutar(2, "k1", "COMPRA|1|btc|1", this::comprar);
+        assertEquals(2, ejecuciones.get());
+    }
+
+    @Test
+    void claveReutilizadaConOtraOrdenSeRechaza() {
+        service.ejecutar(1, "k1", "COMPRA|1|btc|1", this::comprar);
+        assertThrows(ClaveIdempotenciaReutilizadaException.class,
+                () -> service.ejecutar(1, "k1", "COMPRA|1|btc|2", this::comprar));
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void recuperaLaRespuestaDeBaseDeDatosCuandoNoEstaEnCache() {
+        service.ejecutar(1, "k1", "COMPRA|1|btc|1", this::comprar);
+        ArgumentCaptor<ClaveIdempotencia> reservada = ArgumentCaptor.forClass(ClaveIdempotencia.class);
+        ArgumentCaptor<String> respuesta = ArgumentCaptor.forClass(String.class);
+        verify(repository).save(reservada.capture());
+        verify(repository).completar(eq("1:k1"), respuesta.capture());
+        assertTrue(reservada.getValue().estaEnCurso());
+
+        IdempotenciaService otraInstancia = new IdempotenciaService(repository, new ObjectMapper(), meterRegistry, 100, 10);
+        ClaveIdempotencia completada = new ClaveIdempotencia("1:k1", 1, reservada.getValue().getHuella(), respuesta.getValue());
+        when(repository.findById("1:k1")).thenReturn(Optional.of(completada));
+
+        IdempotenciaService.RespuestaIdempotente resultado = otraInstancia.ejecutar(1, "k1", "COMPRA|1|btc|1", this::comprar);
+        assertTrue(resultado.repetida());
+        assertEquals(1L, resultado.respuesta().getIdTransaccion());
+        assertEquals(1, ejecuciones.get());
+        assertEquals(1, peticiones("bd"));
+    }
+
+    @Test
+    void unaOrdenRechazadaNoConsumeLaClave() {
+        assertThrows(SaldoInsuficienteException.class, () -> service.ejecutar(1, "k1", "COMPRA|1|btc|1", () -> {
+            throw new SaldoInsuficienteException("Saldo insuficiente");
+        }));
+        verify(repository).deleteById("1:k1");
+        IdempotenciaService.RespuestaIdempotente resultado = service.ejecutar(1, "k1", "COMPRA|1|btc|1", this::comprar);
+        assertFalse(resultado.repetida());
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void unFalloInesperadoMantieneLaClaveReservada() {
+        assertThrows(RuntimeException.class, () -> service.ejecutar(1, "k1", "COMPRA|1|btc|1", () -> {
+            throw new RuntimeException("Fallo tras confirmar");
+        }));
+        ArgumentCaptor<ClaveIdempotencia> reservada = ArgumentCaptor.forClass(ClaveIdempotencia.class);
+        verify(repository).save(reservada.capture());
+        verify(repository, never()).deleteById(anyString());
+
+        when(repository.findById("1:k1")).thenReturn(Optional.of(reservada.getValue()));
+        assertThrows(ConflictoConcurrenciaException.class,
+                () -> service.ejecutar(1, "k1", "COMPRA|1|btc|1", this::comprar));
+        assertEquals(0, ejecuciones.get());
+    }
+
+    @Test
+    void unaClaveEnCursoEnOtraInstanciaNoVuelveAEjecutarse() {
+        service.ejecutar(1, "k1", "COMPRA|1|btc|1", this::comprar);
+        ArgumentCaptor<ClaveIdempotencia> reservada = ArgumentCaptor.forClass(ClaveIdempotencia.class);
+        verify(repository).save(reservada.capture());
+
+        IdempotenciaService otraInstancia = new IdempotenciaService(repository, new ObjectMapper(), meterRegistry, 100, 10);
+        when(repository.findById("1:k1")).thenReturn(Optional.of(reservada.getValue()));
+
+        assertThrows(ConflictoConcurrenciaException.class,
+                () -> otraInstancia.ejecutar(1, "k1", "COMPRA|1|btc|1", this::comprar));
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void siOtraInstanciaReservaLaClaveALaVezNoSeEjecuta() {
+        ClaveIdempotencia ajena = new ClaveIdempotencia("1:k1", 1, "otra", null);
+        when(repository.save(any(ClaveIdempotencia.class))).thenThrow(new DataIntegrityViolationException("duplicada"));
+        when(repository.findById("1:k1")).thenReturn(Optional.empty(), Optional.of(ajena));
+
+        assertThrows(ClaveIdempotenciaReutilizadaException.class,
+                () -> service.ejecutar(1, "k1", "COMPRA|1|btc|1", this::comprar));
+        assertEquals(0, ejecuciones.get());
+    }
+}
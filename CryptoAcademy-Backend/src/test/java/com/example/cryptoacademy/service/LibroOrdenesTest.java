@@ -0,0 +1,58 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.persistance.model.TipoOrden;
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LibroOrdenesTest {
+
+    private static OrdenEnLibro orden(long id, String precio, TipoTransaccion tipo, TipoOrden tipoOrden) {
+        return new OrdenEnLibro(id, "bitcoin", new BigDecimal(precio), tipo, tipoOrden);
+    }
+
+    @Test
+    void soloExtraeLasOrdenesCuyoUmbralSeCruza() {
+        LibroOrdenes libro = new LibroOrdenes();
+        libro.añadir(orden(1, "100", TipoTransaccion.COMPRA, TipoOrden.LIMITE));
+        libro.añadir(orden(2, "90", TipoTransaccion.COMPRA, TipoOrden.LIMITE));
+        libro.añadir(orden(3, "95", TipoTransaccion.VENTA, TipoOrden.STOP));
+        libro.añadir(orden(4, "120", TipoTransaccion.VENTA, TipoOrden.LIMITE));
+        libro.añadir(orden(5, "110", TipoTransaccion.COMPRA, TipoOrden.STOP));
+
+        List<OrdenEnLibro> activadas = new ArrayList<>();
+        libro.extraerActivadas(new BigDecimal("95"), activadas);
+        assertEquals(List.of(1L, 3L), activadas.stream().map(OrdenEnLibro::getIdOrden).toList());
+        assertEquals(3, libro.tamaño());
+
+        activadas.clear();
+        libro.extraerActivadas(new BigDecimal("115"), activadas);
+        assertEquals(List.of(5L), activadas.stream().map(OrdenEnLibro::getIdOrden).toList());
+
+        activadas.clear();
+        libro.extraerActivadas(new BigDecimal("105"), activadas);
+        assertTrue(activadas.isEmpty());
+        assertEquals(2, libro.tamaño());
+    }
+
+    @Test
+    void retirarEliminaLaOrdenUnaSolaVez() {
+        LibroOrdenes libro = new LibroOrdenes();
+        libro.añadir(orden(1, "100", TipoTransaccion.VENTA, TipoOrden.STOP));
+        libro.añadir(orden(2, "100", TipoTransaccion.VENTA, TipoOrden.STOP));
+
+        assertTrue(libro.retirar(orden(1, "100", TipoTransaccion.VENTA, TipoOrden.STOP)));
+        assertFalse(libro.retirar(orden(1, "100", TipoTransaccion.VENTA, TipoOrden.STOP)));
+
+        List<OrdenEnLibro> activadas = new ArrayList<>();
+        libro.extraerActivadas(new BigDecimal("50"), activadas);
+        assertEquals(List.of(2L), activadas.stream().map(OrdenEnLibro::getIdOrden).toList());
+    }
+}
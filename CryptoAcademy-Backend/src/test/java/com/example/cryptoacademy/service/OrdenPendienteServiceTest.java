@@ -0,0 +1,142 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.OrdenPendienteRequestDTO;
+import com.example.cryptoacademy.persistance.model.Cartera;
+import com.example.cryptoacademy.persistance.model.Criptomoneda;
+import com.example.cryptoacademy.persistance.model.EstadoOrden;
+import com.example.cryptoacademy.persistance.model.OrdenPendiente;
+import com.example.cryptoacademy.persistance.model.TipoOrden;
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.persistance.repository.CarteraRepository;
+import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import com.example.cryptoacademy.persistance.repository.OrdenPendienteRepository;
+import com.example.cryptoacademy.persistance.repository.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// ejecutarOrdenes se invoca directamente (sin el hilo del motor) para comprobar el resultado de forma síncrona.
+@SpringBootTest
+@ActiveProfiles("test")
+class OrdenPendienteServiceTest {
+
+    private static final BigDecimal SALDO_INICIAL = new BigDecimal("10000.0000");
+
+    @Autowired
+    private OrdenPendienteService ordenService;
+    @Autowired
+    private OrdenPendienteRepository ordenPendienteRepository;
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    @Autowired
+    private CarteraRepository carteraRepository;
+    @Autowired
+    private CriptomonedaRepository criptomonedaRepository;
+
+    private Usuario usuario;
+    private Long idCartera;
+    private String idCripto;
+
+    @BeforeEach
+    void setUp() {
+        usuario = new Usuario();
+        usuario.setNombre("Órdenes");
+        usuario.setEmail("ordenes-" + System.nanoTime() + "@cryptoacademy.test");
+        usuario.setHashContrasena("x");
+        usuario = usuarioRepository.save(usuario);
+
+        Cartera cartera = new Cartera();
+        cartera.setUsuario(usuario);
+        cartera.setNombre("Cartera órdenes");
+        cartera.setSaldoVirtualEUR(SALDO_INICIAL);
+        idCartera = carteraRepository.save(cartera).getIdCartera();
+
+        Criptomoneda cripto = new Criptomoneda();
+        idCripto = "ordencoin-" + System.nanoTime();
+        cripto.setId_Criptomoneda(idCripto);
+        cripto.setNombre("OrdenCoin");
+        cripto.setSimbolo("ord");
+        cripto.setPrecio_actual(new BigDecimal("85.0000"));
+        cripto.setFecha_actualizacion(LocalDateTime.now());
+        criptomonedaRepository.save(cripto);
+    }
+
+    @Test
+    void laOrdenActivadaQuedaEjecutadaJuntoConSuOperacion() {
+        Long idOrden = ordenService.crearOrden(usuario, compraLimite("90")).getIdOrden();
+
+        ordenService.ejecutarOrdenes(ordenService.extraerActivadas(Map.of(idCripto, new BigDecimal("85"))));
+
+        OrdenPendiente orden = ordenPendienteRepository.findById(idOrden).orElseThrow();
+        assertEquals(EstadoOrden.EJECUTADA, orden.getEstado());
+        assertNotNull(orden.getIdTransaccion());
+        assertEquals(0, ordenService.tamañoLibro(idCripto));
+    }
+
+    @Test
+    void unaOrdenCanceladaTrasExtraerseNoSeEjecuta() {
+        Long idOrden = ordenService.crearOrden(usuario, compraLimite("90")).getIdOrden();
+        List<OrdenEnLibro> activadas = ordenService.extraerActivadas(Map.of(idCripto, new BigDecimal("85")));
+
+        ordenService.cancelarOrden(usuario, idOrden);
+        ordenService.ejecutarOrdenes(activadas);
+
+        OrdenPendiente orden = ordenPendienteRepository.findById(idOrden).orElseThrow();
+        assertEquals(EstadoOrden.CANCELADA, orden.getEstado());
+        assertNull(orden.getIdTransaccion());
+        assertEquals(0, SALDO_INICIAL.compareTo(carteraRepository.findById(idCartera).orElseThrow().getSaldoVirtualEUR()));
+        assertEquals(0, ordenService.tamañoLibro(idCripto));
+    }
+
+    @Test
+    void unFalloTransitorioDevuelveLaOrdenAlLibro() throws Exception {
+        TradingServiceI tradingCaido = mock(TradingServiceI.class);
+        when(tradingCaido.ejecutarLoteOrdenes(anyInt(), anyLong(), anyList(), any()))
+                .thenThrow(new DataAccessResourceFailureException("BD no disponible"));
+        OrdenPendienteService servicio = new OrdenPendienteService(ordenPendienteRepository, carteraRepository,
+                criptomonedaRepository, tradingCaido);
+        try {
+            Long idOrden = servicio.crearOrden(usuario, compraLimite("90")).getIdOrden();
+
+            servicio.ejecutarOrdenes(servicio.extraerActivadas(Map.of(idCripto, new BigDecimal("85"))));
+
+            assertEquals(EstadoOrden.PENDIENTE, ordenPendienteRepository.findById(idOrden).orElseThrow().getEstado());
+            assertEquals(1, servicio.tamañoLibro(idCripto));
+        } finally {
+            servicio.detenerEjecutor();
+        }
+    }
+
+    @Test
+    void rechazaPreciosDeActivacionNoPositivos() {
+        assertThrows(IllegalArgumentException.class, () -> ordenService.crearOrden(usuario, compraLimite(null)));
+        assertThrows(IllegalArgumentException.class, () -> ordenService.crearOrden(usuario, compraLimite("0")));
+        assertThrows(IllegalArgumentException.class, () -> ordenService.crearOrden(usuario, compraLimite("0.00001")));
+        assertEquals(0, ordenService.tamañoLibro(idCripto));
+    }
+
+    private OrdenPendienteRequestDTO compraLimite(String precioActivacion) {
+        return new OrdenPendienteRequestDTO(idCartera, idCripto, TipoTransaccion.COMPRA, TipoOrden.LIMITE,
+                new BigDecimal("1"), precioActivacion != null ? new BigDecimal(precioActivacion) : null);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.cryptoacademy.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PuntoFijoTest {
+
+    private static BigDecimal valorarConBigDecimal(long cantidad, long precio, int escala) {
+        return BigDecimal.valueOf(cantidad, PuntoFijo.ESCALA_CANTIDAD)
+                .multiply(BigDecimal.valueOf(precio, PuntoFijo.ESCALA_EUR))
+                .setScale(escala, RoundingMode.HALF_UP);
+    }
+
+    @Test
+    void valorarCoincideConBigDecimal() {
+        Random random = new Random(20250101L);
+        for (int i = 0; i < 200_000; i++) {
+            long cantidad = random.nextLong(1_000_000L * 100_000_000L);   // hasta 1e6 unidades
+            long precio = random.nextLong(200_000L * 10_000L);            // hasta 200.000 EUR
+            int escala = random.nextInt(PuntoFijo.ESCALA_EUR + 1);
+            assertEquals(valorarConBigDecimal(cantidad, precio, escala),
+                    PuntoFijo.aBigDecimal(PuntoFijo.valorar(cantidad, precio, escala), escala),
+                    () -> cantidad + " x " + precio + " @" + escala);
+        }
+    }
+
+    @Test
+    void redondeaMediaUnidadHaciaArriba() {
+        // 0,00000001 x 0,5 EUR = 0,000000005 -> 0,00 con 2 decimales; 1,005 -> 1,01
+        assertEquals(0L, PuntoFijo.valorar(1L, 5_000L, 2));
+        assertEquals(101L, PuntoFijo.valorar(100_500_000L, 10_000L, 2));
+        assertEquals(100L, PuntoFijo.valorar(100_499_999L, 10_000L, 2));
+    }
+
+    @Test
+    void productosQueDesbordanLongSiguenSiendoExactos() {
+        long cantidad = 50_000_000L * 100_000_000L + 12_345_678L;  // 5e7 unidades
+        long precio = 90_000_000L * 10_000L + 1_234L;              // 9e7 EUR por unidad
+        assertEquals(valorarConBigDecimal(cantidad, precio, 2),
+                PuntoFijo.aBigDecimal(PuntoFijo.valorar(cantidad, precio, 2), 2));
+    }
+
+    @Test
+    void lanzaExcepcionSiElResultadoNoCabeEnUnLong() {
+        assertThrows(ArithmeticException.class,
+                () -> PuntoFijo.valorar(Long.MAX_VALUE, Long.MAX_VALUE, PuntoFijo.ESCALA_EUR));
+        assertThrows(ArithmeticException.class, () -> PuntoFijo.sumar(Long.MAX_VALUE, 1L));
+    }
+
+    @Test
+    void convierteDesdeYHaciaBigDecimal() {
+        assertEquals(1_234_568L, PuntoFijo.eur(new BigDecimal("123.45675")));
+        assertEquals(150_000_000L, PuntoFijo.cantidad(new BigDecimal("1.5")));
+        assertEquals(0L, PuntoFijo.eur(null));
+        assertEquals(new BigDecimal("123.4568"), PuntoFijo.aBigDecimal(1_234_568L, PuntoFijo.ESCALA_EUR));
+    }
+}
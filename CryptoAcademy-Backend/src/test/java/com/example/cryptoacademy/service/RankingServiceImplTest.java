@@ -0,0 +1,167 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.RankingItemDTO;
+import com.example.cryptoacademy.dto.ResumenUsuarioDTO;
+import com.example.cryptoacademy.persistance.model.Criptomoneda;
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import com.example.cryptoacademy.persistance.model.Transaccion;
+import com.example.cryptoacademy.persistance.repository.CarteraRepository;
+import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import com.example.cryptoacademy.persistance.repository.CriptosAlmacenadasRepository;
+import com.example.cryptoacademy.persistance.repository.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RankingServiceImplTest {
+
+    private UsuarioRepository usuarioRepository;
+    private CarteraRepository carteraRepository;
+    private CriptosAlmacenadasRepository criptosAlmacenadasRepository;
+    private RankingServiceImpl rankingService;
+
+    @BeforeEach
+    void setUp() {
+        usuarioRepository = mock(UsuarioRepository.class);
+        carteraRepository = mock(CarteraRepository.class);
+        criptosAlmacenadasRepository = mock(CriptosAlmacenadasRepository.class);
+        CriptomonedaRepository criptomonedaRepository = mock(CriptomonedaRepository.class);
+
+        when(usuarioRepository.findDatosRanking()).thenReturn(List.of(
+                new Object[]{1, "Ana", "ana@mail.com"},
+                new Object[]{2, "Luis", "luis@mail.com"},
+                new Object[]{3, "Eva", "eva@mail.com"}));
+        when(carteraRepository.sumarSaldosPorUsuario()).thenReturn(List.of(
+                new Object[]{1, new BigDecimal("1000.0000")},
+                new Object[]{2, new BigDecimal("500.0000")},
+                new Object[]{3, new BigDecimal("800.0000")}));
+        when(criptosAlmacenadasRepository.sumarCantidadesPorUsuario()).thenReturn(List.<Object[]>of(
+                new Object[]{2, "bitcoin", new BigDecimal("0.01000000")}));
+        when(criptomonedaRepository.findPreciosActuales()).thenReturn(List.<Object[]>of(
+                new Object[]{"bitcoin", new BigDecimal("40000.0000")}));
+
+        rankingService = new RankingServiceImpl(usuarioRepository, carteraRepository, criptosAlmacenadasRepository, criptomonedaRepository);
+        rankingService.construir();
+    }
+
+    @Test
+    void construyeElRankingConSaldoMasCriptosAPrecioActual() {
+        List<RankingItemDTO> ranking = rankingService.obtenerRanking(10);
+
+        assertEquals(List.of(1, 2, 3), ranking.stream().map(RankingItemDTO::getIdUsuario).toList());
+        assertEquals(new BigDecimal("900.00"), ranking.get(1).getValorTotalPortfolioEUR());
+        assertEquals("lui***@mail.com", ranking.get(1).getEmailOculto());
+        assertEquals(3, rankingService.contarUsuarios());
+    }
+
+    @Test
+    void unRefrescoDePreciosSoloReposicionaALosTenedores() {
+        rankingService.onPreciosActualizados(new PreciosActualizadosEvent(Map.of(
+                "bitcoin", new BigDecimal("60000"),
+                "ethereum", new BigDecimal("3000"))));
+
+        assertEquals(List.of(2, 1, 3), rankingService.obtenerRanking(10).stream().map(RankingItemDTO::getIdUsuario).toList());
+        assertEquals(new BigDecimal("1100.00"), rankingService.obtenerPosicionUsuario(2).orElseThrow().getValorTotalPortfolioEUR());
+    }
+
+    @Test
+    void soloRecargaDesdeBdLosUsuariosMarcados() {
+        rankingService.recalcularPendientes();
+        verify(usuarioRepository, never()).findDatosRanking(anyCollection());
+
+        when(usuarioRepository.findDatosRanking(List.of(3))).thenReturn(List.<Object[]>of(new Object[]{3, "Eva", "eva@mail.com"}));
+        when(carteraRepository.sumarSaldosPorUsuario(List.of(3))).thenReturn(List.<Object[]>of(new Object[]{3, new BigDecimal("200.0000")}));
+        when(criptosAlmacenadasRepository.sumarCantidadesPorUsuario(List.of(3))).thenReturn(List.<Object[]>of(
+                new Object[]{3, "bitcoin", new BigDecimal("0.05000000")}));
+
+        rankingService.onPortfolioModificado(new PortfolioModificadoEvent(3));
+        rankingService.recalcularPendientes();
+
+        RankingItemDTO eva = rankingService.obtenerPosicionUsuario(3).orElseThrow();
+        assertEquals(1, eva.getPosicion());
+        assertEquals(new BigDecimal("2200.00"), eva.getValorTotalPortfolioEUR());
+        assertEquals(List.of(1, 2), rankingService.obtenerRango(2, 2).stream().map(RankingItemDTO::getIdUsuario).toList());
+    }
+
+    @Test
+    void laFotoSoloCambiaDeVersionConCadaRefrescoDePrecios() {
+        RankingSnapshot inicial = rankingService.obtenerSnapshot();
+        assertEquals(1, inicial.getVersion());
+
+        when(usuarioRepository.findDatosRanking(List.of(3))).thenReturn(List.<Object[]>of(new Object[]{3, "Eva", "eva@mail.com"}));
+        when(carteraRepository.sumarSaldosPorUsuario(List.of(3))).thenReturn(List.<Object[]>of(new Object[]{3, new BigDecimal("5000.0000")}));
+        rankingService.onPortfolioModificado(new PortfolioModificadoEvent(3));
+        rankingService.recalcularPendientes();
+
+        assertSame(inicial, rankingService.obtenerSnapshot());
+        assertEquals(1, rankingService.obtenerPosicionUsuario(3).orElseThrow().getPosicion());
+
+        rankingService.onPreciosActualizados(new PreciosActualizadosEvent(Map.of("bitcoin", new BigDecimal("40000"))));
+        RankingSnapshot siguiente = rankingService.obtenerSnapshot();
+        assertEquals(2, siguiente.getVersion());
+        assertNotEquals(inicial.etag("p0-50"), siguiente.etag("p0-50"));
+        assertEquals(0, siguiente.indiceDe(3).orElseThrow());
+        assertEquals(List.of(3, 1), siguiente.entorno(0, 1).stream().map(RankingItemDTO::getIdUsuario).toList());
+        assertEquals(List.of(2), siguiente.pagina(1, 2).stream().map(RankingItemDTO::getIdUsuario).toList());
+    }
+
+    @Test
+    void unaOperacionSeAplicaAlResumenSinEsperarALaRecarga() {
+        Criptomoneda bitcoin = new Criptomoneda();
+        bitcoin.setId_Criptomoneda("bitcoin");
+        Transaccion compra = new Transaccion();
+        compra.setCriptomoneda(bitcoin);
+        compra.setTipoTransaccion(TipoTransaccion.COMPRA);
+        compra.setCantidadCripto(new BigDecimal("0.02000000"));
+        compra.setValorTotalEUR(new BigDecimal("800.0000"));
+
+        rankingService.onPortfolioModificado(new PortfolioModificadoEvent(3, List.of(compra)));
+
+        ResumenUsuarioDTO resumen = rankingService.obtenerResumenUsuario(3).orElseThrow();
+        assertEquals(new BigDecimal("0.0000"), resumen.getSaldoFiatTotalEUR());
+        assertEquals(new BigDecimal("800.0000"), resumen.getValorCriptoTotalEUR());
+        assertEquals(new BigDecimal("800.0000"), resumen.getValorTotalEUR());
+        assertEquals(3, resumen.getPosicionRanking());
+        assertEquals(3, resumen.getTotalUsuarios());
+
+        Transaccion venta = new Transaccion();
+        venta.setCriptomoneda(bitcoin);
+        venta.setTipoTransaccion(TipoTransaccion.VENTA);
+        venta.setCantidadCripto(new BigDecimal("0.02000000"));
+        venta.setValorTotalEUR(new BigDecimal("800.0000"));
+        rankingService.onPortfolioModificado(new PortfolioModificadoEvent(3, List.of(venta)));
+
+        resumen = rankingService.obtenerResumenUsuario(3).orElseThrow();
+        assertEquals(new BigDecimal("800.0000"), resumen.getSaldoFiatTotalEUR());
+        assertEquals(new BigDecimal("0.0000"), resumen.getValorCriptoTotalEUR());
+        assertTrue(rankingService.obtenerResumenUsuario(99).isEmpty());
+    }
+
+    @Test
+    void unUsuarioRegistradoTrasLaCargaSeIncorporaAlConsultarSuResumen() {
+        when(usuarioRepository.findDatosRanking(List.of(4))).thenReturn(List.<Object[]>of(new Object[]{4, "Sara", "sara@mail.com"}));
+        when(carteraRepository.sumarSaldosPorUsuario(List.of(4))).thenReturn(List.<Object[]>of(new Object[]{4, new BigDecimal("1200.0000")}));
+        when(criptosAlmacenadasRepository.sumarCantidadesPorUsuario(List.of(4))).thenReturn(List.<Object[]>of(
+                new Object[]{4, "bitcoin", new BigDecimal("0.01000000")}));
+
+        ResumenUsuarioDTO resumen = rankingService.obtenerResumenUsuario(4).orElseThrow();
+        assertEquals(new BigDecimal("1200.0000"), resumen.getSaldoFiatTotalEUR());
+        assertEquals(new BigDecimal("400.0000"), resumen.getValorCriptoTotalEUR());
+        assertEquals(1, resumen.getPosicionRanking());
+        assertEquals(4, resumen.getTotalUsuarios());
+        assertEquals(1, rankingService.obtenerPosicionUsuario(4).orElseThrow().getPosicion());
+    }
+}
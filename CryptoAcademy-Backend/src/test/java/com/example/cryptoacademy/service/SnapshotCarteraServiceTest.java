@@ -0,0 +1,130 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.HistorialPortfolioDTO;
+import com.example.cryptoacademy.dto.PuntoHistorialPortfolioDTO;
+import com.example.cryptoacademy.exception.RecursoNoEncontradoException;
+import com.example.cryptoacademy.persistance.model.Cartera;
+import com.example.cryptoacademy.persistance.model.Criptomoneda;
+import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.persistance.repository.CarteraRepository;
+import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import com.example.cryptoacademy.persistance.repository.SnapshotCarteraJdbcRepository;
+import com.example.cryptoacademy.persistance.repository.SnapshotCarteraJdbcRepository.SnapshotFila;
+import com.example.cryptoacademy.persistance.repository.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class SnapshotCarteraServiceTest {
+
+    @Autowired
+    private SnapshotCarteraService snapshotCarteraService;
+    @Autowired
+    private SnapshotCarteraJdbcRepository snapshotRepository;
+    @Autowired
+    private TradingServiceI tradingService;
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    @Autowired
+    private CarteraRepository carteraRepository;
+    @Autowired
+    private CriptomonedaRepository criptomonedaRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Integer idUsuario;
+    private Long idCartera;
+    private String idCripto;
+
+    @BeforeEach
+    void setUp() {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Snapshots");
+        usuario.setEmail("snapshots-" + System.nanoTime() + "@cryptoacademy.test");
+        usuario.setHashContrasena("x");
+        usuario = usuarioRepository.save(usuario);
+
+        Cartera cartera = new Cartera();
+        cartera.setUsuario(usuario);
+        cartera.setNombre("Cartera snapshots");
+        cartera.setSaldoVirtualEUR(new BigDecimal("1000.0000"));
+        cartera = carteraRepository.save(cartera);
+
+        Criptomoneda cripto = new Criptomoneda();
+        idCripto = "snapcoin-" + System.nanoTime();
+        cripto.setId_Criptomoneda(idCripto);
+        cripto.setNombre("SnapCoin");
+        cripto.setSimbolo("snp");
+        cripto.setPrecio_actual(new BigDecimal("100.0000"));
+        cripto.setFecha_actualizacion(LocalDateTime.now());
+        criptomonedaRepository.save(cripto);
+
+        idUsuario = usuario.getId();
+        idCartera = cartera.getIdCartera();
+        tradingService.comprarCripto(idUsuario, idCartera, idCripto, new BigDecimal("2"));
+    }
+
+    @Test
+    void valoraCadaCarteraConLosPreciosDelRefresco() throws Exception {
+        int escritas = snapshotCarteraService.tomarSnapshots(Map.of(idCripto, new BigDecimal("150")));
+
+        assertTrue(escritas >= 1);
+        assertEquals(0, new BigDecimal("1100.0000").compareTo(ultimoValorTotal()));
+
+        // Sin el precio en el refresco se usa el de BD.
+        snapshotCarteraService.tomarSnapshots(Map.of());
+        List<BigDecimal> valores = jdbcTemplate.queryForList(
+                "SELECT valor_criptos_eur FROM snapshots_cartera WHERE id_cartera = ? ORDER BY id_snapshot", BigDecimal.class, idCartera);
+        assertEquals(2, valores.size());
+        assertEquals(0, new BigDecimal("300").compareTo(valores.get(0)));
+        assertEquals(0, new BigDecimal("200").compareTo(valores.get(1)));
+    }
+
+    @Test
+    void elHistorialSeReduceAlMaximoDePuntos() {
+        LocalDateTime ahora = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        for (int i = 2000; i >= 1; i--) {
+            BigDecimal valor = BigDecimal.valueOf(i);
+            snapshotRepository.insertarSnapshots(ahora.minusMinutes(i * 5L),
+                    List.of(new SnapshotFila(idCartera, valor, BigDecimal.ZERO)));
+        }
+
+        HistorialPortfolioDTO semana = snapshotCarteraService.obtenerHistorial(idUsuario, idCartera, RangoHistorial.SEMANA);
+        List<PuntoHistorialPortfolioDTO> puntos = semana.getPuntos();
+
+        assertTrue(puntos.size() <= 201, "puntos: " + puntos.size());
+        assertTrue(puntos.size() > 150, "puntos: " + puntos.size());
+        for (int i = 1; i < puntos.size(); i++) {
+            assertTrue(puntos.get(i).getFecha().isAfter(puntos.get(i - 1).getFecha()));
+        }
+        assertEquals(0, BigDecimal.ONE.compareTo(puntos.get(puntos.size() - 1).getValorTotalEUR()));
+        assertTrue(puntos.get(0).getFecha().isAfter(ahora.minusDays(7).minusMinutes(1)));
+
+        List<PuntoHistorialPortfolioDTO> todo = snapshotCarteraService.obtenerHistorial(idUsuario, idCartera, RangoHistorial.TODO).getPuntos();
+        assertTrue(todo.size() <= 201, "puntos: " + todo.size());
+        assertTrue(todo.get(0).getFecha().isBefore(ahora.minusMinutes(9_900)), "primer punto: " + todo.get(0).getFecha());
+        assertThrows(RecursoNoEncontradoException.class,
+                () -> snapshotCarteraService.obtenerHistorial(idUsuario + 1_000_000, idCartera, RangoHistorial.DIA));
+    }
+
+    private BigDecimal ultimoValorTotal() {
+        return jdbcTemplate.queryForObject(
+                "SELECT valor_total_eur FROM snapshots_cartera WHERE id_cartera = ? ORDER BY id_snapshot DESC LIMIT 1",
+                BigDecimal.class, idCartera);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.exception.CantidadInsuficienteException;
+import com.example.cryptoacademy.exception.ConflictoConcurrenciaException;
+import com.example.cryptoacademy.exception.SaldoInsuficienteException;
+import com.example.cryptoacademy.persistance.model.Cartera;
+import com.example.cryptoacademy.persistance.model.Criptomoneda;
+import com.example.cryptoacademy.persistance.model.CriptosAlmacenadas;
+import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.persistance.repository.CarteraRepository;
+import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import com.example.cryptoacademy.persistance.repository.CriptosAlmacenadasRepository;
+import com.example.cryptoacademy.persistance.repository.TransaccionRepository;
+import com.example.cryptoacademy.persistance.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TradingConcurrenciaStressTest {
+
+    private static final int NUM_ORDENES = 2000;
+    private static final int NUM_HILOS = 32;
+    private static final BigDecimal PRECIO = new BigDecimal("100.0000");
+    private static final BigDecimal CANTIDAD_ORDEN = new BigDecimal("0.01000000");
+    private static final BigDecimal IMPORTE_ORDEN = CANTIDAD_ORDEN.multiply(PRECIO);
+
+    @Autowired
+    private TradingServiceI tradingService;
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    @Autowired
+    private CarteraRepository carteraRepository;
+    @Autowired
+    private CriptomonedaRepository criptomonedaRepository;
+    @Autowired
+    private CriptosAlmacenadasRepository criptosAlmacenadasRepository;
+    @Autowired
+    private TransaccionRepository transaccionRepository;
+
+    @Test
+    void ordenesParalelasSobreLaMismaCarteraCuadranSaldosYTenencias() throws Exception {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Stress");
+        usuario.setEmail("stress-" + System.nanoTime() + "@cryptoacademy.test");
+        usuario.setHashContrasena("x");
+        usuario = usuarioRepository.save(usuario);
+
+        Cartera cartera = new Cartera();
+        cartera.setUsuario(usuario);
+        cartera.setNombre("Cartera stress");
+        cartera.setSaldoVirtualEUR(new BigDecimal("500.0000"));
+        cartera = carteraRepository.save(cartera);
+
+        Criptomoneda cripto = new Criptomoneda();
+        String idCripto = "stresscoin-" + System.nanoTime();
+        cripto.setId_Criptomoneda(idCripto);
+        cripto.setNombre("StressCoin");
+        cripto.setSimbolo("stc");
+        cripto.setPrecio_actual(PRECIO);
+        cripto.setFecha_actualizacion(LocalDateTime.now());
+        criptomonedaRepository.save(cripto);
+
+        Integer idUsuario = usuario.getId();
+        Long idCartera = cartera.getIdCartera();
+        tradingService.comprarCripto(idUsuario, idCartera, idCripto, new BigDecimal("2"));
+
+        BigDecimal saldoInicial = carteraRepository.findById(idCartera).orElseThrow().getSaldoVirtualEUR();
+        BigDecimal cantidadInicial = tenencia(cartera).getCantidad();
+        long transaccionesIniciales = transaccionRepository.count();
+
+        AtomicInteger comprasOk = new AtomicInteger();
+        AtomicInteger ventasOk = new AtomicInteger();
+        AtomicInteger rechazadas = new AtomicInteger();
+        AtomicInteger conflictos = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_HILOS);
+        List<Future<?>> resultados = new ArrayList<>();
+        for (int i = 0; i < NUM_ORDENES; i++) {
+            boolean compra = i % 2 == 0;
+            resultados.add(executor.submit(() -> {
+                try {
+                    if (compra) {
+                        tradingService.comprarCripto(idUsuario, idCartera, idCripto, CANTIDAD_ORDEN);
+                        comprasOk.incrementAndGet();
+                    } else {
+                        tradingService.venderCripto(idUsuario, idCartera, idCripto, CANTIDAD_ORDEN);
+                        ventasOk.incrementAndGet();
+                    }
+                } catch (SaldoInsuficienteException | CantidadInsuficienteException e) {
+                    rechazadas.incrementAndGet();
+                } catch (ConflictoConcurrenciaException e) {
+                    conflictos.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> resultado : resultados) {
+            resultado.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        int ejecutadas = comprasOk.get() + ventasOk.get();
+        assertEquals(NUM_ORDENES, ejecutadas + rechazadas.get() + conflictos.get());
+        assertTrue(ejecutadas > 0);
+
+        BigDecimal saldoEsperado = saldoInicial
+                .subtract(IMPORTE_ORDEN.multiply(BigDecimal.valueOf(comprasOk.get())))
+                .add(IMPORTE_ORDEN.multiply(BigDecimal.valueOf(ventasOk.get())));
+        BigDecimal cantidadEsperada = cantidadInicial
+                .add(CANTIDAD_ORDEN.multiply(BigDecimal.valueOf(comprasOk.get())))
+                .subtract(CANTIDAD_ORDEN.multiply(BigDecimal.valueOf(ventasOk.get())));
+
+        BigDecimal saldoFinal = carteraRepository.findById(idCartera).orElseThrow().getSaldoVirtualEUR();
+        BigDecimal cantidadFinal = tenencia(cartera).getCantidad();
+
+        assertEquals(0, saldoEsperado.compareTo(saldoFinal), "saldo esperado " + saldoEsperado + " pero fue " + saldoFinal);
+        assertEquals(0, cantidadEsperada.compareTo(cantidadFinal), "cantidad esperada " + cantidadEsperada + " pero fue " + cantidadFinal);
+        assertTrue(saldoFinal.signum() >= 0);
+        assertTrue(cantidadFinal.signum() >= 0);
+        assertEquals(transaccionesIniciales + ejecutadas, transaccionRepository.count());
+    }
+
+    private CriptosAlmacenadas tenencia(Cartera cartera) {
+        return criptosAlmacenadasRepository.findByCartera(cartera).get(0);
+    }
+}
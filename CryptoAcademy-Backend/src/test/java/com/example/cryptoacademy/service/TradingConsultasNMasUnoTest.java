@@ -0,0 +1,165 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.HistorialCursorResponseDTO;
+import com.example.cryptoacademy.dto.PortfolioResponseDTO;
+import com.example.cryptoacademy.dto.TransaccionResponseDTO;
+import com.example.cryptoacademy.persistance.model.Cartera;
+import com.example.cryptoacademy.persistance.model.Criptomoneda;
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.persistance.repository.CarteraRepository;
+import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import com.example.cryptoacademy.persistance.repository.UsuarioRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comprueba con las estadísticas de Hibernate que el portfolio y el historial no lanzan una consulta por fila.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class TradingConsultasNMasUnoTest {
+
+    private static final int NUM_CRIPTOS = 6;
+
+    @Autowired
+    private TradingServiceI tradingService;
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    @Autowired
+    private CarteraRepository carteraRepository;
+    @Autowired
+    private CriptomonedaRepository criptomonedaRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private RankingServiceImpl rankingService;
+
+    private Statistics statistics;
+    private Integer idUsuario;
+    private Long idCartera;
+    private String idPrimeraCripto;
+
+    @BeforeEach
+    void setUp() {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Consultas");
+        usuario.setEmail("consultas-" + System.nanoTime() + "@cryptoacademy.test");
+        usuario.setHashContrasena("x");
+        usuario = usuarioRepository.save(usuario);
+
+        Cartera cartera = new Cartera();
+        cartera.setUsuario(usuario);
+        cartera.setNombre("Cartera consultas");
+        cartera = carteraRepository.save(cartera);
+
+        idUsuario = usuario.getId();
+        idCartera = cartera.getIdCartera();
+        for (int i = 0; i < NUM_CRIPTOS; i++) {
+            Criptomoneda cripto = new Criptomoneda();
+            String idCripto = "nmasuno-" + i + "-" + System.nanoTime();
+            cripto.setId_Criptomoneda(idCripto);
+            cripto.setNombre("Coin " + i);
+            cripto.setSimbolo("c" + i);
+            cripto.setPrecio_actual(new BigDecimal("10.0000"));
+            cripto.setFecha_actualizacion(LocalDateTime.now());
+            criptomonedaRepository.save(cripto);
+            if (i == 0) {
+                idPrimeraCripto = idCripto;
+            }
+            tradingService.comprarCripto(idUsuario, idCartera, idCripto, BigDecimal.ONE);
+        }
+
+        // Las compras dejan al usuario pendiente de recarga en el ranking; se recarga ya para que el refresco
+        // programado no cuente sus consultas dentro de las estadísticas (globales) de cada prueba.
+        rankingService.recalcularPendientes();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        statistics.setStatisticsEnabled(false);
+    }
+
+    @Test
+    void elPortfolioEsUnaSolaConsulta() {
+        PortfolioResponseDTO portfolio = tradingService.obtenerPortfolio(idUsuario, idCartera);
+
+        assertEquals(NUM_CRIPTOS, portfolio.getItems().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void unaPaginaDelHistorialEsUnaConsultaMasElRecuento() {
+        Page<TransaccionResponseDTO> pagina = tradingService.obtenerHistorialTransaccionesUsuario(
+                idUsuario, null, PageRequest.of(0, 4));
+
+        assertEquals(4, pagina.getContent().size());
+        assertEquals(NUM_CRIPTOS, pagina.getTotalElements());
+        // La primera vez se cuenta además lo archivado del usuario; ese recuento queda en caché.
+        assertEquals(3, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        tradingService.obtenerHistorialTransaccionesUsuario(idUsuario, null, PageRequest.of(0, 4));
+        assertEquals(2, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        tradingService.obtenerHistorialTransaccionesUsuario(idUsuario, TipoTransaccion.COMPRA, PageRequest.of(0, 4));
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void elHistorialPorCursorEsUnaConsultaPorPaginaSinRecuento() {
+        FiltroHistorial sinFiltro = new FiltroHistorial(null, null, null, null);
+        HistorialCursorResponseDTO primera = tradingService.obtenerHistorialTransaccionesCursor(idUsuario, sinFiltro, null, 4, false);
+
+        assertEquals(4, primera.getTransacciones().size());
+        assertTrue(primera.isHayMas());
+        assertNull(primera.getTotalTransacciones());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        CursorHistorial cursor = CursorHistorial.desdeCodigo(primera.getSiguienteCursor()).orElseThrow();
+        HistorialCursorResponseDTO segunda = tradingService.obtenerHistorialTransaccionesCursor(idUsuario, sinFiltro, cursor, 4, true);
+
+        assertEquals(2, segunda.getTransacciones().size());
+        assertFalse(segunda.isHayMas());
+        assertNull(segunda.getSiguienteCursor());
+        assertEquals(NUM_CRIPTOS, segunda.getTotalTransacciones());
+        // La tabla caliente no llena la página: se sigue en el archivo (consulta y recuento).
+        assertEquals(4, statistics.getPrepareStatementCount());
+
+        List<Long> ids = new ArrayList<>();
+        primera.getTransacciones().forEach(t -> ids.add(t.getIdTransaccion()));
+        segunda.getTransacciones().forEach(t -> ids.add(t.getIdTransaccion()));
+        assertEquals(NUM_CRIPTOS, ids.stream().distinct().count());
+        assertEquals(ids.stream().sorted((a, b) -> Long.compare(b, a)).toList(), ids);
+
+        HistorialCursorResponseDTO porCripto = tradingService.obtenerHistorialTransaccionesCursor(
+                idUsuario, new FiltroHistorial(TipoTransaccion.COMPRA, idPrimeraCripto, null, null), null, 4, false);
+        assertEquals(1, porCripto.getTransacciones().size());
+        assertEquals(idPrimeraCripto, porCripto.getTransacciones().get(0).getIdCriptomoneda());
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.OrdenLoteItemDTO;
+import com.example.cryptoacademy.exception.CantidadInsuficienteException;
+import com.example.cryptoacademy.exception.SaldoInsuficienteException;
+import com.example.cryptoacademy.persistance.model.Cartera;
+import com.example.cryptoacademy.persistance.model.Criptomoneda;
+import com.example.cryptoacademy.persistance.model.TipoTransaccion;
+import com.example.cryptoacademy.persistance.model.Usuario;
+import com.example.cryptoacademy.persistance.repository.CarteraRepository;
+import com.example.cryptoacademy.persistance.repository.CriptomonedaRepository;
+import com.example.cryptoacademy.persistance.repository.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Lotes de órdenes: se ejecutan en el orden recibido y se aplican todas o ninguna.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class TradingLoteOrdenesTest {
+
+    @Autowired
+    private TradingServiceI tradingService;
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    @Autowired
+    private CarteraRepository carteraRepository;
+    @Autowired
+    private CriptomonedaRepository criptomonedaRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Integer idUsuario;
+    private Long idCartera;
+    private String idCriptoA;
+    private String idCriptoB;
+
+    @BeforeEach
+    void setUp() {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Lote");
+        usuario.setEmail("lote-" + System.nanoTime() + "@cryptoacademy.test");
+        usuario.setHashContrasena("x");
+        usuario = usuarioRepository.save(usuario);
+
+        Cartera cartera = new Cartera();
+        cartera.setUsuario(usuario);
+        cartera.setNombre("Cartera lote");
+        cartera.setSaldoVirtualEUR(new BigDecimal("1000.0000"));
+        cartera = carteraRepository.save(cartera);
+
+        idCriptoA = crearCripto("lotecoin-a-", "LoteCoin A", "lta");
+        idCriptoB = crearCripto("lotecoin-b-", "LoteCoin B", "ltb");
+        idUsuario = usuario.getId();
+        idCartera = cartera.getIdCartera();
+    }
+
+    @Test
+    void unaVentaFinanciaUnaCompraPosteriorDelMismoLote() {
+        tradingService.ejecutarLoteOrdenes(idUsuario, idCartera, List.of(
+                new OrdenLoteItemDTO(TipoTransaccion.COMPRA, idCriptoA, new BigDecimal("10"))));
+        assertEquals(0, BigDecimal.ZERO.compareTo(saldo()));
+
+        tradingService.ejecutarLoteOrdenes(idUsuario, idCartera, List.of(
+                new OrdenLoteItemDTO(TipoTransaccion.VENTA, idCriptoA, new BigDecimal("5")),
+                new OrdenLoteItemDTO(TipoTransaccion.COMPRA, idCriptoB, new BigDecimal("2"))));
+
+        assertEquals(0, new BigDecimal("300").compareTo(saldo()));
+        assertEquals(0, new BigDecimal("5").compareTo(cantidad(idCriptoA)));
+        assertEquals(0, new BigDecimal("2").compareTo(cantidad(idCriptoB)));
+        assertEquals(3, transacciones());
+    }
+
+    @Test
+    void elOrdenDelLoteImporta() {
+        tradingService.ejecutarLoteOrdenes(idUsuario, idCartera, List.of(
+                new OrdenLoteItemDTO(TipoTransaccion.COMPRA, idCriptoA, new BigDecimal("10"))));
+
+        assertThrows(SaldoInsuficienteException.class, () -> tradingService.ejecutarLoteOrdenes(idUsuario, idCartera, List.of(
+                new OrdenLoteItemDTO(TipoTransaccion.COMPRA, idCriptoB, new BigDecimal("2")),
+                new OrdenLoteItemDTO(TipoTransaccion.VENTA, idCriptoA, new BigDecimal("5")))));
+    }
+
+    @Test
+    void siUnaOrdenFallaNoSeAplicaNingunaDelLote() {
+        assertThrows(CantidadInsuficienteException.class, () -> tradingService.ejecutarLoteOrdenes(idUsuario, idCartera, List.of(
+                new OrdenLoteItemDTO(TipoTransaccion.COMPRA, idCriptoA, new BigDecimal("3")),
+                new OrdenLoteItemDTO(TipoTransaccion.COMPRA, idCriptoB, new BigDecimal("1")),
+                new OrdenLoteItemDTO(TipoTransaccion.VENTA, idCriptoA, new BigDecimal("4")))));
+
+        assertEquals(0, new BigDecimal("1000").compareTo(saldo()));
+        assertEquals(0, tenencias());
+        assertEquals(0, transacciones());
+    }
+
+    @Test
+    void unLoteMalFormadoSeRechazaAntesDeOperar() {
+        assertThrows(IllegalArgumentException.class, () -> tradingService.ejecutarLoteOrdenes(idUsuario, idCartera, List.of()));
+        List<OrdenLoteItemDTO> demasiadas = Collections.nCopies(101,
+                new OrdenLoteItemDTO(TipoTransaccion.COMPRA, idCriptoA, new BigDecimal("0.01")));
+        assertThrows(IllegalArgumentException.class, () -> tradingService.ejecutarLoteOrdenes(idUsuario, idCartera, demasiadas));
+        assertThrows(IllegalArgumentException.class, () -> tradingService.ejecutarLoteOrdenes(idUsuario, idCartera, List.of(
+                new OrdenLoteItemDTO(TipoTransaccion.COMPRA, idCriptoA, new BigDecimal("1")),
+                new OrdenLoteItemDTO(null, idCriptoA, new BigDecimal("1")))));
+        assertThrows(IllegalArgumentException.class, () -> tradingService.ejecutarLoteOrdenes(idUsuario, idCartera, List.of(
+                new OrdenLoteItemDTO(TipoTransaccion.COMPRA, null, new BigDecimal("1")))));
+        assertThrows(IllegalArgumentException.class, () -> tradingService.ejecutarLoteOrdenes(idUsuario, idCartera, List.of(
+                new OrdenLoteItemDTO(TipoTransaccion.COMPRA, idCriptoA, BigDecimal.ZERO))));
+
+        assertEquals(0, new BigDecimal("1000").compareTo(saldo()));
+        assertEquals(0, transacciones());
+    }
+
+    private String crearCripto(String prefijo, String nombre, String simbolo) {
+        Criptomoneda cripto = new Criptomoneda();
+        cripto.setId_Criptomoneda(prefijo + System.nanoTime());
+        cripto.setNombre(nombre);
+        cripto.setSimbolo(simbolo);
+        cripto.setPrecio_actual(new BigDecimal("100.0000"));
+        cripto.setFecha_actualizacion(LocalDateTime.now());
+        return criptomonedaRepository.save(cripto).getId_Criptomoneda();
+    }
+
+    private BigDecimal saldo() {
+        return carteraRepository.findById(idCartera).orElseThrow().getSaldoVirtualEUR();
+    }
+
+    private BigDecimal cantidad(String idCripto) {
+        return jdbcTemplate.queryForObject(
+                "SELECT cantidad FROM criptos_almacenadas WHERE id_cartera = ? AND id_criptomoneda = ?",
+                BigDecimal.class, idCartera, idCripto);
+    }
+
+    private int tenencias() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM criptos_almacenadas WHERE id_cartera = ?", Integer.class, idCartera);
+    }
+
+    private int transacciones() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM transacciones WHERE id_cartera = ?", Integer.class, idCartera);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.cryptoacademy.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TradingServiceConcurrenteImplTest {
+
+    @Test
+    void soloLaTenenciaDuplicadaSeReintenta() {
+        assertTrue(TradingServiceConcurrenteImpl.esTenenciaDuplicada(violacion(new SQLException(
+                "Duplicate entry '7-bitcoin' for key 'criptos_almacenadas.UK_cartera_cripto'", "23000", 1062))));
+        assertTrue(TradingServiceConcurrenteImpl.esTenenciaDuplicada(violacion(new SQLException(
+                "Unique index or primary key violation: \"PUBLIC.UK_X_INDEX_4 ON PUBLIC.CRIPTOS_ALMACENADAS(ID_CARTERA, ID_CRIPTOMONEDA)\"", "23505", 23505))));
+
+        assertFalse(TradingServiceConcurrenteImpl.esTenenciaDuplicada(violacion(new SQLException(
+                "Cannot add or update a child row: a foreign key constraint fails (`criptos_almacenadas`, ...)", "23000", 1452))));
+        assertFalse(TradingServiceConcurrenteImpl.esTenenciaDuplicada(violacion(new SQLException(
+                "Column 'id_criptomoneda' cannot be null", "23000", 1048))));
+        assertFalse(TradingServiceConcurrenteImpl.esTenenciaDuplicada(violacion(new SQLException(
+                "Duplicate entry 'a@b.c' for key 'usuarios.UK_kfsp0s1flr5qjguhrsvtyok2u'", "23000", 1062))));
+    }
+
+    private static DataIntegrityViolationException violacion(SQLException causa) {
+        return new DataIntegrityViolationException("could not execute statement", causa);
+    }
+}
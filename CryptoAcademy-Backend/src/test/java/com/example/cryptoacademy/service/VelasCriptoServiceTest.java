@@ -0,0 +1,156 @@
+package com.example.cryptoacademy.service;
+
+import com.example.cryptoacademy.dto.CoinGeckoChartDataDTO;
+import com.example.cryptoacademy.persistance.model.IntervaloVela;
+import com.example.cryptoacademy.persistance.repository.VelaCriptoJdbcRepository;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// El servicio se construye a mano sobre el repositorio real para sustituir CoinGecko y el proxy de gráficos.
+@SpringBootTest
+@ActiveProfiles("test")
+class VelasCriptoServiceTest {
+
+    private static final long HORA = TimeUnit.HOURS.toMillis(1);
+
+    @Autowired
+    private VelaCriptoJdbcRepository velaRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private CoinGeckoService coinGeckoService;
+    private GraficoCriptoService graficoCriptoService;
+    private VelasCriptoService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM velas_cripto WHERE id_criptomoneda LIKE 'velas-%'");
+        coinGeckoService = mock(CoinGeckoService.class);
+        graficoCriptoService = mock(GraficoCriptoService.class);
+        service = new VelasCriptoService(velaRepository, coinGeckoService, graficoCriptoService, true, 1440, 2160, 400);
+    }
+
+    @Test
+    void losRefrescosConstruyenLasVelasEnBdYEnMemoria() throws Exception {
+        long inicioHora = IntervaloVela.H1.inicioDe(System.currentTimeMillis());
+        service.registrarPrecios(Map.of("velas-a", new BigDecimal("100")), inicioHora + 1_000);
+        service.registrarPrecios(Map.of("velas-a", new BigDecimal("120")), inicioHora + 2_000);
+        service.registrarPrecios(Map.of("velas-a", new BigDecimal("90")), inicioHora + 3_000);
+
+        Map<String, Object> vela = jdbcTemplate.queryForMap(
+                "SELECT apertura, maximo, minimo, cierre FROM velas_cripto WHERE id_criptomoneda = 'velas-a' AND intervalo = 'H1'");
+        assertEquals(100.0, ((Number) vela.get("apertura")).doubleValue());
+        assertEquals(120.0, ((Number) vela.get("maximo")).doubleValue());
+        assertEquals(90.0, ((Number) vela.get("minimo")).doubleValue());
+        assertEquals(90.0, ((Number) vela.get("cierre")).doubleValue());
+        assertEquals(3, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM velas_cripto WHERE id_criptomoneda = 'velas-a'", Integer.class));
+
+        // El buffer de minutos aún no cubre el día: se pide lo que falta (nada aquí) y se sirve desde BD.
+        when(coinGeckoService.getCoinMarketChartRange(anyString(), anyString(), anyLong(), anyLong()))
+                .thenReturn(SeriePrecios.vacia());
+        CoinGeckoChartDataDTO grafico = service.obtenerGrafico("velas-a", "eur", "1");
+        assertEquals(90.0, ultimoPrecio(grafico));
+    }
+
+    @Test
+    void soloSeDescargaElHistoricoQueFaltaYUnaSolaVez() throws Exception {
+        long ahora = System.currentTimeMillis();
+        long horaActual = IntervaloVela.H1.inicioDe(ahora);
+        // Hay velas de las últimas 24 horas; el gráfico de 7 días necesita las seis anteriores.
+        for (long t = horaActual - 23 * HORA; t <= horaActual; t += HORA) {
+            service.registrarPrecios(Map.of("velas-b", new BigDecimal("50")), t);
+        }
+        long primeraGuardada = horaActual - 23 * HORA;
+        when(coinGeckoService.getCoinMarketChartRange(eq("velas-b"), eq("eur"), anyLong(), anyLong()))
+                .thenReturn(puntosHorarios(primeraGuardada - 7 * 24 * HORA, primeraGuardada, 40));
+
+        CoinGeckoChartDataDTO grafico = service.obtenerGrafico("velas-b", "eur", "7");
+        CoinGeckoChartDataDTO otraVez = service.obtenerGrafico("velas-b", "EUR", "7");
+
+        // Un único tramo: desde el inicio del rango hasta justo antes de la primera vela guardada.
+        long desde = IntervaloVela.H1.inicioDe(ahora - 7 * 24 * HORA);
+        verify(coinGeckoService, times(1)).getCoinMarketChartRange("velas-b", "eur", desde / 1000, (primeraGuardada - 1) / 1000 + 1);
+        assertEquals(grafico.getPrices().size(), otraVez.getPrices().size());
+        assertTrue(grafico.getPrices().size() >= 7 * 24);
+        assertEquals(40.0, grafico.getPrices().get(0).get(1));
+        assertEquals(50.0, ultimoPrecio(grafico));
+        // Las velas propias no se sobrescriben con el histórico.
+        assertEquals(24, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM velas_cripto WHERE id_criptomoneda = 'velas-b' AND intervalo = 'H1' AND cierre = 50", Integer.class));
+    }
+
+    @Test
+    void unHuecoEnUnBufferQueCubreElRangoSeRellena() throws Exception {
+        long ahora = System.currentTimeMillis();
+        long horaActual = IntervaloVela.H1.inicioDe(ahora);
+        // El buffer cubre las 48 horas del gráfico, pero faltan diez horas en medio (refrescos caídos).
+        long inicioHueco = horaActual - 30 * HORA;
+        long finHueco = horaActual - 20 * HORA;
+        for (long t = horaActual - 50 * HORA; t <= horaActual; t += HORA) {
+            if (t < inicioHueco || t >= finHueco) {
+                service.registrarPrecios(Map.of("velas-d", new BigDecimal("50")), t);
+            }
+        }
+        when(coinGeckoService.getCoinMarketChartRange(eq("velas-d"), eq("eur"), anyLong(), anyLong()))
+                .thenReturn(puntosHorarios(inicioHueco, finHueco, 40));
+
+        CoinGeckoChartDataDTO grafico = service.obtenerGrafico("velas-d", "eur", "2");
+        CoinGeckoChartDataDTO otraVez = service.obtenerGrafico("velas-d", "eur", "2");
+
+        // Solo se pide el hueco, una vez, y el gráfico sale completo y sin saltos.
+        verify(coinGeckoService, times(1)).getCoinMarketChartRange(anyString(), anyString(), anyLong(), anyLong());
+        verify(coinGeckoService).getCoinMarketChartRange("velas-d", "eur", inicioHueco / 1000, (finHueco - 1) / 1000 + 1);
+        assertEquals(grafico.getPrices().size(), otraVez.getPrices().size());
+        for (int i = 1; i < grafico.getPrices().size(); i++) {
+            assertEquals(HORA, grafico.getPrices().get(i).get(0) - grafico.getPrices().get(i - 1).get(0));
+        }
+        assertTrue(grafico.getPrices().stream().anyMatch(punto -> punto.get(1) == 40.0));
+        assertEquals(50.0, ultimoPrecio(grafico));
+    }
+
+    @Test
+    void otrasMonedasYRangosNoNumericosVanAlProxy() throws Exception {
+        CoinGeckoChartDataDTO proxy = new CoinGeckoChartDataDTO(List.of());
+        when(graficoCriptoService.obtenerGrafico(anyString(), anyString(), anyString())).thenReturn(proxy);
+
+        assertSame(proxy, service.obtenerGrafico("velas-c", "usd", "7"));
+        assertSame(proxy, service.obtenerGrafico("velas-c", "eur", "max"));
+        verify(coinGeckoService, never()).getCoinMarketChartRange(anyString(), anyString(), anyLong(), anyLong());
+    }
+
+    private static SeriePrecios puntosHorarios(long desde, long hasta, double precio) throws Exception {
+        StringBuilder json = new StringBuilder("{\"prices\":[");
+        for (long t = desde; t < hasta; t += HORA) {
+            json.append(t > desde ? "," : "").append('[').append(t + 60_000).append(',').append(precio).append(']');
+        }
+        json.append("],\"total_volumes\":[]}");
+        return SeriePrecios.leer(new JsonFactory().createParser(json.toString()));
+    }
+
+    private static double ultimoPrecio(CoinGeckoChartDataDTO grafico) {
+        return grafico.getPrices().get(grafico.getPrices().size() - 1).get(1);
+    }
+}
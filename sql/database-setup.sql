@@ -13,7 +13,13 @@
 SET FOREIGN_KEY_CHECKS=0;
 
 -- Eliminar objetos de base de datos existentes
+DROP TABLE IF EXISTS `audit_log_transacciones_archivo`;
+DROP TABLE IF EXISTS `transacciones_archivo`;
 DROP TABLE IF EXISTS `audit_log_transacciones`;
+DROP TABLE IF EXISTS `ordenes_pendientes`;
+DROP TABLE IF EXISTS `claves_idempotencia`;
+DROP TABLE IF EXISTS `snapshots_cartera`;
+DROP TABLE IF EXISTS `velas_cripto`;
 DROP TABLE IF EXISTS `transacciones`;
 DROP TABLE IF EXISTS `criptos_almacenadas`;
 DROP TABLE IF EXISTS `carteras`;
@@ -63,6 +69,7 @@ CREATE TABLE `carteras` (
   `nombre` VARCHAR(255) NOT NULL,
   `saldo_virtual_eur` DECIMAL(19,4) NOT NULL,
   `fecha_creacion` DATETIME(6) NOT NULL,
+  `version` BIGINT NOT NULL DEFAULT 0,
   `id_usuario` INT NOT NULL,
   PRIMARY KEY (`id_cartera`),
   INDEX `FK_usuario_cartera` (`id_usuario` ASC) VISIBLE,
@@ -77,7 +84,10 @@ CREATE TABLE `carteras` (
 CREATE TABLE `criptos_almacenadas` (
   `id_almacenada` BIGINT NOT NULL AUTO_INCREMENT,
   `cantidad` DECIMAL(24,8) NOT NULL,
+  `coste_total_eur` DECIMAL(19,4) NOT NULL DEFAULT 0,
+  `pyg_realizado_eur` DECIMAL(19,4) NOT NULL DEFAULT 0,
   `fecha_ultima_actualizacion` DATETIME(6) NOT NULL,
+  `version` BIGINT NOT NULL DEFAULT 0,
   `id_cartera` BIGINT NOT NULL,
   `id_criptomoneda` VARCHAR(100) NOT NULL,
   PRIMARY KEY (`id_almacenada`),
@@ -107,7 +117,9 @@ CREATE TABLE `transacciones` (
   `id_criptomoneda` VARCHAR(100) NOT NULL,
   `id_usuario` INT NOT NULL,
   PRIMARY KEY (`id_transaccion`),
-  INDEX `FK_usuario_transaccion_idx` (`id_usuario` ASC) VISIBLE,
+  -- Historial por usuario ordenado por fecha (keyset y paginado); también sirve de índice para la FK de usuario.
+  INDEX `IDX_transaccion_usuario_fecha` (`id_usuario` ASC, `fecha_transaccion` ASC, `id_transaccion` ASC) VISIBLE,
+  INDEX `IDX_transaccion_usuario_tipo_fecha` (`id_usuario` ASC, `tipo_transaccion` ASC, `fecha_transaccion` ASC) VISIBLE,
   INDEX `FK_cartera_transaccion_idx` (`id_cartera` ASC) VISIBLE,
   INDEX `FK_cripto_transaccion_idx` (`id_criptomoneda` ASC) VISIBLE,
   CONSTRAINT `FK_usuario_transaccion`
@@ -127,6 +139,97 @@ CREATE TABLE `transacciones` (
     ON UPDATE NO ACTION
 );
 
+-- Table `ordenes_pendientes`
+-- Órdenes límite y stop a la espera de que el precio cruce `precio_activacion`.
+-- El índice por estado permite reconstruir el libro en memoria al arrancar sin recorrer las ya cerradas.
+CREATE TABLE `ordenes_pendientes` (
+  `id_orden` BIGINT NOT NULL AUTO_INCREMENT,
+  `id_usuario` INT NOT NULL,
+  `id_cartera` BIGINT NOT NULL,
+  `id_criptomoneda` VARCHAR(100) NOT NULL,
+  `tipo_transaccion` VARCHAR(10) NOT NULL,
+  `tipo_orden` VARCHAR(10) NOT NULL,
+  `cantidad` DECIMAL(24,8) NOT NULL,
+  `precio_activacion` DECIMAL(19,4) NOT NULL,
+  `estado` VARCHAR(10) NOT NULL DEFAULT 'PENDIENTE',
+  `id_transaccion` BIGINT NULL,
+  `motivo_estado` VARCHAR(255) NULL,
+  `fecha_creacion` DATETIME(6) NOT NULL,
+  `fecha_ejecucion` DATETIME(6) NULL,
+  PRIMARY KEY (`id_orden`),
+  INDEX `IDX_orden_estado` (`estado` ASC) VISIBLE,
+  INDEX `IDX_orden_usuario_estado` (`id_usuario` ASC, `estado` ASC, `fecha_creacion` DESC) VISIBLE,
+  INDEX `FK_cartera_orden_idx` (`id_cartera` ASC) VISIBLE,
+  INDEX `FK_cripto_orden_idx` (`id_criptomoneda` ASC) VISIBLE,
+  CONSTRAINT `FK_usuario_orden`
+    FOREIGN KEY (`id_usuario`)
+    REFERENCES `usuarios` (`id_usuario`)
+    ON DELETE CASCADE
+    ON UPDATE NO ACTION,
+  CONSTRAINT `FK_cartera_orden`
+    FOREIGN KEY (`id_cartera`)
+    REFERENCES `carteras` (`id_cartera`)
+    ON DELETE CASCADE
+    ON UPDATE NO ACTION,
+  CONSTRAINT `FK_cripto_orden`
+    FOREIGN KEY (`id_criptomoneda`)
+    REFERENCES `criptomonedas` (`id_criptomoneda`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION
+);
+
+-- Table `claves_idempotencia`
+-- Respuesta de cada compra/venta enviada con cabecera Idempotency-Key, para devolverla ante reintentos.
+-- La clave se inserta con `respuesta` NULL antes de ejecutar la orden (en curso) y se completa al terminar.
+CREATE TABLE `claves_idempotencia` (
+  `clave` VARCHAR(150) NOT NULL,
+  `id_usuario` INT NOT NULL,
+  `huella` VARCHAR(64) NOT NULL,
+  `respuesta` VARCHAR(2000) NULL,
+  `fecha_creacion` DATETIME(6) NOT NULL,
+  PRIMARY KEY (`clave`),
+  INDEX `IDX_idempotencia_fecha` (`fecha_creacion` ASC) VISIBLE
+);
+
+-- Table `snapshots_cartera`
+-- Valor de cada cartera tras los refrescos de precios; alimenta el historial de rendimiento.
+CREATE TABLE `snapshots_cartera` (
+  `id_snapshot` BIGINT NOT NULL AUTO_INCREMENT,
+  `id_cartera` BIGINT NOT NULL,
+  `fecha_snapshot` DATETIME(6) NOT NULL,
+  `valor_total_eur` DECIMAL(19,4) NOT NULL,
+  `valor_criptos_eur` DECIMAL(19,4) NOT NULL,
+  PRIMARY KEY (`id_snapshot`),
+  INDEX `IDX_snapshot_cartera_fecha` (`id_cartera` ASC, `fecha_snapshot` ASC) VISIBLE,
+  INDEX `IDX_snapshot_fecha` (`fecha_snapshot` ASC) VISIBLE,
+  CONSTRAINT `FK_cartera_snapshot`
+    FOREIGN KEY (`id_cartera`)
+    REFERENCES `carteras` (`id_cartera`)
+    ON DELETE CASCADE
+    ON UPDATE NO ACTION
+);
+
+-- Table `velas_cripto`
+-- Velas OHLC en EUR por criptomoneda e intervalo (M1, H1, D1), alimentadas con cada refresco de precios y con el
+-- histórico de CoinGecko que falte; sirven los gráficos sin consultar CoinGecko en cada petición.
+CREATE TABLE `velas_cripto` (
+  `id_vela` BIGINT NOT NULL AUTO_INCREMENT,
+  `id_criptomoneda` VARCHAR(100) NOT NULL,
+  `intervalo` VARCHAR(2) NOT NULL,
+  `inicio_ms` BIGINT NOT NULL,
+  `apertura` DOUBLE NOT NULL,
+  `maximo` DOUBLE NOT NULL,
+  `minimo` DOUBLE NOT NULL,
+  `cierre` DOUBLE NOT NULL,
+  PRIMARY KEY (`id_vela`),
+  UNIQUE INDEX `UQ_vela_cripto_intervalo_inicio` (`id_criptomoneda` ASC, `intervalo` ASC, `inicio_ms` ASC) VISIBLE,
+  CONSTRAINT `FK_cripto_vela`
+    FOREIGN KEY (`id_criptomoneda`)
+    REFERENCES `criptomonedas` (`id_criptomoneda`)
+    ON DELETE CASCADE
+    ON UPDATE NO ACTION
+);
+
 -- Table `audit_log_transacciones`
 CREATE TABLE `audit_log_transacciones` (
     `id_audit` INT AUTO_INCREMENT PRIMARY KEY,
@@ -142,12 +245,53 @@ CREATE TABLE `audit_log_transacciones` (
     `fecha_transaccion_original` DATETIME(6),
     `fecha_audit` DATETIME(6) DEFAULT CURRENT_TIMESTAMP(6),
     `usuario_db_accion` VARCHAR(255),
+    -- Una fila por transacción: la auditoría desde la aplicación inserta con INSERT IGNORE y puede repetir.
+    UNIQUE INDEX `UQ_audit_transaccion_original` (`id_transaccion_original` ASC) VISIBLE,
     CONSTRAINT `fk_audit_transaccion_original` 
         FOREIGN KEY (`id_transaccion_original`) 
         REFERENCES `transacciones`(`id_transaccion`) 
         ON DELETE SET NULL
 );
 
+-- Table `transacciones_archivo`
+-- Almacenamiento frío: las transacciones de meses cerrados que mueve `ArchivoTransaccionesService`, con el mismo
+-- id que tenían. Sin claves foráneas (particionar `transacciones` en MySQL obligaría a quitarlas de la tabla
+-- caliente) y comprimida; solo lleva los índices del historial por usuario y del recálculo por cartera.
+CREATE TABLE `transacciones_archivo` (
+  `id_transaccion` BIGINT NOT NULL,
+  `cantidad_cripto` DECIMAL(24,8) NOT NULL,
+  `fecha_transaccion` DATETIME(6) NOT NULL,
+  `precio_por_unidad_eur` DECIMAL(19,4) NOT NULL,
+  `tipo_transaccion` VARCHAR(10) NOT NULL,
+  `valor_total_eur` DECIMAL(19,4) NOT NULL,
+  `id_cartera` BIGINT NOT NULL,
+  `id_criptomoneda` VARCHAR(100) NOT NULL,
+  `id_usuario` INT NOT NULL,
+  PRIMARY KEY (`id_transaccion`),
+  INDEX `IDX_transaccion_archivo_usuario_fecha` (`id_usuario` ASC, `fecha_transaccion` ASC, `id_transaccion` ASC) VISIBLE,
+  INDEX `IDX_transaccion_archivo_cartera` (`id_cartera` ASC) VISIBLE
+) ROW_FORMAT=COMPRESSED;
+
+-- Table `audit_log_transacciones_archivo`
+-- Auditoría de las transacciones archivadas; se mueve antes que ellas para no perder `id_transaccion_original`
+-- por el ON DELETE SET NULL de la tabla viva.
+CREATE TABLE `audit_log_transacciones_archivo` (
+    `id_audit` INT NOT NULL PRIMARY KEY,
+    `id_transaccion_original` BIGINT,
+    `tipo_operacion_auditada` VARCHAR(10),
+    `id_usuario_transaccion` INT,
+    `id_cartera_transaccion` BIGINT,
+    `id_criptomoneda_transaccion` VARCHAR(100),
+    `tipo_transaccion_original` VARCHAR(10),
+    `cantidad_cripto_transaccion` DECIMAL(24,8),
+    `precio_por_unidad_eur_transaccion` DECIMAL(19,4),
+    `valor_total_eur_transaccion` DECIMAL(19,4),
+    `fecha_transaccion_original` DATETIME(6),
+    `fecha_audit` DATETIME(6),
+    `usuario_db_accion` VARCHAR(255),
+    INDEX `IDX_audit_archivo_transaccion` (`id_transaccion_original` ASC) VISIBLE
+) ROW_FORMAT=COMPRESSED;
+
 -- -----------------------------------------------------
 -- SECCIÓN 2: CREACIÓN DE FUNCIONES
 -- -----------------------------------------------------
@@ -247,6 +391,9 @@ DELIMITER ;
 -- SECCIÓN 4: CREACIÓN DE TRIGGERS
 -- -----------------------------------------------------
 
+-- Con auditoria.transacciones.aplicacion.enabled=true la auditoría la escribe la aplicación en lotes, fuera de la
+-- transacción de cada operación; en ese caso este trigger sobra y se elimina con:
+--   DROP TRIGGER IF EXISTS `TRG_Audit_Transacciones_Insert`;
 DELIMITER //
 
 CREATE TRIGGER `TRG_Audit_Transacciones_Insert`